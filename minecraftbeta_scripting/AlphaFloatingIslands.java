@@ -53,49 +53,38 @@ public final class AlphaFloatingIslands extends JavaPlugin {
 
         private final int floatingIslandNoiseOctaves;
 
-        // Noise instances are created per-world-seed (lazy init)
-        private long initializedSeed = Long.MIN_VALUE;
-
-        private NoiseGeneratorOctaves noiseA;                 // 10
-        private NoiseGeneratorOctaves noiseB;                 // 16
-        private NoiseGeneratorOctaves noiseK;                 // 16
-        private NoiseGeneratorOctaves noiseL;                 // 16
-        private NoiseGeneratorOctaves noiseM;                 // 8
-        private NoiseGeneratorOctaves noiseN;                 // 4
-        private NoiseGeneratorOctaves noisePerlin3;           // 4
-        private NoiseGeneratorOctaves floatingIslandScale;    // 10
-        private NoiseGeneratorOctaves floatingIslandNoise;    // 14 or 16
-
-        // Reused buffers (avoid churn)
-        private double[] density;
-        private double[] sandNoiseR;
-        private double[] sandNoiseS;
-        private double[] depthBuffer;
-
-        // density builder buffers (reused)
-        private double[] bufPnr;
-        private double[] bufAr;
-        private double[] bufBr;
-        private double[] bufSr;
-        private double[] bufDr;
-        private double[] bufFIs;
-        private double[] bufFI;
+        // Noise tables for the current world seed. Immutable once built, so any number of
+        // threads may read them; a seed change just publishes a new instance.
+        private volatile NoiseTables tables;
+
+        // Density/surface buffers are per thread so concurrent generate() calls never share them.
+        private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>() {
+            @Override
+            protected Scratch initialValue() {
+                return new Scratch();
+            }
+        };
 
         public AlphaFloatingIslandsGenerator(int floatingIslandNoiseOctaves) {
             this.floatingIslandNoiseOctaves = floatingIslandNoiseOctaves;
         }
 
+        /**
+         * Safe to call from several threads at once (e.g. offline pre-generation):
+         * shared state is limited to the immutable per-seed {@link NoiseTables}.
+         */
         @Override
         public byte[] generate(World world, Random ignoredByBukkit, int chunkX, int chunkZ) {
-            initIfNeeded(world.getSeed());
+            NoiseTables t = tablesFor(world.getSeed());
+            Scratch s = scratch.get();
 
             byte[] blocks = new byte[16 * 16 * WORLD_HEIGHT];
 
             // Stone/air only
-            generateRawTerrain(chunkX, chunkZ, blocks);
+            generateRawTerrain(t, s, chunkX, chunkZ, blocks);
 
             // Surface pass: grass/dirt/sand/gravel only; NO WATER FILL.
-            applySurfaceNoWater(chunkX, chunkZ, blocks);
+            applySurfaceNoWater(t, s, chunkX, chunkZ, blocks);
 
             return blocks;
         }
@@ -105,28 +94,18 @@ public final class AlphaFloatingIslands extends JavaPlugin {
             return java.util.Collections.emptyList();
         }
 
-        private void initIfNeeded(long seed) {
-            if (initializedSeed == seed) {
-                return;
+        private NoiseTables tablesFor(long seed) {
+            NoiseTables t = tables;
+            if (t != null && t.seed == seed) {
+                return t;
             }
-            initializedSeed = seed;
-
-            Random rand = new Random(seed);
-
-            noiseK = new NoiseGeneratorOctaves(rand, 16);
-            noiseL = new NoiseGeneratorOctaves(rand, 16);
-            noiseM = new NoiseGeneratorOctaves(rand, 8);
-            noiseN = new NoiseGeneratorOctaves(rand, 4);
-            noisePerlin3 = new NoiseGeneratorOctaves(rand, 4);
-
-            noiseA = new NoiseGeneratorOctaves(rand, 10);
-            noiseB = new NoiseGeneratorOctaves(rand, 16);
-
-            floatingIslandScale = new NoiseGeneratorOctaves(rand, 10);
-            floatingIslandNoise = new NoiseGeneratorOctaves(rand, floatingIslandNoiseOctaves);
+            // Two threads may race to build the same seed; both results are identical.
+            t = new NoiseTables(seed, floatingIslandNoiseOctaves);
+            tables = t;
+            return t;
         }
 
-        private void generateRawTerrain(int chunkX, int chunkZ, byte[] blocks) {
+        private void generateRawTerrain(NoiseTables t, Scratch s, int chunkX, int chunkZ, byte[] blocks) {
             // Alpha-style density grid:
             // cellSize=4 -> xSize=zSize=5; ySize=17 (128/8 + 1)
             final int cellSize = 4;
@@ -134,7 +113,7 @@ public final class AlphaFloatingIslands extends JavaPlugin {
             final int zSize = cellSize + 1;   // 5
             final int ySize = 17;
 
-            density = generateDensities(density, chunkX * cellSize, 0, chunkZ * cellSize, xSize, ySize, zSize);
+            double[] density = generateDensities(t, s, chunkX * cellSize, 0, chunkZ * cellSize, xSize, ySize, zSize);
 
             // Trilinear interpolation into 16x128x16
             for (int xCell = 0; xCell < cellSize; xCell++) {
@@ -197,7 +176,7 @@ public final class AlphaFloatingIslands extends JavaPlugin {
             }
         }
 
-        private void applySurfaceNoWater(int chunkX, int chunkZ, byte[] blocks) {
+        private void applySurfaceNoWater(NoiseTables t, Scratch s, int chunkX, int chunkZ, byte[] blocks) {
             // This is the Alpha/Beta surface pass pattern, but:
             // - NO sea-level water fill
             // - NO bedrock placement (we never place it)
@@ -205,27 +184,31 @@ public final class AlphaFloatingIslands extends JavaPlugin {
 
             final double scale = 0.03125D;
 
-            sandNoiseR = noiseN.generateNoiseOctaves(
-                    sandNoiseR,
+            s.sandNoiseR = t.noiseN.generateNoiseOctaves(
+                    s.sandNoiseR,
                     chunkX * 16.0D, chunkZ * 16.0D, 0.0D,
                     16, 16, 1,
                     scale, scale, 1.0D
             );
 
-            sandNoiseS = noiseN.generateNoiseOctaves(
-                    sandNoiseS,
+            s.sandNoiseS = t.noiseN.generateNoiseOctaves(
+                    s.sandNoiseS,
                     chunkZ * 16.0D, 109.0134D, chunkX * 16.0D,
                     16, 1, 16,
                     scale, 1.0D, scale
             );
 
-            depthBuffer = noisePerlin3.generateNoiseOctaves(
-                    depthBuffer,
+            s.depthBuffer = t.noisePerlin3.generateNoiseOctaves(
+                    s.depthBuffer,
                     chunkX * 16.0D, chunkZ * 16.0D, 0.0D,
                     16, 16, 1,
                     scale * 2.0D, scale * 2.0D, scale * 2.0D
             );
 
+            double[] sandNoiseR = s.sandNoiseR;
+            double[] sandNoiseS = s.sandNoiseS;
+            double[] depthBuffer = s.depthBuffer;
+
             Random rand = new Random((((long) chunkX) * 341873128712L) + (((long) chunkZ) * 132897987541L));
 
             for (int x = 0; x < 16; x++) {
@@ -294,64 +277,73 @@ public final class AlphaFloatingIslands extends JavaPlugin {
             }
         }
 
-        private double[] generateDensities(double[] out, int x, int y, int z, int xSize, int ySize, int zSize) {
+        private double[] generateDensities(NoiseTables t, Scratch s, int x, int y, int z, int xSize, int ySize, int zSize) {
+            double[] out = s.density;
             if (out == null) {
-                out = new double[xSize * ySize * zSize];
+                out = s.density = new double[xSize * ySize * zSize];
             }
 
             final double baseScaleX = 684.412D;
             final double baseScaleZ = 684.412D;
 
             // floating island control noises (2D effectively)
-            bufFIs = floatingIslandScale.generateNoiseOctaves(
-                    bufFIs,
+            s.bufFIs = t.floatingIslandScale.generateNoiseOctaves(
+                    s.bufFIs,
                     x, z, y,
                     xSize, 1, zSize,
                     1.0D, 0.0D, 1.0D
             );
 
-            bufFI = floatingIslandNoise.generateNoiseOctaves(
-                    bufFI,
+            s.bufFI = t.floatingIslandNoise.generateNoiseOctaves(
+                    s.bufFI,
                     x, z, y,
                     xSize, 1, zSize,
                     500.0D, 0.0D, 500.0D
             );
 
-            bufSr = noiseA.generateNoiseOctaves(
-                    bufSr,
+            s.bufSr = t.noiseA.generateNoiseOctaves(
+                    s.bufSr,
                     x, z, y,
                     xSize, 1, zSize,
                     1.0D, 0.0D, 1.0D
             );
 
-            bufDr = noiseB.generateNoiseOctaves(
-                    bufDr,
+            s.bufDr = t.noiseB.generateNoiseOctaves(
+                    s.bufDr,
                     x, z, y,
                     xSize, 1, zSize,
                     100.0D, 0.0D, 100.0D
             );
 
-            bufPnr = noiseM.generateNoiseOctaves(
-                    bufPnr,
+            s.bufPnr = t.noiseM.generateNoiseOctaves(
+                    s.bufPnr,
                     x, z, y,
                     xSize, ySize, zSize,
                     baseScaleX / 80.0D, baseScaleZ / 160.0D, baseScaleX / 80.0D
             );
 
-            bufAr = noiseK.generateNoiseOctaves(
-                    bufAr,
+            s.bufAr = t.noiseK.generateNoiseOctaves(
+                    s.bufAr,
                     x, z, y,
                     xSize, ySize, zSize,
                     baseScaleX, baseScaleZ, baseScaleX
             );
 
-            bufBr = noiseL.generateNoiseOctaves(
-                    bufBr,
+            s.bufBr = t.noiseL.generateNoiseOctaves(
+                    s.bufBr,
                     x, z, y,
                     xSize, ySize, zSize,
                     baseScaleX, baseScaleZ, baseScaleX
             );
 
+            double[] bufFIs = s.bufFIs;
+            double[] bufFI = s.bufFI;
+            double[] bufSr = s.bufSr;
+            double[] bufDr = s.bufDr;
+            double[] bufPnr = s.bufPnr;
+            double[] bufAr = s.bufAr;
+            double[] bufBr = s.bufBr;
+
             int idx2D = 0;
             int idx3D = 0;
 
@@ -441,6 +433,57 @@ public final class AlphaFloatingIslands extends JavaPlugin {
         }
     }
 
+    /** Per-seed octave generators. Fields are final and never written after construction. */
+    private static final class NoiseTables {
+        final long seed;
+
+        final NoiseGeneratorOctaves noiseA;                 // 10
+        final NoiseGeneratorOctaves noiseB;                 // 16
+        final NoiseGeneratorOctaves noiseK;                 // 16
+        final NoiseGeneratorOctaves noiseL;                 // 16
+        final NoiseGeneratorOctaves noiseM;                 // 8
+        final NoiseGeneratorOctaves noiseN;                 // 4
+        final NoiseGeneratorOctaves noisePerlin3;           // 4
+        final NoiseGeneratorOctaves floatingIslandScale;    // 10
+        final NoiseGeneratorOctaves floatingIslandNoise;    // 14 or 16
+
+        NoiseTables(long seed, int floatingIslandNoiseOctaves) {
+            this.seed = seed;
+
+            // Construction order fixes the Random sequence; keep it as-is.
+            Random rand = new Random(seed);
+
+            noiseK = new NoiseGeneratorOctaves(rand, 16);
+            noiseL = new NoiseGeneratorOctaves(rand, 16);
+            noiseM = new NoiseGeneratorOctaves(rand, 8);
+            noiseN = new NoiseGeneratorOctaves(rand, 4);
+            noisePerlin3 = new NoiseGeneratorOctaves(rand, 4);
+
+            noiseA = new NoiseGeneratorOctaves(rand, 10);
+            noiseB = new NoiseGeneratorOctaves(rand, 16);
+
+            floatingIslandScale = new NoiseGeneratorOctaves(rand, 10);
+            floatingIslandNoise = new NoiseGeneratorOctaves(rand, floatingIslandNoiseOctaves);
+        }
+    }
+
+    /** Reused buffers (avoid churn). One instance per generating thread. */
+    private static final class Scratch {
+        double[] density;
+        double[] sandNoiseR;
+        double[] sandNoiseS;
+        double[] depthBuffer;
+
+        // density builder buffers
+        double[] bufPnr;
+        double[] bufAr;
+        double[] bufBr;
+        double[] bufSr;
+        double[] bufDr;
+        double[] bufFIs;
+        double[] bufFI;
+    }
+
     // --------------------------
     // Noise implementation
     // --------------------------
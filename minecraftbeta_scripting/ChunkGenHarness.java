@@ -0,0 +1,188 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import org.bukkit.World;
+import org.bukkit.generator.ChunkGenerator;
+import org.bukkit.plugin.java.JavaPlugin;
+
+/**
+ * ChunkGenHarness
+ *
+ * Offline checker for the beta-era ChunkGenerators in this folder (MCPEGen,
+ * AlphaFloatingIslands, InfdevEsqueGen, IndevHellGen, TronGrid, ZombieSiegeGenerator).
+ *
+ * "verify" loads a generator plugin by main class name, generates an N x N chunk region
+ * once on a single thread and once on a ForkJoinPool, and checks that every chunk is
+ * byte-identical between the two runs (SHA-256 per chunk).
+ *
+ * Build / run with the server jar and the plugin jar on the classpath:
+ *   javac -source 8 -target 8 -cp server.jar;MCPEGen.jar ChunkGenHarness.java
+ *   java -cp .;server.jar;MCPEGen.jar ChunkGenHarness verify MCPEGen 32 12345 [threads] [generatorId]
+ *
+ * Notes:
+ * - Not a plugin; no yaml. It only talks to the ChunkGenerator API.
+ * - The World passed to generate() is a stub answering getSeed()/getName() only. Any other
+ *   call throws, which also flags generators that read the live world from generate().
+ */
+public final class ChunkGenHarness {
+
+    private static final String WORLD_NAME = "harness";
+
+    // Chunks per leaf task; small enough that threads interleave heavily.
+    private static final int LEAF_CHUNKS = 4;
+
+    private ChunkGenHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4 || !args[0].equalsIgnoreCase("verify")) {
+            System.out.println("Usage: ChunkGenHarness verify <pluginMainClass> <regionChunks> <seed> [threads] [generatorId]");
+            System.exit(2);
+            return;
+        }
+
+        String pluginClass = args[1];
+        int size = Math.max(1, Integer.parseInt(args[2]));
+        long seed = Long.parseLong(args[3]);
+        int threads = args.length >= 5 ? Math.max(1, Integer.parseInt(args[4])) : Runtime.getRuntime().availableProcessors();
+        String generatorId = args.length >= 6 ? args[5] : "";
+
+        boolean ok = verify(pluginClass, generatorId, seed, size, threads);
+        System.exit(ok ? 0 : 1);
+    }
+
+    /**
+     * Generates size x size chunks centred on 0,0 single-threaded, then again on a
+     * ForkJoinPool with the given parallelism, and compares the results chunk by chunk.
+     * Each run uses a fresh generator instance.
+     */
+    static boolean verify(String pluginClass, String generatorId, long seed, int size, int threads) throws Exception {
+        World world = stubWorld(seed, WORLD_NAME);
+        int total = size * size;
+        int origin = -(size / 2);
+
+        System.out.println("[ChunkGenHarness] " + pluginClass + " seed=" + seed + " region=" + size + "x" + size
+                + " threads=" + threads);
+
+        ChunkGenerator serialGen = loadGenerator(pluginClass, generatorId);
+        byte[][] serial = new byte[total][];
+        long serialStart = System.nanoTime();
+        new RegionTask(serialGen, world, origin, size, serial, 0, total).compute();
+        long serialNanos = System.nanoTime() - serialStart;
+
+        ChunkGenerator parallelGen = loadGenerator(pluginClass, generatorId);
+        byte[][] parallel = new byte[total][];
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        long parallelStart = System.nanoTime();
+        try {
+            pool.invoke(new RegionTask(parallelGen, world, origin, size, parallel, 0, total));
+        } finally {
+            pool.shutdown();
+        }
+        long parallelNanos = System.nanoTime() - parallelStart;
+
+        int mismatches = 0;
+        for (int i = 0; i < total; i++) {
+            if (Arrays.equals(serial[i], parallel[i])) continue;
+            if (mismatches < 10) {
+                System.out.println("[ChunkGenHarness] MISMATCH at chunk " + (origin + i % size) + "," + (origin + i / size));
+            }
+            mismatches++;
+        }
+
+        System.out.println("[ChunkGenHarness] single-thread: " + formatRate(total, serialNanos));
+        System.out.println("[ChunkGenHarness] fork-join:     " + formatRate(total, parallelNanos)
+                + String.format(" (x%.2f)", serialNanos / (double) Math.max(1L, parallelNanos)));
+        System.out.println("[ChunkGenHarness] " + (mismatches == 0 ? "OK: all " + total + " chunks identical"
+                : "FAILED: " + mismatches + " of " + total + " chunks differ"));
+        return mismatches == 0;
+    }
+
+    static ChunkGenerator loadGenerator(String pluginClass, String generatorId) throws Exception {
+        Class<?> cls = Class.forName(pluginClass);
+        JavaPlugin plugin = (JavaPlugin) cls.newInstance();
+        ChunkGenerator gen = plugin.getDefaultWorldGenerator(WORLD_NAME, generatorId);
+        if (gen == null) {
+            throw new IllegalArgumentException(pluginClass + " returned no generator for id '" + generatorId + "'");
+        }
+        return gen;
+    }
+
+    /** World stub exposing only what a ChunkGenerator.generate() may legitimately use. */
+    static World stubWorld(final long seed, final String name) {
+        return (World) Proxy.newProxyInstance(World.class.getClassLoader(), new Class<?>[] { World.class },
+                new InvocationHandler() {
+                    public Object invoke(Object proxy, Method method, Object[] args) {
+                        String m = method.getName();
+                        if (m.equals("getSeed")) return seed;
+                        if (m.equals("getName")) return name;
+                        if (m.equals("hashCode")) return System.identityHashCode(proxy);
+                        if (m.equals("equals")) return proxy == args[0];
+                        if (m.equals("toString")) return "StubWorld[" + name + "]";
+                        throw new UnsupportedOperationException("World." + m + " is not available outside a server");
+                    }
+                });
+    }
+
+    // Same per-chunk seeding CraftBukkit's CustomChunkGenerator uses (chunk coords only, no world seed),
+    // so generators that do read the Random see the values they get on the server.
+    static Random chunkRandom(int chunkX, int chunkZ) {
+        return new Random((long) chunkX * 341873128712L + (long) chunkZ * 132897987541L);
+    }
+
+    static String formatRate(int chunks, long nanos) {
+        double seconds = nanos / 1000000000.0;
+        return String.format("%d chunks in %.2fs = %.1f chunks/sec", chunks, seconds, chunks / Math.max(seconds, 1e-9));
+    }
+
+    /** Generates chunks [from, to) of the region (row-major) and stores each chunk's digest. */
+    private static final class RegionTask extends RecursiveAction {
+        private final ChunkGenerator gen;
+        private final World world;
+        private final int origin;
+        private final int size;
+        private final byte[][] out;
+        private final int from;
+        private final int to;
+
+        RegionTask(ChunkGenerator gen, World world, int origin, int size, byte[][] out, int from, int to) {
+            this.gen = gen;
+            this.world = world;
+            this.origin = origin;
+            this.size = size;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_CHUNKS && getPool() != null) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RegionTask(gen, world, origin, size, out, from, mid),
+                        new RegionTask(gen, world, origin, size, out, mid, to));
+                return;
+            }
+
+            MessageDigest sha;
+            try {
+                sha = MessageDigest.getInstance("SHA-256");
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+
+            for (int i = from; i < to; i++) {
+                int chunkX = origin + i % size;
+                int chunkZ = origin + i / size;
+                byte[] blocks = gen.generate(world, chunkRandom(chunkX, chunkZ), chunkX, chunkZ);
+                out[i] = sha.digest(blocks);
+            }
+        }
+    }
+}
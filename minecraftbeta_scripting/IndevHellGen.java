@@ -65,13 +65,39 @@ public class IndevHellGen extends JavaPlugin {
      * Multiverse / world creator entry point.
      * Usage (Multiverse):
      *   /mv create indevhell nether -g IndevHellGen
+     *   /mv create indevhell nether -g IndevHellGen:table   (faster noise, see NoiseMode)
      */
     @Override
     public ChunkGenerator getDefaultWorldGenerator(String worldName, String id) {
         synchronized (hellWorlds) {
             hellWorlds.add(worldName);
         }
-        return new IndevHellChunkGenerator();
+        return new IndevHellChunkGenerator(NoiseMode.fromId(id));
+    }
+
+    /**
+     * Terrain noise backend, picked by the generator id.
+     * - COMPAT (default, id "" / "compat"): trig terms cached per chunk; bit-identical to LEGACY,
+     *   so existing worlds continue without seams.
+     * - TABLE (id "table"): same cache, filled from a sine lookup table. Within ~3e-6 of LEGACY,
+     *   which flips the odd cave voxel or column height right at a threshold. For new maps.
+     * - LEGACY (id "legacy"): the original per-voxel Math.sin/Math.cos path, kept as the reference.
+     */
+    public enum NoiseMode {
+        COMPAT, TABLE, LEGACY;
+
+        static NoiseMode fromId(String id) {
+            if (id == null || id.trim().length() == 0) {
+                return COMPAT;
+            }
+            String s = id.trim().toLowerCase();
+            if (s.equals("table")) return TABLE;
+            if (s.equals("legacy")) return LEGACY;
+            if (!s.equals("compat")) {
+                System.out.println("[IndevHellGen] Unknown generator id '" + id + "', using compat noise.");
+            }
+            return COMPAT;
+        }
     }
 
     /**
@@ -302,6 +328,10 @@ public class IndevHellGen extends JavaPlugin {
         private static final int LAVA_FLOOR_TOP = 2;
         private static final int SEA_LEVEL = 64;
 
+        // Cave noise is only sampled for y in [8, terrainHeight - 4] and terrainHeight <= WORLD_HEIGHT - 5.
+        private static final int CAVE_MIN_Y = 8;
+        private static final int CAVE_MAX_Y = WORLD_HEIGHT - 9;
+
         private final byte airId      = 0;
         private final byte bedrockId  = (byte) Material.BEDROCK.getId();
         private final byte stoneId    = (byte) Material.STONE.getId();
@@ -309,18 +339,49 @@ public class IndevHellGen extends JavaPlugin {
         private final byte grassId    = (byte) Material.GRASS.getId();
         private final byte lavaId     = (byte) Material.STATIONARY_LAVA.getId();
 
+        private final NoiseMode noiseMode;
+
+        // Per-chunk noise terms are per thread so concurrent generate() calls never share them.
+        private final ThreadLocal<ChunkNoise> chunkNoise = new ThreadLocal<ChunkNoise>() {
+            @Override
+            protected ChunkNoise initialValue() {
+                return new ChunkNoise();
+            }
+        };
+
+        public IndevHellChunkGenerator() {
+            this(NoiseMode.COMPAT);
+        }
+
+        public IndevHellChunkGenerator(NoiseMode noiseMode) {
+            this.noiseMode = noiseMode;
+        }
+
+        /**
+         * Pure function of (seed, chunkX, chunkZ); shared fields are final block ids and the
+         * noise mode, and the noise cache is per thread, so this is safe to call from several
+         * threads at once.
+         */
         @Override
         public byte[] generate(World world, Random random, int chunkX, int chunkZ) {
             byte[] blocks = new byte[16 * WORLD_HEIGHT * 16];
 
             long seed = world.getSeed();
 
+            ChunkNoise noise = null;
+            if (noiseMode != NoiseMode.LEGACY) {
+                noise = chunkNoise.get();
+                noise.fill(seed, chunkX, chunkZ, noiseMode == NoiseMode.TABLE);
+            }
+
             for (int x = 0; x < 16; x++) {
                 for (int z = 0; z < 16; z++) {
                     int worldX = chunkX * 16 + x;
                     int worldZ = chunkZ * 16 + z;
 
-                    double heightNoise = getHeightNoise(worldX, worldZ, seed);
+                    double heightNoise = noise != null
+                            ? noise.height[x * 16 + z]
+                            : getHeightNoise(worldX, worldZ, seed);
                     int terrainHeight = (int) (SEA_LEVEL + heightNoise);
 
                     if (terrainHeight < 40) {
@@ -344,10 +405,23 @@ public class IndevHellGen extends JavaPlugin {
                     }
 
                     // Caves / crevices in the interior stone
-                    for (int y = 8; y <= terrainHeight - 4; y++) {
-                        double caveNoise = getCaveNoise(worldX, y, worldZ, seed);
-                        if (caveNoise > 1.9) {
-                            setBlock(blocks, x, y, z, airId);
+                    if (noise != null) {
+                        // c1 depends on (x, z) only, c2 splits into an (x, y) and a (y, z) term.
+                        double c1 = noise.caveX[x] + noise.caveZ[z];
+                        int xy = x * WORLD_HEIGHT;
+                        int zy = z * WORLD_HEIGHT;
+                        for (int y = CAVE_MIN_Y; y <= terrainHeight - 4; y++) {
+                            double c2 = noise.caveXY[xy + y] + noise.caveZY[zy + y];
+                            if (c1 + c2 > 1.9) {
+                                setBlock(blocks, x, y, z, airId);
+                            }
+                        }
+                    } else {
+                        for (int y = CAVE_MIN_Y; y <= terrainHeight - 4; y++) {
+                            double caveNoise = getCaveNoise(worldX, y, worldZ, seed);
+                            if (caveNoise > 1.9) {
+                                setBlock(blocks, x, y, z, airId);
+                            }
                         }
                     }
 
@@ -379,8 +453,9 @@ public class IndevHellGen extends JavaPlugin {
 
         /**
          * Terrain height noise: islands, lava seas, cliffs, hills.
+         * Reference (LEGACY) path; ChunkNoise.fill must stay term-for-term identical to this.
          */
-        private double getHeightNoise(int worldX, int worldZ, long seed) {
+        static double getHeightNoise(int worldX, int worldZ, long seed) {
             double x = worldX / 40.0;
             double z = worldZ / 40.0;
 
@@ -400,8 +475,9 @@ public class IndevHellGen extends JavaPlugin {
 
         /**
          * Simple 3D cave noise: when this exceeds a threshold we carve air.
+         * Reference (LEGACY) path; ChunkNoise.fill must stay term-for-term identical to this.
          */
-        private double getCaveNoise(int worldX, int worldY, int worldZ, long seed) {
+        static double getCaveNoise(int worldX, int worldY, int worldZ, long seed) {
             double x = worldX / 18.0;
             double y = worldY / 14.0;
             double z = worldZ / 18.0;
@@ -1066,4 +1142,177 @@ public class IndevHellGen extends JavaPlugin {
             world.getBlockAt(centerX, torchY, centerZ + 2).setType(Material.TORCH);
         }
     }
+
+    /**
+     * Noise terms for one chunk. The cave noise is a sum of terms that each depend on at most two
+     * axes, so a chunk needs 16 + 16 + 2 * 16 * 112 trig calls instead of four per voxel.
+     * Every term is the same expression as in getHeightNoise/getCaveNoise, so with exact trig the
+     * sums are bit-identical to the per-voxel path.
+     */
+    static final class ChunkNoise {
+        private static final int HEIGHT = IndevHellChunkGenerator.WORLD_HEIGHT;
+
+        final double[] height = new double[16 * 16];
+        final double[] caveX = new double[16];
+        final double[] caveZ = new double[16];
+        final double[] caveXY = new double[16 * HEIGHT];
+        final double[] caveZY = new double[16 * HEIGHT];
+
+        private final double[] heightX = new double[16];
+        private final double[] heightZ = new double[16];
+
+        void fill(long seed, int chunkX, int chunkZ, boolean table) {
+            int baseX = chunkX * 16;
+            int baseZ = chunkZ * 16;
+
+            for (int i = 0; i < 16; i++) {
+                double x = (baseX + i) / 40.0;
+                double z = (baseZ + i) / 40.0;
+                heightX[i] = sin(x * 0.7 + seed * 0.000002, table) * 10.0;
+                heightZ[i] = cos(z * 0.7 - seed * 0.000002, table) * 10.0;
+
+                double cx = (baseX + i) / 18.0;
+                double cz = (baseZ + i) / 18.0;
+                caveX[i] = sin(cx + seed * 0.00001, table);
+                caveZ[i] = cos(cz - seed * 0.00002, table);
+
+                int row = i * HEIGHT;
+                for (int y = IndevHellChunkGenerator.CAVE_MIN_Y; y <= IndevHellChunkGenerator.CAVE_MAX_Y; y++) {
+                    double cy = y / 14.0;
+                    caveXY[row + y] = sin(cy * 1.5 + cx * 0.5, table);
+                    caveZY[row + y] = cos(cy * 1.2 - cz * 0.3, table);
+                }
+            }
+
+            for (int ix = 0; ix < 16; ix++) {
+                double x = (baseX + ix) / 40.0;
+                for (int iz = 0; iz < 16; iz++) {
+                    double z = (baseZ + iz) / 40.0;
+                    double h1 = heightX[ix] + heightZ[iz];
+                    double h2 = sin(x * 1.7 + z * 0.6, table) * 6.0
+                              + cos(z * 1.3 - x * 0.4, table) * 4.0;
+                    double h3 = sin(x * 3.5 + z * 3.5 + seed * 0.000005, table) * 3.0;
+                    height[ix * 16 + iz] = h1 + h2 + h3;
+                }
+            }
+        }
+
+        private static double sin(double a, boolean table) {
+            return table ? SineTable.sin(a) : Math.sin(a);
+        }
+
+        private static double cos(double a, boolean table) {
+            return table ? SineTable.cos(a) : Math.cos(a);
+        }
+    }
+
+    /**
+     * Linearly interpolated sine table (4096 steps per turn, error below 3e-7).
+     * Range reduction is done in table steps, which loses phase once the argument gets large
+     * (big seeds feed seed * 0.00001 straight into the phase), so those go to Math.sin.
+     */
+    static final class SineTable {
+        private static final int BITS = 12;
+        private static final int SIZE = 1 << BITS;
+        private static final int MASK = SIZE - 1;
+        private static final double STEPS_PER_RADIAN = SIZE / (Math.PI * 2.0);
+        private static final double MAX_TABLE_ARG = 1.0e6;
+        private static final double[] TABLE = new double[SIZE + 1];
+
+        static {
+            for (int i = 0; i <= SIZE; i++) {
+                TABLE[i] = Math.sin(i * Math.PI * 2.0 / SIZE);
+            }
+        }
+
+        private SineTable() {
+        }
+
+        static double sin(double a) {
+            if (a > MAX_TABLE_ARG || a < -MAX_TABLE_ARG) {
+                return Math.sin(a);
+            }
+            double t = a * STEPS_PER_RADIAN;
+            double floor = Math.floor(t);
+            int i = (int) ((long) floor & MASK);
+            double frac = t - floor;
+            double lo = TABLE[i];
+            return lo + (TABLE[i + 1] - lo) * frac;
+        }
+
+        static double cos(double a) {
+            if (a > MAX_TABLE_ARG || a < -MAX_TABLE_ARG) {
+                return Math.cos(a);
+            }
+            return sin(a + Math.PI / 2.0);
+        }
+    }
+
+    /**
+     * Compares the noise backends on whole chunks: checks COMPAT against LEGACY (must be identical),
+     * counts the blocks TABLE changes, and times all three.
+     * Run: java -cp server.jar;IndevHellGen.jar IndevHellGen$NoiseBench [chunks] [seed]
+     */
+    public static final class NoiseBench {
+
+        public static void main(String[] args) {
+            int chunks = args.length >= 1 ? Integer.parseInt(args[0]) : 1024;
+            final long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1L;
+            int side = (int) Math.ceil(Math.sqrt(chunks));
+
+            World world = (World) java.lang.reflect.Proxy.newProxyInstance(World.class.getClassLoader(),
+                    new Class<?>[] { World.class }, new java.lang.reflect.InvocationHandler() {
+                        public Object invoke(Object proxy, java.lang.reflect.Method method, Object[] a) {
+                            if (method.getName().equals("getSeed")) return seed;
+                            throw new UnsupportedOperationException("World." + method.getName());
+                        }
+                    });
+
+            IndevHellChunkGenerator legacy = new IndevHellChunkGenerator(NoiseMode.LEGACY);
+            IndevHellChunkGenerator compat = new IndevHellChunkGenerator(NoiseMode.COMPAT);
+            IndevHellChunkGenerator table = new IndevHellChunkGenerator(NoiseMode.TABLE);
+
+            // Check first, then warm up all paths before timing.
+            long tableDiffs = 0;
+            int checked = Math.min(chunks, 256);
+            for (int c = 0; c < checked; c++) {
+                int cx = c % side - side / 2;
+                int cz = c / side - side / 2;
+                byte[] ref = legacy.generate(world, null, cx, cz);
+                if (!java.util.Arrays.equals(ref, compat.generate(world, null, cx, cz))) {
+                    throw new IllegalStateException("COMPAT differs from LEGACY at chunk " + cx + "," + cz);
+                }
+                byte[] fast = table.generate(world, null, cx, cz);
+                for (int i = 0; i < ref.length; i++) {
+                    if (ref[i] != fast[i]) tableDiffs++;
+                }
+            }
+            run(legacy, world, side, 64);
+            run(compat, world, side, 64);
+            run(table, world, side, 64);
+
+            long legacyNanos = run(legacy, world, side, chunks);
+            long compatNanos = run(compat, world, side, chunks);
+            long tableNanos = run(table, world, side, chunks);
+
+            System.out.println("[IndevHellGen] compat == legacy on " + checked + " chunks; table differs in "
+                    + tableDiffs + " of " + (checked * 16L * 16L * IndevHellChunkGenerator.WORLD_HEIGHT) + " blocks");
+            System.out.println("[IndevHellGen] legacy: " + String.format("%.1f", legacyNanos / 1000.0 / chunks) + " us/chunk");
+            System.out.println("[IndevHellGen] compat: " + String.format("%.1f", compatNanos / 1000.0 / chunks) + " us/chunk"
+                    + String.format(" (x%.1f)", legacyNanos / (double) Math.max(1L, compatNanos)));
+            System.out.println("[IndevHellGen] table:  " + String.format("%.1f", tableNanos / 1000.0 / chunks) + " us/chunk"
+                    + String.format(" (x%.1f)", legacyNanos / (double) Math.max(1L, tableNanos)));
+        }
+
+        private static long run(IndevHellChunkGenerator gen, World world, int side, int chunks) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int c = 0; c < chunks; c++) {
+                sink += gen.generate(world, null, c % side, c / side)[c & 4095];
+            }
+            long nanos = System.nanoTime() - start;
+            if (sink == 42) System.out.print("");
+            return nanos;
+        }
+    }
 }
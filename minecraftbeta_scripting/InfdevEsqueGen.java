@@ -1,5 +1,7 @@
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
 import java.util.logging.Logger;
 
@@ -39,25 +41,28 @@ public class InfdevEsqueGen extends JavaPlugin {
         private static final int WORLD_HEIGHT = 128;
         private static final int SEA_LEVEL = 64;
 
+        // Recently generated chunks whose height maps the populators can still ask for.
+        private static final int HEIGHT_CACHE_CHUNKS = 1024;
+
+        private final HeightMapCache heightMaps = new HeightMapCache(HEIGHT_CACHE_CHUNKS);
+
+        /**
+         * Pure function of (seed, chunkX, chunkZ). The only shared state is the height map
+         * cache, which is synchronized, so this is safe to call from several threads at once.
+         */
         @Override
         public byte[] generate(World world, Random random, int chunkX, int chunkZ) {
             byte[] blocks = new byte[16 * WORLD_HEIGHT * 16];
 
             long seed = world.getSeed();
+            int[] heights = heightMaps.get(seed, chunkX, chunkZ);
 
             for (int x = 0; x < 16; x++) {
                 for (int z = 0; z < 16; z++) {
                     int worldX = chunkX * 16 + x;
                     int worldZ = chunkZ * 16 + z;
 
-                    int groundHeight = getColumnHeight(seed, worldX, worldZ);
-
-                    if (groundHeight < 4) {
-                        groundHeight = 4;
-                    }
-                    if (groundHeight > WORLD_HEIGHT - 2) {
-                        groundHeight = WORLD_HEIGHT - 2;
-                    }
+                    int groundHeight = heights[x * 16 + z];
 
                     // Bedrock
                     setBlock(blocks, x, 0, z, (byte) Material.BEDROCK.getId());
@@ -104,10 +109,10 @@ public class InfdevEsqueGen extends JavaPlugin {
             List<BlockPopulator> populators = new ArrayList<BlockPopulator>();
             populators.add(new CavePopulator());
             populators.add(new OrePopulator());
-            populators.add(new TreePopulator());
+            populators.add(new TreePopulator(heightMaps));
             populators.add(new DungeonPopulator());
-            populators.add(new IndevHousePopulator());
-            populators.add(new BrickPyramidPopulator());
+            populators.add(new IndevHousePopulator(heightMaps));
+            populators.add(new BrickPyramidPopulator(heightMaps));
             return populators;
         }
 
@@ -127,7 +132,46 @@ public class InfdevEsqueGen extends JavaPlugin {
         // Height function: more extreme mountains/cliffs (Infdev-ish)
         // --------------------------------------------------------------------
 
-        private static int getColumnHeight(long worldSeed, int x, int z) {
+        /**
+         * Ground height (already clamped to the generator's range) for all 256 columns of a chunk,
+         * indexed x * 16 + z. Gives exactly the same numbers as calling getColumnHeight per
+         * column, but each octave's value-noise lattice and cosine weights are computed once per
+         * chunk instead of once per column.
+         */
+        static int[] computeHeightMap(long worldSeed, int chunkX, int chunkZ) {
+            int baseX = chunkX * 16;
+            int baseZ = chunkZ * 16;
+
+            double[] elevation = new double[256];
+            double[] roughness = new double[256];
+            double[] mountain = new double[256];
+            double[] detail = new double[256];
+
+            // Same layers and scales as getColumnHeight.
+            octaveNoiseChunk(worldSeed + 11L, baseX, baseZ, 2048.0, 4, 0.5, elevation);
+            octaveNoiseChunk(worldSeed + 27L, baseX, baseZ, 512.0, 4, 0.5, roughness);
+            octaveNoiseChunk(worldSeed + 91L, baseX, baseZ, 128.0, 4, 0.5, mountain);
+            octaveNoiseChunk(worldSeed + 51L, baseX, baseZ, 32.0, 4, 0.5, detail);
+
+            int[] heights = new int[256];
+            for (int i = 0; i < 256; i++) {
+                heights[i] = clampGroundHeight(shapeHeight(elevation[i], roughness[i], mountain[i], detail[i]));
+            }
+            return heights;
+        }
+
+        static int clampGroundHeight(int groundHeight) {
+            if (groundHeight < 4) {
+                groundHeight = 4;
+            }
+            if (groundHeight > WORLD_HEIGHT - 2) {
+                groundHeight = WORLD_HEIGHT - 2;
+            }
+            return groundHeight;
+        }
+
+        /** Per-column reference path; computeHeightMap must match it exactly. */
+        static int getColumnHeight(long worldSeed, int x, int z) {
             // Very large-scale: continents vs oceans
             double elevation = octaveNoise(worldSeed + 11L, x / 2048.0, z / 2048.0, 4, 0.5);
 
@@ -140,6 +184,10 @@ public class InfdevEsqueGen extends JavaPlugin {
             // Small-scale bumps / cliffs
             double detail = octaveNoise(worldSeed + 51L, x / 32.0, z / 32.0, 4, 0.5);
 
+            return shapeHeight(elevation, roughness, mountain, detail);
+        }
+
+        private static int shapeHeight(double elevation, double roughness, double mountain, double detail) {
             // Shape elevation into oceans/islands
             double baseHeight;
             if (elevation < -0.6) {
@@ -191,6 +239,78 @@ public class InfdevEsqueGen extends JavaPlugin {
             return total / max;
         }
 
+        /**
+         * octaveNoise over a 16x16 block of columns starting at (baseX, baseZ). Column coordinates,
+         * lattice cells, blend weights and the accumulation order are the same as octaveNoise, so
+         * results are bit-identical; smoothNoise is evaluated once per lattice point per octave.
+         */
+        private static void octaveNoiseChunk(long seed, int baseX, int baseZ, double scale,
+                                             int octaves, double persistence, double[] out) {
+            int[] cellX = new int[16];
+            int[] cellZ = new int[16];
+            double[] blendX = new double[16];
+            double[] blendZ = new double[16];
+
+            double max = 0.0;
+            double frequency = 1.0;
+            double amplitude = 1.0;
+
+            for (int i = 0; i < octaves; i++) {
+                long octaveSeed = seed + i * 57L;
+
+                for (int k = 0; k < 16; k++) {
+                    double px = ((baseX + k) / scale) * frequency;
+                    cellX[k] = (int) Math.floor(px);
+                    blendX[k] = cosineWeight(px - cellX[k]);
+
+                    double pz = ((baseZ + k) / scale) * frequency;
+                    cellZ[k] = (int) Math.floor(pz);
+                    blendZ[k] = cosineWeight(pz - cellZ[k]);
+                }
+
+                int x0 = cellX[0];
+                int z0 = cellZ[0];
+                int spanX = cellX[15] - x0 + 2;
+                int spanZ = cellZ[15] - z0 + 2;
+
+                double[] lattice = new double[spanX * spanZ];
+                for (int a = 0; a < spanX; a++) {
+                    for (int b = 0; b < spanZ; b++) {
+                        lattice[a * spanZ + b] = smoothNoise(octaveSeed, x0 + a, z0 + b);
+                    }
+                }
+
+                for (int x = 0; x < 16; x++) {
+                    int row = (cellX[x] - x0) * spanZ;
+                    double fx = blendX[x];
+                    for (int z = 0; z < 16; z++) {
+                        int p = row + (cellZ[z] - z0);
+                        double i1 = blend(lattice[p], lattice[p + spanZ], fx);
+                        double i2 = blend(lattice[p + 1], lattice[p + spanZ + 1], fx);
+                        out[x * 16 + z] += blend(i1, i2, blendZ[z]) * amplitude;
+                    }
+                }
+
+                max += amplitude;
+                amplitude *= persistence;
+                frequency *= 2.0;
+            }
+
+            for (int i = 0; i < 256; i++) {
+                out[i] = (max == 0.0) ? 0.0 : out[i] / max;
+            }
+        }
+
+        // cosineInterpolate split in two so the weight can be reused across a row/column.
+        private static double cosineWeight(double blend) {
+            double theta = blend * Math.PI;
+            return (1.0 - Math.cos(theta)) * 0.5;
+        }
+
+        private static double blend(double a, double b, double f) {
+            return a * (1.0 - f) + b * f;
+        }
+
         private static double interpolatedNoise(long seed, double x, double z) {
             int intX = (int) Math.floor(x);
             double fracX = x - intX;
@@ -240,6 +360,134 @@ public class InfdevEsqueGen extends JavaPlugin {
         }
     }
 
+    // ========================================================================
+    // Height map cache (generate -> tree/house/pyramid populators)
+    // ========================================================================
+
+    /**
+     * Bounded LRU of per-chunk ground heights, keyed by chunk coords. A miss just recomputes
+     * the height map from noise, so eviction only costs time. Synchronized: generate() may
+     * run on several threads.
+     */
+    public static final class HeightMapCache {
+
+        // Room above generated ground for structures the populators stack on it
+        // (trees ~6, houses 7, pyramids 8, plus a house on a pyramid).
+        private static final int STRUCTURE_HEADROOM = 24;
+
+        private final int capacity;
+        private final LinkedHashMap<Long, int[]> maps;
+        private long seed;
+
+        HeightMapCache(final int capacity) {
+            this.capacity = capacity;
+            this.maps = new LinkedHashMap<Long, int[]>(capacity * 4 / 3 + 1, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, int[]> eldest) {
+                    return size() > HeightMapCache.this.capacity;
+                }
+            };
+        }
+
+        /** Ground heights for the chunk, indexed x * 16 + z. Callers must not modify the array. */
+        int[] get(long worldSeed, int chunkX, int chunkZ) {
+            Long key = Long.valueOf(((long) chunkX << 32) ^ (chunkZ & 0xffffffffL));
+            synchronized (this) {
+                if (seed != worldSeed) {
+                    maps.clear();
+                    seed = worldSeed;
+                }
+                int[] cached = maps.get(key);
+                if (cached != null) {
+                    return cached;
+                }
+            }
+
+            int[] computed = InfdevChunkGenerator.computeHeightMap(worldSeed, chunkX, chunkZ);
+            synchronized (this) {
+                if (seed == worldSeed) {
+                    maps.put(key, computed);
+                }
+            }
+            return computed;
+        }
+
+        /**
+         * Where a downward "highest solid block" scan can start: generated ground plus headroom,
+         * instead of the top of the world.
+         */
+        int scanStartY(World world, int x, int z) {
+            int[] heights = get(world.getSeed(), x >> 4, z >> 4);
+            int ground = heights[(x & 15) * 16 + (z & 15)];
+            return Math.min(world.getMaxHeight() - 1, ground + STRUCTURE_HEADROOM);
+        }
+    }
+
+    /**
+     * Compares the per-column height path with the per-chunk height map stage.
+     * Run: java -cp server.jar;InfdevEsqueGen.jar InfdevEsqueGen$HeightBench [chunks] [seed]
+     */
+    public static final class HeightBench {
+
+        public static void main(String[] args) {
+            int chunks = args.length >= 1 ? Integer.parseInt(args[0]) : 4096;
+            long seed = args.length >= 2 ? Long.parseLong(args[1]) : 1L;
+            int side = (int) Math.ceil(Math.sqrt(chunks));
+
+            // Check first, then warm up both paths before timing.
+            for (int i = 0; i < 64; i++) {
+                int[] fast = InfdevChunkGenerator.computeHeightMap(seed, i - 32, 7 - i);
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        int slow = InfdevChunkGenerator.clampGroundHeight(
+                                InfdevChunkGenerator.getColumnHeight(seed, (i - 32) * 16 + x, (7 - i) * 16 + z));
+                        if (slow != fast[x * 16 + z]) {
+                            throw new IllegalStateException("Height mismatch at chunk " + (i - 32) + "," + (7 - i)
+                                    + " column " + x + "," + z + ": " + slow + " vs " + fast[x * 16 + z]);
+                        }
+                    }
+                }
+            }
+            runColumns(seed, side, 256);
+            runChunks(seed, side, 256);
+
+            long columnNanos = runColumns(seed, side, chunks);
+            long chunkNanos = runChunks(seed, side, chunks);
+
+            System.out.println("[InfdevEsqueGen] per-column: " + String.format("%.1f", columnNanos / 1000.0 / chunks) + " us/chunk");
+            System.out.println("[InfdevEsqueGen] height map: " + String.format("%.1f", chunkNanos / 1000.0 / chunks) + " us/chunk"
+                    + String.format(" (x%.1f)", columnNanos / (double) Math.max(1L, chunkNanos)));
+        }
+
+        private static long runColumns(long seed, int side, int chunks) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int c = 0; c < chunks; c++) {
+                int cx = c % side;
+                int cz = c / side;
+                for (int x = 0; x < 16; x++) {
+                    for (int z = 0; z < 16; z++) {
+                        sink += InfdevChunkGenerator.getColumnHeight(seed, cx * 16 + x, cz * 16 + z);
+                    }
+                }
+            }
+            long nanos = System.nanoTime() - start;
+            if (sink == 42) System.out.print("");
+            return nanos;
+        }
+
+        private static long runChunks(long seed, int side, int chunks) {
+            long sink = 0;
+            long start = System.nanoTime();
+            for (int c = 0; c < chunks; c++) {
+                sink += InfdevChunkGenerator.computeHeightMap(seed, c % side, c / side)[c & 255];
+            }
+            long nanos = System.nanoTime() - start;
+            if (sink == 42) System.out.print("");
+            return nanos;
+        }
+    }
+
     // ========================================================================
     // Cave Populator (simple blob caves, chunk-local)
     // ========================================================================
@@ -382,6 +630,12 @@ public class InfdevEsqueGen extends JavaPlugin {
 
     public static class TreePopulator extends BlockPopulator {
 
+        private final HeightMapCache heights;
+
+        public TreePopulator(HeightMapCache heights) {
+            this.heights = heights;
+        }
+
         @Override
         public void populate(World world, Random random, Chunk chunk) {
             int treeCount = random.nextInt(6); // 0–5 trees per chunk
@@ -393,7 +647,7 @@ public class InfdevEsqueGen extends JavaPlugin {
                 int x = worldXBase + random.nextInt(16);
                 int z = worldZBase + random.nextInt(16);
 
-                int y = getHighestSolidY(world, x, z);
+                int y = getHighestSolidY(world, x, z, heights.scanStartY(world, x, z));
                 if (y <= 0) {
                     continue;
                 }
@@ -407,8 +661,8 @@ public class InfdevEsqueGen extends JavaPlugin {
             }
         }
 
-        private static int getHighestSolidY(World world, int x, int z) {
-            for (int y = world.getMaxHeight() - 1; y >= 0; y--) {
+        private static int getHighestSolidY(World world, int x, int z, int startY) {
+            for (int y = startY; y >= 0; y--) {
                 Material type = world.getBlockAt(x, y, z).getType();
                 if (type != Material.AIR && type != Material.LEAVES && type != Material.WATER) {
                     return y;
@@ -518,6 +772,12 @@ public class InfdevEsqueGen extends JavaPlugin {
 
     public static class IndevHousePopulator extends BlockPopulator {
 
+        private final HeightMapCache heights;
+
+        public IndevHousePopulator(HeightMapCache heights) {
+            this.heights = heights;
+        }
+
         @Override
         public void populate(World world, Random random, Chunk chunk) {
             if (random.nextInt(800) != 0) {
@@ -533,7 +793,7 @@ public class InfdevEsqueGen extends JavaPlugin {
             int x = worldXBase + localX;
             int z = worldZBase + localZ;
 
-            int groundY = getHighestSolidY(world, x, z);
+            int groundY = getHighestSolidY(world, x, z, heights.scanStartY(world, x, z));
             if (groundY <= 0 || groundY >= world.getMaxHeight() - 10) {
                 return;
             }
@@ -541,8 +801,8 @@ public class InfdevEsqueGen extends JavaPlugin {
             generateIndevHouse(world, random, x, groundY + 1, z);
         }
 
-        private static int getHighestSolidY(World world, int x, int z) {
-            for (int y = world.getMaxHeight() - 1; y >= 0; y--) {
+        private static int getHighestSolidY(World world, int x, int z, int startY) {
+            for (int y = startY; y >= 0; y--) {
                 Material type = world.getBlockAt(x, y, z).getType();
                 if (type != Material.AIR && type != Material.LEAVES && type != Material.WATER) {
                     return y;
@@ -612,6 +872,12 @@ public class InfdevEsqueGen extends JavaPlugin {
 
     public static class BrickPyramidPopulator extends BlockPopulator {
 
+        private final HeightMapCache heights;
+
+        public BrickPyramidPopulator(HeightMapCache heights) {
+            this.heights = heights;
+        }
+
         @Override
         public void populate(World world, Random random, Chunk chunk) {
             if (random.nextInt(3000) != 0) {
@@ -624,7 +890,7 @@ public class InfdevEsqueGen extends JavaPlugin {
             int centerX = worldXBase + 8;
             int centerZ = worldZBase + 8;
 
-            int groundY = getAverageGroundY(world, centerX, centerZ);
+            int groundY = getAverageGroundY(world, heights, centerX, centerZ);
             if (groundY <= 0 || groundY >= world.getMaxHeight() - 16) {
                 return;
             }
@@ -632,12 +898,14 @@ public class InfdevEsqueGen extends JavaPlugin {
             generateBrickPyramid(world, centerX, groundY + 1, centerZ);
         }
 
-        private static int getAverageGroundY(World world, int centerX, int centerZ) {
+        private static int getAverageGroundY(World world, HeightMapCache heights, int centerX, int centerZ) {
             int sum = 0;
             int count = 0;
             for (int dx = -2; dx <= 2; dx++) {
                 for (int dz = -2; dz <= 2; dz++) {
-                    int y = getHighestSolidY(world, centerX + dx, centerZ + dz);
+                    int x = centerX + dx;
+                    int z = centerZ + dz;
+                    int y = getHighestSolidY(world, x, z, heights.scanStartY(world, x, z));
                     if (y > 0) {
                         sum += y;
                         count++;
@@ -648,8 +916,8 @@ public class InfdevEsqueGen extends JavaPlugin {
             return sum / count;
         }
 
-        private static int getHighestSolidY(World world, int x, int z) {
-            for (int y = world.getMaxHeight() - 1; y >= 0; y--) {
+        private static int getHighestSolidY(World world, int x, int z, int startY) {
+            for (int y = startY; y >= 0; y--) {
                 Material type = world.getBlockAt(x, y, z).getType();
                 if (type != Material.AIR && type != Material.LEAVES && type != Material.WATER) {
                     return y;
@@ -1,5 +1,8 @@
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
 
 import org.bukkit.Chunk;
 import org.bukkit.World;
@@ -25,6 +28,8 @@ import org.bukkit.plugin.java.JavaPlugin;
  */
 public final class MCPEGen extends JavaPlugin {
 
+    private static final Logger log = Logger.getLogger("Minecraft");
+
     @Override
     public void onEnable() {
         getServer().getLogger().info("[MCPEGen] enabled");
@@ -32,6 +37,9 @@ public final class MCPEGen extends JavaPlugin {
 
     @Override
     public void onDisable() {
+        if (MCPEChunkGenerator.chunksGenerated.get() > 0) {
+            getServer().getLogger().info("[MCPEGen] " + MCPEChunkGenerator.describeStats());
+        }
         getServer().getLogger().info("[MCPEGen] disabled");
     }
 
@@ -76,6 +84,9 @@ public final class MCPEGen extends JavaPlugin {
 
     /**
      * Chunk generator implementing the RandomLevelSource terrain and surface passes.
+     *
+     * generate() may be called from several threads at once: the per-seed noise tables are
+     * shared read-only and every thread works on its own forked MCPEWorldGenState.
      */
     public static final class MCPEChunkGenerator extends ChunkGenerator {
         // World constants (match source)
@@ -119,9 +130,26 @@ public final class MCPEGen extends JavaPlugin {
         private static final byte SUGARCANE = 83;
 
 
+        // How often (in generated chunks) to log generator throughput.
+        private static final long STATS_LOG_INTERVAL = 4096L;
+
+        // Seed -> shared noise tables. Built once per seed, never mutated afterwards.
+        private static final ConcurrentHashMap<Long, MCPEWorldGenState> SHARED_STATES =
+                new ConcurrentHashMap<Long, MCPEWorldGenState>();
+
+        static final AtomicLong chunksGenerated = new AtomicLong();
+        static final AtomicLong stateCacheHits = new AtomicLong();
+        static final AtomicLong stateCacheMisses = new AtomicLong();
+        static final AtomicLong generateNanos = new AtomicLong();
+        private static final AtomicLong windowStartNanos = new AtomicLong(System.nanoTime());
+        private static final AtomicLong windowStartChunks = new AtomicLong();
+
         // Optional: force MCPE-style seed (e.g., string seed conversion) regardless of Bukkit's world seed.
         private final Long forcedSeed;
 
+        // Thread-confined working state (random, height/noise buffers, biome arrays) forked from the shared tables.
+        private final ThreadLocal<MCPEWorldGenState> localState = new ThreadLocal<MCPEWorldGenState>();
+
         public MCPEChunkGenerator(Long forcedSeed) {
             this.forcedSeed = forcedSeed;
         }
@@ -131,30 +159,95 @@ public final class MCPEGen extends JavaPlugin {
             return world.getSeed();
         }
 
+        /**
+         * Returns this thread's working state for the given seed, with its random rewound to the
+         * exact position a freshly built state would have. Output is identical to rebuilding the
+         * state per chunk; only the octave/permutation setup is skipped.
+         *
+         * Populators can pull neighbouring chunks through generate() while they still hold a
+         * state, so a busy thread-local state is never handed out twice; the nested caller gets
+         * a throwaway fork instead. Pair every call with {@link #releaseState}.
+         */
+        private MCPEWorldGenState acquireState(long seed) {
+            MCPEWorldGenState state = localState.get();
+            if (state != null && state.seed == seed && !state.inUse) {
+                stateCacheHits.incrementAndGet();
+                state.resetRandom();
+                state.inUse = true;
+                return state;
+            }
+
+            stateCacheMisses.incrementAndGet();
+            MCPEWorldGenState shared = SHARED_STATES.get(seed);
+            if (shared == null) {
+                MCPEWorldGenState built = new MCPEWorldGenState(seed);
+                shared = SHARED_STATES.putIfAbsent(seed, built);
+                if (shared == null) shared = built;
+            }
+
+            MCPEWorldGenState forked = shared.fork();
+            if (state == null || !state.inUse) {
+                localState.set(forked);
+            }
+            forked.inUse = true;
+            return forked;
+        }
+
+        private static void releaseState(MCPEWorldGenState state) {
+            state.inUse = false;
+        }
+
+        static String describeStats() {
+            long chunks = chunksGenerated.get();
+            long nanos = generateNanos.get();
+            double msPerChunk = chunks > 0 ? (nanos / 1000000.0) / chunks : 0.0;
+            return "chunks=" + chunks
+                    + " stateCacheHits=" + stateCacheHits.get()
+                    + " stateCacheMisses=" + stateCacheMisses.get()
+                    + " avgMsPerChunk=" + String.format("%.3f", msPerChunk);
+        }
+
+        private static void recordChunk(long startNanos) {
+            long now = System.nanoTime();
+            generateNanos.addAndGet(now - startNanos);
+            long chunks = chunksGenerated.incrementAndGet();
+            if (chunks % STATS_LOG_INTERVAL != 0) return;
+
+            long windowStart = windowStartNanos.getAndSet(now);
+            long windowChunks = chunks - windowStartChunks.getAndSet(chunks);
+            double seconds = (now - windowStart) / 1000000000.0;
+            double chunksPerSec = seconds > 0.0 ? windowChunks / seconds : 0.0;
+            log.info("[MCPEGen] " + describeStats() + " chunksPerSec=" + String.format("%.1f", chunksPerSec));
+        }
+
         @Override
         public byte[] generate(World world, java.util.Random ignored, int chunkX, int chunkZ) {
+            final long startNanos = System.nanoTime();
             final long seed = getEffectiveSeed(world);
 
-            // Persistent per-world state is unnecessary; re-deriving is deterministic.
-            MCPEWorldGenState state = new MCPEWorldGenState(seed);
-
             // Block array is x<<11 | z<<7 | y (same as source)
             byte[] blocks = new byte[16 * 16 * WORLD_HEIGHT];
 
-            // Biome-like fields
-            MCPEBiomeSource biomeSource = state.getBiomeSource();
-            MCPEBiome[] biomes = biomeSource.getBiomeBlock(chunkX * 16, chunkZ * 16, 16, 16);
-            float[] temperatures = biomeSource.temperatures;
+            MCPEWorldGenState state = acquireState(seed);
+            try {
+                // Biome-like fields
+                MCPEBiomeSource biomeSource = state.getBiomeSource();
+                MCPEBiome[] biomes = biomeSource.getBiomeBlock(chunkX * 16, chunkZ * 16, 16, 16);
+                float[] temperatures = biomeSource.temperatures;
 
-            // Terrain (prepareHeights)
-            prepareHeights(state, chunkX, chunkZ, blocks, temperatures);
+                // Terrain (prepareHeights)
+                prepareHeights(state, chunkX, chunkZ, blocks, temperatures);
 
-            // Surfaces (buildSurfaces)
-            buildSurfaces(state, chunkX, chunkZ, blocks, biomes);
+                // Surfaces (buildSurfaces)
+                buildSurfaces(state, chunkX, chunkZ, blocks, biomes);
 
-            // Caves (LargeCaveFeature)
-            carveCaves(seed, state, chunkX, chunkZ, blocks);
+                // Caves (LargeCaveFeature)
+                carveCaves(seed, state, chunkX, chunkZ, blocks);
+            } finally {
+                releaseState(state);
+            }
 
+            recordChunk(startNanos);
             return blocks;
         }
 
@@ -507,10 +600,19 @@ private final class MCPEPopulator extends BlockPopulator {
         @Override
         public void populate(World world, java.util.Random ignored, Chunk chunk) {
             final long seed = MCPEChunkGenerator.this.getEffectiveSeed(world);
+
+            MCPEWorldGenState state = MCPEChunkGenerator.this.acquireState(seed);
+            try {
+                populate(world, chunk, seed, state);
+            } finally {
+                releaseState(state);
+            }
+        }
+
+        private void populate(World world, Chunk chunk, long seed, MCPEWorldGenState state) {
             final int chunkX = chunk.getX();
             final int chunkZ = chunk.getZ();
 
-            MCPEWorldGenState state = new MCPEWorldGenState(seed);
             MCPEBiomeSource biomeSource = state.getBiomeSource();
 
             int xo = chunkX * 16;
@@ -997,11 +1099,22 @@ private final class MCPEPopulator extends BlockPopulator {
 
     // ---------------- Generator state (ported from RandomLevelSource + BiomeSource) ----------------
 
+    /**
+     * Noise tables (PerlinNoise octaves, biome maps) are read-only after construction and are
+     * shared between forks. Everything else here is scratch and must stay on one thread.
+     */
     private static final class MCPEWorldGenState {
         private static final int MAX_BUFFER_SIZE = 1024;
 
+        final long seed;
         final MT19937Random random;
 
+        // Random as left by the noise constructors; never advanced, only copied from.
+        private final MT19937Random initialRandom;
+
+        // Set while a generate()/populate() call on the owning thread is using this state.
+        boolean inUse;
+
         final PerlinNoise lperlinNoise1;
         final PerlinNoise lperlinNoise2;
         final PerlinNoise perlinNoise1;
@@ -1021,6 +1134,7 @@ private final class MCPEPopulator extends BlockPopulator {
         private final MCPEBiomeSource biomeSource;
 
         MCPEWorldGenState(long seed) {
+            this.seed = seed;
             this.random = new MT19937Random(seed);
 
             this.lperlinNoise1 = new PerlinNoise(random, 16);
@@ -1032,12 +1146,42 @@ private final class MCPEPopulator extends BlockPopulator {
             this.depthNoise = new PerlinNoise(random, 16);
             this.forestNoise = new PerlinNoise(random, 8);
 
+            this.initialRandom = random.copy();
+
             this.buffer = new float[MAX_BUFFER_SIZE];
 
             MCPEBiome.initBiomes();
             this.biomeSource = new MCPEBiomeSource(seed);
         }
 
+        private MCPEWorldGenState(MCPEWorldGenState shared) {
+            this.seed = shared.seed;
+            this.initialRandom = shared.initialRandom;
+            this.random = initialRandom.copy();
+
+            this.lperlinNoise1 = shared.lperlinNoise1;
+            this.lperlinNoise2 = shared.lperlinNoise2;
+            this.perlinNoise1 = shared.perlinNoise1;
+            this.perlinNoise2 = shared.perlinNoise2;
+            this.perlinNoise3 = shared.perlinNoise3;
+            this.scaleNoise = shared.scaleNoise;
+            this.depthNoise = shared.depthNoise;
+            this.forestNoise = shared.forestNoise;
+
+            this.buffer = new float[MAX_BUFFER_SIZE];
+            this.biomeSource = new MCPEBiomeSource(shared.biomeSource);
+        }
+
+        /** New working state sharing this state's noise tables, with its own random and buffers. */
+        MCPEWorldGenState fork() {
+            return new MCPEWorldGenState(this);
+        }
+
+        /** Rewinds the random to where a freshly constructed state would leave it. */
+        void resetRandom() {
+            random.copyFrom(initialRandom);
+        }
+
         MCPEBiomeSource getBiomeSource() {
             return biomeSource;
         }
@@ -1223,6 +1367,18 @@ private final class MCPEPopulator extends BlockPopulator {
             this.biomes = new MCPEBiome[16 * 16];
         }
 
+        // Shares the (read-only) noise maps, allocates fresh output arrays.
+        MCPEBiomeSource(MCPEBiomeSource shared) {
+            this.temperatureMap = shared.temperatureMap;
+            this.downfallMap = shared.downfallMap;
+            this.noiseMap = shared.noiseMap;
+
+            this.temperatures = new float[16 * 16];
+            this.downfalls = new float[16 * 16];
+            this.noises = new float[16 * 16];
+            this.biomes = new MCPEBiome[16 * 16];
+        }
+
         MCPEBiome getBiome(int x, int z) {
             return getBiomeBlock(x, z, 1, 1)[0];
         }
@@ -1559,6 +1715,20 @@ private final class MCPEPopulator extends BlockPopulator {
             return seed;
         }
 
+        MT19937Random copy() {
+            MT19937Random copy = new MT19937Random(0L);
+            copy.copyFrom(this);
+            return copy;
+        }
+
+        void copyFrom(MT19937Random other) {
+            System.arraycopy(other.mt, 0, mt, 0, N);
+            this.mti = other.mti;
+            this.seed = other.seed;
+            this.haveNextNextGaussian = other.haveNextNextGaussian;
+            this.nextNextGaussian = other.nextNextGaussian;
+        }
+
         int nextInt() {
             return (genrand_int32() >>> 1);
         }
@@ -0,0 +1,469 @@
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+
+import org.bukkit.World;
+import org.bukkit.generator.ChunkGenerator;
+
+/**
+ * OfflinePregen
+ *
+ * Headless world pre-generator for the beta-era ChunkGenerators (MCPEGen, AlphaFloatingIslands,
+ * InfdevEsqueGen, IndevHellGen, ...). Calls generate() on every core and writes the raw chunk
+ * arrays straight into McRegion (.mcr) files, so a world can be pre-generated without running
+ * the server for hours.
+ *
+ * Build / run next to ChunkGenHarness.java, with the server jar and the plugin jar on the classpath:
+ *   javac -source 8 -target 8 -cp server.jar;MCPEGen.jar OfflinePregen.java ChunkGenHarness.java
+ *   java -cp .;server.jar;MCPEGen.jar OfflinePregen <pluginMainClass> <worldDir> <seed|auto> <radiusChunks> [threads] [generatorId]
+ *
+ * Notes:
+ * - Beta 1.7.3 reads McRegion only (Anvil is 1.2+), so that is the only format written.
+ * - Create the world on the server once (so level.dat exists), stop the server, then run this.
+ *   "auto" reads RandomSeed from level.dat.
+ * - Chunks are written with TerrainPopulated=0. Populators need a live World, so the server runs
+ *   them as the second pass the first time each chunk loads next to generated neighbours.
+ * - Sky light / height map are filled column-wise (same as the server's initial lighting).
+ * - Each region is generated in full, then mapped and written in one go. Progress is kept in
+ *   pregen-progress.txt; a rerun skips finished regions and redoes a region interrupted mid-write.
+ *   Region files this tool did not write are never touched.
+ */
+public final class OfflinePregen {
+
+    private static final int WORLD_HEIGHT = 128;
+    private static final int BLOCKS_PER_CHUNK = 16 * 16 * WORLD_HEIGHT;
+    private static final int SECTOR_BYTES = 4096;
+    private static final int COMPRESSION_ZLIB = 2;
+
+    private static final String PROGRESS_FILE = "pregen-progress.txt";
+
+    // NBT tag ids
+    private static final int TAG_END = 0;
+    private static final int TAG_BYTE = 1;
+    private static final int TAG_INT = 3;
+    private static final int TAG_LONG = 4;
+    private static final int TAG_BYTE_ARRAY = 7;
+    private static final int TAG_LIST = 9;
+    private static final int TAG_COMPOUND = 10;
+
+    // Beta light opacity for the ids a terrain generator can emit; anything else is opaque.
+    private static final int[] LIGHT_OPACITY = new int[256];
+
+    static {
+        for (int i = 0; i < LIGHT_OPACITY.length; i++) LIGHT_OPACITY[i] = 255;
+        int[] clear = { 0, 6, 20, 31, 32, 37, 38, 39, 40, 50, 51, 55, 59, 63, 65, 66, 78, 83, 85 };
+        for (int id : clear) LIGHT_OPACITY[id] = 0;
+        LIGHT_OPACITY[18] = 1;  // leaves
+        LIGHT_OPACITY[8] = 3;   // water
+        LIGHT_OPACITY[9] = 3;
+        LIGHT_OPACITY[79] = 3;  // ice
+    }
+
+    private OfflinePregen() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 4) {
+            System.out.println("Usage: OfflinePregen <pluginMainClass> <worldDir> <seed|auto> <radiusChunks> [threads] [generatorId]");
+            System.exit(2);
+            return;
+        }
+
+        String pluginClass = args[0];
+        File worldDir = new File(args[1]);
+        long seed = args[2].equalsIgnoreCase("auto") ? readLevelSeed(new File(worldDir, "level.dat")) : Long.parseLong(args[2]);
+        int radius = Math.max(0, Integer.parseInt(args[3]));
+        int threads = args.length >= 5 ? Math.max(1, Integer.parseInt(args[4])) : Runtime.getRuntime().availableProcessors();
+        String generatorId = args.length >= 6 ? args[5] : "";
+
+        run(pluginClass, generatorId, worldDir, seed, radius, threads);
+    }
+
+    static void run(String pluginClass, String generatorId, File worldDir, long seed, int radius, int threads) throws Exception {
+        File regionDir = new File(worldDir, "region");
+        if (!regionDir.exists() && !regionDir.mkdirs()) {
+            throw new IOException("Could not create " + regionDir.getAbsolutePath());
+        }
+
+        ChunkGenerator gen = ChunkGenHarness.loadGenerator(pluginClass, generatorId);
+        World world = ChunkGenHarness.stubWorld(seed, worldDir.getName());
+
+        File progressFile = new File(worldDir, PROGRESS_FILE);
+        Map<String, String> progress = readProgress(progressFile);
+
+        int minRegion = (-radius) >> 5;
+        int maxRegion = radius >> 5;
+
+        System.out.println("[OfflinePregen] " + pluginClass + " seed=" + seed + " radius=" + radius
+                + " chunks, regions " + minRegion + ".." + maxRegion + " squared, threads=" + threads);
+
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        Writer progressOut = new OutputStreamWriter(new FileOutputStream(progressFile, true), "UTF-8");
+        long startNanos = System.nanoTime();
+        long chunksDone = 0;
+        int regionsWritten = 0;
+        int regionsSkipped = 0;
+
+        try {
+            for (int rx = minRegion; rx <= maxRegion; rx++) {
+                for (int rz = minRegion; rz <= maxRegion; rz++) {
+                    String key = rx + " " + rz;
+                    File regionFile = new File(regionDir, "r." + rx + "." + rz + ".mcr");
+
+                    if ("done".equals(progress.get(key))) {
+                        regionsSkipped++;
+                        continue;
+                    }
+                    if (regionFile.exists() && !"start".equals(progress.get(key))) {
+                        System.out.println("[OfflinePregen] " + regionFile.getName() + " was not written by this tool; leaving it alone.");
+                        regionsSkipped++;
+                        continue;
+                    }
+
+                    byte[][] payloads = new byte[1024][];
+                    pool.invoke(new RegionTask(gen, world, rx, rz, radius, payloads, 0, 1024));
+
+                    int count = 0;
+                    for (byte[] p : payloads) {
+                        if (p != null) count++;
+                    }
+                    if (count == 0) continue;
+
+                    appendProgress(progressOut, "start", key);
+                    writeRegion(regionFile, payloads, (int) (System.currentTimeMillis() / 1000L));
+                    appendProgress(progressOut, "done", key);
+
+                    chunksDone += count;
+                    regionsWritten++;
+
+                    double seconds = (System.nanoTime() - startNanos) / 1000000000.0;
+                    System.out.println("[OfflinePregen] " + regionFile.getName() + " chunks=" + count
+                            + " total=" + chunksDone
+                            + String.format(" %.1f chunks/sec", chunksDone / Math.max(seconds, 1e-9))
+                            + " peakHeapMb=" + (peakHeapBytes() >> 20));
+                }
+            }
+        } finally {
+            pool.shutdown();
+            progressOut.close();
+        }
+
+        double seconds = (System.nanoTime() - startNanos) / 1000000000.0;
+        System.out.println("[OfflinePregen] Finished: regions written=" + regionsWritten + " skipped=" + regionsSkipped
+                + " chunks=" + chunksDone
+                + String.format(" in %.1fs = %.1f chunks/sec", seconds, chunksDone / Math.max(seconds, 1e-9))
+                + " peakHeapMb=" + (peakHeapBytes() >> 20));
+    }
+
+    // -------------------------------------------------------------------------
+    // Generation
+    // -------------------------------------------------------------------------
+
+    /** Generates and encodes the in-radius chunks of one region; slot = localZ * 32 + localX. */
+    private static final class RegionTask extends RecursiveAction {
+        private static final int LEAF_CHUNKS = 8;
+
+        private final ChunkGenerator gen;
+        private final World world;
+        private final int regionX;
+        private final int regionZ;
+        private final int radius;
+        private final byte[][] out;
+        private final int from;
+        private final int to;
+
+        RegionTask(ChunkGenerator gen, World world, int regionX, int regionZ, int radius,
+                   byte[][] out, int from, int to) {
+            this.gen = gen;
+            this.world = world;
+            this.regionX = regionX;
+            this.regionZ = regionZ;
+            this.radius = radius;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from > LEAF_CHUNKS) {
+                int mid = (from + to) >>> 1;
+                invokeAll(new RegionTask(gen, world, regionX, regionZ, radius, out, from, mid),
+                        new RegionTask(gen, world, regionX, regionZ, radius, out, mid, to));
+                return;
+            }
+
+            for (int slot = from; slot < to; slot++) {
+                int chunkX = (regionX << 5) + (slot & 31);
+                int chunkZ = (regionZ << 5) + (slot >> 5);
+                if (Math.abs(chunkX) > radius || Math.abs(chunkZ) > radius) continue;
+
+                byte[] blocks = gen.generate(world, ChunkGenHarness.chunkRandom(chunkX, chunkZ), chunkX, chunkZ);
+                if (blocks == null || blocks.length != BLOCKS_PER_CHUNK) {
+                    throw new IllegalStateException("Generator returned " + (blocks == null ? "null" : blocks.length + " bytes")
+                            + " for chunk " + chunkX + "," + chunkZ + "; expected " + BLOCKS_PER_CHUNK);
+                }
+
+                try {
+                    out[slot] = encodeChunk(chunkX, chunkZ, blocks);
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        }
+    }
+
+    /** Chunk NBT as Beta's ChunkLoader expects it, zlib-compressed. */
+    static byte[] encodeChunk(int chunkX, int chunkZ, byte[] blocks) throws IOException {
+        byte[] skyLight = new byte[BLOCKS_PER_CHUNK / 2];
+        byte[] heightMap = new byte[256];
+        computeSkyLight(blocks, skyLight, heightMap);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(16 * 1024);
+        DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes));
+
+        beginTag(out, TAG_COMPOUND, "");
+        beginTag(out, TAG_COMPOUND, "Level");
+
+        beginTag(out, TAG_INT, "xPos");
+        out.writeInt(chunkX);
+        beginTag(out, TAG_INT, "zPos");
+        out.writeInt(chunkZ);
+        beginTag(out, TAG_LONG, "LastUpdate");
+        out.writeLong(0L);
+        beginTag(out, TAG_BYTE, "TerrainPopulated");
+        out.writeByte(0);
+
+        writeByteArray(out, "Blocks", blocks);
+        writeByteArray(out, "Data", new byte[BLOCKS_PER_CHUNK / 2]);
+        writeByteArray(out, "SkyLight", skyLight);
+        writeByteArray(out, "BlockLight", new byte[BLOCKS_PER_CHUNK / 2]);
+        writeByteArray(out, "HeightMap", heightMap);
+
+        writeEmptyCompoundList(out, "Entities");
+        writeEmptyCompoundList(out, "TileEntities");
+
+        out.writeByte(TAG_END); // Level
+        out.writeByte(TAG_END); // root
+        out.close();
+
+        return bytes.toByteArray();
+    }
+
+    /** Straight-down sky light per column, mirroring the server's initial chunk lighting. */
+    static void computeSkyLight(byte[] blocks, byte[] skyLight, byte[] heightMap) {
+        for (int x = 0; x < 16; x++) {
+            for (int z = 0; z < 16; z++) {
+                int column = (x << 11) | (z << 7);
+
+                int top = WORLD_HEIGHT - 1;
+                while (top > 0 && LIGHT_OPACITY[blocks[column + top - 1] & 0xFF] == 0) {
+                    top--;
+                }
+                heightMap[(z << 4) | x] = (byte) top;
+
+                int light = 15;
+                for (int y = WORLD_HEIGHT - 1; y > 0 && light > 0; y--) {
+                    light -= LIGHT_OPACITY[blocks[column + y] & 0xFF];
+                    if (light > 0) {
+                        int i = column + y;
+                        skyLight[i >> 1] |= (byte) (light << ((i & 1) << 2));
+                    }
+                }
+            }
+        }
+    }
+
+    private static void beginTag(DataOutputStream out, int type, String name) throws IOException {
+        out.writeByte(type);
+        out.writeUTF(name);
+    }
+
+    private static void writeByteArray(DataOutputStream out, String name, byte[] data) throws IOException {
+        beginTag(out, TAG_BYTE_ARRAY, name);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static void writeEmptyCompoundList(DataOutputStream out, String name) throws IOException {
+        beginTag(out, TAG_LIST, name);
+        out.writeByte(TAG_COMPOUND);
+        out.writeInt(0);
+    }
+
+    // -------------------------------------------------------------------------
+    // McRegion writer
+    // -------------------------------------------------------------------------
+
+    /**
+     * Lays out a whole region (8 KiB header + 4 KiB-aligned chunk sectors) and writes it through a
+     * single memory mapping, then forces it to disk.
+     */
+    static void writeRegion(File file, byte[][] payloads, int timestamp) throws IOException {
+        int[] sectorOffset = new int[1024];
+        int[] sectorCount = new int[1024];
+        int nextSector = 2;
+
+        for (int i = 0; i < 1024; i++) {
+            if (payloads[i] == null) continue;
+            int sectors = (4 + 1 + payloads[i].length + SECTOR_BYTES - 1) / SECTOR_BYTES;
+            if (sectors >= 256) {
+                throw new IOException("Chunk slot " + i + " is " + payloads[i].length + " bytes; McRegion allows < 1 MiB");
+            }
+            sectorOffset[i] = nextSector;
+            sectorCount[i] = sectors;
+            nextSector += sectors;
+        }
+
+        long totalBytes = (long) nextSector * SECTOR_BYTES;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        try {
+            raf.setLength(totalBytes);
+            FileChannel channel = raf.getChannel();
+            MappedByteBuffer map = channel.map(FileChannel.MapMode.READ_WRITE, 0, totalBytes);
+
+            for (int i = 0; i < 1024; i++) {
+                if (payloads[i] == null) continue;
+                map.position(sectorOffset[i] * SECTOR_BYTES);
+                map.putInt(payloads[i].length + 1);
+                map.put((byte) COMPRESSION_ZLIB);
+                map.put(payloads[i]);
+            }
+
+            // Header last, so an interrupted write never points at missing data.
+            for (int i = 0; i < 1024; i++) {
+                map.putInt(i * 4, payloads[i] == null ? 0 : (sectorOffset[i] << 8) | sectorCount[i]);
+                map.putInt(SECTOR_BYTES + i * 4, payloads[i] == null ? 0 : timestamp);
+            }
+
+            map.force();
+        } finally {
+            raf.close();
+        }
+    }
+
+    // -------------------------------------------------------------------------
+    // Progress / level.dat / stats
+    // -------------------------------------------------------------------------
+
+    private static Map<String, String> readProgress(File file) throws IOException {
+        Map<String, String> states = new HashMap<String, String>();
+        if (!file.exists()) return states;
+
+        BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 3) continue;
+                states.put(parts[1] + " " + parts[2], parts[0]);
+            }
+        } finally {
+            reader.close();
+        }
+        return states;
+    }
+
+    private static void appendProgress(Writer out, String state, String key) throws IOException {
+        out.write(state + " " + key + "\n");
+        out.flush();
+    }
+
+    /** Reads Data.RandomSeed from a gzipped level.dat. */
+    static long readLevelSeed(File levelDat) throws IOException {
+        DataInputStream in = new DataInputStream(new GZIPInputStream(new FileInputStream(levelDat)));
+        try {
+            if (in.readByte() != TAG_COMPOUND) throw new IOException("level.dat: root is not a compound");
+            in.readUTF();
+            Long seed = findLong(in, "Data", "RandomSeed", null);
+            if (seed == null) throw new IOException("level.dat: Data.RandomSeed not found");
+            return seed.longValue();
+        } finally {
+            in.close();
+        }
+    }
+
+    // Walks a compound body looking for parent.name; skips everything else.
+    private static Long findLong(DataInputStream in, String parent, String name, String current) throws IOException {
+        Long found = null;
+        while (true) {
+            int type = in.readByte();
+            if (type == TAG_END) return found;
+            String tagName = in.readUTF();
+            if (type == TAG_LONG && name.equals(tagName) && parent.equals(current)) {
+                found = in.readLong();
+            } else if (type == TAG_COMPOUND) {
+                Long inner = findLong(in, parent, name, tagName);
+                if (inner != null) found = inner;
+            } else {
+                skipPayload(in, type);
+            }
+        }
+    }
+
+    private static void skipPayload(DataInputStream in, int type) throws IOException {
+        switch (type) {
+            case 1: skipFully(in, 1); break;
+            case 2: skipFully(in, 2); break;
+            case 3: skipFully(in, 4); break;
+            case 4: skipFully(in, 8); break;
+            case 5: skipFully(in, 4); break;
+            case 6: skipFully(in, 8); break;
+            case 7: skipFully(in, in.readInt()); break;
+            case 8: skipFully(in, in.readUnsignedShort()); break;
+            case 9: {
+                int elementType = in.readByte();
+                int length = in.readInt();
+                for (int i = 0; i < length; i++) skipPayload(in, elementType);
+                break;
+            }
+            case 10:
+                findLong(in, "", "", null);
+                break;
+            default:
+                throw new IOException("level.dat: unknown tag type " + type);
+        }
+    }
+
+    // skipBytes() on a GZIP stream may stop short; read through instead.
+    private static void skipFully(DataInputStream in, int count) throws IOException {
+        byte[] sink = new byte[Math.min(count, 4096)];
+        while (count > 0) {
+            int n = Math.min(count, sink.length);
+            in.readFully(sink, 0, n);
+            count -= n;
+        }
+    }
+
+    /** Sum of per-pool peak usage across heap pools (upper bound on the true heap peak). */
+    static long peakHeapBytes() {
+        long total = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP && pool.getPeakUsage() != null) {
+                total += pool.getPeakUsage().getUsed();
+            }
+        }
+        return total;
+    }
+}
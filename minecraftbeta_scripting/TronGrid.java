@@ -295,6 +295,10 @@ public class TronGrid extends JavaPlugin {
     // Generator: flat obsidian plane w/ stone under + bedrock at 0
     // -------------------------------------------------------------------------
     private final class TronGridGenerator extends ChunkGenerator {
+        /**
+         * Only reads floorY, which loadProps() sets in onEnable() before any world exists,
+         * so this is safe to call from several threads at once.
+         */
         @Override
         public byte[] generate(World world, Random random, int chunkX, int chunkZ) {
             byte[] blocks = new byte[16 * 16 * 128];
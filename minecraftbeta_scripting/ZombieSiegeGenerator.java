@@ -42,6 +42,7 @@ public class ZombieSiegeGenerator extends JavaPlugin {
 
         private static final int WORLD_HEIGHT = 128;
 
+        // Stateless flat fill; safe to call from several threads at once.
         public byte[] generate(World world, Random random, int chunkX, int chunkZ) {
             byte[] blocks = new byte[16 * 16 * WORLD_HEIGHT];
 
@@ -3,6 +3,7 @@
 package com.redchanit.indevmobs;
 
 import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.event.NPCDespawnEvent;
 import net.citizensnpcs.api.npc.NPC;
 import net.citizensnpcs.api.npc.NPCRegistry;
 import net.citizensnpcs.api.trait.Trait;
@@ -43,6 +44,7 @@ import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Logger;
 import org.bukkit.Material;
 
 public final class IndevMobs extends JavaPlugin implements Listener {
@@ -67,6 +69,10 @@ public final class IndevMobs extends JavaPlugin implements Listener {
     // entity UUID -> NPC id (Citizens)
     private final Map<UUID, Integer> citizensNpcIdByEntity = new ConcurrentHashMap<>();
 
+    // Where each of our NPCs was last seen, persisted so chunk loads/restarts can adopt without scanning
+    private static final String NPC_CHUNK_INDEX_FILE = "npc-chunks.yml";
+    private final NpcChunkIndex npcChunkIndex = new NpcChunkIndex();
+
     // tasks
     private int spawnTaskId = -1;
     private int wanderTaskId = -1;
@@ -101,6 +107,133 @@ public final class IndevMobs extends JavaPlugin implements Listener {
     }
 
 
+    /**
+     * Persistent NPC id -> chunk index (sidecar YAML next to config.yml). Chunk loads only look up the
+     * NPCs recorded for that chunk, and the startup adopt pass only visits recorded ids, instead of
+     * asking Citizens about every entity in every loaded chunk or walking the whole NPC registry.
+     * <p>
+     * Dirty changes are saved at most once a minute, so the file records whether it was written by a
+     * clean shutdown. After a crash it may be missing NPCs spawned or moved since the last save; it
+     * then loads unseeded and the startup adopt pass does one full registry walk again.
+     * <p>
+     * MercMobs and IndevMobs each build from a single source file, so both carry this class; keep the
+     * two copies identical.
+     */
+    private static final class NpcChunkIndex {
+        private static final long SAVE_INTERVAL_MS = 60_000L;
+
+        private final Map<Integer, String> chunkOfNpc = new HashMap<>();
+        private final Map<String, Set<Integer>> npcsInChunk = new HashMap<>();
+        private File file;
+        private Logger logger;
+        private boolean seeded = false; // trusted from a clean shutdown, or filled by a full registry walk
+        private boolean dirty = false;
+        private long savedAtMs = 0L;
+
+        static String chunkId(String worldName, int cx, int cz) {
+            return worldName + "," + cx + "," + cz;
+        }
+
+        void put(int npcId, Location loc) {
+            if (loc == null || loc.getWorld() == null) return;
+            String chunk = chunkId(loc.getWorld().getName(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+            String prev = chunkOfNpc.put(npcId, chunk);
+            if (chunk.equals(prev)) return;
+            if (prev != null) removeFromChunk(prev, npcId);
+            npcsInChunk.computeIfAbsent(chunk, k -> new HashSet<>()).add(npcId);
+            dirty = true;
+        }
+
+        void remove(int npcId) {
+            String prev = chunkOfNpc.remove(npcId);
+            if (prev == null) return;
+            removeFromChunk(prev, npcId);
+            dirty = true;
+        }
+
+        private void removeFromChunk(String chunk, int npcId) {
+            Set<Integer> ids = npcsInChunk.get(chunk);
+            if (ids != null && ids.remove(npcId) && ids.isEmpty()) npcsInChunk.remove(chunk);
+        }
+
+        List<Integer> idsIn(Chunk chunk) {
+            Set<Integer> ids = npcsInChunk.get(chunkId(chunk.getWorld().getName(), chunk.getX(), chunk.getZ()));
+            return (ids == null) ? Collections.emptyList() : new ArrayList<>(ids);
+        }
+
+        List<Integer> allIds() {
+            return new ArrayList<>(chunkOfNpc.keySet());
+        }
+
+        int size() {
+            return chunkOfNpc.size();
+        }
+
+        boolean isSeeded() {
+            return seeded;
+        }
+
+        /** Called once the full registry walk has filled the index. */
+        void markSeeded() {
+            seeded = true;
+            save(false);
+        }
+
+        void load(File file, Logger logger) {
+            this.file = file;
+            this.logger = logger;
+            chunkOfNpc.clear();
+            npcsInChunk.clear();
+            dirty = false;
+            seeded = false;
+            if (!file.isFile()) return;
+
+            YamlConfiguration yc = YamlConfiguration.loadConfiguration(file);
+            ConfigurationSection npcs = yc.getConfigurationSection("npcs");
+            if (npcs != null) {
+                for (String key : npcs.getKeys(false)) {
+                    String chunk = npcs.getString(key, null);
+                    if (chunk == null) continue;
+                    try {
+                        int id = Integer.parseInt(key);
+                        chunkOfNpc.put(id, chunk);
+                        npcsInChunk.computeIfAbsent(chunk, k -> new HashSet<>()).add(id);
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+
+            // Entries from a crashed run are still used for chunk loads, but don't replace the walk
+            seeded = yc.getBoolean("cleanShutdown", false);
+            // From here on, a crash must not leave behind a file that claims to be complete
+            if (seeded) save(false);
+        }
+
+        void saveIfDue(long nowMs) {
+            if (dirty && nowMs - savedAtMs >= SAVE_INTERVAL_MS) save(false);
+        }
+
+        /** On disable: the file is only marked complete if the index was. */
+        void close() {
+            save(seeded);
+        }
+
+        private void save(boolean cleanShutdown) {
+            if (file == null) return;
+            savedAtMs = System.currentTimeMillis();
+            YamlConfiguration yc = new YamlConfiguration();
+            for (Map.Entry<Integer, String> e : chunkOfNpc.entrySet()) {
+                yc.set("npcs." + e.getKey(), e.getValue());
+            }
+            yc.set("cleanShutdown", cleanShutdown);
+            try {
+                yc.save(file);
+                dirty = false;
+            } catch (IOException ex) {
+                logger.warning("Failed to save " + file.getName() + ": " + ex.getMessage());
+            }
+        }
+    }
+
     @Override
     public void onEnable() {
         indevMobKey = new NamespacedKey(this, "indevmob");
@@ -120,6 +253,8 @@ public final class IndevMobs extends JavaPlugin implements Listener {
 
         initDynmap();
 
+        npcChunkIndex.load(new File(getDataFolder(), NPC_CHUNK_INDEX_FILE), getLogger());
+
         Bukkit.getPluginManager().registerEvents(this, this);
 
         if (getConfig().getBoolean("skins.preloadOnEnable", true)) {
@@ -159,6 +294,8 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         adoptTaskId = -1;
         dmarkerReloadTaskId = -1;
 
+        npcChunkIndex.close();
+
         // delete dynmap markers
         for (Object marker : dynmapMarkerByEntity.values()) {
             try {
@@ -200,6 +337,7 @@ public final class IndevMobs extends JavaPlugin implements Listener {
             sender.sendMessage("Citizens: " + (citizensAvailable ? "OK" : "MISSING"));
             sender.sendMessage("Dynmap: " + (dynmapAvailable ? "OK" : "MISSING/DISABLED"));
             sender.sendMessage("Tracked indev mobs (alive): " + countAliveAllWorlds());
+            sender.sendMessage("NPC chunk index: " + npcChunkIndex.size() + " NPCs" + (npcChunkIndex.isSeeded() ? "" : " (not seeded yet)"));
             sender.sendMessage("Skin cache keys: " + skinCache.keySet());
 
             File skinDir = getSkinDirectory();
@@ -597,6 +735,7 @@ public final class IndevMobs extends JavaPlugin implements Listener {
             tagEntity(entity, mobType);
             spawnedEntities.put(entity.getUniqueId(), mobType);
             citizensNpcIdByEntity.put(entity.getUniqueId(), npc.getId());
+            npcChunkIndex.put(npc.getId(), entity.getLocation());
 
             // Health (player-like)
             try {
@@ -681,10 +820,36 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         try { registry = CitizensAPI.getNPCRegistry(); } catch (Throwable t) { return; }
         if (registry == null) return;
 
+        if (!npcChunkIndex.isSeeded()) {
+            // No index on disk yet (first run / deleted): one full registry walk fills it,
+            // including legacy NPCs recognised by name
+            try {
+                for (NPC npc : registry) {
+                    if (npc == null) continue;
+                    String mobType = resolveMobTypeForNpc(npc);
+                    if (mobType == null) continue;
+                    if (!npc.isSpawned()) {
+                        // Sleeping in an unloaded chunk: index its stored location so that chunk load adopts it
+                        npcChunkIndex.put(npc.getId(), npc.getStoredLocation());
+                        continue;
+                    }
+                    Entity entity = npc.getEntity();
+                    if (entity == null) continue;
+                    adoptNpc(npc, entity, mobType);
+                }
+            } catch (Throwable ignored) {}
+            npcChunkIndex.markSeeded();
+            return;
+        }
+
         try {
-            for (NPC npc : registry) {
-                if (npc == null) continue;
-                if (!npc.isSpawned()) continue;
+            for (int id : npcChunkIndex.allIds()) {
+                NPC npc = registry.getById(id);
+                if (npc == null) {
+                    npcChunkIndex.remove(id); // removed outside of IndevMobs
+                    continue;
+                }
+                if (!npc.isSpawned()) continue; // its chunk load adopts it
                 Entity entity = npc.getEntity();
                 if (entity == null) continue;
                 String mobType = resolveMobTypeForNpc(npc);
@@ -694,17 +859,34 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         } catch (Throwable ignored) {}
     }
 
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onIndevNpcDespawn(NPCDespawnEvent event) {
+        Entity entity = event.getNPC().getEntity();
+        if (entity == null || !spawnedEntities.containsKey(entity.getUniqueId())) return;
+
+        // Usually a chunk unload: remember exactly where it went to sleep so that chunk's load adopts it,
+        // and stop tracking the entity so the enforce pass doesn't take it for dead and destroy the NPC
+        npcChunkIndex.put(event.getNPC().getId(), entity.getLocation());
+        spawnedEntities.remove(entity.getUniqueId());
+        citizensNpcIdByEntity.remove(entity.getUniqueId());
+        removeDynmapMarker(entity.getUniqueId());
+    }
+
     private void adoptNpcsInChunk(Chunk chunk) {
         if (!citizensAvailable) return;
 
-        // Fast path: scan entities in the chunk, then ask Citizens which NPC owns them
+        // Only the NPCs the index says live here; nothing else in the chunk is looked at
         try {
-            for (Entity entity : chunk.getEntities()) {
-                if (entity == null) continue;
-
-                NPC npc = getNpcForEntity(entity);
-                if (npc == null) continue;
+            NPCRegistry registry = CitizensAPI.getNPCRegistry();
+            for (int id : npcChunkIndex.idsIn(chunk)) {
+                NPC npc = registry.getById(id);
+                if (npc == null) {
+                    npcChunkIndex.remove(id);
+                    continue;
+                }
                 if (!npc.isSpawned()) continue;
+                Entity entity = npc.getEntity();
+                if (entity == null || spawnedEntities.containsKey(entity.getUniqueId())) continue;
 
                 String mobType = resolveMobTypeForNpc(npc);
                 if (mobType == null) continue;
@@ -714,24 +896,6 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         } catch (Throwable ignored) {}
     }
 
-    private NPC getNpcForEntity(Entity entity) {
-        try {
-            NPCRegistry registry = CitizensAPI.getNPCRegistry();
-            if (registry == null) return null;
-
-            // Prefer direct method if present
-            try {
-                java.lang.reflect.Method m = registry.getClass().getMethod("getNPC", Entity.class);
-                Object result = m.invoke(registry, entity);
-                return (result instanceof NPC) ? (NPC) result : null;
-            } catch (NoSuchMethodException ignored) {
-                // fallback: try CitizensAPI.getNPCRegistry().getById via our map only
-                return null;
-            }
-        } catch (Throwable ignored) {
-            return null;
-        }
-    }
 
     private String resolveMobTypeForNpc(NPC npc) {
         // 1) Persistent tag (new versions)
@@ -796,6 +960,7 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         // Track for our loops
         spawnedEntities.put(entity.getUniqueId(), mobType);
         citizensNpcIdByEntity.put(entity.getUniqueId(), npc.getId());
+        npcChunkIndex.put(npc.getId(), entity.getLocation());
 
         // Ensure skin is applied (best effort; safe if already applied)
         try {
@@ -829,6 +994,7 @@ public final class IndevMobs extends JavaPlugin implements Listener {
                 NPC npc = getNpcByEntityUuid(uuid);
                 if (npc != null) {
                     try { npc.data().setPersistent(NPC.Metadata.NAMEPLATE_VISIBLE, false); } catch (Throwable ignored) {}
+                    npcChunkIndex.put(npc.getId(), entity.getLocation());
                 }
                 try { entity.setCustomNameVisible(false); } catch (Throwable ignored) {}
 
@@ -841,6 +1007,8 @@ public final class IndevMobs extends JavaPlugin implements Listener {
                     }
                 } catch (Throwable ignored) {}
             }
+
+            npcChunkIndex.saveIfDue(System.currentTimeMillis());
         }, tickPeriod, tickPeriod);
     }
 
@@ -1085,6 +1253,7 @@ public final class IndevMobs extends JavaPlugin implements Listener {
         spawnedEntities.remove(entityUuid);
 
         Integer npcId = citizensNpcIdByEntity.remove(entityUuid);
+        if (npcId != null) npcChunkIndex.remove(npcId);
 
         if (removeMarker) {
             removeDynmapMarker(entityUuid);
@@ -0,0 +1,266 @@
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.util.UUID;
+
+/**
+ * LightcycleReplayHarness
+ *
+ * Offline replay of recorded lightcycle paths against TronLightcycle's trail collision.
+ *
+ * "replay" builds a trail index from each recorded path's trail blocks, then steps the rider
+ * through its recorded frames (position, velocity, clock). Each frame runs two checks:
+ * - the baseline probe: the three fixed look-ahead points tickCycles used before the swept test
+ * - the swept test: VoxelRay through sweepHitsTrail, from the previous frame's position
+ * It fails if either check's first hit frame differs from the recorded one.
+ *
+ * Build / run next to TronLightcycle.java, with the Spigot API jar and the plugin jar on the classpath:
+ *   javac -cp spigot-api-1.21.10-R0.1-SNAPSHOT.jar;TronLightcycle.jar LightcycleReplayHarness.java
+ *   java -cp .;spigot-api-1.21.10-R0.1-SNAPSHOT.jar;TronLightcycle.jar LightcycleReplayHarness replay
+ *
+ * Notes:
+ * - Not a plugin; no yaml. The collision code lives in private nested classes, so it is
+ *   reached through reflection. No server, world or entity is involved.
+ * - A path records the horse's frames and the trail blocks around it. The baseline result is what
+ *   the old probe gives on that path; the swept result is the intended outcome.
+ */
+public final class LightcycleReplayHarness {
+
+    private static final double ARENA_Y = 64.0;
+    private static final long SELF_IMMUNITY_MS = 1500L; // trail.selfImmunitySeconds default
+
+    private static final UUID SELF = new UUID(0x5E1FL, 1L);
+    private static final UUID OTHER = new UUID(0x07E5L, 2L);
+
+    // Reflected TronLightcycle internals
+    private static Constructor<?> trailIndexCtor;
+    private static Constructor<?> trailSegmentCtor;
+    private static Constructor<?> voxelRayCtor;
+    private static Method indexPut;
+    private static Method indexHitsTrail;
+    private static Method packBlockKey;
+    private static Method sweepHitsTrail;
+    private static double maxSweepDistance;
+    private static Object anyCycleColor;
+
+    private LightcycleReplayHarness() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 1 || !args[0].equalsIgnoreCase("replay")) {
+            System.out.println("Usage: LightcycleReplayHarness replay");
+            System.exit(2);
+            return;
+        }
+
+        bind();
+
+        int failures = 0;
+        for (RecordedPath path : recordedPaths()) {
+            if (!replay(path)) failures++;
+        }
+
+        System.out.println("[LightcycleReplayHarness] " + (failures == 0 ? "OK: all paths match"
+                : "FAILED: " + failures + " path(s) differ"));
+        System.exit(failures == 0 ? 0 : 1);
+    }
+
+    /**
+     * Recorded paths. Frames are {x, y, z, velocityX, velocityY, velocityZ, nowMs}; trail blocks are
+     * {x, y, z, placedMs} and hold two index keys each (y and y+1), like a placed segment.
+     */
+    static RecordedPath[] recordedPaths() {
+        return new RecordedPath[] {
+                // Passing 0.25 blocks from the corner of another rider's turn: the side lines reach it.
+                new RecordedPath("corner graze",
+                        new double[][] {
+                                { 2.0, ARENA_Y, 0.75, 0.8, 0.0, 0.0, 1000 },
+                                { 2.8, ARENA_Y, 0.75, 0.8, 0.0, 0.0, 1050 },
+                                { 3.6, ARENA_Y, 0.75, 0.8, 0.0, 0.0, 1100 },
+                                { 4.4, ARENA_Y, 0.75, 0.8, 0.0, 0.0, 1150 },
+                                { 5.2, ARENA_Y, 0.75, 0.8, 0.0, 0.0, 1200 },
+                        },
+                        new long[][] { { 6, 64, 1, 0 }, { 7, 64, 1, 0 }, { 6, 64, 2, 0 } }, new long[0][],
+                        3, 3),
+
+                // The same corner 0.4 blocks away: no line enters its block, so neither check fires.
+                new RecordedPath("corner near miss",
+                        new double[][] {
+                                { 2.0, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1000 },
+                                { 2.8, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1050 },
+                                { 3.6, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1100 },
+                                { 4.4, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1150 },
+                                { 5.2, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1200 },
+                                { 6.0, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1250 },
+                                { 6.8, ARENA_Y, 0.6, 0.8, 0.0, 0.0, 1300 },
+                        },
+                        new long[][] { { 6, 64, 1, 0 }, { 7, 64, 1, 0 }, { 6, 64, 2, 0 } }, new long[0][],
+                        -1, -1),
+
+                // 3 blocks per update (1.5 blocks/tick, 2-tick updates) across a one-block wall at x=4.
+                // The baseline's look-ahead points land on x=3, then x=5..6 and never on the wall.
+                new RecordedPath("high-speed tunnel-through",
+                        new double[][] {
+                                { 0.5, ARENA_Y, 0.5, 1.5, 0.0, 0.0, 1000 },
+                                { 3.5, ARENA_Y, 0.5, 1.5, 0.0, 0.0, 1100 },
+                                { 6.5, ARENA_Y, 0.5, 1.5, 0.0, 0.0, 1200 },
+                                { 9.5, ARENA_Y, 0.5, 1.5, 0.0, 0.0, 1300 },
+                        },
+                        new long[][] { { 4, 64, -2, 0 }, { 4, 64, -1, 0 }, { 4, 64, 0, 0 }, { 4, 64, 1, 0 }, { 4, 64, 2, 0 } },
+                        new long[0][],
+                        -1, 1),
+
+                // Creeping up on our own trail: immune while it is younger than 1.5s, a crash once it is older.
+                // The blocks just laid behind the horse are swept every frame and must stay immune.
+                new RecordedPath("self-immunity expiry",
+                        new double[][] {
+                                { 2.5, ARENA_Y, 0.5, 0.3, 0.0, 0.0, 1200 },
+                                { 3.0, ARENA_Y, 0.5, 0.3, 0.0, 0.0, 1400 },
+                                { 3.1, ARENA_Y, 0.5, 0.3, 0.0, 0.0, 1600 },
+                        },
+                        new long[0][],
+                        new long[][] { { 4, 64, 0, 0 }, { 2, 64, 0, 1150 }, { 3, 64, 0, 1350 } },
+                        2, 2),
+        };
+    }
+
+    static boolean replay(RecordedPath path) throws Exception {
+        Object index = trailIndexCtor.newInstance(64);
+        for (long[] block : path.otherBlocks) addBlock(index, block, OTHER);
+        for (long[] block : path.selfBlocks) addBlock(index, block, SELF);
+
+        Object ray = voxelRayCtor.newInstance();
+        int baselineFirstHit = -1;
+        int sweptFirstHit = -1;
+
+        for (int i = 0; i < path.frames.length; i++) {
+            double[] frame = path.frames[i];
+            double[] previous = (i == 0) ? null : path.frames[i - 1];
+
+            if (baselineFirstHit < 0 && baselineProbe(index, frame)) baselineFirstHit = i;
+            if (sweptFirstHit < 0 && sweptCheck(index, ray, previous, frame)) sweptFirstHit = i;
+        }
+
+        boolean ok = baselineFirstHit == path.expectedBaselineHit && sweptFirstHit == path.expectedSweptHit;
+        System.out.println("[LightcycleReplayHarness] " + (ok ? "ok      " : "MISMATCH") + " " + path.name
+                + ": baseline " + describe(baselineFirstHit) + " (recorded " + describe(path.expectedBaselineHit) + ")"
+                + ", swept " + describe(sweptFirstHit) + " (expected " + describe(path.expectedSweptHit) + ")");
+        return ok;
+    }
+
+    /** The three-point probe tickCycles used before the swept test, kept here as the reference. */
+    static boolean baselineProbe(Object index, double[] frame) throws Exception {
+        double vx = frame[3], vy = frame[4], vz = frame[5];
+        double speed = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (speed < 0.05) return false;
+
+        double probeDistance = Math.max(0.7, Math.min(2.5, 0.7 + speed * 1.2));
+        double aheadX = frame[0] + vx / speed * probeDistance;
+        double aheadY = frame[1] + vy / speed * probeDistance;
+        double aheadZ = frame[2] + vz / speed * probeDistance;
+
+        int y = (int) Math.floor(aheadY);
+        // Straight ahead, then the two diagonal side probes (+/-0.3 on x and z)
+        for (int probe = 0; probe < 3; probe++) {
+            double side = (probe == 0) ? 0.0 : (probe == 1 ? 0.3 : -0.3);
+            int x = (int) Math.floor(aheadX + side);
+            int z = (int) Math.floor(aheadZ + side);
+            for (int dy = 0; dy <= 1; dy++) {
+                if (hitsTrail(index, x, y + dy, z, (long) frame[6])) return true;
+            }
+        }
+        return false;
+    }
+
+    /** checkSweptCollision's trail half: sweep from the previous frame unless it is teleport-far. */
+    static boolean sweptCheck(Object index, Object ray, double[] previous, double[] frame) throws Exception {
+        double curX = frame[0], curY = frame[1], curZ = frame[2];
+        double fromX = curX, fromY = curY, fromZ = curZ;
+        if (previous != null) {
+            double jx = curX - previous[0], jy = curY - previous[1], jz = curZ - previous[2];
+            if (jx * jx + jy * jy + jz * jz <= maxSweepDistance * maxSweepDistance) {
+                fromX = previous[0];
+                fromY = previous[1];
+                fromZ = previous[2];
+            }
+        }
+
+        double vx = frame[3], vy = frame[4], vz = frame[5];
+        double speed = Math.sqrt(vx * vx + vy * vy + vz * vz);
+        if (speed < 0.05) return false;
+
+        return (Boolean) sweepHitsTrail.invoke(null, index, ray, fromX, fromY, fromZ, curX, curY, curZ,
+                vx / speed, vy / speed, vz / speed, speed,
+                SELF.getMostSignificantBits(), SELF.getLeastSignificantBits(), (long) frame[6], SELF_IMMUNITY_MS);
+    }
+
+    static void addBlock(Object index, long[] block, UUID owner) throws Exception {
+        int x = (int) block[0], y = (int) block[1], z = (int) block[2];
+        Object segment = trailSegmentCtor.newInstance(null, x, y, z, block[3], owner, anyCycleColor, null, null, false, null);
+        indexPut.invoke(index, packBlockKey.invoke(null, x, y, z), segment);
+        indexPut.invoke(index, packBlockKey.invoke(null, x, y + 1, z), segment);
+    }
+
+    static boolean hitsTrail(Object index, int x, int y, int z, long nowMs) throws Exception {
+        long key = (Long) packBlockKey.invoke(null, x, y, z);
+        return (Boolean) indexHitsTrail.invoke(index, key, SELF.getMostSignificantBits(), SELF.getLeastSignificantBits(),
+                nowMs, SELF_IMMUNITY_MS);
+    }
+
+    static String describe(int frame) {
+        return frame < 0 ? "no hit" : "hit at frame " + frame;
+    }
+
+    static void bind() throws Exception {
+        Class<?> plugin = Class.forName("TronLightcycle");
+        Class<?> trailIndex = Class.forName("TronLightcycle$TrailIndex");
+        Class<?> trailSegment = Class.forName("TronLightcycle$TrailSegment");
+        Class<?> voxelRay = Class.forName("TronLightcycle$VoxelRay");
+        Class<?> cycleColor = Class.forName("TronLightcycle$CycleColor");
+
+        trailIndexCtor = accessible(trailIndex.getDeclaredConstructor(int.class));
+        voxelRayCtor = accessible(voxelRay.getDeclaredConstructor());
+        for (Constructor<?> ctor : trailSegment.getDeclaredConstructors()) {
+            if (ctor.getParameterCount() == 11) trailSegmentCtor = accessible(ctor);
+        }
+        if (trailSegmentCtor == null) throw new IllegalStateException("TrailSegment constructor not found");
+
+        indexPut = accessible(trailIndex.getDeclaredMethod("put", long.class, trailSegment));
+        indexHitsTrail = accessible(trailIndex.getDeclaredMethod("hitsTrail", long.class, long.class, long.class, long.class, long.class));
+        packBlockKey = accessible(plugin.getDeclaredMethod("packBlockKey", int.class, int.class, int.class));
+        sweepHitsTrail = accessible(plugin.getDeclaredMethod("sweepHitsTrail", trailIndex, voxelRay,
+                double.class, double.class, double.class, double.class, double.class, double.class,
+                double.class, double.class, double.class, double.class, long.class, long.class, long.class, long.class));
+
+        Field maxSweep = plugin.getDeclaredField("MAX_SWEEP_DISTANCE");
+        maxSweep.setAccessible(true);
+        maxSweepDistance = maxSweep.getDouble(null);
+
+        anyCycleColor = cycleColor.getEnumConstants()[0];
+    }
+
+    private static <T extends java.lang.reflect.AccessibleObject> T accessible(T member) {
+        member.setAccessible(true);
+        return member;
+    }
+
+    /** One recorded ride: frames, the trail blocks around it, and the first hit frame of each check (-1 for none). */
+    static final class RecordedPath {
+        final String name;
+        final double[][] frames;
+        final long[][] otherBlocks;
+        final long[][] selfBlocks;
+        final int expectedBaselineHit;
+        final int expectedSweptHit;
+
+        RecordedPath(String name, double[][] frames, long[][] otherBlocks, long[][] selfBlocks,
+                     int expectedBaselineHit, int expectedSweptHit) {
+            this.name = name;
+            this.frames = frames;
+            this.otherBlocks = otherBlocks;
+            this.selfBlocks = selfBlocks;
+            this.expectedBaselineHit = expectedBaselineHit;
+            this.expectedSweptHit = expectedSweptHit;
+        }
+    }
+}
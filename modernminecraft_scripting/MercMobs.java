@@ -4,7 +4,19 @@
 package com.redchanit.mercmobs;
 
 import net.citizensnpcs.api.CitizensAPI;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import net.citizensnpcs.api.ai.Navigator;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.events.AliasEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.MappingEndEvent;
+import org.yaml.snakeyaml.events.MappingStartEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.events.SequenceEndEvent;
+import org.yaml.snakeyaml.events.SequenceStartEvent;
+import net.citizensnpcs.api.event.NPCDespawnEvent;
 import net.citizensnpcs.api.npc.NPC;
 import net.citizensnpcs.api.npc.NPCRegistry;
 import net.citizensnpcs.api.trait.trait.Equipment;
@@ -15,6 +27,7 @@ import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
 import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.FileConfiguration;
+import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.*;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
@@ -37,10 +50,18 @@ import java.lang.reflect.Method;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.logging.Logger;
 
 public final class MercMobs extends JavaPlugin implements Listener {
 
@@ -54,15 +75,11 @@ public final class MercMobs extends JavaPlugin implements Listener {
     private static final String CIT_KEY_OWNER = "mercmobs_owner";        // UUID string
     private static final String CIT_KEY_COOWNERS = "mercmobs_coowners";  // comma-separated UUIDs
     private static final String CIT_KEY_LEADER = "mercmobs_leader";      // UUID string (who this merc is currently following)
-    private static final String CIT_KEY_ASSIST_TARGET = "mercmobs_assist_target"; // UUID string (non-persistent)
-    private static final String CIT_KEY_ASSIST_UNTIL_MS = "mercmobs_assist_until_ms"; // long (non-persistent)
     private static final String CIT_KEY_MODE = "mercmobs_mode";          // "follow" | "defend" | "patrol"
     private static final String CIT_KEY_BOWMAN = "mercmobs_bowman";      // boolean
     private static final String CIT_KEY_WEAPON = "mercmobs_weapon";      // "fist" | "bow" | "iron" | "gold" | "diamond"
     private static final String CIT_KEY_ANGRY_TARGET = "mercmobs_angry_target"; // UUID string (player) for wild angry
     private static final String CIT_KEY_LAST_COMBAT = "mercmobs_last_combat";  // long millis
-    private static final String CIT_KEY_FUSE_UNTIL = "mercmobs_fuse_until";    // long millis
-    private static final String CIT_KEY_FUSE_TARGET = "mercmobs_fuse_target";  // UUID string (player/entity)
     private static final String CIT_KEY_PATROL_ANCHOR = "mercmobs_patrol_anchor"; // serialized "world,x,y,z" best-effort
 
     // -------------------------------------------------------------------------
@@ -85,11 +102,22 @@ public final class MercMobs extends JavaPlugin implements Listener {
     private Object dynmapApi = null;
     private Object dynmapMarkerApi = null;
 
-    // Cached dynmap marker spawn points
-    private final List<Location> dynmapSpawnMarkers = Collections.synchronizedList(new ArrayList<>());
+    // Cached dynmap marker spawn points. Each source publishes an immutable snapshot; readers just take
+    // the current reference. API markers (when the reflection call works) win over markers.yml.
+    private volatile MarkerSnapshot apiMarkers = null;
+    private volatile MarkerSnapshot fileMarkers = MarkerSnapshot.EMPTY;
+
+    // markers.yml change detection: stat first (main thread), then content hash (async) before parsing
+    private long markersFileMtime = -1L;
+    private long markersFileSize = -1L;
+    private String markersFileFilters = null;
+    private volatile String markersFileHash = null;
+    private volatile boolean markersIngestRunning = false;
+    private volatile long markersIngestNanos = 0L;
+    private long markersSkippedByStat = 0L;
+    private volatile long markersSkippedByHash = 0L;
     // Dynmap markers.yml fallback (when API reflection is unavailable)
     private volatile boolean dynmapFileMarkersAvailable = false;
-    private volatile int dynmapFileMarkerCount = 0;
 
     private int dynmapRefreshTaskId = -1;
 
@@ -102,6 +130,24 @@ public final class MercMobs extends JavaPlugin implements Listener {
     private final Map<String, SkinData> skinCache = new ConcurrentHashMap<>();
     private volatile boolean warnedBlankMineSkinKey = false;
 
+    // Uploads run one at a time on a single worker, deduped by skin key, so a 429 backoff holds back
+    // every pending upload instead of each request sleeping on its own async task. The worker's queue
+    // is bounded (skins.uploadQueueMax); a full queue rejects the request and is logged, rate-limited.
+    // Finished textures are also kept by PNG SHA-256 in skin-textures.cache: a restart, a config wipe or
+    // two keys sharing one PNG never trigger a second upload.
+    private static final String TEXTURE_CACHE_FILE = "skin-textures.cache";
+    private static final long SKIN_QUEUE_FULL_WARN_INTERVAL_MS = 60_000L;
+    private ThreadPoolExecutor skinUploader;
+    private final Set<String> skinUploadsQueued = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger skinUploadsDropped = new AtomicInteger();
+    private volatile long skinQueueFullWarnedMs = 0L;
+    private final Map<String, SkinData> textureByPngHash = new ConcurrentHashMap<>();
+    private volatile long mineSkinBlockedUntilMs = 0L;
+    private long skinUploadsOk = 0;
+    private long skinUploadsFailed = 0;
+    private long skinUploadNanosTotal = 0;
+    private long skinUploadNanosLast = 0;
+
 
     // -------------------------------------------------------------------------
     // Tracking: entity UUID -> npc id
@@ -109,6 +155,30 @@ public final class MercMobs extends JavaPlugin implements Listener {
     private final Map<UUID, Integer> npcIdByEntity = new ConcurrentHashMap<>();
     private final Map<UUID, String> typeByEntity = new ConcurrentHashMap<>();  // quick runtime hint, not authoritative
 
+    // Per-tick lookup cache (main thread): entity UUID -> Entity / NPC, cleared every tick.
+    // Misses are cached too, so a loop over all mercs resolves each UUID at most once per tick.
+    private final Map<UUID, Entity> entityThisTick = new HashMap<>();
+    private final Map<UUID, NPC> npcThisTick = new HashMap<>();
+    private int resolveCacheTaskId = -1;
+    private long resolveHits = 0;
+    private long resolveMisses = 0;
+
+    // Per-world merc counts for the spawner caps: world UID -> {alive, wild}, with each tracked
+    // merc's current contribution so track/untrack/state/world changes can adjust them in O(1).
+    private final Map<UUID, int[]> mercCountsByWorld = new HashMap<>();
+    private final Map<UUID, CountedMerc> countedMercs = new HashMap<>();
+
+    // Where each of our NPCs was last seen, persisted so chunk loads/restarts can adopt without scanning
+    private static final String NPC_CHUNK_INDEX_FILE = "npc-chunks.yml";
+    private final NpcChunkIndex npcChunkIndex = new NpcChunkIndex();
+
+    // Membership indexes so owner commands/events and faction calls only visit the mercs they concern.
+    // Tame mercs are indexed under their owner and co-owners; wild mercs under their color.
+    private final Map<UUID, Set<UUID>> mercsByController = new HashMap<>();
+    private final Map<UUID, Set<UUID>> controllersOfMerc = new HashMap<>();
+    private final Map<MercColor, Set<UUID>> wildMercsByColor = new EnumMap<>(MercColor.class);
+    private final Map<UUID, MercColor> wildColorOfMerc = new HashMap<>();
+
     // -------------------------------------------------------------------------
     // Tasks
     // -------------------------------------------------------------------------
@@ -117,6 +187,43 @@ public final class MercMobs extends JavaPlugin implements Listener {
     private int enforceTaskId = -1;
     private int adoptTaskId = -1;
 
+    // -------------------------------------------------------------------------
+    // AI scheduling: one pass per tick over a ring of merc UUIDs, each merc due
+    // on its own (staggered, LOD-scaled) tick, capped by ai.tickBudgetMs
+    // -------------------------------------------------------------------------
+    private final List<UUID> aiRing = new ArrayList<>();
+    private final Map<UUID, Long> aiNextTick = new HashMap<>();
+    private int aiCursor = 0;
+    private long aiTick = 0L;
+    private long aiRingBuiltTick = Long.MIN_VALUE;
+    private final AiPerf aiPerf = new AiPerf(1200);
+
+    // Combat path: settings snapshot rebuilt on enable/reload, per-merc state keyed by entity UUID,
+    // and two reusable Locations for the range checks (main thread only).
+    private CombatSettings combatSettings;
+    private final Map<UUID, CombatState> combatByEntity = new HashMap<>();
+    private final Location combatLocA = new Location(null, 0, 0, 0);
+    private final Location combatLocB = new Location(null, 0, 0, 0);
+
+    // -------------------------------------------------------------------------
+    // Spawn planning: standable surface points per loaded chunk (scanned off-thread from chunk
+    // snapshots) and a queue that creates the planned NPCs a few per tick
+    // -------------------------------------------------------------------------
+    private final Map<UUID, Map<Long, SurfaceChunk>> surfaceByWorld = new HashMap<>();
+    private final Map<UUID, Set<Long>> surfaceScansPending = new HashMap<>();
+    private final ArrayDeque<PendingSpawn> spawnQueue = new ArrayDeque<>();
+    private final Map<UUID, Integer> queuedSpawnsByWorld = new HashMap<>();
+    private int spawnDrainTaskId = -1;
+    private long surfaceScans = 0;
+    private volatile long surfaceScanNanos = 0;
+    private long spawnsQueued = 0;
+    private long spawnsDone = 0;
+    private long spawnsDropped = 0;
+
+    // Combat target candidates (hostile mobs + tracked mercs) hashed per world, shared by every merc's
+    // hostile/faction search instead of one getNearbyEntities box query per merc per AI step.
+    private final TargetGrid targetGrid = new TargetGrid(le -> le instanceof Monster || npcIdByEntity.containsKey(le.getUniqueId()));
+
     // -------------------------------------------------------------------------
     // Enums
     // -------------------------------------------------------------------------
@@ -135,6 +242,422 @@ public final class MercMobs extends JavaPlugin implements Listener {
         }
     }
 
+    /** A spawn marker. markers.yml gives no Y (0); spawns take Y from the spawn planner's surface points. */
+    private static final class MarkerPoint {
+        final double x;
+        final double y;
+        final double z;
+        MarkerPoint(double x, double y, double z) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        /**
+         * Origin for pickLocationNear, which reads only x/z and takes Y from scanned surface points,
+         * so the marker's chunk is never touched here.
+         */
+        Location toPlannerOrigin(World world) {
+            return new Location(world, x, y, z);
+        }
+    }
+
+    /** Immutable world name -> markers view, swapped in whole whenever a source is re-read. */
+    private static final class MarkerSnapshot {
+        static final MarkerSnapshot EMPTY = new MarkerSnapshot(Collections.emptyMap());
+
+        final Map<String, MarkerPoint[]> byWorld;
+        final int total;
+
+        MarkerSnapshot(Map<String, List<MarkerPoint>> lists) {
+            Map<String, MarkerPoint[]> m = new HashMap<>();
+            int n = 0;
+            for (Map.Entry<String, List<MarkerPoint>> e : lists.entrySet()) {
+                m.put(e.getKey(), e.getValue().toArray(new MarkerPoint[0]));
+                n += e.getValue().size();
+            }
+            this.byWorld = Collections.unmodifiableMap(m);
+            this.total = n;
+        }
+    }
+
+    /** One open mapping/sequence while streaming markers.yml: the key it was opened under, and for mappings the key awaiting a value. */
+    private static final class YamlFrame {
+        final boolean mapping;
+        final String key;
+        String pendingKey = null;
+        Map<String, String> fields = null; // only for marker mappings
+        YamlFrame(boolean mapping, String key) {
+            this.mapping = mapping;
+            this.key = key;
+        }
+    }
+
+    /** Feet positions (lx | lz << 4 | (y - minY) << 8) with solid ground and two blocks of air above. */
+    private static final class SurfaceChunk {
+        final int[] points;
+        final int baseX;
+        final int baseZ;
+        final int minY;
+        final long builtAtMs;
+        SurfaceChunk(int[] points, int baseX, int baseZ, int minY, long builtAtMs) {
+            this.points = points;
+            this.baseX = baseX;
+            this.baseZ = baseZ;
+            this.minY = minY;
+            this.builtAtMs = builtAtMs;
+        }
+    }
+
+    private static final class PendingSpawn {
+        final MercType type;
+        final MercColor color;
+        final UUID worldId;
+        final double x, y, z;
+        final boolean bowman;
+        PendingSpawn(MercType type, MercColor color, Location loc, boolean bowman) {
+            this.type = type;
+            this.color = color;
+            this.worldId = loc.getWorld().getUID();
+            this.x = loc.getX();
+            this.y = loc.getY();
+            this.z = loc.getZ();
+            this.bowman = bowman;
+        }
+    }
+
+    /**
+     * Persistent NPC id -> chunk index (sidecar YAML next to config.yml). Chunk loads only look up the
+     * NPCs recorded for that chunk, and the startup adopt pass only visits recorded ids, instead of
+     * asking Citizens about every entity in every loaded chunk or walking the whole NPC registry.
+     * <p>
+     * Dirty changes are saved at most once a minute, so the file records whether it was written by a
+     * clean shutdown. After a crash it may be missing NPCs spawned or moved since the last save; it
+     * then loads unseeded and the startup adopt pass does one full registry walk again.
+     * <p>
+     * MercMobs and IndevMobs each build from a single source file, so both carry this class; keep the
+     * two copies identical.
+     */
+    private static final class NpcChunkIndex {
+        private static final long SAVE_INTERVAL_MS = 60_000L;
+
+        private final Map<Integer, String> chunkOfNpc = new HashMap<>();
+        private final Map<String, Set<Integer>> npcsInChunk = new HashMap<>();
+        private File file;
+        private Logger logger;
+        private boolean seeded = false; // trusted from a clean shutdown, or filled by a full registry walk
+        private boolean dirty = false;
+        private long savedAtMs = 0L;
+
+        static String chunkId(String worldName, int cx, int cz) {
+            return worldName + "," + cx + "," + cz;
+        }
+
+        void put(int npcId, Location loc) {
+            if (loc == null || loc.getWorld() == null) return;
+            String chunk = chunkId(loc.getWorld().getName(), loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+            String prev = chunkOfNpc.put(npcId, chunk);
+            if (chunk.equals(prev)) return;
+            if (prev != null) removeFromChunk(prev, npcId);
+            npcsInChunk.computeIfAbsent(chunk, k -> new HashSet<>()).add(npcId);
+            dirty = true;
+        }
+
+        void remove(int npcId) {
+            String prev = chunkOfNpc.remove(npcId);
+            if (prev == null) return;
+            removeFromChunk(prev, npcId);
+            dirty = true;
+        }
+
+        private void removeFromChunk(String chunk, int npcId) {
+            Set<Integer> ids = npcsInChunk.get(chunk);
+            if (ids != null && ids.remove(npcId) && ids.isEmpty()) npcsInChunk.remove(chunk);
+        }
+
+        List<Integer> idsIn(Chunk chunk) {
+            Set<Integer> ids = npcsInChunk.get(chunkId(chunk.getWorld().getName(), chunk.getX(), chunk.getZ()));
+            return (ids == null) ? Collections.emptyList() : new ArrayList<>(ids);
+        }
+
+        List<Integer> allIds() {
+            return new ArrayList<>(chunkOfNpc.keySet());
+        }
+
+        int size() {
+            return chunkOfNpc.size();
+        }
+
+        boolean isSeeded() {
+            return seeded;
+        }
+
+        /** Called once the full registry walk has filled the index. */
+        void markSeeded() {
+            seeded = true;
+            save(false);
+        }
+
+        void load(File file, Logger logger) {
+            this.file = file;
+            this.logger = logger;
+            chunkOfNpc.clear();
+            npcsInChunk.clear();
+            dirty = false;
+            seeded = false;
+            if (!file.isFile()) return;
+
+            YamlConfiguration yc = YamlConfiguration.loadConfiguration(file);
+            ConfigurationSection npcs = yc.getConfigurationSection("npcs");
+            if (npcs != null) {
+                for (String key : npcs.getKeys(false)) {
+                    String chunk = npcs.getString(key, null);
+                    if (chunk == null) continue;
+                    try {
+                        int id = Integer.parseInt(key);
+                        chunkOfNpc.put(id, chunk);
+                        npcsInChunk.computeIfAbsent(chunk, k -> new HashSet<>()).add(id);
+                    } catch (NumberFormatException ignored) {}
+                }
+            }
+
+            // Entries from a crashed run are still used for chunk loads, but don't replace the walk
+            seeded = yc.getBoolean("cleanShutdown", false);
+            // From here on, a crash must not leave behind a file that claims to be complete
+            if (seeded) save(false);
+        }
+
+        void saveIfDue(long nowMs) {
+            if (dirty && nowMs - savedAtMs >= SAVE_INTERVAL_MS) save(false);
+        }
+
+        /** On disable: the file is only marked complete if the index was. */
+        void close() {
+            save(seeded);
+        }
+
+        private void save(boolean cleanShutdown) {
+            if (file == null) return;
+            savedAtMs = System.currentTimeMillis();
+            YamlConfiguration yc = new YamlConfiguration();
+            for (Map.Entry<Integer, String> e : chunkOfNpc.entrySet()) {
+                yc.set("npcs." + e.getKey(), e.getValue());
+            }
+            yc.set("cleanShutdown", cleanShutdown);
+            try {
+                yc.save(file);
+                dirty = false;
+            } catch (IOException ex) {
+                logger.warning("Failed to save " + file.getName() + ": " + ex.getMessage());
+            }
+        }
+    }
+
+    /** What a tracked merc currently adds to mercCountsByWorld. */
+    private static final class CountedMerc {
+        final UUID worldId;
+        final boolean wild;
+        CountedMerc(UUID worldId, boolean wild) {
+            this.worldId = worldId;
+            this.wild = wild;
+        }
+    }
+
+    /**
+     * Per-world spatial hash of living entities that pass a filter, rebuilt from World#getLivingEntities
+     * at most once per maxAgeTicks. Positions are a snapshot: callers re-check distance/validity on the
+     * live entity. Only depends on the Bukkit API, so it can be dropped into other plugins as-is.
+     */
+    private static final class TargetGrid {
+        private static final int CELL_SHIFT = 4; // 16-block cells
+
+        private final Predicate<LivingEntity> include;
+        private final Map<UUID, Map<Long, List<LivingEntity>>> cellsByWorld = new HashMap<>();
+        private final Map<UUID, Long> builtAtTick = new HashMap<>();
+        long rebuilds = 0;
+        long rebuildNanos = 0;
+        long queries = 0;
+        long candidates = 0;
+
+        TargetGrid(Predicate<LivingEntity> include) {
+            this.include = include;
+        }
+
+        private static long cellKey(int cx, int cz) {
+            return (((long) cx) << 32) ^ (cz & 0xffffffffL);
+        }
+
+        /** Adds every entity whose snapshot cell overlaps the range box around center to out. */
+        void collectNear(Location center, double range, long tick, int maxAgeTicks, List<LivingEntity> out) {
+            World world = center.getWorld();
+            if (world == null) return;
+            UUID worldId = world.getUID();
+            Long built = builtAtTick.get(worldId);
+            if (built == null || tick - built >= maxAgeTicks || tick < built) rebuild(world, tick);
+
+            Map<Long, List<LivingEntity>> cells = cellsByWorld.get(worldId);
+            queries++;
+            if (cells == null || cells.isEmpty()) return;
+
+            int minX = ((int) Math.floor(center.getX() - range)) >> CELL_SHIFT;
+            int maxX = ((int) Math.floor(center.getX() + range)) >> CELL_SHIFT;
+            int minZ = ((int) Math.floor(center.getZ() - range)) >> CELL_SHIFT;
+            int maxZ = ((int) Math.floor(center.getZ() + range)) >> CELL_SHIFT;
+            for (int cx = minX; cx <= maxX; cx++) {
+                for (int cz = minZ; cz <= maxZ; cz++) {
+                    List<LivingEntity> cell = cells.get(cellKey(cx, cz));
+                    if (cell == null) continue;
+                    out.addAll(cell);
+                    candidates += cell.size();
+                }
+            }
+        }
+
+        private void rebuild(World world, long tick) {
+            long t0 = System.nanoTime();
+            Map<Long, List<LivingEntity>> cells = new HashMap<>();
+            for (LivingEntity le : world.getLivingEntities()) {
+                if (!include.test(le)) continue;
+                Location l = le.getLocation();
+                cells.computeIfAbsent(cellKey(l.getBlockX() >> CELL_SHIFT, l.getBlockZ() >> CELL_SHIFT),
+                        k -> new ArrayList<>()).add(le);
+            }
+            cellsByWorld.put(world.getUID(), cells);
+            builtAtTick.put(world.getUID(), tick);
+            rebuilds++;
+            rebuildNanos += System.nanoTime() - t0;
+        }
+
+        /** Drops snapshots for worlds nobody queries any more (unloaded, or no mercs left). */
+        void retainWorlds(Set<UUID> worldIds) {
+            cellsByWorld.keySet().retainAll(worldIds);
+            builtAtTick.keySet().retainAll(worldIds);
+        }
+
+        void clear() {
+            cellsByWorld.clear();
+            builtAtTick.clear();
+        }
+
+        void resetCounters() {
+            rebuilds = 0;
+            rebuildNanos = 0;
+            queries = 0;
+            candidates = 0;
+        }
+    }
+
+    /** Rolling AI tick cost (last N ticks that did any work) plus LOD/budget counters for /mercs perf. */
+    private static final class AiPerf {
+        final long[] tickNanos;
+        int count = 0;
+        int next = 0;
+        long mercTicks = 0;
+        long deferred = 0;
+        long lodNear = 0;
+        long lodMid = 0;
+        long lodFar = 0;
+        long workTicks = 0;
+        long combatSteps = 0;
+        long combatNanos = 0;
+        long combatMaxNanos = 0;
+
+        AiPerf(int window) {
+            tickNanos = new long[window];
+        }
+
+        void recordTick(long nanos, int processed, int deferredNow) {
+            tickNanos[next] = nanos;
+            next = (next + 1) % tickNanos.length;
+            if (count < tickNanos.length) count++;
+            mercTicks += processed;
+            deferred += deferredNow;
+            workTicks++;
+        }
+
+        /** {avg, p99, max} in ms over the window. */
+        double[] summary() {
+            if (count == 0) return new double[]{0, 0, 0};
+            long[] sorted = Arrays.copyOf(tickNanos, count);
+            Arrays.sort(sorted);
+            long sum = 0;
+            for (long n : sorted) sum += n;
+            int p99 = Math.min(count - 1, (int) Math.ceil(count * 0.99) - 1);
+            return new double[]{sum / 1_000_000.0 / count, sorted[p99] / 1_000_000.0, sorted[count - 1] / 1_000_000.0};
+        }
+
+        void reset() {
+            count = 0;
+            next = 0;
+            mercTicks = 0;
+            deferred = 0;
+            lodNear = 0;
+            lodMid = 0;
+            lodFar = 0;
+            workTicks = 0;
+            combatSteps = 0;
+            combatNanos = 0;
+            combatMaxNanos = 0;
+        }
+
+        /** One handleAttacks call, timed in place on live mercs; this is the combat-step cost /mercs perf reports. */
+        void recordCombatStep(long nanos) {
+            combatSteps++;
+            combatNanos += nanos;
+            if (nanos > combatMaxNanos) combatMaxNanos = nanos;
+        }
+    }
+
+    /** combat.* and greenTnt.* settings, clamped and squared once per (re)load instead of per AI step. */
+    private static final class CombatSettings {
+        final double hostileRange;
+        final double factionRange;
+        final double meleeRangeSq;
+        final long meleeCooldownMs;
+        final double bowRangeSq;
+        final long bowCooldownMs;
+        final boolean tntExplosive;
+        final double tntTriggerSq;
+        final double tntCancelSq;
+        final long tntFuseMs;
+        final float tntPower;
+        final boolean tntDamageEntities;
+        final boolean tntGriefAlways;
+        final boolean tntGriefPlayers;
+
+        CombatSettings(FileConfiguration cfg) {
+            hostileRange = Math.max(6.0, cfg.getDouble("combat.hostileEngageRange", 14.0));
+            factionRange = Math.max(6.0, cfg.getDouble("combat.factionEngageRange", 14.0));
+            double melee = Math.max(2.0, cfg.getDouble("combat.meleeRange", 2.6));
+            meleeRangeSq = melee * melee;
+            meleeCooldownMs = Math.max(5, cfg.getInt("combat.meleeCooldownTicks", 20)) * 50L;
+            double bow = Math.max(6.0, cfg.getDouble("combat.bowRange", 18.0));
+            bowRangeSq = bow * bow;
+            bowCooldownMs = Math.max(5, cfg.getInt("combat.bowCooldownTicks", 25)) * 50L;
+
+            tntExplosive = cfg.getBoolean("greenTnt.explosiveCombat", true);
+            double trigger = cfg.getDouble("greenTnt.triggerRange", 3.0);
+            double cancel = cfg.getDouble("greenTnt.cancelRange", 4.5);
+            tntTriggerSq = trigger * trigger;
+            tntCancelSq = cancel * cancel;
+            tntFuseMs = Math.max(10, cfg.getInt("greenTnt.fuseTicks", 30)) * 50L;
+            tntPower = (float) Math.max(0.0, Math.min(12.0, cfg.getDouble("greenTnt.explosion.power", 3.0)));
+            tntDamageEntities = cfg.getBoolean("greenTnt.explosion.damageEntities", true);
+            String grief = String.valueOf(cfg.getString("greenTnt.explosion.griefingMode", "PLAYER_ONLY")).trim().toUpperCase(Locale.ROOT);
+            tntGriefAlways = grief.equals("INCLUDE_NON_PLAYER");
+            tntGriefPlayers = grief.equals("PLAYER_ONLY");
+        }
+    }
+
+    /** Per-merc combat scratch state; in memory only, dropped when the merc is untracked. */
+    private static final class CombatState {
+        long lastMeleeMs = Long.MIN_VALUE / 2;
+        long lastBowMs = Long.MIN_VALUE / 2;
+        long fuseStartMs = 0L;       // 0 = not fusing
+        UUID assistTarget;
+        long assistUntilMs = 0L;
+    }
+
     // -------------------------------------------------------------------------
     // Enable/Disable
     // -------------------------------------------------------------------------
@@ -146,6 +669,7 @@ public final class MercMobs extends JavaPlugin implements Listener {
         pdcStateKey = new NamespacedKey(this, "mercmobs_state");
 
         ensureConfigDefaults();     // writes config.yml even with no embedded resource
+        combatSettings = new CombatSettings(getConfig());
         ensureSkinFolder();
         loadSkinCacheFromConfig();
 
@@ -159,17 +683,23 @@ public final class MercMobs extends JavaPlugin implements Listener {
 
         initDynmap();
 
+        npcChunkIndex.load(new File(getDataFolder(), NPC_CHUNK_INDEX_FILE), getLogger());
+
         Bukkit.getPluginManager().registerEvents(this, this);
 
+        skinUploader = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, getConfig().getInt("skins.uploadQueueMax", 32))), r -> {
+            Thread t = new Thread(r, "MercMobs-MineSkin");
+            t.setDaemon(true);
+            return t;
+        });
         if (getConfig().getBoolean("skins.preloadOnEnable", true)) {
-            Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
-                for (String skinKey : getAllSkinKeys()) {
-                    ensureSkinLoaded(skinKey);
-                }
-                getLogger().info("MineSkin preload complete. Cached skins: " + skinCache.keySet());
-            });
+            for (String skinKey : getAllSkinKeys()) {
+                queueSkinUpload(skinKey);
+            }
         }
 
+        resolveCacheTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, this::clearResolveCache, 1L, 1L);
         startSpawner();
         startAiLoop();
         startEnforceLoop();
@@ -184,11 +714,36 @@ public final class MercMobs extends JavaPlugin implements Listener {
         stopTask(enforceTaskId); enforceTaskId = -1;
         stopTask(adoptTaskId); adoptTaskId = -1;
         stopTask(dynmapRefreshTaskId); dynmapRefreshTaskId = -1;
+        stopTask(resolveCacheTaskId); resolveCacheTaskId = -1;
+        stopTask(spawnDrainTaskId); spawnDrainTaskId = -1;
 
+        npcChunkIndex.close();
         npcIdByEntity.clear();
         typeByEntity.clear();
-        dynmapSpawnMarkers.clear();
+        clearResolveCache();
+        mercCountsByWorld.clear();
+        countedMercs.clear();
+        combatByEntity.clear();
+        targetGrid.clear();
+        surfaceByWorld.clear();
+        surfaceScansPending.clear();
+        spawnQueue.clear();
+        queuedSpawnsByWorld.clear();
+        mercsByController.clear();
+        controllersOfMerc.clear();
+        wildMercsByColor.clear();
+        wildColorOfMerc.clear();
+        apiMarkers = null;
+        fileMarkers = MarkerSnapshot.EMPTY;
+        markersFileHash = null;
+        markersFileMtime = -1L;
+        if (skinUploader != null) {
+            skinUploader.shutdownNow();
+            skinUploader = null;
+        }
+        skinUploadsQueued.clear();
         skinCache.clear();
+        textureByPngHash.clear();
     }
 
     private void stopTask(int id) {
@@ -211,6 +766,9 @@ public final class MercMobs extends JavaPlugin implements Listener {
         cfg.addDefault("spawning.spawnRadiusBlocks", 96);
         cfg.addDefault("spawning.minDistanceFromPlayer", 24.0);
         cfg.addDefault("spawning.locationTries", 12);
+        cfg.addDefault("spawning.maxSpawnsPerTick", 1);
+        cfg.addDefault("spawning.planner.surfaceCacheSeconds", 120);
+        cfg.addDefault("spawning.planner.scansPerAttempt", 4);
 
         cfg.addDefault("spawning.maxPerWorld", 24);
         cfg.addDefault("spawning.maxWildPerWorld", 24);
@@ -270,6 +828,15 @@ public final class MercMobs extends JavaPlugin implements Listener {
         cfg.addDefault("combat.bowRange", 18.0);
         cfg.addDefault("combat.bowCooldownTicks", 25);
 
+        // AI scheduling (each merc runs every periodTicks near players, less often farther out)
+        cfg.addDefault("ai.periodTicks", 10);
+        cfg.addDefault("ai.tickBudgetMs", 2.0);
+        cfg.addDefault("ai.lod.nearRadius", 48.0);
+        cfg.addDefault("ai.lod.farRadius", 128.0);
+        cfg.addDefault("ai.lod.midMultiplier", 3);
+        cfg.addDefault("ai.lod.farMultiplier", 8);
+        cfg.addDefault("ai.targetGridMaxAgeTicks", 5);
+
         // Taming
         cfg.addDefault("taming.ironChance", 0.35);
         cfg.addDefault("taming.goldChance", 0.45);
@@ -302,6 +869,8 @@ public final class MercMobs extends JavaPlugin implements Listener {
         cfg.addDefault("skins.variant", "classic");
         cfg.addDefault("skins.visibility", "unlisted");
         cfg.addDefault("skins.localFolderName", "skins");
+        cfg.addDefault("skins.mineskinEndpoint", "https://api.mineskin.org/generate/upload");
+        cfg.addDefault("skins.uploadQueueMax", 32);
 
         // Skin files (placed under plugins/MercMobs/skins/)
         // Normal mercs (3 states)
@@ -369,14 +938,14 @@ public final class MercMobs extends JavaPlugin implements Listener {
     }
 
     // -------------------------------------------------------------------------
-    // Commands: /mercs <stop|follow|patrol|reload|status>
+    // Commands: /mercs <stop|follow|patrol|reload|status|perf>
     // -------------------------------------------------------------------------
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
         if (!command.getName().equalsIgnoreCase("mercs")) return false;
 
         if (args.length == 0) {
-            sender.sendMessage("Usage: /mercs <stop|follow|patrol|share|unshare|spawn|reload|status>");
+            sender.sendMessage("Usage: /mercs <stop|follow|patrol|share|unshare|spawn|reload|status|perf>");
             return true;
         }
 
@@ -384,6 +953,7 @@ public final class MercMobs extends JavaPlugin implements Listener {
 
         if (sub.equals("reload")) {
             reloadConfig();
+            combatSettings = new CombatSettings(getConfig());
             ensureSkinFolder();
             loadSkinCacheFromConfig();
             initDynmap();
@@ -394,13 +964,55 @@ public final class MercMobs extends JavaPlugin implements Listener {
         if (sub.equals("status")) {
             sender.sendMessage("MercMobs v" + getDescription().getVersion());
             sender.sendMessage("Citizens: " + (citizensAvailable ? "OK" : "MISSING"));
-            sender.sendMessage("Dynmap markers: " + ((dynmapAvailable || dynmapFileMarkersAvailable) ? ("OK (" + dynmapSpawnMarkers.size() + ")") : "MISSING/DISABLED"));
+            sender.sendMessage("Dynmap markers: " + ((dynmapAvailable || dynmapFileMarkersAvailable) ? ("OK (" + currentMarkers().total + ")") : "MISSING/DISABLED"));
+            sender.sendMessage(String.format(Locale.ROOT, "markers.yml: %d markers, last parse %.1fms, unchanged skips %d (stat) / %d (hash)",
+                    fileMarkers.total, markersIngestNanos / 1_000_000.0, markersSkippedByStat, markersSkippedByHash));
             sender.sendMessage("Tracked merc entities (alive): " + countAliveTracked());
+            for (World w : Bukkit.getWorlds()) {
+                int[] c = mercCountsByWorld.get(w.getUID());
+                if (c != null) sender.sendMessage("  " + w.getName() + ": " + c[0] + " alive, " + c[1] + " wild");
+            }
+            sender.sendMessage("NPC chunk index: " + npcChunkIndex.size() + " NPCs" + (npcChunkIndex.isSeeded() ? "" : " (not seeded yet)"));
+            sender.sendMessage("Entity/NPC lookups this session: " + resolveHits + " cached, " + resolveMisses + " resolved");
             sender.sendMessage("Skin cache keys: " + skinCache.keySet());
+            sender.sendMessage(skinUploadStatusLine());
             sender.sendMessage("Skins folder: " + getSkinDirectory().getPath());
             return true;
         }
 
+        if (sub.equals("perf")) {
+            if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+                aiPerf.reset();
+                targetGrid.resetCounters();
+                sender.sendMessage("MercMobs AI perf counters reset.");
+                return true;
+            }
+            double[] ms = aiPerf.summary();
+            sender.sendMessage("AI ring: " + aiRing.size() + " mercs, period " + getConfig().getInt("ai.periodTicks", 10)
+                    + " ticks, budget " + getConfig().getDouble("ai.tickBudgetMs", 2.0) + "ms/tick");
+            sender.sendMessage(String.format(Locale.ROOT, "AI tick cost (last %d busy ticks): avg %.3fms, p99 %.3fms, max %.3fms",
+                    aiPerf.count, ms[0], ms[1], ms[2]));
+            sender.sendMessage(String.format(Locale.ROOT, "Merc AI steps: %d over %d ticks (%.1f/tick), deferred by budget: %d",
+                    aiPerf.mercTicks, aiPerf.workTicks,
+                    aiPerf.workTicks == 0 ? 0.0 : aiPerf.mercTicks / (double) aiPerf.workTicks, aiPerf.deferred));
+            sender.sendMessage("LOD near/mid/far: " + aiPerf.lodNear + "/" + aiPerf.lodMid + "/" + aiPerf.lodFar);
+            sender.sendMessage(String.format(Locale.ROOT, "Combat step: %d calls, avg %.1fus, max %.1fus (%d mercs with combat state)",
+                    aiPerf.combatSteps,
+                    aiPerf.combatSteps == 0 ? 0.0 : aiPerf.combatNanos / 1_000.0 / aiPerf.combatSteps,
+                    aiPerf.combatMaxNanos / 1_000.0, combatByEntity.size()));
+            sender.sendMessage(String.format(Locale.ROOT, "Target grid: %d rebuilds (avg %.3fms), %d queries, %.1f candidates/query",
+                    targetGrid.rebuilds,
+                    targetGrid.rebuilds == 0 ? 0.0 : targetGrid.rebuildNanos / 1_000_000.0 / targetGrid.rebuilds,
+                    targetGrid.queries,
+                    targetGrid.queries == 0 ? 0.0 : targetGrid.candidates / (double) targetGrid.queries));
+            int surfaceChunks = 0;
+            for (Map<Long, SurfaceChunk> m : surfaceByWorld.values()) surfaceChunks += m.size();
+            sender.sendMessage(String.format(Locale.ROOT, "Spawn planner: %d surface chunks, %d scans (avg %.3fms off-thread), queue %d, spawned %d, dropped %d of %d queued",
+                    surfaceChunks, surfaceScans, surfaceScans == 0 ? 0.0 : surfaceScanNanos / 1_000_000.0 / surfaceScans,
+                    spawnQueue.size(), spawnsDone, spawnsDropped, spawnsQueued));
+            return true;
+        }
+
         if (!(sender instanceof Player)) {
             sender.sendMessage("Player-only command.");
             return true;
@@ -476,7 +1088,7 @@ Location base = snapToSurface(player.getLocation());
 						bowman = forceBowman;
 					} else {
 						// Default spawn behavior: TNT only becomes "bowman" if explosiveCombat is disabled.
-						bowman = (type != MercType.GREEN_TNT || !getConfig().getBoolean("greenTnt.explosiveCombat", true))
+						bowman = (type != MercType.GREEN_TNT || !combatSettings.tntExplosive)
 								&& (Math.random() < clamp01(getConfig().getDouble("spawning.bowmanChance", 0.15)));
 					}
 	
@@ -550,7 +1162,7 @@ MercMode requested;
         else if (sub.equals("follow")) requested = MercMode.FOLLOW;
         else if (sub.equals("patrol")) requested = MercMode.PATROL;
         else {
-            sender.sendMessage("Usage: /mercs <stop|follow|patrol|share|unshare|spawn|reload|status>");
+            sender.sendMessage("Usage: /mercs <stop|follow|patrol|share|unshare|spawn|reload|status|perf>");
             return true;
         }
 
@@ -856,8 +1468,8 @@ private void callSameColorMercs(Location center, MercColor color, double radius,
         if (center == null || center.getWorld() == null) return;
         double r2 = radius * radius;
 
-        for (UUID uuid : new ArrayList<>(npcIdByEntity.keySet())) {
-            Entity e = Bukkit.getEntity(uuid);
+        for (UUID uuid : wildMercsOfColor(color)) {
+            Entity e = resolveEntity(uuid);
             if (!(e instanceof LivingEntity)) continue;
             if (!e.getWorld().equals(center.getWorld())) continue;
             if (e.getLocation().distanceSquared(center) > r2) continue;
@@ -888,8 +1500,8 @@ private void callOwnedMercsAssist(Player owner, UUID targetEntityUuid) {
 
     long untilMs = System.currentTimeMillis() + 10_000L; // 10s assist window
 
-    for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
-        Entity ent = Bukkit.getEntity(entId);
+    for (UUID entId : mercsControlledBy(owner.getUniqueId())) {
+        Entity ent = resolveEntity(entId);
         if (!(ent instanceof LivingEntity le) || le.isDead() || !le.isValid()) continue;
 
         NPC npc = getNpcByEntityUuid(entId);
@@ -908,8 +1520,9 @@ private void callOwnedMercsAssist(Player owner, UUID targetEntityUuid) {
         if (!ent.getWorld().equals(owner.getWorld())) continue;
         if (ent.getLocation().distanceSquared(owner.getLocation()) > hear2) continue;
 
-        npc.data().set(CIT_KEY_ASSIST_TARGET, targetEntityUuid.toString());
-        npc.data().set(CIT_KEY_ASSIST_UNTIL_MS, untilMs);
+        CombatState st = combatState(entId);
+        st.assistTarget = targetEntityUuid;
+        st.assistUntilMs = untilMs;
         setLastCombatNow(npc);
 
         // If following/patrolling, pursue immediately
@@ -929,18 +1542,14 @@ private void callOwnedMercsAssist(Player owner, UUID targetEntityUuid) {
 
 private LivingEntity getAssistTargetIfAny(NPC npc, LivingEntity attacker) {
     if (npc == null || attacker == null) return null;
-    Object untilObj = npc.data().get(CIT_KEY_ASSIST_UNTIL_MS);
-    Object targetObj = npc.data().get(CIT_KEY_ASSIST_TARGET);
-    if (untilObj == null || targetObj == null) return null;
-
-    long untilMs;
-    try { untilMs = Long.parseLong(untilObj.toString()); } catch (Throwable t) { return null; }
-    if (System.currentTimeMillis() > untilMs) return null;
-
-    UUID targetUuid;
-    try { targetUuid = UUID.fromString(targetObj.toString()); } catch (Throwable t) { return null; }
+    CombatState st = combatByEntity.get(attacker.getUniqueId());
+    if (st == null || st.assistTarget == null) return null;
+    if (System.currentTimeMillis() > st.assistUntilMs) {
+        st.assistTarget = null;
+        return null;
+    }
 
-    Entity e = Bukkit.getEntity(targetUuid);
+    Entity e = resolveEntity(st.assistTarget);
     if (!(e instanceof LivingEntity le)) return null;
     if (le.isDead() || !le.isValid()) return null;
     if (!le.getWorld().equals(attacker.getWorld())) return null;
@@ -1150,8 +1759,8 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
 
 
     private void autoDefendOwnedMercs(UUID ownerUuid, String allowedBaseGroupOrNull) {
-        for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
-            Entity e = Bukkit.getEntity(entId);
+        for (UUID entId : mercsControlledBy(ownerUuid)) {
+            Entity e = resolveEntity(entId);
             NPC npc = getNpcByEntityUuid(entId);
             if (npc == null || e == null) continue;
             if (!isOurNpc(npc, e)) continue;
@@ -1196,9 +1805,35 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
         try { reg = CitizensAPI.getNPCRegistry(); } catch (Throwable t) { return; }
         if (reg == null) return;
 
-        for (NPC npc : reg) {
-            if (npc == null) continue;
-            if (!npc.isSpawned()) continue;
+        if (!npcChunkIndex.isSeeded()) {
+            // No index on disk yet (first run / deleted): one full registry walk fills it
+            for (NPC npc : reg) {
+                if (npc == null) continue;
+                if (!npc.isSpawned()) {
+                    // Sleeping in an unloaded chunk: index where Citizens stored it so its chunk load adopts it
+                    try {
+                        Object marker = npc.data().get(CIT_KEY_MERCMOBS);
+                        if (marker instanceof Boolean && (Boolean) marker) npcChunkIndex.put(npc.getId(), npc.getStoredLocation());
+                    } catch (Throwable ignored) {}
+                    continue;
+                }
+                Entity ent = npc.getEntity();
+                if (ent == null) continue;
+
+                if (!isOurNpc(npc, ent)) continue;
+                adoptNpc(npc, ent);
+            }
+            npcChunkIndex.markSeeded();
+            return;
+        }
+
+        for (int id : npcChunkIndex.allIds()) {
+            NPC npc = reg.getById(id);
+            if (npc == null) {
+                npcChunkIndex.remove(id); // removed outside of MercMobs
+                continue;
+            }
+            if (!npc.isSpawned()) continue; // its chunk load adopts it
             Entity ent = npc.getEntity();
             if (ent == null) continue;
 
@@ -1210,17 +1845,23 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
     private void adoptNpcsInChunk(Chunk chunk) {
         if (!citizensAvailable) return;
         try {
-            for (Entity ent : chunk.getEntities()) {
-                if (ent == null) continue;
-                NPC npc = getNpcForEntity(ent);
-                if (npc == null) continue;
+            NPCRegistry reg = CitizensAPI.getNPCRegistry();
+            for (int id : npcChunkIndex.idsIn(chunk)) {
+                NPC npc = reg.getById(id);
+                if (npc == null) {
+                    npcChunkIndex.remove(id);
+                    continue;
+                }
                 if (!npc.isSpawned()) continue;
+                Entity ent = npc.getEntity();
+                if (ent == null || npcIdByEntity.containsKey(ent.getUniqueId())) continue;
                 if (!isOurNpc(npc, ent)) continue;
                 adoptNpc(npc, ent);
             }
         } catch (Throwable ignored) {}
     }
 
+
     private void adoptNpc(NPC npc, Entity ent) {
         try { npc.data().setPersistent(CIT_KEY_MERCMOBS, true); } catch (Throwable ignored) {}
 
@@ -1236,8 +1877,7 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
         tagEntity(ent, npc);
 
         // Track
-        npcIdByEntity.put(ent.getUniqueId(), npc.getId());
-        typeByEntity.put(ent.getUniqueId(), npc.data().get(CIT_KEY_TYPE).toString());
+        trackMerc(ent, npc, npc.data().get(CIT_KEY_TYPE).toString());
 
         // Hide nameplate
         hideNameplate(npc, ent);
@@ -1257,10 +1897,12 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
     private void startSpawner() {
         if (!citizensAvailable) return;
         stopTask(spawnTaskId);
+        stopTask(spawnDrainTaskId);
 
         int intervalTicks = Math.max(20, getConfig().getInt("spawning.tickInterval", 200));
         spawnTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> {
             if (!getConfig().getBoolean("enabled", true)) return;
+            pruneSurfaceCache();
 
             for (World world : Bukkit.getWorlds()) {
                 List<String> enabledWorlds = getConfig().getStringList("spawning.enabledWorlds");
@@ -1270,7 +1912,7 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
                 if (players.isEmpty()) continue;
 
                 int maxPerWorld = Math.max(0, getConfig().getInt("spawning.maxPerWorld", 24));
-                int current = countAliveInWorld(world);
+                int current = countAliveInWorld(world) + queuedSpawns(world);
                 if (current >= maxPerWorld) continue;
 
                 int attemptsPerPlayer = Math.max(0, getConfig().getInt("spawning.attemptsPerIntervalPerPlayer", 1));
@@ -1313,12 +1955,14 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
                         if (origin == null) continue;
                         if (origin.distanceSquared(p.getLocation()) < (minDistance * minDistance)) continue;
 
-                        boolean ok = spawnGroup(plan, origin);
-                        if (ok) current++;
+                        current += spawnGroup(plan, origin);
                     }
                 }
             }
         }, intervalTicks, intervalTicks);
+
+        // Planned groups are created from the queue, spawning.maxSpawnsPerTick NPCs per tick at most
+        spawnDrainTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, this::drainSpawnQueue, 1L, 1L);
     }
 
     private static final class SpawnPlan {
@@ -1371,7 +2015,7 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
 			}
 		}
 		if (!allReady) {
-			prepareSkinsForCommandSpawn(type, color); // schedules async ensureSkinLoaded calls
+			prepareSkinsForCommandSpawn(type, color); // queues the missing skins for upload
 		}
 		return allReady;
 	}
@@ -1382,21 +2026,16 @@ public void onMercNpcEntityDeath(EntityDeathEvent event) {
         for (String key : requiredSkinKeysFor(type, color)) {
             String k = key.toLowerCase(Locale.ROOT);
             if (skinCache.containsKey(k)) continue;
-
-            Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
-                try {
-                    ensureSkinLoaded(key);
-                } catch (Throwable ignored) { }
-            });
+            queueSkinUpload(k);
         }
     }
 
 private Location pickSpawnOrigin(World world, Location nearPlayer, int radius) {
         // Prefer dynmap marker proximity sometimes
-        boolean useMarkers = dynmapAvailable
+        boolean useMarkers = (dynmapAvailable || dynmapFileMarkersAvailable)
                 && getConfig().getBoolean("dynmapMarkers.enabled", true)
                 && (Math.random() < clamp01(getConfig().getDouble("dynmapMarkers.useSpawnNearMarkerChance", 0.55)))
-                && !dynmapSpawnMarkers.isEmpty();
+                && currentMarkers().total > 0;
 
         if (useMarkers) {
             Location marker = pickMarkerInWorld(world);
@@ -1412,42 +2051,78 @@ private Location pickSpawnOrigin(World world, Location nearPlayer, int radius) {
     }
 
     private Location pickMarkerInWorld(World world) {
-        synchronized (dynmapSpawnMarkers) {
-            List<Location> candidates = new ArrayList<>();
-            for (Location loc : dynmapSpawnMarkers) {
-                if (loc != null && loc.getWorld() != null && loc.getWorld().getName().equals(world.getName())) {
-                    candidates.add(loc);
-                }
-            }
-            if (candidates.isEmpty()) return null;
-            return candidates.get(randomInt(0, candidates.size() - 1)).clone();
-        }
+        MarkerPoint[] candidates = currentMarkers().byWorld.get(world.getName());
+        if (candidates == null || candidates.length == 0) return null;
+        return candidates[randomInt(0, candidates.length - 1)].toPlannerOrigin(world);
     }
 
-    private boolean spawnGroup(SpawnPlan plan, Location origin) {
-        if (!citizensAvailable) return false;
-        if (origin == null || origin.getWorld() == null) return false;
+    private MarkerSnapshot currentMarkers() {
+        MarkerSnapshot api = apiMarkers;
+        return (api != null) ? api : fileMarkers;
+    }
+
+    /** Queues the group's members around origin (a planned surface point); returns how many were queued. */
+    private int spawnGroup(SpawnPlan plan, Location origin) {
+        if (!citizensAvailable) return 0;
+        if (origin == null || origin.getWorld() == null) return 0;
 
 
         // Natural spawning requires skins; if not ready, skip this spawn group.
-        if (!skinsReadyForNaturalSpawn(plan.type, plan.color)) return false;
+        if (!skinsReadyForNaturalSpawn(plan.type, plan.color)) return 0;
 
+        World world = origin.getWorld();
         int maxWild = Math.max(0, getConfig().getInt("spawning.maxWildPerWorld", 24));
-        if (countWildInWorld(origin.getWorld()) >= maxWild) return false;
+        if (countWildInWorld(world) + queuedSpawns(world) >= maxWild) return 0;
 
-        int spawned = 0;
+        int queued = 0;
         for (int i = 0; i < plan.count; i++) {
-            Location loc = origin.clone().add(randomInt(-3, 3) + 0.5, 0.0, randomInt(-3, 3) + 0.5);
-            loc = snapToSurface(loc);
-            if (loc == null) continue;
+            Location loc = (i == 0) ? origin : nearbySurfacePoint(origin, 3);
 
-            boolean bowman = (plan.type != MercType.GREEN_TNT || !getConfig().getBoolean("greenTnt.explosiveCombat", true))
+            boolean bowman = (plan.type != MercType.GREEN_TNT || !combatSettings.tntExplosive)
                     && (Math.random() < clamp01(getConfig().getDouble("spawning.bowmanChance", 0.15)));
 
-            boolean ok = spawnOne(plan.type, plan.color, loc, bowman);
-            if (ok) spawned++;
+            spawnQueue.add(new PendingSpawn(plan.type, plan.color, loc, bowman));
+            queuedSpawnsByWorld.merge(world.getUID(), 1, Integer::sum);
+            queued++;
+        }
+        spawnsQueued += queued;
+        return queued;
+    }
+
+    private int queuedSpawns(World world) {
+        return queuedSpawnsByWorld.getOrDefault(world.getUID(), 0);
+    }
+
+    private void drainSpawnQueue() {
+        int cap = Math.max(1, getConfig().getInt("spawning.maxSpawnsPerTick", 1));
+        int maxPerWorld = Math.max(0, getConfig().getInt("spawning.maxPerWorld", 24));
+        int maxWild = Math.max(0, getConfig().getInt("spawning.maxWildPerWorld", 24));
+
+        int created = 0;
+        while (created < cap && !spawnQueue.isEmpty()) {
+            PendingSpawn ps = spawnQueue.poll();
+            queuedSpawnsByWorld.computeIfPresent(ps.worldId, (k, v) -> v <= 1 ? null : v - 1);
+
+            // The plan can be several ticks old: the world/chunk may be gone, caps reached, or the block changed
+            World w = Bukkit.getWorld(ps.worldId);
+            int bx = (int) Math.floor(ps.x);
+            int bz = (int) Math.floor(ps.z);
+            if (w == null || !w.isChunkLoaded(bx >> 4, bz >> 4)
+                    || countAliveInWorld(w) >= maxPerWorld || countWildInWorld(w) >= maxWild) {
+                spawnsDropped++;
+                continue;
+            }
+            Location loc = new Location(w, ps.x, ps.y, ps.z);
+            if (!loc.getBlock().getType().isAir()
+                    || !loc.clone().add(0, 1, 0).getBlock().getType().isAir()
+                    || !loc.clone().add(0, -1, 0).getBlock().getType().isSolid()) {
+                spawnsDropped++;
+                continue;
+            }
+
+            if (spawnOne(ps.type, ps.color, loc, ps.bowman)) spawnsDone++;
+            created++;
         }
-        return spawned > 0;
     }
 
     private Location snapToSurface(Location base) {
@@ -1467,75 +2142,287 @@ private Location pickSpawnOrigin(World world, Location nearPlayer, int radius) {
         return feet;
     }
 
+    /**
+     * Random planned surface point within radius of origin, from chunks already scanned. Loaded chunks in
+     * range that have no (fresh) scan are queued for one; unloaded chunks are never loaded for spawning.
+     */
     private Location pickLocationNear(Location origin, int radius) {
         if (origin == null || origin.getWorld() == null) return null;
 
         World w = origin.getWorld();
+        Map<Long, SurfaceChunk> scanned = surfaceByWorld.computeIfAbsent(w.getUID(), k -> new HashMap<>());
+        long maxAgeMs = Math.max(10, getConfig().getInt("spawning.planner.surfaceCacheSeconds", 120)) * 1000L;
+        long now = System.currentTimeMillis();
+
+        int ox = origin.getBlockX();
+        int oz = origin.getBlockZ();
+        List<SurfaceChunk> ready = new ArrayList<>();
+        List<long[]> ripe = new ArrayList<>(); // {cx, cz} loaded but unscanned/stale
+        for (int cx = (ox - radius) >> 4; cx <= (ox + radius) >> 4; cx++) {
+            for (int cz = (oz - radius) >> 4; cz <= (oz + radius) >> 4; cz++) {
+                SurfaceChunk sc = scanned.get(chunkKey(cx, cz));
+                if (sc != null && sc.points.length > 0) ready.add(sc);
+                if ((sc == null || now - sc.builtAtMs > maxAgeMs) && w.isChunkLoaded(cx, cz)) {
+                    ripe.add(new long[]{cx, cz});
+                }
+            }
+        }
+
+        Collections.shuffle(ripe);
+        int scans = Math.max(0, getConfig().getInt("spawning.planner.scansPerAttempt", 4));
+        for (int i = 0; i < ripe.size() && i < scans; i++) {
+            requestSurfaceScan(w, (int) ripe.get(i)[0], (int) ripe.get(i)[1]);
+        }
+
+        if (ready.isEmpty()) return null;
         int tries = Math.max(5, getConfig().getInt("spawning.locationTries", 12));
         for (int i = 0; i < tries; i++) {
-            int dx = randomInt(-radius, radius);
-            int dz = randomInt(-radius, radius);
+            SurfaceChunk sc = ready.get(randomInt(0, ready.size() - 1));
+            Location loc = surfacePointLocation(w, sc, sc.points[randomInt(0, sc.points.length - 1)]);
+            if (Math.abs(loc.getBlockX() - ox) <= radius && Math.abs(loc.getBlockZ() - oz) <= radius) return loc;
+        }
+        return null;
+    }
 
-            int x = origin.getBlockX() + dx;
-            int z = origin.getBlockZ() + dz;
+    /** Another planned point within spread blocks of center (same chunk), or center itself. */
+    private Location nearbySurfacePoint(Location center, int spread) {
+        World w = center.getWorld();
+        Map<Long, SurfaceChunk> scanned = surfaceByWorld.get(w.getUID());
+        SurfaceChunk sc = (scanned == null) ? null : scanned.get(chunkKey(center.getBlockX() >> 4, center.getBlockZ() >> 4));
+        if (sc == null) return center;
 
-            int chunkX = x >> 4;
-            int chunkZ = z >> 4;
-            if (!isChunkGeneratedSafe(w, chunkX, chunkZ)) continue;
+        List<Location> near = new ArrayList<>();
+        for (int packed : sc.points) {
+            Location loc = surfacePointLocation(w, sc, packed);
+            if (Math.abs(loc.getBlockX() - center.getBlockX()) <= spread
+                    && Math.abs(loc.getBlockZ() - center.getBlockZ()) <= spread) {
+                near.add(loc);
+            }
+        }
+        return near.isEmpty() ? center : near.get(randomInt(0, near.size() - 1));
+    }
 
-            Chunk chunk = w.getChunkAt(chunkX, chunkZ);
-            if (!chunk.isLoaded()) chunk.load();
+    private Location surfacePointLocation(World w, SurfaceChunk sc, int packed) {
+        return new Location(w, sc.baseX + (packed & 15) + 0.5, (packed >>> 8) + sc.minY, sc.baseZ + ((packed >> 4) & 15) + 0.5);
+    }
 
-            int y = w.getHighestBlockYAt(x, z) + 1;
-            Location loc = new Location(w, x + 0.5, y, z + 0.5);
-            // need two blocks of headroom and solid-ish ground
-            if (!loc.getBlock().getType().isAir()) continue;
-            if (!loc.clone().add(0, 1, 0).getBlock().getType().isAir()) continue;
-            if (loc.clone().add(0, -1, 0).getBlock().isLiquid()) continue;
-            if (!loc.clone().add(0, -1, 0).getBlock().getType().isSolid()) continue;
+    private static long chunkKey(int cx, int cz) {
+        return (((long) cx) << 32) ^ (cz & 0xffffffffL);
+    }
 
-            return loc;
+    /** Snapshots a loaded chunk here, finds its standable surface off-thread, stores the result back on the main thread. */
+    private void requestSurfaceScan(World w, int cx, int cz) {
+        UUID worldId = w.getUID();
+        long key = chunkKey(cx, cz);
+        if (!surfaceScansPending.computeIfAbsent(worldId, k -> new HashSet<>()).add(key)) return;
+
+        ChunkSnapshot snap;
+        try {
+            snap = w.getChunkAt(cx, cz).getChunkSnapshot(true, false, false);
+        } catch (Throwable t) {
+            surfaceScansPending.get(worldId).remove(key);
+            return;
         }
-        return null;
+        int minY = w.getMinHeight();
+        int maxY = w.getMaxHeight();
+        int baseX = cx << 4;
+        int baseZ = cz << 4;
+        surfaceScans++;
+
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            long t0 = System.nanoTime();
+            int[] points = scanSurfacePoints(snap, minY, maxY);
+            surfaceScanNanos += System.nanoTime() - t0;
+            SurfaceChunk sc = new SurfaceChunk(points, baseX, baseZ, minY, System.currentTimeMillis());
+
+            if (!isEnabled()) return;
+            Bukkit.getScheduler().runTask(this, () -> {
+                Set<Long> pending = surfaceScansPending.get(worldId);
+                if (pending != null) pending.remove(key);
+                surfaceByWorld.computeIfAbsent(worldId, k -> new HashMap<>()).put(key, sc);
+            });
+        });
     }
 
-    private boolean isChunkGeneratedSafe(World world, int chunkX, int chunkZ) {
-        try {
-            return world.isChunkGenerated(chunkX, chunkZ);
-        } catch (Throwable ignored) {
-            Chunk chunk = world.getChunkAt(chunkX, chunkZ);
-            return chunk.isLoaded();
+    private static int[] scanSurfacePoints(ChunkSnapshot snap, int minY, int maxY) {
+        int[] tmp = new int[256];
+        int n = 0;
+        for (int lx = 0; lx < 16; lx++) {
+            for (int lz = 0; lz < 16; lz++) {
+                int y = snap.getHighestBlockYAt(lx, lz);
+                if (y <= minY + 1 || y >= maxY - 3) continue;
+
+                // solid ground (no liquids), two blocks of air for the NPC
+                if (!snap.getBlockType(lx, y, lz).isSolid()) continue;
+                if (!snap.getBlockType(lx, y + 1, lz).isAir()) continue;
+                if (!snap.getBlockType(lx, y + 2, lz).isAir()) continue;
+
+                tmp[n++] = lx | (lz << 4) | ((y + 1 - minY) << 8);
+            }
         }
+        return Arrays.copyOf(tmp, n);
     }
 
-    private int countAliveInWorld(World world) {
-        int count = 0;
-        Iterator<Map.Entry<UUID, Integer>> it = npcIdByEntity.entrySet().iterator();
-        while (it.hasNext()) {
-            UUID uuid = it.next().getKey();
-            Entity ent = Bukkit.getEntity(uuid);
-            if (ent == null || !ent.isValid() || ent.isDead()) {
+    private void pruneSurfaceCache() {
+        long maxAgeMs = Math.max(10, getConfig().getInt("spawning.planner.surfaceCacheSeconds", 120)) * 1000L;
+        long now = System.currentTimeMillis();
+        for (Iterator<Map.Entry<UUID, Map<Long, SurfaceChunk>>> it = surfaceByWorld.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<UUID, Map<Long, SurfaceChunk>> e = it.next();
+            if (Bukkit.getWorld(e.getKey()) == null) {
                 it.remove();
-                typeByEntity.remove(uuid);
                 continue;
             }
-            if (ent.getWorld().equals(world)) count++;
+            // keep a stale entry one extra age window: still usable (spawns re-check blocks) while its rescan runs
+            e.getValue().values().removeIf(sc -> now - sc.builtAtMs > 2 * maxAgeMs);
         }
-        return count;
+    }
+
+    private int countAliveInWorld(World world) {
+        int[] c = mercCountsByWorld.get(world.getUID());
+        return (c == null) ? 0 : c[0];
     }
 
     private int countWildInWorld(World world) {
-        int count = 0;
-        for (UUID uuid : new ArrayList<>(npcIdByEntity.keySet())) {
-            Entity ent = Bukkit.getEntity(uuid);
-            if (ent == null || !ent.isValid() || ent.isDead()) continue;
-            if (!ent.getWorld().equals(world)) continue;
-            NPC npc = getNpcByEntityUuid(uuid);
-            if (npc == null) continue;
-            if (!isOurNpc(npc, ent)) continue;
-            if (getMercState(npc) != MercState.TAME) count++;
+        int[] c = mercCountsByWorld.get(world.getUID());
+        return (c == null) ? 0 : c[1];
+    }
+
+    // -------------------------------------------------------------------------
+    // Tracking + per-world counters + per-tick resolution cache
+    // -------------------------------------------------------------------------
+    private void trackMerc(Entity ent, NPC npc, String typeStr) {
+        UUID id = ent.getUniqueId();
+        npcIdByEntity.put(id, npc.getId());
+        typeByEntity.put(id, typeStr);
+        entityThisTick.remove(id);
+        npcThisTick.remove(id);
+        npcChunkIndex.put(npc.getId(), ent.getLocation());
+        recountMerc(id, ent.getWorld(), getMercState(npc) != MercState.TAME);
+        reindexMerc(id, npc);
+    }
+
+    private void untrackMerc(UUID id) {
+        npcIdByEntity.remove(id);
+        typeByEntity.remove(id);
+        entityThisTick.remove(id);
+        npcThisTick.remove(id);
+        combatByEntity.remove(id);
+        recountMerc(id, null, false);
+        reindexMerc(id, null);
+    }
+
+    /** Re-reads state/owner/color after a metadata change; no-op for NPCs we are not tracking. */
+    private void refreshTrackedMerc(NPC npc) {
+        Entity ent = npc.isSpawned() ? npc.getEntity() : null;
+        if (ent == null || !npcIdByEntity.containsKey(ent.getUniqueId())) return;
+        recountMerc(ent.getUniqueId(), ent.getWorld(), getMercState(npc) != MercState.TAME);
+        reindexMerc(ent.getUniqueId(), npc);
+    }
+
+    /** Moves a merc into the controller/color sets matching its metadata; a null npc removes it. */
+    private void reindexMerc(UUID id, NPC npc) {
+        Set<UUID> controllers = Collections.emptySet();
+        MercColor wildColor = null;
+        if (npc != null) {
+            if (getMercState(npc) == MercState.TAME) {
+                controllers = getCoOwnerUuids(npc);
+                UUID owner = getOwnerUuid(npc);
+                if (owner != null) controllers.add(owner);
+            } else {
+                wildColor = getMercColor(npc);
+            }
+        }
+
+        Set<UUID> prevControllers = controllersOfMerc.getOrDefault(id, Collections.emptySet());
+        if (!prevControllers.equals(controllers)) {
+            for (UUID c : prevControllers) {
+                Set<UUID> set = mercsByController.get(c);
+                if (set != null && set.remove(id) && set.isEmpty()) mercsByController.remove(c);
+            }
+            for (UUID c : controllers) {
+                mercsByController.computeIfAbsent(c, k -> new HashSet<>()).add(id);
+            }
+            if (controllers.isEmpty()) controllersOfMerc.remove(id);
+            else controllersOfMerc.put(id, controllers);
+        }
+
+        MercColor prevColor = wildColorOfMerc.get(id);
+        if (prevColor != wildColor) {
+            if (prevColor != null) {
+                Set<UUID> set = wildMercsByColor.get(prevColor);
+                if (set != null) set.remove(id);
+                wildColorOfMerc.remove(id);
+            }
+            if (wildColor != null) {
+                wildMercsByColor.computeIfAbsent(wildColor, k -> new HashSet<>()).add(id);
+                wildColorOfMerc.put(id, wildColor);
+            }
+        }
+    }
+
+    /** Tracked mercs that this player owns or co-owns (tame only). Snapshot, safe to mutate mercs while iterating. */
+    private List<UUID> mercsControlledBy(UUID playerUuid) {
+        Set<UUID> set = mercsByController.get(playerUuid);
+        return (set == null) ? Collections.emptyList() : new ArrayList<>(set);
+    }
+
+    /** Tracked wild mercs of the given color. Snapshot, safe to mutate mercs while iterating. */
+    private List<UUID> wildMercsOfColor(MercColor color) {
+        Set<UUID> set = wildMercsByColor.get(color);
+        return (set == null) ? Collections.emptyList() : new ArrayList<>(set);
+    }
+
+    /** Moves a merc's contribution to (world, wild); a null world removes it. */
+    private void recountMerc(UUID id, World world, boolean wild) {
+        CountedMerc prev = countedMercs.get(id);
+        UUID worldId = (world == null) ? null : world.getUID();
+        if (prev != null && prev.worldId.equals(worldId) && prev.wild == wild) return;
+
+        if (prev != null) {
+            int[] c = mercCountsByWorld.get(prev.worldId);
+            if (c != null) {
+                c[0]--;
+                if (prev.wild) c[1]--;
+                if (c[0] <= 0) mercCountsByWorld.remove(prev.worldId);
+            }
+            countedMercs.remove(id);
+        }
+        if (worldId == null) return;
+
+        int[] c = mercCountsByWorld.computeIfAbsent(worldId, k -> new int[2]);
+        c[0]++;
+        if (wild) c[1]++;
+        countedMercs.put(id, new CountedMerc(worldId, wild));
+    }
+
+    private void clearResolveCache() {
+        entityThisTick.clear();
+        npcThisTick.clear();
+    }
+
+    /** Bukkit.getEntity, memoized for the current tick on the main thread. */
+    private Entity resolveEntity(UUID uuid) {
+        if (uuid == null) return null;
+        if (!Bukkit.isPrimaryThread()) return Bukkit.getEntity(uuid);
+        Entity e = entityThisTick.get(uuid);
+        if (e != null || entityThisTick.containsKey(uuid)) {
+            resolveHits++;
+            return e;
+        }
+        resolveMisses++;
+        e = Bukkit.getEntity(uuid);
+        entityThisTick.put(uuid, e);
+        return e;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onMercNpcDespawn(NPCDespawnEvent event) {
+        Entity ent = event.getNPC().getEntity();
+        if (ent != null && npcIdByEntity.containsKey(ent.getUniqueId())) {
+            // Usually a chunk unload: remember exactly where it went to sleep
+            npcChunkIndex.put(event.getNPC().getId(), ent.getLocation());
+            untrackMerc(ent.getUniqueId());
         }
-        return count;
     }
 
     private boolean spawnOne(MercType type, MercColor color, Location spawnLoc, boolean bowman) {
@@ -1574,8 +2461,7 @@ private Location pickSpawnOrigin(World world, Location nearPlayer, int radius) {
 
             // Tag entity + track
             tagEntity(ent, npc);
-            npcIdByEntity.put(ent.getUniqueId(), npc.getId());
-            typeByEntity.put(ent.getUniqueId(), typeToString(type));
+            trackMerc(ent, npc, typeToString(type));
 
             // Health 20
             if (ent instanceof LivingEntity living) {
@@ -1631,62 +2517,165 @@ private Location pickSpawnOrigin(World world, Location nearPlayer, int radius) {
     private void startAiLoop() {
         if (!citizensAvailable) return;
         stopTask(aiTaskId);
+        aiRing.clear();
+        aiNextTick.clear();
+        aiCursor = 0;
+        aiRingBuiltTick = Long.MIN_VALUE;
 
-        int period = 10; // tick rate for lightweight logic
+        // Runs every tick; each merc is only due every ai.periodTicks (scaled by LOD), with
+        // staggered phases, so the work is spread instead of landing on every 10th tick.
         aiTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> {
             if (!getConfig().getBoolean("enabled", true)) return;
+            aiTick++;
 
-            int meleeCooldown = Math.max(5, getConfig().getInt("combat.meleeCooldownTicks", 20));
-            int bowCooldown = Math.max(5, getConfig().getInt("combat.bowCooldownTicks", 25));
+            int basePeriod = Math.max(1, getConfig().getInt("ai.periodTicks", 10));
+            long budgetNanos = (long) (Math.max(0.1, getConfig().getDouble("ai.tickBudgetMs", 2.0)) * 1_000_000.0);
 
-            for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
-                try {
-                Entity ent = Bukkit.getEntity(entId);
-                if (!(ent instanceof LivingEntity living) || ent.isDead() || !ent.isValid()) {
-                    npcIdByEntity.remove(entId);
-                    typeByEntity.remove(entId);
+            // Pick up newly tracked mercs (and drop removed ones) about once a second
+            if (aiTick - aiRingBuiltTick >= 20) {
+                rebuildAiRing(basePeriod);
+            }
+            if (aiRing.isEmpty()) return;
+
+            long start = System.nanoTime();
+            int processed = 0;
+            int deferred = 0;
+
+            // One lap at most per tick, starting where the previous tick stopped
+            for (int visited = 0, n = aiRing.size(); visited < n; visited++) {
+                UUID entId = aiRing.get(aiCursor);
+                Long due = aiNextTick.get(entId);
+                if (due == null || due > aiTick) {
+                    aiCursor = (aiCursor + 1) % n;
                     continue;
                 }
 
-                NPC npc = getNpcByEntityUuid(entId);
-                if (npc == null || !npc.isSpawned()) continue;
-                if (!isOurNpc(npc, ent)) continue;
-
-                // Keep flags enforced
-                enforceEntityFlags(ent);
-                hideNameplate(npc, ent);
+                if (processed > 0 && System.nanoTime() - start >= budgetNanos) {
+                    // Out of budget: leave the cursor here so this merc goes first next tick
+                    for (int j = visited; j < n; j++) {
+                        Long d = aiNextTick.get(aiRing.get((aiCursor + j - visited) % n));
+                        if (d != null && d <= aiTick) deferred++;
+                    }
+                    break;
+                }
 
-                MercType type = getMercType(npc);
-                MercState state = getMercState(npc);
-                MercMode mode = getMercMode(npc);
+                aiCursor = (aiCursor + 1) % n;
+                LivingEntity living = tickMercAi(entId);
+                if (living == null) {
+                    // Gone (untracked) or errored; an erroring merc retries at the base period
+                    if (npcIdByEntity.containsKey(entId)) aiNextTick.put(entId, aiTick + basePeriod);
+                    else aiNextTick.remove(entId);
+                    continue;
+                }
+                aiNextTick.put(entId, aiTick + lodPeriod(living, basePeriod));
+                processed++;
+            }
 
-                // Auto-heal tamed
-                maybeAutoHeal(npc, living);
+            if (processed > 0 || deferred > 0) {
+                aiPerf.recordTick(System.nanoTime() - start, processed, deferred);
+            }
+        }, 1L, 1L);
+    }
 
-                // Angry timeout (wild)
-                if (state == MercState.WILD_ANGRY) {
-                    handleWildAngryTimeout(npc, living);
-                }
+    private void rebuildAiRing(int basePeriod) {
+        aiRing.clear();
+        aiRing.addAll(npcIdByEntity.keySet());
+        aiNextTick.keySet().retainAll(npcIdByEntity.keySet());
+        for (UUID id : aiRing) {
+            // New mercs start on a phase derived from their UUID so they don't all share a tick
+            aiNextTick.putIfAbsent(id, aiTick + Math.floorMod(id.hashCode(), basePeriod));
+        }
+        aiCursor = aiRing.isEmpty() ? 0 : aiCursor % aiRing.size();
+        aiRingBuiltTick = aiTick;
+        targetGrid.retainWorlds(mercCountsByWorld.keySet());
+    }
 
-                // JackBlack chat
-                if (type == MercType.JACKBLACK && getConfig().getBoolean("jackblack.chat.enabled", true)) {
-                    handleJackBlackChat(npc, living);
-                }
+    private int targetGridMaxAge() {
+        return Math.max(1, getConfig().getInt("ai.targetGridMaxAgeTicks", 5));
+    }
 
-                // Determine target + behavior
-                if (state == MercState.TAME) {
-                    handleTamedBehavior(npc, living, mode);
-                } else {
-                    handleWildBehavior(npc, living);
-                }
+    /**
+     * Tamed mercs always run at the base period (they follow/defend a player). Wild ones run
+     * progressively less often the farther the nearest player in their world is.
+     */
+    private int lodPeriod(LivingEntity living, int basePeriod) {
+        NPC npc = getNpcByEntityUuid(living.getUniqueId());
+        if (npc != null && getMercState(npc) == MercState.TAME) {
+            aiPerf.lodNear++;
+            return basePeriod;
+        }
 
-                // Attacks (melee/bow/tnt)
-                handleAttacks(npc, living, meleeCooldown, bowCooldown);
-                } catch (Throwable t) {
-                    // Keep loop alive even if one NPC tick errors
-                }
+        double near = Math.max(8.0, getConfig().getDouble("ai.lod.nearRadius", 48.0));
+        double far = Math.max(near, getConfig().getDouble("ai.lod.farRadius", 128.0));
+        Location loc = living.getLocation();
+        double best = Double.MAX_VALUE;
+        for (Player p : living.getWorld().getPlayers()) {
+            double d2 = p.getLocation().distanceSquared(loc);
+            if (d2 < best) best = d2;
+        }
+
+        if (best <= near * near) {
+            aiPerf.lodNear++;
+            return basePeriod;
+        }
+        if (best <= far * far) {
+            aiPerf.lodMid++;
+            return basePeriod * Math.max(1, getConfig().getInt("ai.lod.midMultiplier", 3));
+        }
+        aiPerf.lodFar++;
+        return basePeriod * Math.max(1, getConfig().getInt("ai.lod.farMultiplier", 8));
+    }
+
+    /** One merc's AI step. Returns the living entity, or null if the merc is gone and should be dropped. */
+    private LivingEntity tickMercAi(UUID entId) {
+        try {
+            Entity ent = resolveEntity(entId);
+            if (!(ent instanceof LivingEntity living) || ent.isDead() || !ent.isValid()) {
+                untrackMerc(entId);
+                return null;
+            }
+
+            NPC npc = getNpcByEntityUuid(entId);
+            if (npc == null || !npc.isSpawned()) return living;
+            if (!isOurNpc(npc, ent)) return living;
+
+            // Keep flags enforced
+            enforceEntityFlags(ent);
+            hideNameplate(npc, ent);
+
+            MercType type = getMercType(npc);
+            MercState state = getMercState(npc);
+            MercMode mode = getMercMode(npc);
+
+            // Auto-heal tamed
+            maybeAutoHeal(npc, living);
+
+            // Angry timeout (wild)
+            if (state == MercState.WILD_ANGRY) {
+                handleWildAngryTimeout(npc, living);
+            }
+
+            // JackBlack chat
+            if (type == MercType.JACKBLACK && getConfig().getBoolean("jackblack.chat.enabled", true)) {
+                handleJackBlackChat(npc, living);
             }
-        }, period, period);
+
+            // Determine target + behavior
+            if (state == MercState.TAME) {
+                handleTamedBehavior(npc, living, mode);
+            } else {
+                handleWildBehavior(npc, living);
+            }
+
+            // Attacks (melee/bow/tnt)
+            long combatStart = System.nanoTime();
+            handleAttacks(npc, living, type, state, mode);
+            aiPerf.recordCombatStep(System.nanoTime() - combatStart);
+            return living;
+        } catch (Throwable t) {
+            // Keep loop alive even if one NPC tick errors
+            return null;
+        }
     }
 
     private void handleWildAngryTimeout(NPC npc, LivingEntity living) {
@@ -1902,8 +2891,8 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
         UUID ownerUuid = owner.getUniqueId();
         String ownerBase = worldBaseName(owner.getWorld().getName());
 
-        for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
-            Entity ent = Bukkit.getEntity(entId);
+        for (UUID entId : mercsControlledBy(ownerUuid)) {
+            Entity ent = resolveEntity(entId);
             if (!(ent instanceof LivingEntity living) || ent.isDead() || !ent.isValid()) continue;
 
             NPC npc = getNpcByEntityUuid(entId);
@@ -1948,7 +2937,7 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
         }
 
         // Otherwise: wander idle (passive-mob style) unless a hostile or enemy faction is nearby
-        LivingEntity hostile = findNearestHostile(living, Math.max(6.0, getConfig().getDouble("combat.hostileEngageRange", 14.0)));
+        LivingEntity hostile = findNearestHostile(living, combatSettings.hostileRange);
         if (hostile != null) {
             Navigator nav = npc.getNavigator();
             if (nav != null) {
@@ -1961,8 +2950,7 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
         // Cross-faction combat (wild merc colors only; JackBlack exempt; TNT merc participates if enabled)
         if (type == MercType.MERC || type == MercType.GREEN_TNT) {
             if (color != MercColor.NONE) {
-                LivingEntity enemyMerc = findNearestEnemyFactionMerc(living, color,
-                        Math.max(6.0, getConfig().getDouble("combat.factionEngageRange", 14.0)));
+                LivingEntity enemyMerc = findNearestEnemyFactionMerc(living, color, combatSettings.factionRange);
                 if (enemyMerc != null) {
                     Navigator nav = npc.getNavigator();
                     if (nav != null) {
@@ -2017,13 +3005,10 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
         return null;
     }
 
-    private void handleAttacks(NPC npc, LivingEntity attacker, int meleeCooldownTicks, int bowCooldownTicks) {
+    private void handleAttacks(NPC npc, LivingEntity attacker, MercType type, MercState state, MercMode mode) {
     if (!(attacker instanceof Player)) return; // Citizens NPC player-entity
 
-    MercType type = getMercType(npc);
-    MercState state = getMercState(npc);
-    MercMode mode = getMercMode(npc);
-
+    CombatSettings cs = combatSettings;
     LivingEntity target = null;
 
     // Wild angry: explicit player target
@@ -2042,20 +3027,17 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
 
     // Contextual nearest target
     if (target == null) {
-        double hostileRange = Math.max(6.0, getConfig().getDouble("combat.hostileEngageRange", 14.0));
-        double factionRange = Math.max(6.0, getConfig().getDouble("combat.factionEngageRange", 14.0));
-
         if (state == MercState.TAME) {
             // Tamed: engage nearby hostiles (monsters) automatically
-            target = findNearestHostile(attacker, hostileRange);
+            target = findNearestHostile(attacker, cs.hostileRange);
         } else {
             // Wild: hostiles and (for colored mercs) enemy factions
-            target = findNearestHostile(attacker, hostileRange);
+            target = findNearestHostile(attacker, cs.hostileRange);
 
             if (target == null && (type == MercType.MERC || type == MercType.GREEN_TNT)) {
                 MercColor color = getMercColor(npc);
                 if (color != MercColor.NONE) {
-                    target = findNearestEnemyFactionMerc(attacker, color, factionRange);
+                    target = findNearestEnemyFactionMerc(attacker, color, cs.factionRange);
                 }
             }
         }
@@ -2069,8 +3051,8 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
     if (target == null) return;
 
     // TNT merc: creeper-like explosion attack (if enabled)
-    if (type == MercType.GREEN_TNT && getConfig().getBoolean("greenTnt.explosiveCombat", true)) {
-        handleTntFuse(npc, attacker, target);
+    if (type == MercType.GREEN_TNT && cs.tntExplosive) {
+        handleTntFuse(npc, attacker, target, state, cs);
         return;
     }
 
@@ -2090,44 +3072,47 @@ private void handleDefendMode(NPC npc, LivingEntity living, Player owner) {
     if (bowman) weapon = WeaponKind.BOW;
 
     if (weapon == WeaponKind.BOW) {
-        doBowAttack(npc, attacker, target, bowCooldownTicks);
+        doBowAttack(npc, attacker, target, cs);
     } else {
-        doMeleeAttack(npc, attacker, target, meleeCooldownTicks);
+        doMeleeAttack(npc, attacker, target, cs);
     }
 }
 
-private void handleTntFuse(NPC npc, LivingEntity attacker, LivingEntity target) {
-    try {
-        if (npc == null || attacker == null || target == null) return;
-        MercType type = getMercType(npc);
-        if (type != MercType.GREEN_TNT) return;
+private CombatState combatState(UUID entId) {
+    CombatState st = combatByEntity.get(entId);
+    if (st == null) {
+        st = new CombatState();
+        combatByEntity.put(entId, st);
+    }
+    return st;
+}
 
-        // If it somehow becomes tame without converting, do not use explosive behavior.
-        if (getMercState(npc) == MercState.TAME) return;
+/** Squared distance between two entities in the same world, via the reusable combat Locations. */
+private double combatDistanceSq(Entity a, Entity b) {
+    a.getLocation(combatLocA);
+    b.getLocation(combatLocB);
+    return combatLocA.distanceSquared(combatLocB);
+}
 
-        if (!getConfig().getBoolean("greenTnt.explosiveCombat", true)) return;
+private void handleTntFuse(NPC npc, LivingEntity living, LivingEntity target, MercState state, CombatSettings cs) {
+    try {
+        // If it somehow becomes tame without converting, do not use explosive behavior.
+        if (state == MercState.TAME) return;
 
-        Entity ent = npc.getEntity();
-        if (!(ent instanceof LivingEntity living)) return;
+        CombatState st = combatState(living.getUniqueId());
 
         // If target is in a different world, cancel fuse.
         if (target.getWorld() != living.getWorld()) {
-            npc.data().remove("mercmobs_tnt_fuse_start_ms");
+            st.fuseStartMs = 0L;
             return;
         }
 
-        double triggerRange = getConfig().getDouble("greenTnt.triggerRange", 3.0);
-        double cancelRange = getConfig().getDouble("greenTnt.cancelRange", 4.5);
-        int fuseTicks = Math.max(10, getConfig().getInt("greenTnt.fuseTicks", 30));
-
-        double distSq = living.getLocation().distanceSquared(target.getLocation());
+        double distSq = combatDistanceSq(living, target);
 
-        Long fuseStart = (Long) npc.data().get("mercmobs_tnt_fuse_start_ms");
-        if (fuseStart == null) {
+        if (st.fuseStartMs == 0L) {
             // Not currently fusing: start if within trigger range
-            if (distSq <= (triggerRange * triggerRange)) {
-                long now = System.currentTimeMillis();
-                npc.data().set("mercmobs_tnt_fuse_start_ms", now);
+            if (distSq <= cs.tntTriggerSq) {
+                st.fuseStartMs = System.currentTimeMillis();
 
                 // Fuse sound once
                 try {
@@ -2138,39 +3123,23 @@ private void handleTntFuse(NPC npc, LivingEntity attacker, LivingEntity target)
         }
 
         // Currently fusing: cancel if target moved away
-        if (distSq > (cancelRange * cancelRange)) {
-            npc.data().remove("mercmobs_tnt_fuse_start_ms");
+        if (distSq > cs.tntCancelSq) {
+            st.fuseStartMs = 0L;
             return;
         }
 
-        long now = System.currentTimeMillis();
-        long elapsedMs = now - fuseStart;
-        long fuseMs = fuseTicks * 50L;
-        if (elapsedMs < fuseMs) return;
+        if (System.currentTimeMillis() - st.fuseStartMs < cs.tntFuseMs) return;
 
         // Detonate
-        npc.data().remove("mercmobs_tnt_fuse_start_ms");
-
-        double powerD = getConfig().getDouble("greenTnt.explosion.power", 3.0);
-        float power = (float) Math.max(0.0, Math.min(12.0, powerD));
-
-        boolean damageEntities = getConfig().getBoolean("greenTnt.explosion.damageEntities", true);
-        String mode = String.valueOf(getConfig().getString("greenTnt.explosion.griefingMode", "PLAYER_ONLY")).trim().toUpperCase(Locale.ROOT);
+        st.fuseStartMs = 0L;
 
-        boolean breakBlocks = false;
-        if (!mode.equals("OFF")) {
-            if (mode.equals("INCLUDE_NON_PLAYER")) {
-                breakBlocks = true;
-            } else if (mode.equals("PLAYER_ONLY")) {
-                breakBlocks = (target instanceof Player);
-            }
-        }
+        boolean breakBlocks = cs.tntGriefAlways || (cs.tntGriefPlayers && target instanceof Player);
 
         Location boomLoc = living.getLocation();
 
         // If entity damage is off, we still want the visual/sound without damage:
         // create an explosion with power 0 but optionally break blocks (if enabled).
-        float effectivePower = damageEntities ? power : 0.0f;
+        float effectivePower = cs.tntDamageEntities ? cs.tntPower : 0.0f;
 
         try {
             living.getWorld().createExplosion(boomLoc, effectivePower, false, breakBlocks, living);
@@ -2189,128 +3158,52 @@ private void handleTntFuse(NPC npc, LivingEntity attacker, LivingEntity target)
 }
 
 
-private void doMeleeAttack(NPC npc, LivingEntity attacker, LivingEntity target, int cooldownTicks) {
+private void doMeleeAttack(NPC npc, LivingEntity attacker, LivingEntity target, CombatSettings cs) {
     if (target instanceof Player p && getMercState(npc) == MercState.TAME && isOwnerPlayer(npc, p)) return;
 
-    double range = Math.max(2.0, getConfig().getDouble("combat.meleeRange", 2.6));
-    double r2 = range * range;
-
+    CombatState st = combatState(attacker.getUniqueId());
     long nowMs = System.currentTimeMillis();
-    long lastMs = getLong(npc, "mercmobs_last_melee_ms", -999999999L);
-    if ((nowMs - lastMs) < (cooldownTicks * 50L)) return;
+    if ((nowMs - st.lastMeleeMs) < cs.meleeCooldownMs) return;
 
     if (!attacker.getWorld().equals(target.getWorld())) return;
-    if (attacker.getLocation().distanceSquared(target.getLocation()) > r2) return;
+    if (combatDistanceSq(attacker, target) > cs.meleeRangeSq) return;
 
     try {
         attacker.swingMainHand();
         target.damage(1.0, attacker);
-        setLong(npc, "mercmobs_last_melee_ms", nowMs);
+        st.lastMeleeMs = nowMs;
         setLastCombatNow(npc);
     } catch (Throwable ignored) {}
 }
 
-private void doBowAttack(NPC npc, LivingEntity attacker, LivingEntity target, int cooldownTicks) {
+private void doBowAttack(NPC npc, LivingEntity attacker, LivingEntity target, CombatSettings cs) {
     if (target instanceof Player p && getMercState(npc) == MercState.TAME && isOwnerPlayer(npc, p)) return;
 
-    double range = Math.max(6.0, getConfig().getDouble("combat.bowRange", 18.0));
-    double r2 = range * range;
-
+    CombatState st = combatState(attacker.getUniqueId());
     long nowMs = System.currentTimeMillis();
-    long lastMs = getLong(npc, "mercmobs_last_bow_ms", -999999999L);
-    if ((nowMs - lastMs) < (cooldownTicks * 50L)) return;
+    if ((nowMs - st.lastBowMs) < cs.bowCooldownMs) return;
 
     if (!attacker.getWorld().equals(target.getWorld())) return;
-    if (attacker.getLocation().distanceSquared(target.getLocation()) > r2) return;
+    if (combatDistanceSq(attacker, target) > cs.bowRangeSq) return;
 
     try {
-        org.bukkit.util.Vector dir = target.getEyeLocation().toVector()
-                .subtract(attacker.getEyeLocation().toVector())
-                .normalize();
+        // Eye-to-eye direction from the Locations combatDistanceSq just filled
+        double dx = combatLocB.getX() - combatLocA.getX();
+        double dy = (combatLocB.getY() + target.getEyeHeight()) - (combatLocA.getY() + attacker.getEyeHeight());
+        double dz = combatLocB.getZ() - combatLocA.getZ();
+        double len = Math.sqrt(dx * dx + dy * dy + dz * dz);
+        if (len < 1.0e-6) return;
+        double speed = 2.0 / len;
 
         Arrow arrow = attacker.launchProjectile(Arrow.class);
-        arrow.setVelocity(dir.multiply(2.0));
+        arrow.setVelocity(new org.bukkit.util.Vector(dx * speed, dy * speed, dz * speed));
         arrow.setPickupStatus(AbstractArrow.PickupStatus.DISALLOWED);
 
-        setLong(npc, "mercmobs_last_bow_ms", nowMs);
+        st.lastBowMs = nowMs;
         setLastCombatNow(npc);
     } catch (Throwable ignored) {}
 }
 
-    private void doTntFuseAndExplode(NPC npc, LivingEntity attacker, LivingEntity target) {
-        double triggerRange = Math.max(1.5, getConfig().getDouble("greenTnt.triggerRange", 3.0));
-        double cancelRange = Math.max(triggerRange + 0.5, getConfig().getDouble("greenTnt.cancelRange", 4.5));
-        double trig2 = triggerRange * triggerRange;
-        double cancel2 = cancelRange * cancelRange;
-
-        long fuseUntil = getFuseUntilMillis(npc);
-        UUID fuseTarget = getFuseTarget(npc);
-
-        boolean inTrigger = attacker.getLocation().distanceSquared(target.getLocation()) <= trig2;
-        boolean inCancel = attacker.getLocation().distanceSquared(target.getLocation()) <= cancel2;
-
-        if (fuseUntil <= 0) {
-            if (inTrigger) {
-                // Start fuse
-                int fuseTicks = Math.max(10, getConfig().getInt("greenTnt.fuseTicks", 30));
-                long until = System.currentTimeMillis() + (fuseTicks * 50L);
-                setFuseUntilMillis(npc, until);
-                setFuseTarget(npc, target.getUniqueId());
-
-                try { attacker.getWorld().playSound(attacker.getLocation(), Sound.ENTITY_CREEPER_PRIMED, 1.0f, 1.0f); } catch (Throwable ignored) {}
-                setLastCombatNow(npc);
-            }
-            return;
-        }
-
-        // Fuse running
-        if (fuseTarget != null && !fuseTarget.equals(target.getUniqueId())) {
-            // target changed -> cancel
-            clearFuse(npc);
-            return;
-        }
-
-        if (!inCancel) {
-            // target backed off -> cancel
-            clearFuse(npc);
-            return;
-        }
-
-        if (System.currentTimeMillis() >= fuseUntil) {
-            // Explode
-            clearFuse(npc);
-
-            double power = Math.max(0.0, getConfig().getDouble("greenTnt.explosion.power", 3.0));
-            boolean damageEntities = getConfig().getBoolean("greenTnt.explosion.damageEntities", true);
-
-            String grief = getConfig().getString("greenTnt.explosion.griefingMode", "PLAYER_ONLY");
-            boolean breakBlocks = false;
-            if ("OFF".equalsIgnoreCase(grief)) breakBlocks = false;
-            else if ("INCLUDE_NON_PLAYER".equalsIgnoreCase(grief)) breakBlocks = true;
-            else {
-                // PLAYER_ONLY
-                breakBlocks = (target instanceof Player);
-            }
-
-            if (power <= 0.0) return;
-
-            try {
-                // createExplosion always damages; we cancel damage later if configured off
-                attacker.getWorld().createExplosion(attacker.getLocation(), (float) power, false, breakBlocks, attacker);
-
-                // if entity damage disabled, we mark a short-lived flag on NPC to cancel explosion damage events
-                if (!damageEntities) {
-                    setLong(npc, "mercmobs_expl_nodmg_until", System.currentTimeMillis() + 1500L);
-                }
-            } catch (Throwable ignored) {}
-        }
-    }
-
-    private void clearFuse(NPC npc) {
-        try { npc.data().remove(CIT_KEY_FUSE_UNTIL); } catch (Throwable ignored) {}
-        try { npc.data().remove(CIT_KEY_FUSE_TARGET); } catch (Throwable ignored) {}
-    }
-
     // Cancel explosion entity damage if configured off
     @EventHandler(priority = EventPriority.HIGHEST, ignoreCancelled = false)
     public void onExplosionDamage(EntityDamageByEntityEvent event) {
@@ -2341,16 +3234,26 @@ private void doBowAttack(NPC npc, LivingEntity attacker, LivingEntity target, in
         int tickPeriod = 40;
         enforceTaskId = Bukkit.getScheduler().scheduleSyncRepeatingTask(this, () -> {
             for (UUID uuid : new ArrayList<>(npcIdByEntity.keySet())) {
-                Entity ent = Bukkit.getEntity(uuid);
-                if (ent == null || !ent.isValid() || ent.isDead()) continue;
+                Entity ent = resolveEntity(uuid);
+                if (ent == null || !ent.isValid() || ent.isDead()) {
+                    // Gone without an event we saw; keep the spawner counters honest
+                    untrackMerc(uuid);
+                    continue;
+                }
 
                 NPC npc = getNpcByEntityUuid(uuid);
                 if (npc == null) continue;
                 if (!isOurNpc(npc, ent)) continue;
 
+                // Catches world changes and tame/untame transitions not routed through setMercState
+                recountMerc(uuid, ent.getWorld(), getMercState(npc) != MercState.TAME);
+                reindexMerc(uuid, npc);
+                npcChunkIndex.put(npc.getId(), ent.getLocation());
                 hideNameplate(npc, ent);
                 enforceEntityFlags(ent);
             }
+
+            npcChunkIndex.saveIfDue(System.currentTimeMillis());
         }, tickPeriod, tickPeriod);
     }
 
@@ -2409,11 +3312,10 @@ private void ensureNpcVulnerable(NPC npc) {
 
     private void destroyOurNpc(NPC npc, UUID entityUuid) {
         if (entityUuid != null) {
-            npcIdByEntity.remove(entityUuid);
-            typeByEntity.remove(entityUuid);
+            untrackMerc(entityUuid);
         }
         if (npc == null) return;
-
+        npcChunkIndex.remove(npc.getId());
 
         try {
             if (npc.isSpawned()) npc.despawn();
@@ -2477,8 +3379,8 @@ private void handleJackBlackChat(NPC npc, LivingEntity jack) {
 
     int outOfRange = 0;
 
-    for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
-        Entity ent = Bukkit.getEntity(entId);
+    for (UUID entId : mercsControlledBy(commander.getUniqueId())) {
+        Entity ent = resolveEntity(entId);
         if (!(ent instanceof LivingEntity) || ent.isDead() || !ent.isValid()) continue;
 
         NPC npc = getNpcByEntityUuid(entId);
@@ -2549,18 +3451,20 @@ private void handleJackBlackChat(NPC npc, LivingEntity jack) {
     // -------------------------------------------------------------------------
     private LivingEntity findNearestHostile(LivingEntity from, double range) {
         double r2 = range * range;
-        LivingEntity best = null;
-        double bestD2 = Double.MAX_VALUE;
+        Location at = from.getLocation();
+
+        List<LivingEntity> near = new ArrayList<>();
+        targetGrid.collectNear(at, range, aiTick, targetGridMaxAge(), near);
 
-        Collection<Entity> near = from.getWorld().getNearbyEntities(from.getLocation(), range, range, range);
-        for (Entity e : near) {
-            if (!(e instanceof LivingEntity le)) continue;
+        List<LivingEntity> inRange = new ArrayList<>();
+        for (LivingEntity le : near) {
             if (le.isDead() || !le.isValid()) continue;
             if (le instanceof Player) continue;
 
             // Hostile mobs = Monster (includes many), plus some special cases
             boolean hostile = (le instanceof Monster);
             if (!hostile) continue;
+            if (!le.getWorld().equals(at.getWorld())) continue;
 
 // Ignore named mobs or mobs sitting in boats/minecarts
 try {
@@ -2569,17 +3473,17 @@ try {
     if (vehicle instanceof Boat || vehicle instanceof Minecart) continue;
 } catch (Throwable ignored) {}
 
-// Must have line of sight
-try { if (!from.hasLineOfSight(le)) continue; } catch (Throwable ignored) {}
-
+            if (Math.abs(le.getLocation().getY() - at.getY()) > range) continue;
+            if (le.getLocation().distanceSquared(at) <= r2) inRange.add(le);
+        }
 
-            double d2 = le.getLocation().distanceSquared(from.getLocation());
-            if (d2 <= r2 && d2 < bestD2) {
-                bestD2 = d2;
-                best = le;
-            }
+        // Nearest first, so line of sight (the expensive check) stops at the first visible mob
+        inRange.sort(Comparator.comparingDouble(le -> le.getLocation().distanceSquared(at)));
+        for (LivingEntity le : inRange) {
+            try { if (!from.hasLineOfSight(le)) continue; } catch (Throwable ignored) {}
+            return le;
         }
-        return best;
+        return null;
     }
 
     private LivingEntity findNearestEnemyFactionMerc(LivingEntity from, MercColor myColor, double range) {
@@ -2587,32 +3491,32 @@ try { if (!from.hasLineOfSight(le)) continue; } catch (Throwable ignored) {}
         LivingEntity best = null;
         double bestD2 = Double.MAX_VALUE;
 
-        for (UUID uuid : new ArrayList<>(npcIdByEntity.keySet())) {
-            Entity e = Bukkit.getEntity(uuid);
-            if (!(e instanceof LivingEntity le)) continue;
-            if (!le.getWorld().equals(from.getWorld())) continue;
+        Location at = from.getLocation();
+        List<LivingEntity> near = new ArrayList<>();
+        targetGrid.collectNear(at, range, aiTick, targetGridMaxAge(), near);
+
+        for (LivingEntity le : near) {
+            // only wild mercs of another (real) color participate
+            UUID uuid = le.getUniqueId();
+            MercColor otherColor = wildColorOfMerc.get(uuid);
+            if (otherColor == null || otherColor == myColor || otherColor == MercColor.NONE) continue;
+
+            if (!le.getWorld().equals(at.getWorld())) continue;
             if (le.isDead() || !le.isValid()) continue;
-            if (le.getLocation().distanceSquared(from.getLocation()) > r2) continue;
+            double d2 = le.getLocation().distanceSquared(at);
+            if (d2 > r2 || d2 >= bestD2) continue;
 
             NPC npc = getNpcByEntityUuid(uuid);
             if (npc == null) continue;
-            if (!isOurNpc(npc, e)) continue;
+            if (!isOurNpc(npc, le)) continue;
 
-            // only wild mercs participate
+            // index can trail a metadata write by one enforce pass; re-check the cheap fields
             if (getMercState(npc) == MercState.TAME) continue;
+            if (getMercType(npc) == MercType.JACKBLACK) continue; // exempt from faction rules
+            if (getMercColor(npc) != otherColor) continue;
 
-            MercType type = getMercType(npc);
-            if (type == MercType.JACKBLACK) continue; // exempt from faction rules
-            MercColor otherColor = getMercColor(npc);
-            if (otherColor == MercColor.NONE) continue;
-
-            if (otherColor != myColor) {
-                double d2 = le.getLocation().distanceSquared(from.getLocation());
-                if (d2 < bestD2) {
-                    bestD2 = d2;
-                    best = le;
-                }
-            }
+            bestD2 = d2;
+            best = le;
         }
         return best;
     }
@@ -2675,21 +3579,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         Entity ent = npc.getEntity();
         if (!(ent instanceof LivingEntity living)) return;
 
-        MercType type = getMercType(npc);
-        MercColor color = getMercColor(npc);
-        MercState state = getMercState(npc);
-
-        // Determine skinKey
-        String skinKey;
-        if (type == MercType.JACKBLACK) {
-            skinKey = "jackblack";
-        } else if (type == MercType.GREEN_TNT) {
-            skinKey = "merc_green_tnt";
-        } else {
-            String st = (state == MercState.TAME) ? "tame" : (state == MercState.WILD_ANGRY) ? "angry" : "neutral";
-            skinKey = "merc_" + colorToString(color) + "_" + st;
-        }
-
+        String skinKey = skinKeyFor(npc);
         SkinData skin = ensureSkinLoaded(skinKey);
         if (skin != null) {
             // Use a stable skin name identifier
@@ -2728,11 +3618,22 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         enforceEntityFlags(ent);
     }
 
+    private String skinKeyFor(NPC npc) {
+        MercType type = getMercType(npc);
+        if (type == MercType.JACKBLACK) return "jackblack";
+        if (type == MercType.GREEN_TNT) return "merc_green_tnt";
+
+        MercState state = getMercState(npc);
+        String st = (state == MercState.TAME) ? "tame" : (state == MercState.WILD_ANGRY) ? "angry" : "neutral";
+        return "merc_" + colorToString(getMercColor(npc)) + "_" + st;
+    }
+
     // -------------------------------------------------------------------------
-    // Skins: local PNG -> MineSkin upload -> cache in config
+    // Skins: local PNG -> (hash cache | MineSkin upload queue) -> cache in config
     // -------------------------------------------------------------------------
     private void loadSkinCacheFromConfig() {
         skinCache.clear();
+        loadTextureCacheFile();
         ConfigurationSection cached = getConfig().getConfigurationSection("skins.cached");
         if (cached == null) return;
 
@@ -2745,6 +3646,34 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         }
     }
 
+    /** One line per texture: "pngSha256 value signature" (base64 never contains spaces). */
+    private void loadTextureCacheFile() {
+        textureByPngHash.clear();
+        File f = new File(getDataFolder(), TEXTURE_CACHE_FILE);
+        if (!f.isFile()) return;
+
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] parts = line.trim().split(" ");
+                if (parts.length != 3) continue;
+                textureByPngHash.put(parts[0], new SkinData(parts[1], parts[2]));
+            }
+        } catch (Throwable ex) {
+            getLogger().warning("Failed reading " + TEXTURE_CACHE_FILE + ": " + ex.getMessage());
+        }
+    }
+
+    // Only called from the upload worker, so appends never interleave
+    private void appendTextureCacheFile(String pngHash, SkinData skin) {
+        File f = new File(getDataFolder(), TEXTURE_CACHE_FILE);
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(f, true), StandardCharsets.UTF_8)) {
+            w.write(pngHash + " " + skin.value + " " + skin.signature + "\n");
+        } catch (Throwable ex) {
+            getLogger().warning("Failed writing " + TEXTURE_CACHE_FILE + ": " + ex.getMessage());
+        }
+    }
+
     private List<String> getAllSkinKeys() {
         List<String> keys = new ArrayList<>();
 
@@ -2759,6 +3688,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         return keys;
     }
 
+    /** Cached skin for this key, or null after queueing it for upload. Never blocks. */
     private SkinData ensureSkinLoaded(String skinKey) {
         String k = skinKey.toLowerCase(Locale.ROOT).trim();
 
@@ -2766,7 +3696,60 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         SkinData existing = skinCache.get(k);
         if (existing != null) return existing;
 
-        if (!getConfig().getBoolean("skins.allowMineskinRequests", true)) return null;
+        queueSkinUpload(k);
+        return null;
+    }
+
+    private void queueSkinUpload(String skinKey) {
+        String k = skinKey.toLowerCase(Locale.ROOT).trim();
+        if (skinCache.containsKey(k)) return;
+        ThreadPoolExecutor uploader = skinUploader;
+        if (uploader == null) return;
+        if (!skinUploadsQueued.add(k)) return; // already pending
+
+        try {
+            // execute() offers to the bounded queue and rejects instead of waiting when it is full
+            uploader.execute(() -> {
+                try {
+                    resolveSkinOnWorker(k);
+                } catch (Throwable ex) {
+                    getLogger().warning("Skin resolve failed for " + k + ": " + ex.getMessage());
+                } finally {
+                    skinUploadsQueued.remove(k);
+                }
+            });
+        } catch (RejectedExecutionException rejected) {
+            skinUploadsQueued.remove(k);
+            if (uploader.isShutdown()) return; // plugin disabling
+            int dropped = skinUploadsDropped.incrementAndGet();
+            long now = System.currentTimeMillis();
+            if (now - skinQueueFullWarnedMs >= SKIN_QUEUE_FULL_WARN_INTERVAL_MS) {
+                skinQueueFullWarnedMs = now;
+                getLogger().warning("MineSkin upload queue is full (skins.uploadQueueMax=" + (uploader.getQueue().size() + uploader.getQueue().remainingCapacity())
+                        + "); dropped '" + k + "' (" + dropped + " dropped so far). It is queued again the next time it is needed.");
+            }
+        }
+    }
+
+    private void resolveSkinOnWorker(String k) {
+        if (skinCache.containsKey(k)) return;
+
+        byte[] pngBytes = loadLocalSkinBytesForKey(k);
+        if (pngBytes == null) return;
+        if (!looksLikePng(pngBytes)) {
+            getLogger().warning("Skin for '" + k + "' is not a valid PNG.");
+            return;
+        }
+
+        // Same PNG uploaded before (any key, any previous run): reuse its texture
+        String pngHash = sha256Hex(pngBytes);
+        SkinData known = textureByPngHash.get(pngHash);
+        if (known != null) {
+            skinResolved(k, known);
+            return;
+        }
+
+        if (!getConfig().getBoolean("skins.allowMineskinRequests", true)) return;
 
         // Never upload if API key is blank/missing. Cached skins still work.
         String apiKey = getConfig().getString("skins.mineskinApiKey", "").trim();
@@ -2775,28 +3758,71 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
                 warnedBlankMineSkinKey = true;
                 getLogger().warning("MineSkin API key is blank. Skipping MineSkin uploads. Only skins present in skins.cached will be used until a key is configured.");
             }
-            return null;
-        }
-
-        byte[] pngBytes = loadLocalSkinBytesForKey(k);
-        if (pngBytes == null) return null;
-        if (!looksLikePng(pngBytes)) {
-            getLogger().warning("Skin for '" + k + "' is not a valid PNG.");
-            return null;
+            return;
         }
 
+        String endpoint = getConfig().getString("skins.mineskinEndpoint", "https://api.mineskin.org/generate/upload");
         String userAgent = getConfig().getString("skins.userAgent", "MercMobs/1.0");
         String variant = getConfig().getString("skins.variant", "classic");
         String visibility = getConfig().getString("skins.visibility", "unlisted");
 
-        SkinData generated = requestMineSkinByUploadBytes(pngBytes, k, variant, visibility, apiKey, userAgent);
-        if (generated != null) {
-            skinCache.put(k, generated);
-            getConfig().set("skins.cached." + k + ".value", generated.value);
-            getConfig().set("skins.cached." + k + ".signature", generated.signature);
+        long t0 = System.nanoTime();
+        SkinData generated = requestMineSkinByUploadBytes(endpoint, pngBytes, k, variant, visibility, apiKey, userAgent);
+        recordSkinUpload(System.nanoTime() - t0, generated != null);
+        if (generated == null) return;
+
+        textureByPngHash.put(pngHash, generated);
+        appendTextureCacheFile(pngHash, generated);
+        skinResolved(k, generated);
+    }
+
+    private void skinResolved(String k, SkinData skin) {
+        skinCache.put(k, skin);
+        if (!isEnabled()) return;
+
+        // Config writes and skin application belong on the main thread
+        Bukkit.getScheduler().runTask(this, () -> {
+            getConfig().set("skins.cached." + k + ".value", skin.value);
+            getConfig().set("skins.cached." + k + ".signature", skin.signature);
             saveConfig();
+
+            // Mercs spawned/retinted while this skin was pending still wear the default one
+            for (UUID entId : new ArrayList<>(npcIdByEntity.keySet())) {
+                NPC npc = getNpcByEntityUuid(entId);
+                if (npc == null || !npc.isSpawned()) continue;
+                if (k.equals(skinKeyFor(npc))) applyCurrentSkinAndEquipment(npc);
+            }
+            if (skinUploadsQueued.isEmpty()) {
+                getLogger().info("MineSkin queue drained. Cached skins: " + skinCache.keySet());
+            }
+        });
+    }
+
+    private synchronized void recordSkinUpload(long nanos, boolean ok) {
+        if (ok) skinUploadsOk++;
+        else skinUploadsFailed++;
+        skinUploadNanosTotal += nanos;
+        skinUploadNanosLast = nanos;
+    }
+
+    private synchronized String skinUploadStatusLine() {
+        long attempts = skinUploadsOk + skinUploadsFailed;
+        long backoff = Math.max(0L, mineSkinBlockedUntilMs - System.currentTimeMillis());
+        return String.format(Locale.ROOT, "Skin uploads: %d queued, %d dropped, %d ok, %d failed, avg %.0fms, last %.0fms, backoff %dms, %d textures by hash",
+                skinUploadsQueued.size(), skinUploadsDropped.get(), skinUploadsOk, skinUploadsFailed,
+                attempts == 0 ? 0.0 : skinUploadNanosTotal / 1_000_000.0 / attempts,
+                skinUploadNanosLast / 1_000_000.0, backoff, textureByPngHash.size());
+    }
+
+    private String sha256Hex(byte[] data) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(data);
+            StringBuilder sb = new StringBuilder(digest.length * 2);
+            for (byte b : digest) sb.append(String.format(Locale.ROOT, "%02x", b));
+            return sb.toString();
+        } catch (Exception ex) {
+            throw new IllegalStateException("SHA-256 unavailable", ex);
         }
-        return generated;
     }
 
     private byte[] loadLocalSkinBytesForKey(String skinKeyLower) {
@@ -2836,16 +3862,27 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         }
     }
 
-    private SkinData requestMineSkinByUploadBytes(byte[] pngBytes, String name, String variant, String visibility,
+    private SkinData requestMineSkinByUploadBytes(String endpoint, byte[] pngBytes, String name, String variant, String visibility,
                                               String apiKey, String userAgent) {
 
-        // This method is invoked from async preload / preparation. Sleeping here will not stall the main thread.
+        // Runs on the single upload worker. Sleeping here holds back the whole queue, which is the point:
+        // MineSkin's rate limit is per key, not per skin.
         final int maxAttempts = Math.max(1, getConfig().getInt("skins.mineskinMaxAttempts", 5));
 
         for (int attempt = 1; attempt <= maxAttempts; attempt++) {
+            long waitMs = mineSkinBlockedUntilMs - System.currentTimeMillis();
+            if (waitMs > 0) {
+                try {
+                    Thread.sleep(waitMs);
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                    return null;
+                }
+            }
+
             HttpURLConnection conn = null;
             try {
-                URL url = new URL("https://api.mineskin.org/generate/upload");
+                URL url = new URL(endpoint);
                 conn = (HttpURLConnection) url.openConnection();
                 conn.setRequestMethod("POST");
                 conn.setDoOutput(true);
@@ -2872,31 +3909,25 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
                 String body = readAll((code >= 200 && code < 300) ? conn.getInputStream() : conn.getErrorStream());
 
                 if (code >= 200 && code < 300) {
-                    String value = extractJsonString(body, "\"value\":\"");
-                    String signature = extractJsonString(body, "\"signature\":\"");
-                    if (value == null || signature == null || value.isEmpty() || signature.isEmpty()) {
+                    SkinData texture = findTexture(parseJsonOrNull(body));
+                    if (texture == null) {
                         getLogger().warning("MineSkin response missing value/signature.");
                         return null;
                     }
-                    return new SkinData(value, signature);
+                    return texture;
                 }
 
                 if (code == 429) {
-                    long waitMs = parseMineSkinBackoffMs(body);
+                    long backoffMs = parseMineSkinBackoffMs(body);
+                    mineSkinBlockedUntilMs = System.currentTimeMillis() + backoffMs;
 
                     if (attempt >= maxAttempts) {
                         getLogger().warning("MineSkin upload failed (429) after " + maxAttempts + " attempts: " + body);
                         return null;
                     }
 
-                    getLogger().warning("MineSkin rate limited (429). Backing off for " + waitMs +
+                    getLogger().warning("MineSkin rate limited (429). Backing off for " + backoffMs +
                             "ms (attempt " + attempt + "/" + maxAttempts + ").");
-                    try {
-                        Thread.sleep(waitMs);
-                    } catch (InterruptedException ie) {
-                        Thread.currentThread().interrupt();
-                        return null;
-                    }
                     continue;
                 }
 
@@ -2918,29 +3949,62 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         // MineSkin commonly returns JSON like:
         // {"rateLimit":{"next":{"relative":5279},"delay":{"millis":6000},...}}
         long fallback = 6000L;
-        if (body == null) return fallback;
+        JsonElement root = parseJsonOrNull(body);
+        if (root == null) return fallback;
+
+        long v = findJsonLong(root, "relative");
+        if (v < 0) v = findJsonLong(root, "millis");
+        if (v < 0) return fallback;
+        v = Math.max(500L, Math.min(60000L, v));
+        return v + 200L; // small cushion
+    }
 
+    private JsonElement parseJsonOrNull(String body) {
+        if (body == null || body.isEmpty()) return null;
         try {
-            java.util.regex.Matcher rel = java.util.regex.Pattern
-                    .compile("\"relative\"\\s*:\\s*(\\d+)")
-                    .matcher(body);
-            if (rel.find()) {
-                long v = Long.parseLong(rel.group(1));
-                v = Math.max(500L, Math.min(60000L, v));
-                return v + 200L; // small cushion
-            }
-
-            java.util.regex.Matcher ms = java.util.regex.Pattern
-                    .compile("\"millis\"\\s*:\\s*(\\d+)")
-                    .matcher(body);
-            if (ms.find()) {
-                long v = Long.parseLong(ms.group(1));
-                v = Math.max(500L, Math.min(60000L, v));
-                return v + 200L;
+            return JsonParser.parseString(body);
+        } catch (Throwable ignored) {
+            return null;
+        }
+    }
+
+    /** First object in the tree carrying both string "value" and "signature" (v1 data.texture, v2 skin.texture.data). */
+    private SkinData findTexture(JsonElement el) {
+        if (el == null) return null;
+        if (el.isJsonObject()) {
+            JsonObject o = el.getAsJsonObject();
+            JsonElement value = o.get("value");
+            JsonElement signature = o.get("signature");
+            if (value != null && signature != null && value.isJsonPrimitive() && signature.isJsonPrimitive()) {
+                String v = value.getAsString();
+                String sig = signature.getAsString();
+                if (!v.isEmpty() && !sig.isEmpty()) return new SkinData(v, sig);
             }
-        } catch (Throwable ignored) {}
+            for (Map.Entry<String, JsonElement> e : o.entrySet()) {
+                SkinData found = findTexture(e.getValue());
+                if (found != null) return found;
+            }
+        } else if (el.isJsonArray()) {
+            for (JsonElement e : el.getAsJsonArray()) {
+                SkinData found = findTexture(e);
+                if (found != null) return found;
+            }
+        }
+        return null;
+    }
 
-        return fallback;
+    /** Depth-first numeric field lookup, -1 if absent. */
+    private long findJsonLong(JsonElement el, String name) {
+        if (el == null || !el.isJsonObject()) return -1L;
+        for (Map.Entry<String, JsonElement> e : el.getAsJsonObject().entrySet()) {
+            JsonElement v = e.getValue();
+            if (e.getKey().equals(name) && v.isJsonPrimitive() && v.getAsJsonPrimitive().isNumber()) {
+                return v.getAsLong();
+            }
+            long nested = findJsonLong(v, name);
+            if (nested >= 0) return nested;
+        }
+        return -1L;
     }
 
 
@@ -2997,22 +4061,6 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         }
     }
 
-    private String extractJsonString(String json, String marker) {
-        int idx = json.indexOf(marker);
-        if (idx < 0) return null;
-        idx += marker.length();
-        StringBuilder out = new StringBuilder();
-        boolean escaping = false;
-        for (int i = idx; i < json.length(); i++) {
-            char c = json.charAt(i);
-            if (escaping) { out.append(c); escaping = false; continue; }
-            if (c == '\\') { escaping = true; continue; }
-            if (c == '"') return out.toString();
-            out.append(c);
-        }
-        return null;
-    }
-
     private String sanitizeName(String input) {
         if (input == null) return "MercMobs";
         String trimmed = input.trim();
@@ -3024,82 +4072,6 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
     // -------------------------------------------------------------------------
     
     // -------------------------------------------------------------------------
-    // Dynmap markers.yml fallback (similar to ViridianTownsFolk)
-    // -------------------------------------------------------------------------
-    private void refreshDynmapMarkersFromFile() {
-        dynmapFileMarkersAvailable = false;
-        dynmapFileMarkerCount = 0;
-
-        try {
-            File file = new File("plugins/dynmap/markers.yml");
-            if (!file.exists()) return;
-
-            org.bukkit.configuration.file.YamlConfiguration yc = org.bukkit.configuration.file.YamlConfiguration.loadConfiguration(file);
-            ConfigurationSection sets = yc.getConfigurationSection("sets");
-            if (sets == null) return;
-
-            List<String> required = getConfig().getStringList("dynmapMarkers.requiredLabelContains");
-            List<String> exceptions = getConfig().getStringList("dynmapMarkers.exceptionKeywords");
-            if (required == null) required = Collections.emptyList();
-            if (exceptions == null) exceptions = Collections.emptyList();
-
-            List<Location> found = new ArrayList<>();
-
-            for (String setId : sets.getKeys(false)) {
-                ConfigurationSection setSec = sets.getConfigurationSection(setId);
-                if (setSec == null) continue;
-
-                ConfigurationSection markers = setSec.getConfigurationSection("markers");
-                if (markers == null) continue;
-
-                for (String markerId : markers.getKeys(false)) {
-                    ConfigurationSection m = markers.getConfigurationSection(markerId);
-                    if (m == null) continue;
-
-                    String label = m.getString("label", "");
-                    if (label == null) label = "";
-
-                    String labelLower = label.toLowerCase(Locale.ROOT);
-
-                    boolean reqOk = required.isEmpty();
-                    for (String req : required) {
-                        if (req == null || req.isEmpty()) continue;
-                        if (labelLower.contains(req.toLowerCase(Locale.ROOT))) { reqOk = true; break; }
-                    }
-                    if (!reqOk) continue;
-
-                    boolean blocked = false;
-                    for (String ex : exceptions) {
-                        if (ex == null || ex.isEmpty()) continue;
-                        if (labelLower.contains(ex.toLowerCase(Locale.ROOT))) { blocked = true; break; }
-                    }
-                    if (blocked) continue;
-
-                    String worldName = m.getString("world", null);
-                    if (worldName == null || worldName.isEmpty()) continue;
-                    World w = Bukkit.getWorld(worldName);
-                    if (w == null) continue;
-
-                    double x = m.getDouble("x");
-                    double y = m.getDouble("y");
-                    double z = m.getDouble("z");
-
-                    found.add(new Location(w, x, y, z));
-                }
-            }
-
-            synchronized (dynmapSpawnMarkers) {
-                dynmapSpawnMarkers.clear();
-                dynmapSpawnMarkers.addAll(found);
-            }
-
-            dynmapFileMarkerCount = found.size();
-            dynmapFileMarkersAvailable = dynmapFileMarkerCount > 0;
-        } catch (Throwable ignored) {
-            // silence; status will show MISSING if both API and file fallback fail
-        }
-    }
-
 // Dynmap marker spawnpoints (reflection)
     // -------------------------------------------------------------------------
     private void initDynmap() {
@@ -3148,7 +4120,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
 
 
     // Always try markers.yml fallback as well (helps when API reflection is blocked)
-    refreshDynmapMarkersFromFile();
+    ingestMarkersFileIfChanged();
 }
 
     // ------------------------------------------------------------
@@ -3156,94 +4128,136 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
     // ------------------------------------------------------------
 
 
-    private void refreshDynmapMarkersFallbackFile() {
-        dynmapFileMarkersAvailable = false;
-        dynmapSpawnMarkers.clear();
-
-        if (!getConfig().getBoolean("dynmapMarkers.enabled", true)) return;
+    /**
+     * Re-reads plugins/dynmap/markers.yml only when it changed: mtime/size (and our label filters) are
+     * checked here, the content hash and the streaming parse happen off-thread, and the result is
+     * published as a new fileMarkers snapshot. Dynmap rewrites the file on its own schedule, often
+     * with identical content, so the hash catches most rewrites before any parsing.
+     */
+    private void ingestMarkersFileIfChanged() {
+        if (!getConfig().getBoolean("dynmapMarkers.enabled", true)) {
+            fileMarkers = MarkerSnapshot.EMPTY;
+            dynmapFileMarkersAvailable = false;
+            return;
+        }
+        if (markersIngestRunning) return;
 
         File pluginsDir = getDataFolder().getParentFile();
         if (pluginsDir == null) pluginsDir = new File("plugins");
-
         File markersYml = new File(pluginsDir, "dynmap" + File.separator + "markers.yml");
-        if (!markersYml.exists()) return;
+        if (!markersYml.isFile()) {
+            fileMarkers = MarkerSnapshot.EMPTY;
+            dynmapFileMarkersAvailable = false;
+            markersFileMtime = -1L;
+            markersFileHash = null;
+            return;
+        }
 
         List<String> requiredContains = getConfig().getStringList("dynmapMarkers.requiredLabelContains");
         if (requiredContains == null || requiredContains.isEmpty()) requiredContains = Arrays.asList("dmarker");
         List<String> exceptionKeywords = getConfig().getStringList("dynmapMarkers.exceptionKeywords");
+        if (exceptionKeywords == null) exceptionKeywords = Collections.emptyList();
 
-        int added = parseDynmapMarkersYml(markersYml, requiredContains, exceptionKeywords);
-        dynmapFileMarkersAvailable = added > 0;
-    }
+        long mtime = markersYml.lastModified();
+        long size = markersYml.length();
+        String filters = requiredContains + "|" + exceptionKeywords;
+        boolean filtersChanged = !filters.equals(markersFileFilters);
+        if (!filtersChanged && mtime == markersFileMtime && size == markersFileSize) {
+            markersSkippedByStat++;
+            return;
+        }
+        markersFileMtime = mtime;
+        markersFileSize = size;
+        markersFileFilters = filters;
+
+        final List<String> req = new ArrayList<>(requiredContains);
+        final List<String> exc = new ArrayList<>(exceptionKeywords);
+        final String knownHash = filtersChanged ? null : markersFileHash;
+        markersIngestRunning = true;
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            try {
+                String hash = sha256Hex(readFileBytes(markersYml));
+                if (hash.equals(knownHash)) {
+                    markersSkippedByHash++;
+                    return;
+                }
 
-    private int parseDynmapMarkersYml(File f, List<String> requiredContains, List<String> exceptionKeywords) {
-        int added = 0;
+                long t0 = System.nanoTime();
+                Map<String, List<MarkerPoint>> parsed;
+                try (Reader r = new BufferedReader(new InputStreamReader(new FileInputStream(markersYml), StandardCharsets.UTF_8))) {
+                    parsed = parseDynmapMarkersYml(r, req, exc);
+                }
+                MarkerSnapshot snap = new MarkerSnapshot(parsed);
+                markersIngestNanos = System.nanoTime() - t0;
 
-        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(f), StandardCharsets.UTF_8))) {
-            String line;
+                fileMarkers = snap;
+                markersFileHash = hash;
+                dynmapFileMarkersAvailable = snap.total > 0;
+            } catch (Throwable ex) {
+                if (getConfig().getBoolean("debug", false)) {
+                    getLogger().warning("Failed to parse dynmap markers.yml: " + ex.getMessage());
+                }
+            } finally {
+                markersIngestRunning = false;
+            }
+        });
+    }
 
-            String label = null;
-            String world = null;
-            Integer x = null;
-            Integer z = null;
+    /**
+     * Streams markers.yml as YAML events and keeps only sets.SET.markers.ID entries, so the
+     * (much larger) areas/lines/icons sections are skipped without building a document tree.
+     */
+    private Map<String, List<MarkerPoint>> parseDynmapMarkersYml(Reader reader, List<String> requiredContains, List<String> exceptionKeywords) {
+        Map<String, List<MarkerPoint>> out = new HashMap<>();
+        List<YamlFrame> stack = new ArrayList<>();
 
-            while ((line = br.readLine()) != null) {
-                String t = line.trim();
-
-                // marker id header line like "someid:"
-                if (t.endsWith(":") && !t.startsWith("-") && !t.startsWith("label:") && !t.startsWith("world:")) {
-                    // flush previous
-                    if (label != null && world != null && x != null && z != null) {
-                        if (labelPassesFilters(label, requiredContains, exceptionKeywords)) {
-                            World w = Bukkit.getWorld(world);
-                            if (w != null) {
-                                int y = w.getHighestBlockYAt(x, z) + 1;
-                                dynmapSpawnMarkers.add(new Location(w, x + 0.5, y, z + 0.5));
-                                added++;
-                            }
-                        }
-                    }
-                    label = null; world = null; x = null; z = null;
-                    continue;
-                }
+        for (Event ev : new Yaml().parse(reader)) {
+            YamlFrame top = stack.isEmpty() ? null : stack.get(stack.size() - 1);
 
-                if (t.startsWith("label:")) {
-                    label = stripQuotes(t.substring("label:".length()).trim());
-                    continue;
+            if (ev instanceof MappingStartEvent || ev instanceof SequenceStartEvent) {
+                String key = null;
+                if (top != null && top.mapping) {
+                    key = top.pendingKey;
+                    top.pendingKey = null;
                 }
-                if (t.startsWith("world:")) {
-                    world = stripQuotes(t.substring("world:".length()).trim());
-                    continue;
+                YamlFrame f = new YamlFrame(ev instanceof MappingStartEvent, key);
+                stack.add(f);
+                // root, sets, <set>, markers, <marker>
+                if (f.mapping && stack.size() == 5
+                        && "sets".equals(stack.get(1).key) && "markers".equals(stack.get(3).key)) {
+                    f.fields = new HashMap<>();
                 }
-                if (t.startsWith("x:")) {
-                    x = tryParseInt(stripQuotes(t.substring("x:".length()).trim()));
-                    continue;
-                }
-                if (t.startsWith("z:")) {
-                    z = tryParseInt(stripQuotes(t.substring("z:".length()).trim()));
-                    continue;
+            } else if (ev instanceof MappingEndEvent || ev instanceof SequenceEndEvent) {
+                if (top == null) continue;
+                stack.remove(stack.size() - 1);
+                if (top.fields != null) addParsedMarker(out, top.fields, requiredContains, exceptionKeywords);
+            } else if (ev instanceof ScalarEvent || ev instanceof AliasEvent) {
+                if (top == null || !top.mapping) continue;
+                if (top.pendingKey == null) {
+                    top.pendingKey = (ev instanceof ScalarEvent se) ? se.getValue() : "";
+                } else {
+                    if (top.fields != null && ev instanceof ScalarEvent se) top.fields.put(top.pendingKey, se.getValue());
+                    top.pendingKey = null;
                 }
             }
+        }
+        return out;
+    }
 
-            // flush at EOF
-            if (label != null && world != null && x != null && z != null) {
-                if (labelPassesFilters(label, requiredContains, exceptionKeywords)) {
-                    World w = Bukkit.getWorld(world);
-                    if (w != null) {
-                        int y = w.getHighestBlockYAt(x, z) + 1;
-                        dynmapSpawnMarkers.add(new Location(w, x + 0.5, y, z + 0.5));
-                        added++;
-                    }
-                }
-            }
+    private void addParsedMarker(Map<String, List<MarkerPoint>> out, Map<String, String> fields,
+                                 List<String> requiredContains, List<String> exceptionKeywords) {
+        String label = fields.get("label");
+        String world = fields.get("world");
+        if (label == null || world == null || world.isEmpty()) return;
+        if (!labelPassesFilters(label, requiredContains, exceptionKeywords)) return;
 
-        } catch (Throwable ex) {
-            if (getConfig().getBoolean("debug", false)) {
-				getLogger().warning("Failed to parse dynmap markers.yml: " + ex.getMessage());
-			}
+        try {
+            double x = Double.parseDouble(fields.get("x"));
+            double z = Double.parseDouble(fields.get("z"));
+            out.computeIfAbsent(world, k -> new ArrayList<>()).add(new MarkerPoint(x, 0.0, z));
+        } catch (Throwable ignored) {
+            // missing/garbled coordinates
         }
-
-        return added;
     }
 
     private boolean labelPassesFilters(String label, List<String> requiredContains, List<String> exceptionKeywords) {
@@ -3269,21 +4283,6 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
         return true;
     }
 
-    private String stripQuotes(String s) {
-        if (s == null) return null;
-        s = s.trim();
-        if ((s.startsWith("\"") && s.endsWith("\"")) || (s.startsWith("'") && s.endsWith("'"))) {
-            return s.substring(1, s.length() - 1);
-        }
-        return s;
-    }
-
-    private Integer tryParseInt(String s) {
-        try { return Integer.parseInt(s); } catch (Throwable ignored) { return null; }
-    }
-
-
-
     private void startDynmapMarkerRefresh() {
         stopTask(dynmapRefreshTaskId);
         dynmapRefreshTaskId = -1;
@@ -3300,8 +4299,9 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
     @SuppressWarnings("unchecked")
     private void refreshDynmapMarkers() {
         // Always try file-based fallback so spawn-near-marker works even if Dynmap API reflection fails.
-        refreshDynmapMarkersFallbackFile();
+        ingestMarkersFileIfChanged();
         if (!dynmapAvailable || dynmapMarkerApi == null) {
+            apiMarkers = null;
             return;
         }
 
@@ -3316,7 +4316,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
             Object setsObj = getSets.invoke(dynmapMarkerApi);
             if (!(setsObj instanceof Set)) return;
 
-            List<Location> found = new ArrayList<>();
+            Map<String, List<MarkerPoint>> found = new HashMap<>();
             for (Object markerSet : (Set<?>) setsObj) {
                 if (markerSet == null) continue;
 
@@ -3364,19 +4364,16 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
                         continue;
                     }
 
-                    World w = Bukkit.getWorld(worldName);
-                    if (w == null) continue;
+                    if (Bukkit.getWorld(worldName) == null) continue;
 
-                    found.add(new Location(w, x, y, z));
+                    found.computeIfAbsent(worldName, k -> new ArrayList<>()).add(new MarkerPoint(x, y, z));
                 }
             }
 
-            synchronized (dynmapSpawnMarkers) {
-                dynmapSpawnMarkers.clear();
-                dynmapSpawnMarkers.addAll(found);
-            }
+            apiMarkers = new MarkerSnapshot(found);
         } catch (Throwable ignored) {
-            // stay quiet; dynmap signatures vary
+            // stay quiet; dynmap signatures vary (the markers.yml snapshot stays in use)
+            apiMarkers = null;
         }
     }
 
@@ -3386,8 +4383,20 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
     private NPC getNpcByEntityUuid(UUID uuid) {
         Integer id = npcIdByEntity.get(uuid);
         if (id == null) return null;
-        try { return CitizensAPI.getNPCRegistry().getById(id); }
-        catch (Throwable ignored) { return null; }
+        boolean cache = Bukkit.isPrimaryThread();
+        if (cache) {
+            NPC npc = npcThisTick.get(uuid);
+            if (npc != null || npcThisTick.containsKey(uuid)) {
+                resolveHits++;
+                return npc;
+            }
+            resolveMisses++;
+        }
+        NPC npc;
+        try { npc = CitizensAPI.getNPCRegistry().getById(id); }
+        catch (Throwable ignored) { npc = null; }
+        if (cache) npcThisTick.put(uuid, npc);
+        return npc;
     }
 
     private NPC getNpcForEntity(Entity entity) {
@@ -3465,6 +4474,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
 
     private void setMercColor(NPC npc, MercColor color) {
         npc.data().setPersistent(CIT_KEY_COLOR, colorToString(color));
+        refreshTrackedMerc(npc);
     }
 
     private MercState getMercState(NPC npc) {
@@ -3482,6 +4492,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
             case TAME -> "tame";
             default -> "wild_neutral";
         });
+        refreshTrackedMerc(npc);
     }
 
     private MercMode getMercMode(NPC npc) {
@@ -3549,6 +4560,7 @@ private void maybeAutoHeal(NPC npc, LivingEntity living) {
 
     private void setOwnerUuid(NPC npc, UUID owner) {
         npc.data().setPersistent(CIT_KEY_OWNER, owner.toString());
+        refreshTrackedMerc(npc);
     }
 
 private UUID getLeaderUuid(NPC npc) {
@@ -3581,10 +4593,11 @@ private java.util.Set<UUID> getCoOwnerUuids(NPC npc) {
 private void setCoOwnerUuids(NPC npc, java.util.Set<UUID> coOwners) {
     if (coOwners == null || coOwners.isEmpty()) {
         try { npc.data().remove(CIT_KEY_COOWNERS); } catch (Throwable ignored) {}
-        return;
+    } else {
+        String joined = coOwners.stream().map(UUID::toString).collect(java.util.stream.Collectors.joining(","));
+        npc.data().setPersistent(CIT_KEY_COOWNERS, joined);
     }
-    String joined = coOwners.stream().map(UUID::toString).collect(java.util.stream.Collectors.joining(","));
-    npc.data().setPersistent(CIT_KEY_COOWNERS, joined);
+    refreshTrackedMerc(npc);
 }
 
 private boolean isOwnerOrCoOwner(NPC npc, Player player) {
@@ -3622,29 +4635,6 @@ private boolean isOwnerOrCoOwner(NPC npc, Player player) {
         return 0L;
     }
 
-    private long getFuseUntilMillis(NPC npc) {
-        try {
-            Object v = npc.data().get(CIT_KEY_FUSE_UNTIL);
-            if (v instanceof Number) return ((Number) v).longValue();
-        } catch (Throwable ignored) {}
-        return 0L;
-    }
-
-    private UUID getFuseTarget(NPC npc) {
-        String s = safeString(npc.data().get(CIT_KEY_FUSE_TARGET), null);
-        if (s == null || s.trim().isEmpty()) return null;
-        try { return UUID.fromString(s.trim()); }
-        catch (Throwable ignored) { return null; }
-    }
-
-    private void setFuseUntilMillis(NPC npc, long until) {
-        npc.data().setPersistent(CIT_KEY_FUSE_UNTIL, until);
-    }
-
-    private void setFuseTarget(NPC npc, UUID target) {
-        npc.data().setPersistent(CIT_KEY_FUSE_TARGET, target.toString());
-    }
-
     // Generic long storage using Citizens data (safe)
     private long getLong(NPC npc, String key, long def) {
         try {
@@ -3663,13 +4653,10 @@ private boolean isOwnerOrCoOwner(NPC npc, Player player) {
     // -------------------------------------------------------------------------
     private int countAliveTracked() {
         int total = 0;
-        Iterator<UUID> it = npcIdByEntity.keySet().iterator();
-        while (it.hasNext()) {
-            UUID uuid = it.next();
-            Entity ent = Bukkit.getEntity(uuid);
+        for (UUID uuid : new ArrayList<>(npcIdByEntity.keySet())) {
+            Entity ent = resolveEntity(uuid);
             if (ent == null || !ent.isValid() || ent.isDead()) {
-                it.remove();
-                typeByEntity.remove(uuid);
+                untrackMerc(uuid);
                 continue;
             }
             total++;
@@ -2,10 +2,14 @@ package com.redchanit.stonepurifier;
 
 import org.bukkit.Bukkit;
 import org.bukkit.Chunk;
+import org.bukkit.ChunkSnapshot;
 import org.bukkit.Material;
 import org.bukkit.World;
+import org.bukkit.block.Block;
+import org.bukkit.block.data.BlockData;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandSender;
+import org.bukkit.configuration.ConfigurationSection;
 import org.bukkit.configuration.file.YamlConfiguration;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -16,30 +20,66 @@ import org.bukkit.scheduler.BukkitRunnable;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.reflect.Method;
 import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 public final class StonePurifier extends JavaPlugin implements Listener {
 
-    private static final Set<Material> TARGET_MATERIALS = Set.of(
+    private static final Set<Material> TARGET_MATERIALS = EnumSet.of(
             Material.DIORITE,
             Material.ANDESITE,
             Material.GRANITE
     );
 
+    // Used for the palette check on snapshots (ChunkSnapshot.contains only looks at the palettes).
+    private static final BlockData[] TARGET_BLOCK_DATA = {
+            Material.DIORITE.createBlockData(),
+            Material.ANDESITE.createBlockData(),
+            Material.GRANITE.createBlockData()
+    };
+
+    // Smallest per-tick budget the backoff will shrink to, so a lagging server still makes progress.
+    private static final double MIN_TICK_BUDGET_MS = 0.25;
+
+    // Without Paper's tick times we only see tick intervals; anything this far over 50ms is lag.
+    private static final double INTERVAL_LAG_SLACK_MS = 2.0;
+
     private File configFile;
     private YamlConfiguration config;
+    private File progressFile;
 
     private int defaultRadiusChunks;
-    private int chunksPerTick;
+    private double tickBudgetMs;
+    private double targetMspt;
+    private int progressSaveSeconds;
+    private int maxScansInFlight;
     private boolean processNewChunks;
     private boolean logNewChunkEdits;
 
     // Avoid multiple concurrent clean tasks
     private boolean cleanTaskRunning = false;
 
+    // Remaining work of the running cleanup, saved to cleanup-progress.yml so a restart resumes it
+    private CleanupJob currentJob;
+
+    // Paper's Server#getAverageTickTime, if present (looked up once)
+    private Method averageTickTimeMethod;
+
+    // Throughput of the running (or last finished) cleanup, shown by /stonepurifier status
+    private CleanupStats currentStats;
+    private CleanupStats lastStats;
+
     @Override
     public void onEnable() {
         setupConfigFile();
@@ -47,13 +87,35 @@ public final class StonePurifier extends JavaPlugin implements Listener {
 
         Bukkit.getPluginManager().registerEvents(this, this);
 
+        try {
+            averageTickTimeMethod = Bukkit.getServer().getClass().getMethod("getAverageTickTime");
+        } catch (Throwable ignored) {
+            averageTickTimeMethod = null;
+        }
+
         getLogger().info("StonePurifier enabled. processNewChunks=" + processNewChunks
                 + ", defaultRadiusChunks=" + defaultRadiusChunks
-                + ", chunksPerTick=" + chunksPerTick);
+                + ", tickBudgetMs=" + tickBudgetMs
+                + ", targetMspt=" + targetMspt
+                + ", maxScansInFlight=" + maxScansInFlight);
+
+        // Give worlds a moment to finish loading before resuming an interrupted cleanup.
+        if (progressFile.exists()) {
+            Bukkit.getScheduler().runTaskLater(this, this::resumeSavedCleanup, 20L * 5L);
+        }
     }
 
     @Override
     public void onDisable() {
+        if (currentJob != null) {
+            saveProgress(currentJob, false);
+            getLogger().info("StonePurifier: cleanup interrupted; " + currentJob.remaining()
+                    + " chunks saved to " + progressFile.getName() + ".");
+            for (ChunkKey key : currentJob.inFlight) {
+                World world = Bukkit.getWorld(key.worldName);
+                if (world != null) world.removePluginChunkTicket(key.x, key.z, this);
+            }
+        }
         getLogger().info("StonePurifier disabled.");
     }
 
@@ -64,6 +126,7 @@ public final class StonePurifier extends JavaPlugin implements Listener {
         }
 
         configFile = new File(dataFolder, "config.yml");
+        progressFile = new File(dataFolder, "cleanup-progress.yml");
         if (!configFile.exists()) {
             config = new YamlConfiguration();
 
@@ -71,7 +134,10 @@ public final class StonePurifier extends JavaPlugin implements Listener {
             config.set("processNewChunks", true);
             config.set("logNewChunkEdits", false);
             config.set("defaultRadiusChunks", 4);
-            config.set("chunksPerTick", 1);
+            config.set("tickBudgetMs", 4.0);
+            config.set("targetMspt", 45.0);
+            config.set("progressSaveSeconds", 30);
+            config.set("maxScansInFlight", 8);
 
             try {
                 config.save(configFile);
@@ -87,7 +153,18 @@ public final class StonePurifier extends JavaPlugin implements Listener {
         processNewChunks = config.getBoolean("processNewChunks", true);
         logNewChunkEdits = config.getBoolean("logNewChunkEdits", false);
         defaultRadiusChunks = Math.max(0, config.getInt("defaultRadiusChunks", 4));
-        chunksPerTick = Math.max(1, config.getInt("chunksPerTick", 1));
+        tickBudgetMs = Math.max(MIN_TICK_BUDGET_MS, config.getDouble("tickBudgetMs", 4.0));
+        targetMspt = Math.max(1.0, config.getDouble("targetMspt", 45.0));
+        progressSaveSeconds = Math.max(5, config.getInt("progressSaveSeconds", 30));
+        maxScansInFlight = Math.max(1, config.getInt("maxScansInFlight", 8));
+
+        // Pre-budget configs capped cleanup by chunk count. A chunk count does not translate into
+        // milliseconds, so the old value is not converted; just point the admin at the new key.
+        if (config.contains("chunksPerTick")) {
+            getLogger().warning("config.yml: chunksPerTick is no longer used and is ignored. Cleanup now runs on a "
+                    + "per-tick time budget; set tickBudgetMs instead (currently " + tickBudgetMs + " ms"
+                    + (config.contains("tickBudgetMs") ? "" : ", the default") + ") and remove chunksPerTick.");
+        }
     }
 
     @EventHandler
@@ -108,24 +185,69 @@ public final class StonePurifier extends JavaPlugin implements Listener {
     /**
      * Replace DIORITE/ANDESITE/GRANITE blocks in a chunk with STONE.
      * Only exact block types are replaced (not polished variants, slabs, stairs, etc.).
+     * Runs entirely on the main thread; used for brand-new chunks so they are clean before anyone sees them.
      */
     private int replaceInChunk(Chunk chunk) {
         World world = chunk.getWorld();
-        int minY = world.getMinHeight();
-        int maxY = world.getMaxHeight(); // exclusive
-        int replaced = 0;
+        ChunkScan scan = scanSnapshot(new ChunkKey(world.getName(), chunk.getX(), chunk.getZ()),
+                chunk.getChunkSnapshot(false, false, false), world.getMinHeight(), world.getMaxHeight());
+        return applyScan(chunk, scan);
+    }
 
-        for (int x = 0; x < 16; x++) {
-            for (int z = 0; z < 16; z++) {
-                for (int y = minY; y < maxY; y++) {
-                    Material current = chunk.getBlock(x, y, z).getType();
-                    if (TARGET_MATERIALS.contains(current)) {
-                        chunk.getBlock(x, y, z).setType(Material.STONE, false);
-                        replaced++;
+    /**
+     * Finds target blocks in a snapshot. Safe to run off the main thread.
+     * Chunks whose palettes hold none of the targets are rejected without a block walk,
+     * and empty (all-air) sections are skipped.
+     */
+    private static ChunkScan scanSnapshot(ChunkKey key, ChunkSnapshot snapshot, int minY, int maxY) {
+        long start = System.nanoTime();
+        ChunkScan scan = new ChunkScan(key, minY);
+
+        boolean anyTarget = false;
+        for (BlockData data : TARGET_BLOCK_DATA) {
+            if (snapshot.contains(data)) {
+                anyTarget = true;
+                break;
+            }
+        }
+
+        if (anyTarget) {
+            int sections = (maxY - minY + 15) >> 4;
+            for (int section = 0; section < sections; section++) {
+                if (snapshot.isSectionEmpty(section)) continue;
+
+                int sectionMinY = minY + (section << 4);
+                int sectionMaxY = Math.min(maxY, sectionMinY + 16);
+                for (int y = sectionMinY; y < sectionMaxY; y++) {
+                    for (int x = 0; x < 16; x++) {
+                        for (int z = 0; z < 16; z++) {
+                            if (TARGET_MATERIALS.contains(snapshot.getBlockType(x, y, z))) {
+                                scan.add(x, y, z);
+                            }
+                        }
                     }
                 }
             }
         }
+
+        scan.scanNanos = System.nanoTime() - start;
+        return scan;
+    }
+
+    /**
+     * Main thread only. Re-checks each position (the world may have changed since the snapshot)
+     * and replaces it with STONE without physics.
+     */
+    private static int applyScan(Chunk chunk, ChunkScan scan) {
+        int replaced = 0;
+        for (int i = 0; i < scan.count; i++) {
+            int packed = scan.positions[i];
+            Block block = chunk.getBlock(ChunkScan.x(packed), scan.y(packed), ChunkScan.z(packed));
+            if (TARGET_MATERIALS.contains(block.getType())) {
+                block.setType(Material.STONE, false);
+                replaced++;
+            }
+        }
         return replaced;
     }
 
@@ -148,6 +270,17 @@ public final class StonePurifier extends JavaPlugin implements Listener {
             return true;
         }
 
+        if (args.length >= 1 && args[0].equalsIgnoreCase("status")) {
+            if (currentStats != null) {
+                sender.sendMessage("StonePurifier: running: " + currentStats.describe());
+            } else if (lastStats != null) {
+                sender.sendMessage("StonePurifier: last cleanup: " + lastStats.describe());
+            } else {
+                sender.sendMessage("StonePurifier: no cleanup has run yet.");
+            }
+            return true;
+        }
+
         if (cleanTaskRunning) {
             sender.sendMessage("A StonePurifier cleanup task is already running.");
             return true;
@@ -158,7 +291,7 @@ public final class StonePurifier extends JavaPlugin implements Listener {
             try {
                 radius = Math.max(0, Integer.parseInt(args[0]));
             } catch (NumberFormatException ignored) {
-                sender.sendMessage("Invalid radius. Usage: /stonepurifier [radiusChunks]  OR  /stonepurifier reload");
+                sender.sendMessage("Invalid radius. Usage: /stonepurifier [radiusChunks]  OR  /stonepurifier reload|status");
                 return true;
             }
         }
@@ -177,7 +310,7 @@ public final class StonePurifier extends JavaPlugin implements Listener {
         World world = player.getWorld();
         Chunk center = player.getLocation().getChunk();
 
-        Deque<Chunk> chunksToProcess = new ArrayDeque<>();
+        Deque<ChunkKey> chunksToProcess = new ArrayDeque<>();
         Set<Long> seen = new HashSet<>();
 
         // Only loaded chunks in radius
@@ -188,10 +321,8 @@ public final class StonePurifier extends JavaPlugin implements Listener {
             for (int z = cz - radiusChunks; z <= cz + radiusChunks; z++) {
                 if (!world.isChunkLoaded(x, z)) continue;
 
-                Chunk chunk = world.getChunkAt(x, z);
-                long key = (((long) chunk.getX()) << 32) ^ (chunk.getZ() & 0xffffffffL);
-                if (seen.add(key)) {
-                    chunksToProcess.add(chunk);
+                if (seen.add(ChunkKey.pack(x, z))) {
+                    chunksToProcess.add(new ChunkKey(world.getName(), x, z));
                 }
             }
         }
@@ -204,15 +335,15 @@ public final class StonePurifier extends JavaPlugin implements Listener {
         player.sendMessage("StonePurifier: cleaning " + chunksToProcess.size()
                 + " loaded chunks within radius " + radiusChunks + " (processed over time).");
 
-        runCleanupTask(player, chunksToProcess);
+        runCleanupTask(player, new CleanupJob(chunksToProcess, false));
     }
 
     private void startCleanupAllLoaded(CommandSender sender) {
-        Deque<Chunk> chunksToProcess = new ArrayDeque<>();
+        Deque<ChunkKey> chunksToProcess = new ArrayDeque<>();
 
         for (World world : Bukkit.getWorlds()) {
             for (Chunk chunk : world.getLoadedChunks()) {
-                chunksToProcess.add(chunk);
+                chunksToProcess.add(new ChunkKey(world.getName(), chunk.getX(), chunk.getZ()));
             }
         }
 
@@ -224,53 +355,347 @@ public final class StonePurifier extends JavaPlugin implements Listener {
         sender.sendMessage("StonePurifier: cleaning ALL loaded chunks (" + chunksToProcess.size()
                 + ") across all worlds (processed over time).");
 
-        runCleanupTask(sender, chunksToProcess);
+        runCleanupTask(sender, new CleanupJob(chunksToProcess, false));
+    }
+
+    /**
+     * Picks up a cleanup that was still running at the last shutdown. Its chunks are no longer
+     * loaded, so this job loads (already generated) chunks as it reaches them.
+     */
+    private void resumeSavedCleanup() {
+        if (cleanTaskRunning) return;
+
+        YamlConfiguration saved = YamlConfiguration.loadConfiguration(progressFile);
+        Deque<ChunkKey> chunksToProcess = new ArrayDeque<>();
+        ConfigurationSection worlds = saved.getConfigurationSection("worlds");
+        if (worlds != null) {
+            for (String worldName : worlds.getKeys(false)) {
+                for (long packed : saved.getLongList("worlds." + worldName)) {
+                    chunksToProcess.add(new ChunkKey(worldName, ChunkKey.unpackX(packed), ChunkKey.unpackZ(packed)));
+                }
+            }
+        }
+
+        if (chunksToProcess.isEmpty()) {
+            deleteProgress();
+            return;
+        }
+
+        CommandSender console = Bukkit.getConsoleSender();
+        console.sendMessage("StonePurifier: resuming interrupted cleanup (" + chunksToProcess.size()
+                + " chunks remaining, " + saved.getLong("blocksReplaced", 0L) + " blocks replaced before restart).");
+
+        CleanupJob job = new CleanupJob(chunksToProcess, true);
+        job.blocksReplacedBefore = saved.getLong("blocksReplaced", 0L);
+        runCleanupTask(console, job);
+    }
+
+    /** Writes the job's unfinished chunks (queued and in flight). Async writes go through a copy. */
+    private void saveProgress(CleanupJob job, boolean async) {
+        Map<String, List<Long>> byWorld = new HashMap<>();
+        for (ChunkKey key : job.chunksToProcess) {
+            byWorld.computeIfAbsent(key.worldName, k -> new ArrayList<>()).add(ChunkKey.pack(key.x, key.z));
+        }
+        for (ChunkKey key : job.inFlight) {
+            byWorld.computeIfAbsent(key.worldName, k -> new ArrayList<>()).add(ChunkKey.pack(key.x, key.z));
+        }
+
+        YamlConfiguration out = new YamlConfiguration();
+        for (Map.Entry<String, List<Long>> e : byWorld.entrySet()) {
+            out.set("worlds." + e.getKey(), e.getValue());
+        }
+        out.set("blocksReplaced", job.blocksReplacedBefore + job.stats.blocksReplaced);
+
+        Runnable write = () -> {
+            // A late async save must not bring back the file of a job that already finished.
+            synchronized (progressFile) {
+                if (job.finished) return;
+                try {
+                    out.save(progressFile);
+                } catch (IOException e) {
+                    getLogger().warning("Failed to save cleanup progress: " + e.getMessage());
+                }
+            }
+        };
+        if (async) {
+            Bukkit.getScheduler().runTaskAsynchronously(this, write);
+        } else {
+            write.run();
+        }
+    }
+
+    private void deleteProgress() {
+        synchronized (progressFile) {
+            if (progressFile.exists() && !progressFile.delete()) {
+                getLogger().warning("Could not delete " + progressFile.getName());
+            }
+        }
+    }
+
+    /**
+     * Server tick time in ms. Uses Paper's average tick time when available; otherwise the
+     * interval between our own ticks (never below 50ms, so only lag shows up there).
+     */
+    private double measureMspt(double tickIntervalMs) {
+        if (averageTickTimeMethod != null) {
+            try {
+                return ((Number) averageTickTimeMethod.invoke(Bukkit.getServer())).doubleValue();
+            } catch (Throwable ignored) {
+                averageTickTimeMethod = null;
+            }
+        }
+        return tickIntervalMs;
+    }
+
+    private boolean serverBehind(double mspt) {
+        if (averageTickTimeMethod != null) {
+            return mspt > targetMspt;
+        }
+        return mspt > 50.0 + INTERVAL_LAG_SLACK_MS;
     }
 
-    private void runCleanupTask(CommandSender sender, Deque<Chunk> chunksToProcess) {
+    /**
+     * Cleanup pipeline, time-budgeted: each tick alternates between applying finished scans and
+     * snapshotting new chunks for the async scanners (at most maxScansInFlight at once) until the
+     * tick budget is used. The budget halves while the server is behind targetMspt and grows back
+     * slowly up to tickBudgetMs. Only matching positions are touched on the main thread.
+     */
+    private void runCleanupTask(CommandSender sender, CleanupJob job) {
         cleanTaskRunning = true;
+        currentJob = job;
+        CleanupStats stats = job.stats;
+        currentStats = stats;
+        stats.budgetMs = tickBudgetMs;
+
+        Queue<ChunkScan> finishedScans = new ConcurrentLinkedQueue<>();
 
         new BukkitRunnable() {
-            private int chunksDone = 0;
-            private int totalReplaced = 0;
+            private int nextProgressPing = 25;
+            private long lastTickNanos = 0L;
+            private double intervalAvgMs = 50.0;
+            private long nextSaveNanos = System.nanoTime() + progressSaveSeconds * 1_000_000_000L;
 
             @Override
             public void run() {
-                int processedThisTick = 0;
-
-                while (processedThisTick < chunksPerTick && !chunksToProcess.isEmpty()) {
-                    Chunk chunk = chunksToProcess.pollFirst();
-                    if (chunk == null) break;
+                long tickStart = System.nanoTime();
+                if (lastTickNanos != 0L) {
+                    intervalAvgMs = intervalAvgMs * 0.9 + ((tickStart - lastTickNanos) / 1_000_000.0) * 0.1;
+                }
+                lastTickNanos = tickStart;
+
+                stats.mspt = measureMspt(intervalAvgMs);
+                if (serverBehind(stats.mspt)) {
+                    stats.budgetMs = Math.max(MIN_TICK_BUDGET_MS, stats.budgetMs * 0.5);
+                    stats.backoffs++;
+                } else {
+                    stats.budgetMs = Math.min(tickBudgetMs, stats.budgetMs + tickBudgetMs * 0.05);
+                }
 
-                    // Chunk might unload between enqueue and processing; skip if unloaded
-                    if (!chunk.isLoaded()) {
-                        processedThisTick++;
-                        chunksDone++;
+                long deadline = tickStart + (long) (stats.budgetMs * 1_000_000.0);
+                do {
+                    // Apply finished scans first so snapshots don't pile up.
+                    ChunkScan scan = finishedScans.poll();
+                    if (scan != null) {
+                        job.inFlight.remove(scan.key);
+                        stats.scanNanos += scan.scanNanos;
+
+                        World world = Bukkit.getWorld(scan.key.worldName);
+                        if (world == null) {
+                            stats.chunksDone++;
+                            continue;
+                        }
+                        if (!world.isChunkLoaded(scan.key.x, scan.key.z)) {
+                            // The ticket should have kept it loaded; rescan later rather than lose the replacements
+                            world.removePluginChunkTicket(scan.key.x, scan.key.z, StonePurifier.this);
+                            job.chunksToProcess.addLast(scan.key);
+                            continue;
+                        }
+                        if (scan.count > 0) {
+                            stats.blocksReplaced += applyScan(world.getChunkAt(scan.key.x, scan.key.z), scan);
+                        }
+                        world.removePluginChunkTicket(scan.key.x, scan.key.z, StonePurifier.this);
+                        stats.chunksDone++;
                         continue;
                     }
 
-                    int replaced = replaceInChunk(chunk);
-                    totalReplaced += replaced;
+                    if (job.inFlight.size() >= maxScansInFlight || job.chunksToProcess.isEmpty()) break;
 
-                    processedThisTick++;
-                    chunksDone++;
-                }
+                    ChunkKey key = job.chunksToProcess.pollFirst();
+                    World world = Bukkit.getWorld(key.worldName);
+                    Chunk chunk = world == null ? null : loadedChunk(world, key, job.loadUnloaded);
 
-                if (chunksToProcess.isEmpty()) {
-                    sender.sendMessage("StonePurifier: cleanup complete. Chunks processed="
-                            + chunksDone + ", blocks replaced=" + totalReplaced + ".");
+                    // Chunk might unload between enqueue and processing; skip if unloaded
+                    if (chunk == null) {
+                        stats.chunksDone++;
+                        continue;
+                    }
+
+                    int minY = world.getMinHeight();
+                    int maxY = world.getMaxHeight();
+                    ChunkSnapshot snapshot = chunk.getChunkSnapshot(false, false, false);
+                    // Hold the chunk until the scan is applied; otherwise it can unload while the scan is out
+                    world.addPluginChunkTicket(key.x, key.z, StonePurifier.this);
+                    job.inFlight.add(key);
+                    Bukkit.getScheduler().runTaskAsynchronously(StonePurifier.this,
+                            () -> finishedScans.add(scanSnapshot(key, snapshot, minY, maxY)));
+                } while (System.nanoTime() < deadline);
+
+                if (job.chunksToProcess.isEmpty() && job.inFlight.isEmpty()) {
+                    stats.finish();
+                    sender.sendMessage("StonePurifier: cleanup complete. " + stats.describe());
+                    lastStats = stats;
+                    currentStats = null;
+                    currentJob = null;
                     cleanTaskRunning = false;
+                    job.finished = true;
+                    deleteProgress();
                     cancel();
                     return;
                 }
 
+                if (tickStart >= nextSaveNanos) {
+                    nextSaveNanos = tickStart + progressSaveSeconds * 1_000_000_000L;
+                    saveProgress(job, true);
+                }
+
                 // Light progress ping every so often
-                if (chunksDone % 25 == 0) {
-                    sender.sendMessage("StonePurifier: progress: chunks processed="
-                            + chunksDone + ", blocks replaced=" + totalReplaced
-                            + ", remaining chunks=" + chunksToProcess.size() + ".");
+                if (stats.chunksDone >= nextProgressPing) {
+                    nextProgressPing = stats.chunksDone + 25;
+                    sender.sendMessage("StonePurifier: progress: " + stats.describe()
+                            + ", remaining chunks=" + job.remaining() + ".");
                 }
             }
         }.runTaskTimer(this, 1L, 1L);
     }
+
+    private Chunk loadedChunk(World world, ChunkKey key, boolean loadUnloaded) {
+        if (world.isChunkLoaded(key.x, key.z)) {
+            return world.getChunkAt(key.x, key.z);
+        }
+        if (loadUnloaded && world.isChunkGenerated(key.x, key.z)) {
+            return world.getChunkAt(key.x, key.z);
+        }
+        return null;
+    }
+
+    /** A chunk position that stays valid across unloads and restarts. */
+    private static final class ChunkKey {
+        final String worldName;
+        final int x;
+        final int z;
+
+        ChunkKey(String worldName, int x, int z) {
+            this.worldName = worldName;
+            this.x = x;
+            this.z = z;
+        }
+
+        static long pack(int x, int z) {
+            return (((long) x) << 32) ^ (z & 0xffffffffL);
+        }
+
+        static int unpackX(long packed) {
+            return (int) (packed >> 32);
+        }
+
+        static int unpackZ(long packed) {
+            return (int) packed;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChunkKey other)) return false;
+            return x == other.x && z == other.z && worldName.equals(other.worldName);
+        }
+
+        @Override
+        public int hashCode() {
+            return (worldName.hashCode() * 31 + x) * 31 + z;
+        }
+    }
+
+    /** Queued and in-flight chunks of one cleanup run. Main thread only, except the finished flag. */
+    private static final class CleanupJob {
+        final Deque<ChunkKey> chunksToProcess;
+        final Set<ChunkKey> inFlight = new HashSet<>();
+        final boolean loadUnloaded;
+        final CleanupStats stats;
+        long blocksReplacedBefore;
+        volatile boolean finished;
+
+        CleanupJob(Deque<ChunkKey> chunksToProcess, boolean loadUnloaded) {
+            this.chunksToProcess = chunksToProcess;
+            this.loadUnloaded = loadUnloaded;
+            this.stats = new CleanupStats(chunksToProcess.size());
+        }
+
+        int remaining() {
+            return chunksToProcess.size() + inFlight.size();
+        }
+    }
+
+    /** Target positions found in one chunk snapshot, packed as (y - minY) << 8 | x << 4 | z. */
+    private static final class ChunkScan {
+        final ChunkKey key;
+        final int minY;
+        int[] positions = new int[64];
+        int count;
+        long scanNanos;
+
+        ChunkScan(ChunkKey key, int minY) {
+            this.key = key;
+            this.minY = minY;
+        }
+
+        void add(int x, int y, int z) {
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = ((y - minY) << 8) | (x << 4) | z;
+        }
+
+        static int x(int packed) {
+            return (packed >> 4) & 15;
+        }
+
+        int y(int packed) {
+            return (packed >>> 8) + minY;
+        }
+
+        static int z(int packed) {
+            return packed & 15;
+        }
+    }
+
+    /** Counters for one cleanup run. Only touched on the main thread. */
+    private static final class CleanupStats {
+        final int chunksQueued;
+        final long startNanos = System.nanoTime();
+        long endNanos;
+        int chunksDone;
+        long blocksReplaced;
+        long scanNanos;
+        double budgetMs;
+        double mspt;
+        int backoffs;
+
+        CleanupStats(int chunksQueued) {
+            this.chunksQueued = chunksQueued;
+        }
+
+        void finish() {
+            endNanos = System.nanoTime();
+        }
+
+        String describe() {
+            long elapsed = (endNanos != 0 ? endNanos : System.nanoTime()) - startNanos;
+            double seconds = Math.max(elapsed / 1_000_000_000.0, 1e-3);
+            return "Chunks processed=" + chunksDone + "/" + chunksQueued
+                    + ", blocks replaced=" + blocksReplaced
+                    + String.format(" (%.1f chunks/sec, %.0f blocks/sec, avg scan %.2f ms/chunk, %.1fs)",
+                    chunksDone / seconds, blocksReplaced / seconds,
+                    chunksDone == 0 ? 0.0 : scanNanos / 1_000_000.0 / chunksDone, seconds)
+                    + String.format(", budget %.2f ms/tick, mspt %.1f, backoffs=%d", budgetMs, mspt, backoffs);
+        }
+    }
 }
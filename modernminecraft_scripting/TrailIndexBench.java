@@ -0,0 +1,318 @@
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TrailIndexBench
+ *
+ * Offline micro-benchmark of TronLightcycle's TrailIndex against the map it replaced
+ * (ConcurrentHashMap keyed by a BlockKey object per lookup).
+ *
+ * "run" keeps a sliding window of live trail segments, as riders laying trail and the expiry wheel
+ * retiring it would, and times each operation in blocks:
+ * - insert: a new segment, two keys (y and y+1)
+ * - lookup: the sweep's probes, half on live trail blocks and half on empty neighbours
+ * - expire: the oldest segment, both keys
+ * for several window sizes. Each block's hit count is compared between the two structures, and the
+ * run fails if they ever differ.
+ *
+ * Build / run next to TronLightcycle.java, with the Spigot API jar and the plugin jar on the classpath:
+ *   javac -cp spigot-api-1.21.10-R0.1-SNAPSHOT.jar;TronLightcycle.jar TrailIndexBench.java
+ *   java -cp .;spigot-api-1.21.10-R0.1-SNAPSHOT.jar;TronLightcycle.jar TrailIndexBench run
+ *
+ * Notes:
+ * - Not a plugin; no yaml. TrailIndex is a private nested class, so it is reached through method
+ *   handles (bound once, then inlined by the JIT) rather than Method.invoke, whose per-call cost
+ *   would swamp a few-nanosecond probe.
+ * - Segments are created outside the timed blocks; the BlockKey per map operation is inside them,
+ *   because allocating it was part of the old lookup's cost.
+ * - Allocation per operation is read from the HotSpot thread allocation counter ("n/a" elsewhere).
+ */
+public final class TrailIndexBench {
+
+    private static final int[] WINDOW_SEGMENTS = { 1_000, 10_000, 100_000 };
+    private static final int BLOCK = 4_096;
+    private static final int BLOCKS_PER_SIZE = 64;
+    private static final int PROBES_PER_SEGMENT = 6; // three sweep lines, two heights
+    private static final int ARENA_Y = 64;
+
+    private static final UUID WORLD = new UUID(0xB0A7L, 0L);
+    private static final UUID RIDER = new UUID(0x07E5L, 2L);
+    private static final UUID PROBER = new UUID(0x5E1FL, 1L);
+
+    // Reflected TronLightcycle internals
+    private static final MethodHandle NEW_INDEX;
+    private static final MethodHandle NEW_SEGMENT;
+    private static final MethodHandle INDEX_PUT;
+    private static final MethodHandle INDEX_REMOVE;
+    private static final MethodHandle INDEX_HITS_TRAIL;
+    private static final MethodHandle INDEX_SIZE;
+    private static final MethodHandle PACK_BLOCK_KEY;
+    private static final Object ANY_CYCLE_COLOR;
+
+    static {
+        try {
+            Class<?> plugin = Class.forName("TronLightcycle");
+            Class<?> trailIndex = Class.forName("TronLightcycle$TrailIndex");
+            Class<?> trailSegment = Class.forName("TronLightcycle$TrailSegment");
+            MethodHandles.Lookup lookup = MethodHandles.privateLookupIn(plugin, MethodHandles.lookup());
+
+            NEW_INDEX = lookup.findConstructor(trailIndex, MethodType.methodType(void.class, int.class))
+                    .asType(MethodType.methodType(Object.class, int.class));
+            MethodHandle segmentCtor = null;
+            for (java.lang.reflect.Constructor<?> ctor : trailSegment.getDeclaredConstructors()) {
+                if (ctor.getParameterCount() == 11) segmentCtor = lookup.unreflectConstructor(ctor);
+            }
+            if (segmentCtor == null) throw new IllegalStateException("TrailSegment constructor not found");
+            NEW_SEGMENT = segmentCtor.asType(segmentCtor.type().changeReturnType(Object.class));
+
+            INDEX_PUT = lookup.findVirtual(trailIndex, "put", MethodType.methodType(void.class, long.class, trailSegment))
+                    .asType(MethodType.methodType(void.class, Object.class, long.class, Object.class));
+            INDEX_REMOVE = lookup.findVirtual(trailIndex, "remove", MethodType.methodType(void.class, long.class, trailSegment))
+                    .asType(MethodType.methodType(void.class, Object.class, long.class, Object.class));
+            INDEX_HITS_TRAIL = lookup.findVirtual(trailIndex, "hitsTrail",
+                    MethodType.methodType(boolean.class, long.class, long.class, long.class, long.class, long.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, long.class, long.class, long.class, long.class, long.class));
+            INDEX_SIZE = lookup.findVirtual(trailIndex, "size", MethodType.methodType(int.class))
+                    .asType(MethodType.methodType(int.class, Object.class));
+            PACK_BLOCK_KEY = lookup.findStatic(plugin, "packBlockKey", MethodType.methodType(long.class, int.class, int.class, int.class));
+
+            ANY_CYCLE_COLOR = Class.forName("TronLightcycle$CycleColor").getEnumConstants()[0];
+        } catch (Throwable t) {
+            throw new ExceptionInInitializerError(t);
+        }
+    }
+
+    private TrailIndexBench() {
+    }
+
+    public static void main(String[] args) throws Throwable {
+        if (args.length < 1 || !args[0].equalsIgnoreCase("run")) {
+            System.out.println("Usage: TrailIndexBench run");
+            System.exit(2);
+            return;
+        }
+
+        // One untimed pass so both structures are compiled before anything is reported
+        measure(10_000, false);
+
+        boolean ok = true;
+        for (int segments : WINDOW_SEGMENTS) ok &= measure(segments, true);
+
+        System.out.println("[TrailIndexBench] " + (ok ? "OK: hit counts match" : "FAILED: hit counts differ"));
+        System.exit(ok ? 0 : 1);
+    }
+
+    static boolean measure(int windowSegments, boolean report) throws Throwable {
+        int totalSegments = windowSegments + BLOCK * BLOCKS_PER_SIZE;
+        int[][] path = trailPath(totalSegments, new Random(0x7A11L + windowSegments));
+        Object[] segments = new Object[totalSegments];
+        for (int i = 0; i < totalSegments; i++) {
+            segments[i] = NEW_SEGMENT.invoke(WORLD, path[i][0], path[i][1], path[i][2], 0L, RIDER, ANY_CYCLE_COLOR,
+                    null, null, false, null);
+        }
+
+        Object index = NEW_INDEX.invoke(256);
+        Map<OldBlockKey, Object> old = new ConcurrentHashMap<>();
+        for (int i = 0; i < windowSegments; i++) {
+            newInsert(index, path[i], segments[i]);
+            oldInsert(old, path[i], segments[i]);
+        }
+
+        Timings fresh = new Timings();
+        Timings legacy = new Timings();
+        Random probeRandom = new Random(0x960BEL + windowSegments);
+        int[][] probes = new int[BLOCK * PROBES_PER_SEGMENT][];
+        boolean ok = true;
+
+        int head = windowSegments;
+        int tail = 0;
+        for (int block = 0; block < BLOCKS_PER_SIZE; block++) {
+            // Probes near the newest blocks: half on live trail, half one block off to the side
+            for (int p = 0; p < probes.length; p++) {
+                int[] near = path[head - 1 - probeRandom.nextInt(Math.min(windowSegments, 512))];
+                boolean miss = (p & 1) == 1;
+                probes[p] = new int[] { near[0] + (miss ? 3 : 0), near[1] + (p % 3 == 0 ? 1 : 0), near[2] + (miss ? 3 : 0) };
+            }
+
+            long t0 = System.nanoTime();
+            long a0 = allocatedBytes();
+            for (int i = head; i < head + BLOCK; i++) newInsert(index, path[i], segments[i]);
+            long a1 = allocatedBytes();
+            long t1 = System.nanoTime();
+            int newHits = 0;
+            for (int[] probe : probes) if (newLookup(index, probe)) newHits++;
+            long a2 = allocatedBytes();
+            long t2 = System.nanoTime();
+            for (int i = tail; i < tail + BLOCK; i++) newExpire(index, path[i], segments[i]);
+            long a3 = allocatedBytes();
+            long t3 = System.nanoTime();
+            fresh.add(t1 - t0, t2 - t1, t3 - t2, a1 - a0, a2 - a1, a3 - a2);
+
+            t0 = System.nanoTime();
+            a0 = allocatedBytes();
+            for (int i = head; i < head + BLOCK; i++) oldInsert(old, path[i], segments[i]);
+            a1 = allocatedBytes();
+            t1 = System.nanoTime();
+            int oldHits = 0;
+            for (int[] probe : probes) if (oldLookup(old, probe)) oldHits++;
+            a2 = allocatedBytes();
+            t2 = System.nanoTime();
+            for (int i = tail; i < tail + BLOCK; i++) oldExpire(old, path[i], segments[i]);
+            a3 = allocatedBytes();
+            t3 = System.nanoTime();
+            legacy.add(t1 - t0, t2 - t1, t3 - t2, a1 - a0, a2 - a1, a3 - a2);
+
+            head += BLOCK;
+            tail += BLOCK;
+            if (newHits != oldHits || (int) INDEX_SIZE.invokeExact(index) != old.size()) {
+                ok = false;
+                System.out.println("[TrailIndexBench] MISMATCH at " + windowSegments + " segments, block " + block
+                        + ": hits " + newHits + " vs " + oldHits + ", keys " + (int) INDEX_SIZE.invokeExact(index) + " vs " + old.size());
+            }
+        }
+
+        if (report) {
+            long ops = (long) BLOCK * BLOCKS_PER_SIZE;
+            System.out.println(String.format(Locale.ROOT, "[TrailIndexBench] %,7d segments  TrailIndex: %s", windowSegments, fresh.describe(ops)));
+            System.out.println(String.format(Locale.ROOT, "[TrailIndexBench] %,7d segments  old map:    %s", windowSegments, legacy.describe(ops)));
+        }
+        return ok;
+    }
+
+    /** Riders turning at random on a plane, one segment per block stepped; no block is laid twice in a row. */
+    static int[][] trailPath(int count, Random random) {
+        int[][] path = new int[count][];
+        int riders = 16;
+        int[] x = new int[riders];
+        int[] z = new int[riders];
+        int[] headingX = new int[riders];
+        int[] headingZ = new int[riders];
+        for (int r = 0; r < riders; r++) {
+            x[r] = random.nextInt(2048) - 1024;
+            z[r] = random.nextInt(2048) - 1024;
+            headingX[r] = 1;
+        }
+        for (int i = 0; i < count; i++) {
+            int r = i % riders;
+            if (random.nextInt(16) == 0) {
+                int oldX = headingX[r];
+                boolean left = random.nextBoolean();
+                headingX[r] = left ? -headingZ[r] : headingZ[r];
+                headingZ[r] = left ? oldX : -oldX;
+            }
+            x[r] += headingX[r];
+            z[r] += headingZ[r];
+            path[i] = new int[] { x[r], ARENA_Y, z[r] };
+        }
+        return path;
+    }
+
+    // ---------- TrailIndex ----------
+
+    static void newInsert(Object index, int[] block, Object segment) throws Throwable {
+        INDEX_PUT.invokeExact(index, (long) PACK_BLOCK_KEY.invokeExact(block[0], block[1], block[2]), segment);
+        INDEX_PUT.invokeExact(index, (long) PACK_BLOCK_KEY.invokeExact(block[0], block[1] + 1, block[2]), segment);
+    }
+
+    static boolean newLookup(Object index, int[] probe) throws Throwable {
+        long key = (long) PACK_BLOCK_KEY.invokeExact(probe[0], probe[1], probe[2]);
+        return (boolean) INDEX_HITS_TRAIL.invokeExact(index, key, PROBER.getMostSignificantBits(), PROBER.getLeastSignificantBits(), 0L, 0L);
+    }
+
+    static void newExpire(Object index, int[] block, Object segment) throws Throwable {
+        INDEX_REMOVE.invokeExact(index, (long) PACK_BLOCK_KEY.invokeExact(block[0], block[1], block[2]), segment);
+        INDEX_REMOVE.invokeExact(index, (long) PACK_BLOCK_KEY.invokeExact(block[0], block[1] + 1, block[2]), segment);
+    }
+
+    // ---------- Old map ----------
+    // A later segment on a block replaces the earlier one, and expiry only removes its own entry, as TrailIndex does
+
+    static void oldInsert(Map<OldBlockKey, Object> old, int[] block, Object segment) {
+        old.put(new OldBlockKey(WORLD, block[0], block[1], block[2]), segment);
+        old.put(new OldBlockKey(WORLD, block[0], block[1] + 1, block[2]), segment);
+    }
+
+    static boolean oldLookup(Map<OldBlockKey, Object> old, int[] probe) {
+        return old.get(new OldBlockKey(WORLD, probe[0], probe[1], probe[2])) != null;
+    }
+
+    static void oldExpire(Map<OldBlockKey, Object> old, int[] block, Object segment) {
+        old.remove(new OldBlockKey(WORLD, block[0], block[1], block[2]), segment);
+        old.remove(new OldBlockKey(WORLD, block[0], block[1] + 1, block[2]), segment);
+    }
+
+    // Bytes allocated so far by this thread, or -1 where the JVM does not expose it
+    static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1L;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) return -1L;
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /** The trail key TronLightcycle used before TrailIndex: world plus block, hashed with Objects.hash. */
+    static final class OldBlockKey {
+        final UUID worldId;
+        final int x;
+        final int y;
+        final int z;
+
+        OldBlockKey(UUID worldId, int x, int y, int z) {
+            this.worldId = worldId;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) return true;
+            if (!(obj instanceof OldBlockKey)) return false;
+            OldBlockKey other = (OldBlockKey) obj;
+            return x == other.x && y == other.y && z == other.z && worldId.equals(other.worldId);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(worldId, x, y, z);
+        }
+    }
+
+    /** Summed time and allocation per operation kind for one structure. */
+    static final class Timings {
+        long insertNanos, lookupNanos, expireNanos;
+        long insertBytes, lookupBytes, expireBytes;
+        boolean allocationKnown = true;
+
+        void add(long insert, long lookup, long expire, long insertAlloc, long lookupAlloc, long expireAlloc) {
+            insertNanos += insert;
+            lookupNanos += lookup;
+            expireNanos += expire;
+            if (allocatedBytes() < 0) allocationKnown = false;
+            insertBytes += insertAlloc;
+            lookupBytes += lookupAlloc;
+            expireBytes += expireAlloc;
+        }
+
+        String describe(long segmentOps) {
+            long lookups = segmentOps * PROBES_PER_SEGMENT;
+            return String.format(Locale.ROOT, "insert %6.1f ns (%s), lookup %5.1f ns (%s), expire %6.1f ns (%s)",
+                    (double) insertNanos / segmentOps, bytes(insertBytes, segmentOps),
+                    (double) lookupNanos / lookups, bytes(lookupBytes, lookups),
+                    (double) expireNanos / segmentOps, bytes(expireBytes, segmentOps));
+        }
+
+        private String bytes(long total, long ops) {
+            return allocationKnown ? String.format(Locale.ROOT, "%.0f B", (double) total / ops) : "n/a";
+        }
+    }
+}
@@ -23,6 +23,7 @@ import org.bukkit.World;
 import org.bukkit.attribute.Attribute;
 import org.bukkit.attribute.AttributeInstance;
 import org.bukkit.block.Block;
+import org.bukkit.block.BlockState;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.type.GlassPane;
 import org.bukkit.block.data.type.Light;
@@ -59,6 +60,8 @@ import org.bukkit.util.Vector;
 
 import java.io.File;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -83,6 +86,8 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     private boolean enableGlowingOutline;
 
     private double trailLifetimeSeconds;
+    private long trailLifetimeTicks;
+    private int maxRestoresPerTick;
     private double trailSelfImmunitySeconds;
     private double trailSampleBaseStep;
     private int trailUpdatePeriodTicks;
@@ -111,6 +116,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     private double driverDamageOnCrash;
     private boolean driverInstantKillOnCrash;
     private double worldWallCrashSpeedThreshold;
+    private int wallCacheMaxAgeTicks;
 
     private int dismountGraceTicks;
     private int humIntervalTicks;
@@ -131,10 +137,29 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     private final Map<UUID, Long> spawnCooldownUntilMsByOwner = new ConcurrentHashMap<>();
     private final Map<UUID, Long> batonDebounceUntilMsByOwner = new ConcurrentHashMap<>();
 
-    // SERVER render storage
-    private final Map<BlockKey, TrailSegment> trailSegmentsByBaseKey = new ConcurrentHashMap<>();
-    private final Map<BlockKey, TrailSegmentRef> trailIndexByBlockKey = new ConcurrentHashMap<>();
-    private final Map<ChunkKey, Set<BlockKey>> chunkToBaseKeys = new ConcurrentHashMap<>();
+    // Trail storage (main thread): per world, a packed-block index over both blocks of every segment
+    private final Map<UUID, TrailWorld> trailWorlds = new HashMap<>();
+    private final Location probeScratch = new Location(null, 0, 0, 0);
+    private final VoxelRay voxelRay = new VoxelRay();
+    private final Map<UUID, SolidBlockCache> solidCaches = new HashMap<>();
+    private static final double MAX_SWEEP_DISTANCE = 8.0;
+    private long collisionProbeCalls = 0;
+    private long collisionProbeNanos = 0;
+
+    // CLIENT render: fake block changes queued per viewer and drained under a per-viewer budget each update
+    private final Map<UUID, ClientTrailQueue> clientQueues = new HashMap<>();
+    private boolean batchedBlockChanges = true; // cleared if Player.sendBlockChanges is unavailable
+    private long clientBatchErrorLoggedMs = 0L;
+    private long clientChangesSent = 0;
+    private long clientBatchesSent = 0;
+
+    // Trail expiry: deadlines by tick, then block restoration capped per tick
+    private final ExpiryWheel expiryWheel = new ExpiryWheel();
+    private final Deque<TrailSegment> expiredScratch = new ArrayDeque<>();
+    private final Deque<TrailSegment> pendingRestores = new ArrayDeque<>();
+    private final List<TrailSegment> restoreBatch = new ArrayList<>();
+    private long[] paneRefreshScratch = new long[640];
+    private long segmentsRestored = 0;
 
     private BukkitTask cycleTickTask;
     private int tickCounter = 0;
@@ -184,13 +209,20 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             cycleTickTask.cancel();
             cycleTickTask = null;
         }
+        if (arenaBench != null) finishArenaBench(arenaBench, "Bench stopped: plugin disabled.");
 
         for (UUID ownerId : new ArrayList<>(activeCyclesByOwner.keySet())) {
             dismissCycle(ownerId, true, false);
         }
         activeCyclesByOwner.clear();
 
+        // The tick task is gone, so put back everything the dismissals just queued right now
+        drainPendingRestores(Integer.MAX_VALUE);
         restoreAllTrailSegments(true);
+
+        // Send the queued client restores now; nothing will flush them later
+        flushClientQueues(Integer.MAX_VALUE);
+        clientQueues.clear();
         getLogger().info("TronLightcycle disabled.");
     }
 
@@ -209,6 +241,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
 
             cfg.set("trail.renderMode", "SERVER"); // SERVER or CLIENT
             cfg.set("trail.lifetimeSeconds", 10.0);
+            cfg.set("trail.maxRestoresPerTick", 64);
             cfg.set("trail.selfImmunitySeconds", 1.5);
             cfg.set("trail.sampleBaseStep", 0.32);
             cfg.set("trail.updatePeriodTicks", 2);
@@ -239,6 +272,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             cfg.set("crash.driverDamage", 10.0);
             cfg.set("crash.instantKill", false);
             cfg.set("crash.worldWallSpeedThreshold", 0.75);
+            cfg.set("crash.wallCacheMaxAgeTicks", 20);
 
             cfg.set("cycle.dismountGraceTicks", 40);
             cfg.set("cycle.humIntervalTicks", 18);
@@ -278,6 +312,8 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         enableGlowingOutline = cfg.getBoolean("visual.enableGlowingOutline", true);
 
         trailLifetimeSeconds = cfg.getDouble("trail.lifetimeSeconds", 10.0);
+        trailLifetimeTicks = (long) Math.ceil(Math.max(0.0, trailLifetimeSeconds) * 20.0);
+        maxRestoresPerTick = Math.max(1, cfg.getInt("trail.maxRestoresPerTick", 64));
         trailSelfImmunitySeconds = cfg.getDouble("trail.selfImmunitySeconds", 1.5);
         trailSampleBaseStep = cfg.getDouble("trail.sampleBaseStep", 0.32);
         trailUpdatePeriodTicks = Math.max(1, cfg.getInt("trail.updatePeriodTicks", 2));
@@ -306,6 +342,8 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         driverDamageOnCrash = cfg.getDouble("crash.driverDamage", 10.0);
         driverInstantKillOnCrash = cfg.getBoolean("crash.instantKill", false);
         worldWallCrashSpeedThreshold = cfg.getDouble("crash.worldWallSpeedThreshold", 0.75);
+        // crash.wallSnapshotMaxAgeTicks is the pre-bitset name of the same setting
+        wallCacheMaxAgeTicks = Math.max(1, cfg.getInt("crash.wallCacheMaxAgeTicks", cfg.getInt("crash.wallSnapshotMaxAgeTicks", 20)));
 
         dismountGraceTicks = cfg.getInt("cycle.dismountGraceTicks", 40);
         humIntervalTicks = cfg.getInt("cycle.humIntervalTicks", 18);
@@ -510,6 +548,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     @EventHandler
     public void onPlayerQuit(PlayerQuitEvent event) {
         dismissCycle(event.getPlayer().getUniqueId(), true, false);
+        clientQueues.remove(event.getPlayer().getUniqueId());
     }
 
     @EventHandler
@@ -537,19 +576,29 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
 
     @EventHandler
     public void onChunkUnload(ChunkUnloadEvent event) {
-        if (renderMode != RenderMode.SERVER) return;
-
-        ChunkKey chunkKey = new ChunkKey(event.getWorld().getUID(), event.getChunk().getX(), event.getChunk().getZ());
-        Set<BlockKey> baseKeys = chunkToBaseKeys.remove(chunkKey);
-        if (baseKeys == null || baseKeys.isEmpty()) return;
-
-        for (BlockKey baseKey : baseKeys) {
-            TrailSegment segment = trailSegmentsByBaseKey.remove(baseKey);
-            if (segment != null) {
-                removeSegmentFromIndices(segment);
-                restoreSegmentServer(segment);
-            }
+        TrailWorld trailWorld = trailWorlds.get(event.getWorld().getUID());
+        if (trailWorld == null) return;
+
+        Set<TrailSegment> segments = trailWorld.segmentsByChunk.remove(packChunkKey(event.getChunk().getX(), event.getChunk().getZ()));
+        if (segments == null || segments.isEmpty()) return;
+
+        // Includes segments still waiting in the restore queue; their blocks must not be saved with the chunk
+        restoreBatch.clear();
+        for (TrailSegment segment : segments) {
+            if (segment.restored) continue;
+            if (!segment.removed) removeSegmentFromTrailIndex(segment);
+            segment.restored = true;
+            restoreBatch.add(segment);
         }
+        if (renderMode == RenderMode.SERVER) {
+            restoreSegmentsServer(restoreBatch);
+        } else {
+            // Clients drop the chunk with it, so only the real light block goes back. Nothing is left
+            // behind that a later resync, restore or flush would have to load the chunk for.
+            for (TrailSegment segment : restoreBatch) restoreSegmentLight(event.getWorld(), segment);
+        }
+        segmentsRestored += restoreBatch.size();
+        restoreBatch.clear();
     }
 
     @EventHandler
@@ -608,6 +657,11 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             return;
         }
 
+        if (arenaBench != null) {
+            player.sendMessage(ChatColor.RED + "[A lightcycle bench is running; try again when it finishes.]");
+            return;
+        }
+
         CycleInstance existing = activeCyclesByOwner.get(playerId);
         if (existing != null) {
             player.sendMessage(ChatColor.GRAY + "[Recalling lightcycle...]");
@@ -639,6 +693,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             sender.sendMessage(ChatColor.AQUA + "/lightcycle color <red/blue/orange/white/purple/green/yellow/pink>");
             sender.sendMessage(ChatColor.AQUA + "/lightcycle give [player] (OP only)");
             sender.sendMessage(ChatColor.AQUA + "/lightcycle reload (OP only)");
+            sender.sendMessage(ChatColor.AQUA + "/lightcycle stats [reset] (OP only)");
             return true;
         }
 
@@ -702,6 +757,77 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             return true;
         }
 
+        if ("bench".equals(sub)) {
+            if (sender instanceof Player && !((Player) sender).isOp()) {
+                sender.sendMessage(ChatColor.RED + "OP only.");
+                return true;
+            }
+            if (arenaBench != null) {
+                sender.sendMessage(ChatColor.RED + "A lightcycle bench is already running.");
+                return true;
+            }
+            if (!activeCyclesByOwner.isEmpty()) {
+                sender.sendMessage(ChatColor.RED + "The bench takes over the cycle update loop; recall all lightcycles first ("
+                        + activeCyclesByOwner.size() + " active).");
+                return true;
+            }
+            int measuredUpdates = 1200;
+            if (args.length >= 2) {
+                try {
+                    measuredUpdates = Math.max(20, Math.min(20000, Integer.parseInt(args[1])));
+                } catch (NumberFormatException ex) {
+                    sender.sendMessage(ChatColor.RED + "Usage: /lightcycle bench [updates]");
+                    return true;
+                }
+            }
+
+            sender.sendMessage(ChatColor.AQUA + "Running lightcycle arena bench (" + measuredUpdates + " updates per size, "
+                    + trailUpdatePeriodTicks + " tick(s) per update, trail lifetime " + trailLifetimeSeconds
+                    + "s). Lightcycles can't be spawned until it finishes.");
+            startArenaBench(sender, measuredUpdates);
+            return true;
+        }
+
+        if ("stats".equals(sub)) {
+            if (sender instanceof Player && !((Player) sender).isOp()) {
+                sender.sendMessage(ChatColor.RED + "OP only.");
+                return true;
+            }
+            if (args.length >= 2 && "reset".equalsIgnoreCase(args[1])) {
+                collisionProbeCalls = 0;
+                collisionProbeNanos = 0;
+                clientChangesSent = 0;
+                clientBatchesSent = 0;
+                segmentsRestored = 0;
+                sender.sendMessage(ChatColor.AQUA + "TronLightcycle stats reset.");
+                return true;
+            }
+            sender.sendMessage(ChatColor.AQUA + "Active cycles: " + activeCyclesByOwner.size());
+            for (Map.Entry<UUID, TrailWorld> entry : trailWorlds.entrySet()) {
+                World world = Bukkit.getWorld(entry.getKey());
+                TrailWorld trailWorld = entry.getValue();
+                sender.sendMessage(ChatColor.AQUA + "  " + (world != null ? world.getName() : entry.getKey().toString())
+                        + ": " + trailWorld.index.size() + " trail blocks (capacity " + trailWorld.index.capacity()
+                        + "), " + trailWorld.segmentsByChunk.size() + " chunks");
+            }
+            int pendingClientChanges = 0;
+            for (ClientTrailQueue queue : clientQueues.values()) pendingClientChanges += queue.pending.size();
+            sender.sendMessage(ChatColor.AQUA + "Client trail changes: " + clientChangesSent + " sent in " + clientBatchesSent
+                    + " batches, " + pendingClientChanges + " queued for " + clientQueues.size() + " viewers");
+            sender.sendMessage(ChatColor.AQUA + "Trail expiry: " + expiryWheel.size() + " scheduled, " + pendingRestores.size()
+                    + " awaiting restore, " + segmentsRestored + " restored");
+            long wallLookups = 0;
+            long wallBlockReads = 0;
+            for (SolidBlockCache cache : solidCaches.values()) {
+                wallLookups += cache.lookups;
+                wallBlockReads += cache.blockReads;
+            }
+            sender.sendMessage(ChatColor.AQUA + "Collision sweeps: " + collisionProbeCalls + ", avg "
+                    + String.format(Locale.US, "%.2f", collisionProbeCalls == 0 ? 0.0 : collisionProbeNanos / 1000.0 / collisionProbeCalls) + "us, "
+                    + wallLookups + " wall lookups, " + wallBlockReads + " block reads");
+            return true;
+        }
+
         sender.sendMessage(ChatColor.RED + "Unknown subcommand.");
         return true;
     }
@@ -711,7 +837,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         if (!"lightcycle".equalsIgnoreCase(command.getName())) return Collections.emptyList();
 
         if (args.length == 1) {
-            List<String> subs = new ArrayList<>(Arrays.asList("color", "give", "reload"));
+            List<String> subs = new ArrayList<>(Arrays.asList("bench", "color", "give", "reload", "stats"));
             subs.removeIf(s -> !s.startsWith(args[0].toLowerCase(Locale.ROOT)));
             return subs;
         }
@@ -818,12 +944,22 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
 
     // ---------- Main tick loop ----------
     private void tickCycles() {
-        tickCounter += trailUpdatePeriodTicks;
+        // While /lightcycle bench runs it calls updateCycles itself, on a simulated clock
+        if (arenaBench != null) return;
+        updateCycles(System.currentTimeMillis(), System.nanoTime());
+    }
 
-        long nowNanos = System.nanoTime();
-        long nowMs = System.currentTimeMillis();
+    // One trail update of every active cycle, horses and bench riders alike
+    private void updateCycles(long nowMs, long nowNanos) {
+        tickCounter += trailUpdatePeriodTicks;
+        advanceTrailExpiry();
 
         for (CycleInstance cycleInstance : new ArrayList<>(activeCyclesByOwner.values())) {
+            if (cycleInstance.benchRider != null) {
+                updateBenchRider(cycleInstance, nowMs, nowNanos);
+                continue;
+            }
+
             Player owner = Bukkit.getPlayer(cycleInstance.ownerId);
             Entity cycleEntity = Bukkit.getEntity(cycleInstance.cycleEntityId);
 
@@ -852,62 +988,67 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
                 cycleInstance.lastHumTick = tickCounter;
             }
 
-            cleanupExpiredTrailFIFO(cycleInstance, nowMs);
-
-            if (checkTrailCollision(cycleInstance, horse, nowMs) || checkWorldWallCollision(horse)) {
+            World world = horse.getWorld();
+            Location loc = horse.getLocation(probeScratch);
+            if (stepCycle(cycleInstance, world, world.getUID(), loc.getX(), loc.getY(), loc.getZ(), horse.getVelocity(), nowMs, nowNanos)) {
                 crashCycle(cycleInstance, horse, owner);
-                continue;
             }
+        }
 
-            boolean emissionAllowedByToggle = cycleInstance.trailToggleEnabled;
-            boolean emissionAllowedByCooldown = nowMs >= cycleInstance.emissionCooldownUntilMs;
-            boolean emissionAllowed = emissionAllowedByToggle && emissionAllowedByCooldown;
+        drainPendingRestores(Math.max(1, maxRestoresPerTick * trailUpdatePeriodTicks));
+        if (renderMode == RenderMode.CLIENT) flushClientQueues(Math.max(2, clientMaxChangesPerTickPerPlayer * trailUpdatePeriodTicks));
+    }
 
-            Vector currentPoint = horse.getLocation().toVector();
+    // Collision sweep, then trail emission, for one cycle now at (x, y, z). Returns true on a crash and leaves
+    // the consequences to the caller. world is null for a bench rider: its trail goes through the same index,
+    // chunk sets, expiry wheel and restore queue, but no block is read or written for it.
+    private boolean stepCycle(CycleInstance cycleInstance, World world, UUID worldId, double x, double y, double z,
+                              Vector velocity, long nowMs, long nowNanos) {
+        pruneRetiredSegments(cycleInstance);
 
-            if (!emissionAllowed) {
-                cycleInstance.lastEmittedPoint = currentPoint;
-                cycleInstance.lastUpdateNanos = nowNanos;
-                continue;
-            }
+        if (checkSweptCollision(cycleInstance, world, worldId, x, y, z, velocity, nowMs)) return true;
 
-            double speed = horse.getVelocity().length();
-            double stepDistance = trailSampleBaseStep;
+        boolean emissionAllowedByToggle = cycleInstance.trailToggleEnabled;
+        boolean emissionAllowedByCooldown = nowMs >= cycleInstance.emissionCooldownUntilMs;
+        boolean emissionAllowed = emissionAllowedByToggle && emissionAllowedByCooldown;
 
-            if (lagCompEnabled) {
-                double deltaSeconds = 0.1;
-                if (lagCompUseRealDeltaTime && cycleInstance.lastUpdateNanos > 0) {
-                    deltaSeconds = Math.max(0.001, (nowNanos - cycleInstance.lastUpdateNanos) / 1_000_000_000.0);
-                }
+        Vector currentPoint = new Vector(x, y, z);
 
-                double speedFactor = Math.max(0.20, Math.min(2.2, speed * 1.6));
-                double dtFactor = Math.max(0.6, Math.min(1.8, deltaSeconds / 0.1));
-                double scaled = (trailSampleBaseStep / speedFactor) / dtFactor;
-                stepDistance = clamp(scaled, lagCompMinStep, lagCompMaxStep);
-            }
+        if (!emissionAllowed) {
+            cycleInstance.lastEmittedPoint = currentPoint;
+            cycleInstance.lastUpdateNanos = nowNanos;
+            return false;
+        }
 
-            if (positionAnomalyEnabled) {
-                Vector lastPoint = cycleInstance.lastEmittedPoint;
-                Vector delta = currentPoint.clone().subtract(lastPoint);
-                double dist = delta.length();
-                double verticalAbs = Math.abs(delta.getY());
-
-                if (dist > positionAnomalyMaxStepDistance || verticalAbs > positionAnomalyMaxStepVertical) {
-                    handlePositionAnomaly(cycleInstance, dist, verticalAbs, nowMs, horse.getLocation());
-                    cycleInstance.lastEmittedPoint = currentPoint;
-                    cycleInstance.lastUpdateNanos = nowNanos;
-                    continue;
-                }
+        double speed = velocity.length();
+        double deltaSeconds = 0.1;
+        if (lagCompUseRealDeltaTime && cycleInstance.lastUpdateNanos > 0) {
+            deltaSeconds = Math.max(0.001, (nowNanos - cycleInstance.lastUpdateNanos) / 1_000_000_000.0);
+        }
+        double stepDistance = trailStepDistance(speed, deltaSeconds);
+
+        if (positionAnomalyEnabled) {
+            Vector lastPoint = cycleInstance.lastEmittedPoint;
+            Vector delta = currentPoint.clone().subtract(lastPoint);
+            double dist = delta.length();
+            double verticalAbs = Math.abs(delta.getY());
+
+            if (dist > positionAnomalyMaxStepDistance || verticalAbs > positionAnomalyMaxStepVertical) {
+                handlePositionAnomaly(cycleInstance, dist, verticalAbs, nowMs, world == null ? null : new Location(world, x, y, z));
+                cycleInstance.lastEmittedPoint = currentPoint;
+                cycleInstance.lastUpdateNanos = nowNanos;
+                return false;
             }
+        }
 
-            List<Vector> sampledPoints = samplePointsAlongSegment(cycleInstance.lastEmittedPoint, currentPoint, stepDistance, lagCompMaxSamplesPerUpdate);
+        List<Vector> sampledPoints = samplePointsAlongSegment(cycleInstance.lastEmittedPoint, currentPoint, stepDistance, lagCompMaxSamplesPerUpdate);
 
-            emitTrailFromSampledPoints(cycleInstance, horse.getWorld(), sampledPoints, nowMs);
-            spawnRibbonParticles(cycleInstance, horse.getWorld(), cycleInstance.lastEmittedPoint, currentPoint);
+        emitTrailFromSampledPoints(cycleInstance, world, worldId, sampledPoints, nowMs);
+        spawnRibbonParticles(cycleInstance, world, cycleInstance.lastEmittedPoint, currentPoint);
 
-            cycleInstance.lastEmittedPoint = currentPoint;
-            cycleInstance.lastUpdateNanos = nowNanos;
-        }
+        cycleInstance.lastEmittedPoint = currentPoint;
+        cycleInstance.lastUpdateNanos = nowNanos;
+        return false;
     }
 
     private void handlePositionAnomaly(CycleInstance cycleInstance, double deltaDistance, double deltaVertical, long nowMs, Location atLocation) {
@@ -962,11 +1103,12 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     }
 
     // ---------- Trail emission + lighting ----------
-    private void emitTrailFromSampledPoints(CycleInstance cycleInstance, World world, List<Vector> sampledPoints, long nowMs) {
-        if (world == null || sampledPoints == null || sampledPoints.isEmpty()) return;
+    private void emitTrailFromSampledPoints(CycleInstance cycleInstance, World world, UUID worldId, List<Vector> sampledPoints, long nowMs) {
+        if (sampledPoints == null || sampledPoints.isEmpty()) return;
 
-        Material paneMaterial = paneMaterialForColor(cycleInstance.cycleColor);
-        BlockData paneData = Bukkit.createBlockData(paneMaterial);
+        TrailWorld trailWorld = trailWorlds.computeIfAbsent(worldId, k -> new TrailWorld());
+        BlockData paneData = world == null ? null : Bukkit.createBlockData(paneMaterialForColor(cycleInstance.cycleColor));
+        List<Player> viewers = null; // CLIENT mode: looked up once per update, the sampled points are a few blocks apart
 
         int placedThisUpdate = 0;
         for (Vector point : sampledPoints) {
@@ -977,8 +1119,15 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             int blockY = (int) Math.floor(point.getY());
             int blockZ = (int) Math.floor(point.getZ());
 
-            BlockKey baseKey = new BlockKey(world.getUID(), blockX, blockY, blockZ);
-            if (trailSegmentsByBaseKey.containsKey(baseKey)) continue;
+            TrailSegment existing = trailWorld.index.get(packBlockKey(blockX, blockY, blockZ));
+            if (existing != null && existing.y == blockY) continue;
+
+            if (world == null) {
+                // Bench rider: every block counts as replaceable and nothing is placed or lit
+                placeTrailSegment(cycleInstance, trailWorld, new TrailSegment(worldId, blockX, blockY, blockZ, nowMs,
+                        cycleInstance.ownerId, cycleInstance.cycleColor, null, null, false, null));
+                continue;
+            }
 
             Block baseBlock = world.getBlockAt(blockX, blockY, blockZ);
             Block aboveBlock = world.getBlockAt(blockX, blockY + 1, blockZ);
@@ -1004,19 +1153,8 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             BlockData originalBaseData = baseBlock.getBlockData().clone();
             BlockData originalAboveData = aboveBlock.getBlockData().clone();
 
-            TrailSegment segment = new TrailSegment(baseKey, nowMs, cycleInstance.ownerId, cycleInstance.cycleColor,
-                    originalBaseData, originalAboveData, lightPlaced, originalLightData);
-
-            trailSegmentsByBaseKey.put(baseKey, segment);
-
-            BlockKey aboveKey = new BlockKey(world.getUID(), blockX, blockY + 1, blockZ);
-            trailIndexByBlockKey.put(baseKey, new TrailSegmentRef(baseKey, nowMs, cycleInstance.ownerId));
-            trailIndexByBlockKey.put(aboveKey, new TrailSegmentRef(baseKey, nowMs, cycleInstance.ownerId));
-
-            ChunkKey chunkKey = new ChunkKey(world.getUID(), baseBlock.getChunk().getX(), baseBlock.getChunk().getZ());
-            chunkToBaseKeys.computeIfAbsent(chunkKey, k -> Collections.newSetFromMap(new ConcurrentHashMap<>())).add(baseKey);
-
-            cycleInstance.baseKeysFIFO.addLast(baseKey);
+            TrailSegment segment = placeTrailSegment(cycleInstance, trailWorld, new TrailSegment(worldId, blockX, blockY, blockZ, nowMs,
+                    cycleInstance.ownerId, cycleInstance.cycleColor, originalBaseData, originalAboveData, lightPlaced, originalLightData));
 
             if (renderMode == RenderMode.SERVER) {
                 baseBlock.setBlockData(paneData, false);
@@ -1025,16 +1163,26 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
                 // Force proper connectivity (base + above + neighbors)
                 refreshPaneConnectivity(world, blockX, blockY, blockZ);
             } else {
-                Location baseLoc = baseKey.toLocation(world);
-                Location aboveLoc = baseLoc.clone().add(0, 1, 0);
-                for (Player viewer : getClientViewers(world, baseLoc)) {
-                    viewer.sendBlockChange(baseLoc, paneData);
-                    viewer.sendBlockChange(aboveLoc, paneData);
+                if (viewers == null) viewers = getClientViewers(world, segment.toLocation(world));
+                for (Player viewer : viewers) {
+                    queueClientChange(viewer, world, blockX, blockY, blockZ, paneData);
+                    queueClientChange(viewer, world, blockX, blockY + 1, blockZ, paneData);
                 }
             }
         }
     }
 
+    // Every segment enters the trail here: both blocks in the index, its chunk set, the owner's FIFO and the expiry wheel
+    private TrailSegment placeTrailSegment(CycleInstance cycleInstance, TrailWorld trailWorld, TrailSegment segment) {
+        trailWorld.index.put(segment.baseKey, segment);
+        trailWorld.index.put(packBlockKey(segment.x, segment.y + 1, segment.z), segment);
+        trailWorld.segmentsByChunk.computeIfAbsent(segment.chunkKey(), k -> new HashSet<>()).add(segment);
+
+        cycleInstance.segmentsFIFO.addLast(segment);
+        expiryWheel.schedule(segment, tickCounter + trailLifetimeTicks);
+        return segment;
+    }
+
     private void refreshPaneConnectivity(World world, int x, int y, int z) {
         // Update both y and y+1 panes and their four cardinal neighbors.
         updatePaneAt(world, x, y, z);
@@ -1084,76 +1232,140 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         return t == Material.AIR || t == Material.CAVE_AIR || t == Material.VOID_AIR;
     }
 
-    private void cleanupExpiredTrailFIFO(CycleInstance cycleInstance, long nowMs) {
-        long lifetimeMs = (long) Math.max(0, trailLifetimeSeconds * 1000.0);
+    // ---------- Trail expiry ----------
+    // Segments leave the trail index as soon as they expire or are cleared, so they stop colliding at once,
+    // but their blocks are put back from a queue under a per-tick budget. A 2000-segment wipe is spread
+    // over a few dozen ticks instead of landing in one.
+    private void advanceTrailExpiry() {
+        expiryWheel.advance(tickCounter, expiredScratch);
+        TrailSegment segment;
+        while ((segment = expiredScratch.pollFirst()) != null) retireSegment(segment);
+    }
 
-        // Remove at most 2 per tick so cleanup doesn't spike
-        for (int i = 0; i < 2; i++) {
-            BlockKey oldestBaseKey = cycleInstance.baseKeysFIFO.peekFirst();
-            if (oldestBaseKey == null) return;
+    private void retireSegment(TrailSegment segment) {
+        if (segment.removed) return;
+        removeSegmentFromTrailIndex(segment);
+        pendingRestores.addLast(segment);
+    }
 
-            TrailSegment segment = trailSegmentsByBaseKey.get(oldestBaseKey);
-            if (segment == null) {
-                cycleInstance.baseKeysFIFO.pollFirst();
-                continue;
-            }
+    private void drainPendingRestores(int budget) {
+        if (pendingRestores.isEmpty()) return;
 
-            if (nowMs - segment.placedMs < lifetimeMs) return;
+        restoreBatch.clear();
+        while (restoreBatch.size() < budget) {
+            TrailSegment segment = pendingRestores.pollFirst();
+            if (segment == null) break;
+            if (segment.restored) continue; // already handled by a chunk unload
+            restoreBatch.add(segment);
+        }
+        if (restoreBatch.isEmpty()) return;
 
-            cycleInstance.baseKeysFIFO.pollFirst();
-            trailSegmentsByBaseKey.remove(oldestBaseKey);
-            removeSegmentFromIndices(segment);
+        if (renderMode == RenderMode.SERVER) restoreSegmentsServer(restoreBatch);
+        else for (TrailSegment segment : restoreBatch) restoreSegmentClient(segment);
 
-            if (renderMode == RenderMode.SERVER) restoreSegmentServer(segment);
-            else restoreSegmentClient(segment);
+        for (TrailSegment segment : restoreBatch) finishSegmentRestore(segment);
+        segmentsRestored += restoreBatch.size();
+        restoreBatch.clear();
+    }
 
-            ChunkKey chunkKey = new ChunkKey(segment.baseKey.worldId, segment.baseKey.getChunkX(), segment.baseKey.getChunkZ());
-            Set<BlockKey> set = chunkToBaseKeys.get(chunkKey);
-            if (set != null) {
-                set.remove(segment.baseKey);
-                if (set.isEmpty()) chunkToBaseKeys.remove(chunkKey);
-            }
+    // Drop segments that have already expired or been cleared from the front of the owner's FIFO
+    private void pruneRetiredSegments(CycleInstance cycleInstance) {
+        while (!cycleInstance.segmentsFIFO.isEmpty() && cycleInstance.segmentsFIFO.peekFirst().removed) {
+            cycleInstance.segmentsFIFO.pollFirst();
         }
     }
 
     private void clearTrailUsingOwnerFIFO(CycleInstance cycleInstance, boolean doRenderRestore) {
         if (cycleInstance == null) return;
-        while (!cycleInstance.baseKeysFIFO.isEmpty()) {
-            BlockKey baseKey = cycleInstance.baseKeysFIFO.pollFirst();
-            if (baseKey == null) continue;
-
-            TrailSegment seg = trailSegmentsByBaseKey.remove(baseKey);
-            if (seg == null) continue;
-
-            removeSegmentFromIndices(seg);
+        while (!cycleInstance.segmentsFIFO.isEmpty()) {
+            TrailSegment seg = cycleInstance.segmentsFIFO.pollFirst();
+            if (seg == null || seg.removed) continue;
 
             if (doRenderRestore) {
-                if (renderMode == RenderMode.SERVER) restoreSegmentServer(seg);
-                else restoreSegmentClient(seg);
-            }
-
-            ChunkKey chunkKey = new ChunkKey(seg.baseKey.worldId, seg.baseKey.getChunkX(), seg.baseKey.getChunkZ());
-            Set<BlockKey> set = chunkToBaseKeys.get(chunkKey);
-            if (set != null) {
-                set.remove(seg.baseKey);
-                if (set.isEmpty()) chunkToBaseKeys.remove(chunkKey);
+                retireSegment(seg);
+            } else {
+                removeSegmentFromTrailIndex(seg);
+                finishSegmentRestore(seg);
             }
         }
     }
 
-    private void removeSegmentFromIndices(TrailSegment segment) {
-        trailIndexByBlockKey.remove(segment.baseKey);
-        BlockKey aboveKey = new BlockKey(segment.baseKey.worldId, segment.baseKey.x, segment.baseKey.y + 1, segment.baseKey.z);
-        trailIndexByBlockKey.remove(aboveKey);
+    private void removeSegmentFromTrailIndex(TrailSegment segment) {
+        segment.removed = true;
+        TrailWorld trailWorld = trailWorlds.get(segment.worldId);
+        if (trailWorld == null) return;
+
+        trailWorld.index.remove(segment.baseKey, segment);
+        trailWorld.index.remove(packBlockKey(segment.x, segment.y + 1, segment.z), segment);
+    }
+
+    // Segments stay in their chunk set until restored, so a chunk unload can still put their blocks back
+    private void finishSegmentRestore(TrailSegment segment) {
+        segment.restored = true;
+        TrailWorld trailWorld = trailWorlds.get(segment.worldId);
+        if (trailWorld == null) return;
+
+        long chunkKey = segment.chunkKey();
+        Set<TrailSegment> set = trailWorld.segmentsByChunk.get(chunkKey);
+        if (set != null) {
+            set.remove(segment);
+            if (set.isEmpty()) trailWorld.segmentsByChunk.remove(chunkKey);
+        }
     }
 
     private void restoreSegmentServer(TrailSegment segment) {
-        World world = Bukkit.getWorld(segment.baseKey.worldId);
+        World world = restoreSegmentBlocksServer(segment);
         if (world == null) return;
 
-        int x = segment.baseKey.x;
-        int y = segment.baseKey.y;
-        int z = segment.baseKey.z;
+        // Update connectivity around removal
+        refreshPaneConnectivity(world, segment.x, segment.y, segment.z);
+    }
+
+    // Puts the original blocks back first, then fixes pane connectivity once per touched position
+    private void restoreSegmentsServer(List<TrailSegment> batch) {
+        for (TrailSegment segment : batch) restoreSegmentBlocksServer(segment);
+
+        if (paneRefreshScratch.length < batch.size() * 10) paneRefreshScratch = new long[batch.size() * 10];
+
+        for (int i = 0; i < batch.size(); i++) {
+            UUID worldId = batch.get(i).worldId;
+            boolean seenWorld = false;
+            for (int j = 0; j < i && !seenWorld; j++) seenWorld = batch.get(j).worldId.equals(worldId);
+            if (seenWorld) continue;
+
+            World world = Bukkit.getWorld(worldId);
+            if (world == null) continue;
+
+            int count = 0;
+            for (int k = i; k < batch.size(); k++) {
+                TrailSegment segment = batch.get(k);
+                if (!segment.worldId.equals(worldId)) continue;
+                for (int dy = 0; dy <= 1; dy++) {
+                    int y = segment.y + dy;
+                    paneRefreshScratch[count++] = packBlockKey(segment.x, y, segment.z);
+                    paneRefreshScratch[count++] = packBlockKey(segment.x + 1, y, segment.z);
+                    paneRefreshScratch[count++] = packBlockKey(segment.x - 1, y, segment.z);
+                    paneRefreshScratch[count++] = packBlockKey(segment.x, y, segment.z + 1);
+                    paneRefreshScratch[count++] = packBlockKey(segment.x, y, segment.z - 1);
+                }
+            }
+
+            Arrays.sort(paneRefreshScratch, 0, count);
+            for (int k = 0; k < count; k++) {
+                long key = paneRefreshScratch[k];
+                if (k > 0 && key == paneRefreshScratch[k - 1]) continue;
+                updatePaneAt(world, unpackBlockX(key), unpackBlockY(key), unpackBlockZ(key));
+            }
+        }
+    }
+
+    private World restoreSegmentBlocksServer(TrailSegment segment) {
+        World world = Bukkit.getWorld(segment.worldId);
+        if (world == null) return null;
+
+        int x = segment.x;
+        int y = segment.y;
+        int z = segment.z;
 
         Block baseBlock = world.getBlockAt(x, y, z);
         Block aboveBlock = world.getBlockAt(x, y + 1, z);
@@ -1165,47 +1377,251 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             Block lightBlock = world.getBlockAt(x, y + 2, z);
             lightBlock.setBlockData(segment.originalLightData, false);
         }
-
-        // Update connectivity around removal
-        refreshPaneConnectivity(world, x, y, z);
+        return world;
     }
 
     private void restoreSegmentClient(TrailSegment segment) {
-        World world = Bukkit.getWorld(segment.baseKey.worldId);
+        World world = Bukkit.getWorld(segment.worldId);
         if (world == null) return;
 
-        Location baseLoc = segment.baseKey.toLocation(world);
-        Location aboveLoc = baseLoc.clone().add(0, 1, 0);
+        // A newer segment may have been laid over this one while it waited in the restore queue
+        TrailWorld trailWorld = trailWorlds.get(segment.worldId);
+        boolean reoccupied = trailWorld != null && trailWorld.index.get(segment.baseKey) != null;
 
-        BlockData realBaseData = world.getBlockAt(segment.baseKey.x, segment.baseKey.y, segment.baseKey.z).getBlockData();
-        BlockData realAboveData = world.getBlockAt(segment.baseKey.x, segment.baseKey.y + 1, segment.baseKey.z).getBlockData();
+        if (!reoccupied) {
+            BlockData realBaseData = world.getBlockAt(segment.x, segment.y, segment.z).getBlockData();
+            BlockData realAboveData = world.getBlockAt(segment.x, segment.y + 1, segment.z).getBlockData();
 
-        for (Player viewer : getClientViewers(world, baseLoc)) {
-            viewer.sendBlockChange(baseLoc, realBaseData);
-            viewer.sendBlockChange(aboveLoc, realAboveData);
+            for (Player viewer : getClientViewers(world, segment.toLocation(world))) {
+                queueClientChange(viewer, world, segment.x, segment.y, segment.z, realBaseData);
+                queueClientChange(viewer, world, segment.x, segment.y + 1, segment.z, realAboveData);
+            }
         }
 
-        if (segment.lightPlaced) {
-            Block lightBlock = world.getBlockAt(segment.baseKey.x, segment.baseKey.y + 2, segment.baseKey.z);
-            lightBlock.setBlockData(segment.originalLightData, false);
-        }
+        restoreSegmentLight(world, segment);
+    }
+
+    // The light block is real in both render modes
+    private void restoreSegmentLight(World world, TrailSegment segment) {
+        if (!segment.lightPlaced) return;
+        world.getBlockAt(segment.x, segment.y + 2, segment.z).setBlockData(segment.originalLightData, false);
     }
 
     private void restoreAllTrailSegments(boolean serverRestoreOnly) {
-        for (TrailSegment seg : new ArrayList<>(trailSegmentsByBaseKey.values())) {
-            if (serverRestoreOnly && renderMode != RenderMode.SERVER) continue;
-            if (renderMode == RenderMode.SERVER) restoreSegmentServer(seg);
-            else restoreSegmentClient(seg);
+        for (TrailWorld trailWorld : trailWorlds.values()) {
+            for (Set<TrailSegment> segments : trailWorld.segmentsByChunk.values()) {
+                for (TrailSegment seg : segments) {
+                    if (seg.restored) continue;
+                    seg.removed = true;
+                    seg.restored = true;
+                    if (renderMode == RenderMode.SERVER) {
+                        restoreSegmentServer(seg);
+                    } else if (!serverRestoreOnly) {
+                        restoreSegmentClient(seg);
+                    } else {
+                        // No pane resend, but the real light block still goes back
+                        World world = Bukkit.getWorld(seg.worldId);
+                        if (world != null) restoreSegmentLight(world, seg);
+                    }
+                }
+            }
+        }
+        trailWorlds.clear();
+        solidCaches.clear();
+        pendingRestores.clear();
+        expiryWheel.clear();
+    }
+
+    // ---------- Bench ----------
+    // Synthetic arena for sizing tournaments. Bench riders are ordinary CycleInstances in activeCyclesByOwner,
+    // steering Tron-style on a flat plane of a world that does not exist; updateCycles moves them through
+    // stepCycle like any horse, so the figures cover the live update (collision sweep, sampling, placement,
+    // expiry and restore queue) minus entities and block reads/writes. While it runs the bench replaces the
+    // scheduled update, on a simulated clock, in slices of a few updates per server tick. Riders are seeded,
+    // so runs are comparable between versions.
+    private static final int[] BENCH_CYCLE_COUNTS = { 4, 16, 64, 256 };
+    private static final int BENCH_WARMUP_UPDATES = 200;
+    private static final long BENCH_SLICE_NANOS = 25_000_000L; // bench work per server tick
+    private ArenaBench arenaBench;
+
+    private void startArenaBench(CommandSender sender, int measuredUpdates) {
+        ArenaBench bench = new ArenaBench(sender, measuredUpdates);
+        bench.simMs = System.currentTimeMillis();
+        bench.simNanos = System.nanoTime();
+        bench.speed = horseMoveSpeed * 2.15; // approximate ground speed for the horse attribute, in blocks per tick
+        arenaBench = bench;
+        startBenchSize(bench);
+        bench.task = Bukkit.getScheduler().runTaskTimer(this, this::runArenaBenchSlice, 1L, 1L);
+    }
+
+    private void runArenaBenchSlice() {
+        ArenaBench bench = arenaBench;
+        if (bench == null) return;
+
+        try {
+            long sliceStart = System.nanoTime();
+            while (System.nanoTime() - sliceStart < BENCH_SLICE_NANOS) {
+                bench.simMs += 50L * trailUpdatePeriodTicks;
+                bench.simNanos += 50_000_000L * trailUpdatePeriodTicks;
+                boolean measured = bench.update >= BENCH_WARMUP_UPDATES;
+
+                long allocatedBefore = measured ? currentThreadAllocatedBytes() : -1L;
+                long startNanos = System.nanoTime();
+                updateCycles(bench.simMs, bench.simNanos);
+                long elapsed = System.nanoTime() - startNanos;
+
+                if (measured) {
+                    long allocatedAfter = currentThreadAllocatedBytes();
+                    if (allocatedBefore < 0 || allocatedAfter < 0) bench.allocatedBytes = -1L;
+                    else if (bench.allocatedBytes >= 0) bench.allocatedBytes += allocatedAfter - allocatedBefore;
+                    bench.totalNanos += elapsed;
+                    if (elapsed > bench.maxNanos) bench.maxNanos = elapsed;
+                    TrailWorld trailWorld = trailWorlds.get(bench.worldId);
+                    if (trailWorld != null) bench.peakIndexSize = Math.max(bench.peakIndexSize, trailWorld.index.size());
+                }
+
+                if (++bench.update == BENCH_WARMUP_UPDATES + bench.measuredUpdates) {
+                    finishBenchSize(bench);
+                    if (++bench.sizeIndex == BENCH_CYCLE_COUNTS.length) {
+                        finishArenaBench(bench, null);
+                        return;
+                    }
+                    startBenchSize(bench);
+                }
+            }
+        } catch (Throwable t) {
+            getLogger().warning("Lightcycle bench failed: " + t);
+            finishArenaBench(bench, "Bench failed: " + t);
+        }
+    }
+
+    private void startBenchSize(ArenaBench bench) {
+        int cycleCount = BENCH_CYCLE_COUNTS[bench.sizeIndex];
+        bench.random = new Random(0x7A0E5L + cycleCount);
+        bench.halfSize = 24.0 * Math.sqrt(cycleCount);
+        bench.riders = new CycleInstance[cycleCount];
+        bench.update = 0;
+        bench.totalNanos = 0;
+        bench.maxNanos = 0;
+        bench.crashes = 0;
+        bench.peakIndexSize = 0;
+        bench.allocatedBytes = 0;
+
+        for (int i = 0; i < cycleCount; i++) {
+            CycleInstance rider = new CycleInstance(new UUID(bench.random.nextLong(), bench.random.nextLong()), new UUID(0L, i),
+                    CycleColor.values()[i % CycleColor.values().length]);
+            rider.benchRider = new BenchRider();
+            respawnBenchRider(rider, bench);
+            bench.riders[i] = rider;
+            activeCyclesByOwner.put(rider.ownerId, rider);
+        }
+    }
+
+    private void finishBenchSize(ArenaBench bench) {
+        TrailWorld trailWorld = trailWorlds.get(bench.worldId);
+        int indexSize = trailWorld == null ? 0 : trailWorld.index.size();
+        int indexCapacity = trailWorld == null ? 0 : trailWorld.index.capacity();
+        String allocation = bench.allocatedBytes < 0 ? "n/a"
+                : String.format(Locale.US, "%.1f KB", bench.allocatedBytes / 1024.0 / bench.measuredUpdates);
+
+        bench.lines.add(String.format(Locale.US, "%3d cycles: %.3f ms/update avg, %.3f max, %s/update allocated, index %d (peak %d, capacity %d), %d crashes, %d awaiting restore",
+                bench.riders.length, bench.totalNanos / 1_000_000.0 / bench.measuredUpdates, bench.maxNanos / 1_000_000.0, allocation,
+                indexSize, bench.peakIndexSize, indexCapacity, bench.crashes, pendingRestores.size()));
+        removeBenchRiders(bench);
+    }
+
+    private void finishArenaBench(ArenaBench bench, String failure) {
+        if (bench.task != null) bench.task.cancel();
+        removeBenchRiders(bench);
+        if (arenaBench == bench) arenaBench = null;
+
+        if (failure != null) bench.lines.add(failure);
+        for (String line : bench.lines) {
+            bench.sender.sendMessage(ChatColor.AQUA + line);
+            getLogger().info("bench " + line);
+        }
+    }
+
+    private void removeBenchRiders(ArenaBench bench) {
+        if (bench.riders == null) return;
+        for (CycleInstance rider : bench.riders) {
+            if (rider == null) continue;
+            activeCyclesByOwner.remove(rider.ownerId);
+            clearTrailUsingOwnerFIFO(rider, false);
+        }
+        bench.riders = null;
+        trailWorlds.remove(bench.worldId);
+        // Expired bench segments still queued for restore have no blocks to put back
+        pendingRestores.removeIf(segment -> segment.worldId.equals(bench.worldId));
+    }
+
+    private void updateBenchRider(CycleInstance rider, long nowMs, long nowNanos) {
+        ArenaBench bench = arenaBench;
+        if (bench == null) {
+            activeCyclesByOwner.remove(rider.ownerId);
+            return;
+        }
+        BenchRider state = rider.benchRider;
+        double step = bench.speed * trailUpdatePeriodTicks;
+
+        // Turn now and then, and always before leaving the arena
+        boolean leaving = Math.abs(state.x + state.headingX * step * 4) > bench.halfSize
+                || Math.abs(state.z + state.headingZ * step * 4) > bench.halfSize;
+        if (leaving || bench.random.nextInt(12) == 0) {
+            int oldX = state.headingX;
+            boolean left = bench.random.nextBoolean();
+            state.headingX = left ? -state.headingZ : state.headingZ;
+            state.headingZ = left ? oldX : -oldX;
+            if (Math.abs(state.x + state.headingX * step * 4) > bench.halfSize
+                    || Math.abs(state.z + state.headingZ * step * 4) > bench.halfSize) {
+                state.headingX = -state.headingX;
+                state.headingZ = -state.headingZ;
+            }
+        }
+
+        state.x += state.headingX * step;
+        state.z += state.headingZ * step;
+        state.velocity.setX(state.headingX * bench.speed).setY(0.0).setZ(state.headingZ * bench.speed);
 
-            trailSegmentsByBaseKey.remove(seg.baseKey);
-            removeSegmentFromIndices(seg);
+        if (stepCycle(rider, null, bench.worldId, state.x, BenchRider.ARENA_Y, state.z, state.velocity, nowMs, nowNanos)) {
+            if (bench.update >= BENCH_WARMUP_UPDATES) bench.crashes++;
+            clearTrailUsingOwnerFIFO(rider, true);
+            respawnBenchRider(rider, bench);
         }
-        chunkToBaseKeys.clear();
-        trailIndexByBlockKey.clear();
+    }
+
+    private void respawnBenchRider(CycleInstance rider, ArenaBench bench) {
+        BenchRider state = rider.benchRider;
+        state.x = (bench.random.nextDouble() * 2.0 - 1.0) * bench.halfSize * 0.8;
+        state.z = (bench.random.nextDouble() * 2.0 - 1.0) * bench.halfSize * 0.8;
+        int direction = bench.random.nextInt(4);
+        state.headingX = direction == 0 ? 1 : (direction == 1 ? -1 : 0);
+        state.headingZ = direction == 2 ? 1 : (direction == 3 ? -1 : 0);
+        rider.lastEmittedPoint = new Vector(state.x, BenchRider.ARENA_Y, state.z);
+        rider.lastUpdateNanos = 0L;
+        rider.hasLastSweep = false;
+    }
+
+    // Bytes allocated so far by this thread, or -1 where the JVM does not expose it
+    private static long currentThreadAllocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) return -1L;
+        com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) bean;
+        if (!hotspot.isThreadAllocatedMemorySupported() || !hotspot.isThreadAllocatedMemoryEnabled()) return -1L;
+        return hotspot.getThreadAllocatedBytes(Thread.currentThread().getId());
     }
 
     // ---------- Sampling ----------
-    private List<Vector> samplePointsAlongSegment(Vector start, Vector end, double step, int maxSamples) {
+    private double trailStepDistance(double speed, double deltaSeconds) {
+        if (!lagCompEnabled) return trailSampleBaseStep;
+
+        double speedFactor = Math.max(0.20, Math.min(2.2, speed * 1.6));
+        double dtFactor = Math.max(0.6, Math.min(1.8, deltaSeconds / 0.1));
+        double scaled = (trailSampleBaseStep / speedFactor) / dtFactor;
+        return clamp(scaled, lagCompMinStep, lagCompMaxStep);
+    }
+
+    private static List<Vector> samplePointsAlongSegment(Vector start, Vector end, double step, int maxSamples) {
         List<Vector> points = new ArrayList<>();
         if (start == null || end == null) return points;
 
@@ -1225,74 +1641,113 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     }
 
     // ---------- Collision ----------
-    private boolean checkTrailCollision(CycleInstance cycleInstance, Horse horse, long nowMs) {
-        World world = horse.getWorld();
-        Vector velocity = horse.getVelocity();
-        double speed = velocity.length();
-        if (speed < 0.05) return false;
+    // One swept test per cycle per update: the horse's path since the last update plus a short
+    // look-ahead is walked voxel by voxel (no sampling gaps at high speed) against the trail index,
+    // and the look-ahead alone against the per-block solidity cache for solid walls.
+    private boolean checkSweptCollision(CycleInstance cycleInstance, World world, UUID worldId, double curX, double curY, double curZ,
+                                        Vector velocity, long nowMs) {
+        long startNanos = System.nanoTime();
+
+        // Sweep from where we were last update; skip that part after a teleport-sized jump
+        double fromX = curX, fromY = curY, fromZ = curZ;
+        if (cycleInstance.hasLastSweep) {
+            double jx = curX - cycleInstance.lastSweepX;
+            double jy = curY - cycleInstance.lastSweepY;
+            double jz = curZ - cycleInstance.lastSweepZ;
+            if (jx * jx + jy * jy + jz * jz <= MAX_SWEEP_DISTANCE * MAX_SWEEP_DISTANCE) {
+                fromX = cycleInstance.lastSweepX;
+                fromY = cycleInstance.lastSweepY;
+                fromZ = cycleInstance.lastSweepZ;
+            }
+        }
+        cycleInstance.lastSweepX = curX;
+        cycleInstance.lastSweepY = curY;
+        cycleInstance.lastSweepZ = curZ;
+        cycleInstance.hasLastSweep = true;
 
-        Vector forward = velocity.clone().normalize();
-        Location baseLoc = horse.getLocation();
+        double speed = velocity.length();
+        double forwardX = 0, forwardY = 0, forwardZ = 0;
+        if (speed >= 0.05) {
+            forwardX = velocity.getX() / speed;
+            forwardY = velocity.getY() / speed;
+            forwardZ = velocity.getZ() / speed;
+        }
 
-        double probeDistance = clamp(0.7 + speed * 1.2, 0.7, 2.5);
+        boolean hit = false;
 
-        List<Vector> probeOffsets = Arrays.asList(
-                forward.clone().multiply(probeDistance),
-                forward.clone().multiply(probeDistance).add(new Vector(0.3, 0, 0.3)),
-                forward.clone().multiply(probeDistance).add(new Vector(-0.3, 0, -0.3))
-        );
+        TrailWorld trailWorld = trailWorlds.get(worldId);
+        if (trailWorld != null && trailWorld.index.size() > 0 && speed >= 0.05) {
+            long selfImmunityMs = (long) (trailSelfImmunitySeconds * 1000.0);
+            hit = sweepHitsTrail(trailWorld.index, voxelRay, fromX, fromY, fromZ, curX, curY, curZ, forwardX, forwardY, forwardZ, speed,
+                    cycleInstance.ownerId.getMostSignificantBits(), cycleInstance.ownerId.getLeastSignificantBits(), nowMs, selfImmunityMs);
+        }
 
-        long selfImmunityMs = (long) (trailSelfImmunitySeconds * 1000.0);
+        if (!hit && world != null && speed >= worldWallCrashSpeedThreshold) {
+            double maxDistance = clamp(0.9 + speed * 1.1, 0.9, 3.0);
+            SolidBlockCache solids = solidCaches.computeIfAbsent(world.getUID(), k -> new SolidBlockCache());
+
+            voxelRay.reset(curX + forwardX * 0.35, curY + forwardY * 0.35, curZ + forwardZ * 0.35,
+                    curX + forwardX * maxDistance, curY + forwardY * maxDistance, curZ + forwardZ * maxDistance);
+            while (voxelRay.next()) {
+                if (isSolidWallAt(world, solids, voxelRay.x, voxelRay.y, voxelRay.z)
+                        || isSolidWallAt(world, solids, voxelRay.x, voxelRay.y + 1, voxelRay.z)) {
+                    hit = true;
+                    break;
+                }
+            }
+        }
 
-        for (Vector offset : probeOffsets) {
-            Location probeLoc = baseLoc.clone().add(offset);
-            int x = probeLoc.getBlockX();
-            int y = probeLoc.getBlockY();
-            int z = probeLoc.getBlockZ();
+        collisionProbeCalls++;
+        collisionProbeNanos += System.nanoTime() - startNanos;
+        return hit;
+    }
 
-            for (int dy = 0; dy <= 1; dy++) {
-                BlockKey key = new BlockKey(world.getUID(), x, y + dy, z);
-                TrailSegmentRef ref = trailIndexByBlockKey.get(key);
-                if (ref == null) continue;
+    // Trail half of the sweep; static and given its own VoxelRay so LightcycleReplayHarness can replay recorded paths through it
+    private static boolean sweepHitsTrail(TrailIndex index, VoxelRay ray, double fromX, double fromY, double fromZ,
+                                          double curX, double curY, double curZ, double forwardX, double forwardY, double forwardZ,
+                                          double speed, long ownerMost, long ownerLeast, long nowMs, long selfImmunityMs) {
+        if (speed < 0.05) return false;
 
-                boolean sameOwner = cycleInstance.ownerId.equals(ref.ownerId);
-                boolean immune = sameOwner && (nowMs - ref.placedMs) <= selfImmunityMs;
-                if (!immune) return true;
+        double probeDistance = clamp(0.7 + speed * 1.2, 0.7, 2.5);
+        double toX = curX + forwardX * probeDistance;
+        double toY = curY + forwardY * probeDistance;
+        double toZ = curZ + forwardZ * probeDistance;
+
+        // Centre line plus one line each side, 0.3 blocks out perpendicular to travel
+        double horizontal = Math.sqrt(forwardX * forwardX + forwardZ * forwardZ);
+        double sideX = horizontal > 1.0e-6 ? -forwardZ / horizontal * 0.3 : 0.0;
+        double sideZ = horizontal > 1.0e-6 ? forwardX / horizontal * 0.3 : 0.0;
+        int lines = horizontal > 1.0e-6 ? 3 : 1;
+
+        for (int line = 0; line < lines; line++) {
+            double side = (line == 0) ? 0.0 : (line == 1 ? 1.0 : -1.0);
+            double ox = sideX * side;
+            double oz = sideZ * side;
+
+            ray.reset(fromX + ox, fromY, fromZ + oz, toX + ox, toY, toZ + oz);
+            while (ray.next()) {
+                if (index.hitsTrail(packBlockKey(ray.x, ray.y, ray.z), ownerMost, ownerLeast, nowMs, selfImmunityMs)
+                        || index.hitsTrail(packBlockKey(ray.x, ray.y + 1, ray.z), ownerMost, ownerLeast, nowMs, selfImmunityMs)) {
+                    return true;
+                }
             }
         }
-
         return false;
     }
 
-    private boolean checkWorldWallCollision(Horse horse) {
-        Vector velocity = horse.getVelocity();
-        double speed = velocity.length();
-        if (speed < worldWallCrashSpeedThreshold) return false;
-
-        World world = horse.getWorld();
-        Location loc = horse.getLocation();
-
-        Vector forward = velocity.clone().normalize();
-        double maxDistance = clamp(0.9 + speed * 1.1, 0.9, 3.0);
-
-        for (double d = 0.35; d <= maxDistance; d += 0.25) {
-            Location probe = loc.clone().add(forward.clone().multiply(d));
-
-            int x = probe.getBlockX();
-            int y = probe.getBlockY();
-            int z = probe.getBlockZ();
+    // Cached answer if the block was read within wallCacheMaxAgeTicks, else one getBlockAt; unloaded chunks read as open
+    private boolean isSolidWallAt(World world, SolidBlockCache solids, int x, int y, int z) {
+        int cached = solids.lookup(x, y, z, tickCounter, wallCacheMaxAgeTicks);
+        if (cached != SolidBlockCache.UNKNOWN) return cached == SolidBlockCache.SOLID;
+        if (y < world.getMinHeight() || y >= world.getMaxHeight() || !world.isChunkLoaded(x >> 4, z >> 4)) return false;
 
-            Block block0 = world.getBlockAt(x, y, z);
-            Block block1 = world.getBlockAt(x, y + 1, z);
-
-            if (isSolidWall(block0) || isSolidWall(block1)) return true;
-        }
-        return false;
+        boolean solid = isSolidWall(world.getBlockAt(x, y, z).getType());
+        solids.store(x, y, z, solid);
+        return solid;
     }
 
-    private boolean isSolidWall(Block block) {
-        if (block == null) return false;
-        Material type = block.getType();
+    private boolean isSolidWall(Material type) {
+        if (type == null) return false;
         if (replaceableMaterials.contains(type)) return false;
         return type.isSolid();
     }
@@ -1340,39 +1795,129 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         return viewers;
     }
 
+    // Queues the whole visible trail for a joining/world-changing player; flushClientQueues spreads it over ticks.
     private void resyncClientTrailsForPlayer(Player player) {
         if (player == null || !player.isOnline() || renderMode != RenderMode.CLIENT) return;
 
         World world = player.getWorld();
         if (world == null) return;
 
+        TrailWorld trailWorld = trailWorlds.get(world.getUID());
+        if (trailWorld == null) return;
+
         Location center = player.getLocation();
         int range = Math.max(16, clientViewDistanceBlocks);
         double rangeSq = range * (double) range;
+        int chunkRange = (range >> 4) + 1;
+        int centerChunkX = center.getBlockX() >> 4;
+        int centerChunkZ = center.getBlockZ() >> 4;
+
+        Map<CycleColor, BlockData> paneDataByColor = new EnumMap<>(CycleColor.class);
+        for (Map.Entry<Long, Set<TrailSegment>> entry : trailWorld.segmentsByChunk.entrySet()) {
+            long chunkKey = entry.getKey();
+            int chunkX = (int) (chunkKey >> 32);
+            int chunkZ = (int) chunkKey;
+            if (Math.abs(chunkX - centerChunkX) > chunkRange || Math.abs(chunkZ - centerChunkZ) > chunkRange) continue;
+            if (!world.isChunkLoaded(chunkX, chunkZ)) continue;
+
+            for (TrailSegment segment : entry.getValue()) {
+                if (segment.removed) continue;
+                double dx = segment.x - center.getX();
+                double dy = segment.y - center.getY();
+                double dz = segment.z - center.getZ();
+                if (dx * dx + dy * dy + dz * dz > rangeSq) continue;
+
+                BlockData paneData = paneDataByColor.computeIfAbsent(segment.cycleColor, c -> Bukkit.createBlockData(paneMaterialForColor(c)));
+                queueClientChange(player, world, segment.x, segment.y, segment.z, paneData);
+                queueClientChange(player, world, segment.x, segment.y + 1, segment.z, paneData);
+            }
+        }
+    }
 
-        int sentChanges = 0;
-        for (TrailSegment segment : trailSegmentsByBaseKey.values()) {
-            if (!segment.baseKey.worldId.equals(world.getUID())) continue;
+    private void queueClientChange(Player viewer, World world, int x, int y, int z, BlockData data) {
+        ClientTrailQueue queue = clientQueues.computeIfAbsent(viewer.getUniqueId(), k -> new ClientTrailQueue());
+        if (!world.getUID().equals(queue.worldId)) {
+            queue.pending.clear();
+            queue.worldId = world.getUID();
+        }
+        // A later change to the same block replaces the queued one (e.g. placed and expired before sending)
+        queue.pending.put(packBlockKey(x, y, z), data);
+    }
 
-            Location segLoc = segment.baseKey.toLocation(world);
-            if (segLoc.distanceSquared(center) > rangeSq) continue;
+    private void flushClientQueues(int budget) {
+        if (clientQueues.isEmpty()) return;
 
-            Material paneMaterial = paneMaterialForColor(segment.cycleColor);
-            BlockData paneData = Bukkit.createBlockData(paneMaterial);
+        Iterator<Map.Entry<UUID, ClientTrailQueue>> queueIt = clientQueues.entrySet().iterator();
+        while (queueIt.hasNext()) {
+            Map.Entry<UUID, ClientTrailQueue> entry = queueIt.next();
+            ClientTrailQueue queue = entry.getValue();
+            Player viewer = Bukkit.getPlayer(entry.getKey());
+            if (viewer == null || !viewer.isOnline() || queue.pending.isEmpty()) {
+                queueIt.remove();
+                continue;
+            }
 
-            Location baseLoc = segLoc;
-            Location aboveLoc = segLoc.clone().add(0, 1, 0);
+            World world = viewer.getWorld();
+            if (!world.getUID().equals(queue.worldId)) {
+                // Left the world; the world-change resync queues what they should see now
+                queueIt.remove();
+                continue;
+            }
 
-            if (sentChanges >= clientMaxChangesPerTickPerPlayer) break;
+            List<BlockState> batch = new ArrayList<>(Math.min(budget, queue.pending.size()));
+            Iterator<Map.Entry<Long, BlockData>> changeIt = queue.pending.entrySet().iterator();
+            while (changeIt.hasNext() && batch.size() < budget) {
+                Map.Entry<Long, BlockData> change = changeIt.next();
+                changeIt.remove();
+
+                // A change for a chunk that unloaded while queued is dropped: the client no longer has
+                // that chunk, and getBlockAt would load it synchronously just to build the BlockState
+                long key = change.getKey();
+                int x = unpackBlockX(key);
+                int z = unpackBlockZ(key);
+                if (!world.isChunkLoaded(x >> 4, z >> 4)) continue;
+
+                BlockState state = world.getBlockAt(x, unpackBlockY(key), z).getState();
+                state.setBlockData(change.getValue());
+                batch.add(state);
+            }
 
-            player.sendBlockChange(baseLoc, paneData);
-            player.sendBlockChange(aboveLoc, paneData);
-            sentChanges += 2;
+            sendClientBatch(viewer, batch);
+            if (queue.pending.isEmpty()) queueIt.remove();
         }
     }
 
+    // sendBlockChanges splits the batch by chunk section into multi-block-change packets.
+    private void sendClientBatch(Player viewer, List<BlockState> batch) {
+        if (batch.isEmpty()) return;
+
+        if (batchedBlockChanges) {
+            try {
+                viewer.sendBlockChanges(batch);
+                clientBatchesSent++;
+                clientChangesSent += batch.size();
+                return;
+            } catch (NoSuchMethodError | AbstractMethodError | UnsupportedOperationException missing) {
+                // The server API has no batched send; stop trying
+                batchedBlockChanges = false;
+                getLogger().warning("Player.sendBlockChanges unavailable (" + missing.getClass().getSimpleName() + "); sending trail blocks one at a time.");
+            } catch (RuntimeException e) {
+                // Anything else may be specific to this batch or viewer: send it singly and keep batching
+                long now = System.currentTimeMillis();
+                if (now - clientBatchErrorLoggedMs >= 60_000L) {
+                    clientBatchErrorLoggedMs = now;
+                    getLogger().warning("Player.sendBlockChanges failed for " + viewer.getName() + " (" + e
+                            + "); sent that batch one block at a time. Further failures are logged at most once a minute.");
+                }
+            }
+        }
+
+        for (BlockState state : batch) viewer.sendBlockChange(state.getLocation(), state.getBlockData());
+        clientChangesSent += batch.size();
+    }
+
     // ---------- Utils ----------
-    private double clamp(double value, double minValue, double maxValue) {
+    private static double clamp(double value, double minValue, double maxValue) {
         return Math.max(minValue, Math.min(maxValue, value));
     }
 
@@ -1387,7 +1932,7 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         private Vector lastEmittedPoint;
         private long lastUpdateNanos;
 
-        private final Deque<BlockKey> baseKeysFIFO = new ArrayDeque<>();
+        private final Deque<TrailSegment> segmentsFIFO = new ArrayDeque<>();
 
         private long emissionCooldownUntilMs = 0L;
 
@@ -1395,6 +1940,15 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
 
         private int lastHumTick = 0;
 
+        // Horse position at the previous collision sweep
+        private double lastSweepX;
+        private double lastSweepY;
+        private double lastSweepZ;
+        private boolean hasLastSweep = false;
+
+        // Set only for /lightcycle bench riders, which have no player or horse
+        private BenchRider benchRider;
+
         private CycleInstance(UUID ownerId, UUID cycleEntityId, CycleColor cycleColor) {
             this.ownerId = ownerId;
             this.cycleEntityId = cycleEntityId;
@@ -1403,7 +1957,11 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
     }
 
     private static class TrailSegment {
-        private final BlockKey baseKey;
+        private final UUID worldId;
+        private final int x;
+        private final int y;
+        private final int z;
+        private final long baseKey;
         private final long placedMs;
         private final UUID ownerId;
         private final CycleColor cycleColor;
@@ -1414,10 +1972,22 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
         private final boolean lightPlaced;
         private final BlockData originalLightData;
 
-        private TrailSegment(BlockKey baseKey, long placedMs, UUID ownerId, CycleColor cycleColor,
+        // Set once the segment has left the trail index (expired, cleared, chunk unload)
+        private boolean removed = false;
+        // Set once its blocks have been put back; between the two it waits in the restore queue
+        private boolean restored = false;
+
+        private long expireTick;
+        private TrailSegment wheelNext;
+
+        private TrailSegment(UUID worldId, int x, int y, int z, long placedMs, UUID ownerId, CycleColor cycleColor,
                              BlockData originalBaseData, BlockData originalAboveData,
                              boolean lightPlaced, BlockData originalLightData) {
-            this.baseKey = baseKey;
+            this.worldId = worldId;
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.baseKey = packBlockKey(x, y, z);
             this.placedMs = placedMs;
             this.ownerId = ownerId;
             this.cycleColor = cycleColor;
@@ -1426,76 +1996,395 @@ public class TronLightcycle extends JavaPlugin implements Listener, TabExecutor
             this.lightPlaced = lightPlaced;
             this.originalLightData = originalLightData;
         }
+
+        private long chunkKey() {
+            return packChunkKey(x >> 4, z >> 4);
+        }
+
+        private Location toLocation(World world) {
+            return new Location(world, x, y, z);
+        }
     }
 
-    private static class TrailSegmentRef {
-        private final BlockKey baseKey;
-        private final long placedMs;
-        private final UUID ownerId;
+    // Packed block position: x and z in 26 bits, y in 12 bits (same layout as vanilla BlockPos).
+    private static long packBlockKey(int x, int y, int z) {
+        return ((long) (x & 0x3FFFFFF) << 38) | ((long) (z & 0x3FFFFFF) << 12) | (y & 0xFFF);
+    }
+
+    private static int unpackBlockX(long key) { return (int) (key >> 38); }
+    private static int unpackBlockY(long key) { return (int) (key << 52 >> 52); }
+    private static int unpackBlockZ(long key) { return (int) (key << 26 >> 38); }
+
+    private static long packChunkKey(int chunkX, int chunkZ) {
+        return ((long) chunkX << 32) | (chunkZ & 0xFFFFFFFFL);
+    }
+
+    /**
+     * Voxel traversal (Amanatides and Woo) along a segment: visits every block the segment passes
+     * through, in order, starting with the block containing the start point. Reusable; after
+     * reset, each next() advances to the next block and exposes it in x/y/z.
+     */
+    private static class VoxelRay {
+        private int x;
+        private int y;
+        private int z;
+
+        private int stepX;
+        private int stepY;
+        private int stepZ;
+        private double tMaxX;
+        private double tMaxY;
+        private double tMaxZ;
+        private double tDeltaX;
+        private double tDeltaY;
+        private double tDeltaZ;
+        private int remaining;
+        private boolean started;
+
+        private void reset(double x0, double y0, double z0, double x1, double y1, double z1) {
+            x = (int) Math.floor(x0);
+            y = (int) Math.floor(y0);
+            z = (int) Math.floor(z0);
+            int endX = (int) Math.floor(x1);
+            int endY = (int) Math.floor(y1);
+            int endZ = (int) Math.floor(z1);
+
+            double dx = x1 - x0;
+            double dy = y1 - y0;
+            double dz = z1 - z0;
+
+            stepX = dx > 0 ? 1 : (dx < 0 ? -1 : 0);
+            stepY = dy > 0 ? 1 : (dy < 0 ? -1 : 0);
+            stepZ = dz > 0 ? 1 : (dz < 0 ? -1 : 0);
+
+            tDeltaX = stepX == 0 ? Double.POSITIVE_INFINITY : Math.abs(1.0 / dx);
+            tDeltaY = stepY == 0 ? Double.POSITIVE_INFINITY : Math.abs(1.0 / dy);
+            tDeltaZ = stepZ == 0 ? Double.POSITIVE_INFINITY : Math.abs(1.0 / dz);
+
+            tMaxX = stepX == 0 ? Double.POSITIVE_INFINITY : (stepX > 0 ? (x + 1 - x0) : (x0 - x)) * tDeltaX;
+            tMaxY = stepY == 0 ? Double.POSITIVE_INFINITY : (stepY > 0 ? (y + 1 - y0) : (y0 - y)) * tDeltaY;
+            tMaxZ = stepZ == 0 ? Double.POSITIVE_INFINITY : (stepZ > 0 ? (z + 1 - z0) : (z0 - z)) * tDeltaZ;
+
+            remaining = Math.abs(endX - x) + Math.abs(endY - y) + Math.abs(endZ - z);
+            started = false;
+        }
 
-        private TrailSegmentRef(BlockKey baseKey, long placedMs, UUID ownerId) {
-            this.baseKey = baseKey;
-            this.placedMs = placedMs;
-            this.ownerId = ownerId;
+        private boolean next() {
+            if (!started) {
+                started = true;
+                return true;
+            }
+            if (remaining <= 0) return false;
+
+            if (tMaxX < tMaxY) {
+                if (tMaxX < tMaxZ) { x += stepX; tMaxX += tDeltaX; }
+                else { z += stepZ; tMaxZ += tDeltaZ; }
+            } else {
+                if (tMaxY < tMaxZ) { y += stepY; tMaxY += tDeltaY; }
+                else { z += stepZ; tMaxZ += tDeltaZ; }
+            }
+            remaining--;
+            return true;
         }
     }
 
-    private static class BlockKey {
-        private final UUID worldId;
-        private final int x;
-        private final int y;
-        private final int z;
+    /**
+     * Direct-mapped cache of wall solidity per 16x16x16 section: two 4096-bit sets (known, solid)
+     * per slot, filled one block at a time as the sweep asks for it. A slot's known bits are
+     * dropped once it is maxAgeTicks old, so blocks placed since then are seen at most that late.
+     * Slots and bitsets are allocated once; a lookup never copies chunk data.
+     */
+    private static class SolidBlockCache {
+        private static final int SLOT_BITS = 7;
+        private static final int SLOTS = 1 << SLOT_BITS;
+        private static final int WORDS = 4096 / 64;
+        private static final int UNKNOWN = -1;
+        private static final int OPEN = 0;
+        private static final int SOLID = 1;
+
+        private final long[] sectionKeys = new long[SLOTS];
+        private final int[] filledAtTick = new int[SLOTS];
+        private final long[] known = new long[SLOTS * WORDS];
+        private final long[] solid = new long[SLOTS * WORDS];
+        private long lookups = 0;
+        private long blockReads = 0;
+
+        private SolidBlockCache() {
+            // x = -2^25 never occurs as a section coordinate
+            Arrays.fill(sectionKeys, Long.MIN_VALUE);
+        }
 
-        private BlockKey(UUID worldId, int x, int y, int z) {
-            this.worldId = worldId;
-            this.x = x;
-            this.y = y;
-            this.z = z;
+        /** SOLID, OPEN or UNKNOWN; after UNKNOWN the caller reads the block and hands it to store(). */
+        private int lookup(int x, int y, int z, int nowTick, int maxAgeTicks) {
+            lookups++;
+            long sectionKey = packBlockKey(x >> 4, y >> 4, z >> 4);
+            int slot = (int) ((sectionKey * 0x9E3779B97F4A7C15L) >>> (64 - SLOT_BITS));
+            if (sectionKeys[slot] != sectionKey || nowTick - filledAtTick[slot] >= maxAgeTicks) {
+                sectionKeys[slot] = sectionKey;
+                filledAtTick[slot] = nowTick;
+                Arrays.fill(known, slot * WORDS, slot * WORDS + WORDS, 0L);
+                return UNKNOWN;
+            }
+
+            int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+            int word = slot * WORDS + (bit >>> 6);
+            long mask = 1L << bit;
+            if ((known[word] & mask) == 0) return UNKNOWN;
+            return (solid[word] & mask) != 0 ? SOLID : OPEN;
         }
 
-        private int getChunkX() { return x >> 4; }
-        private int getChunkZ() { return z >> 4; }
+        private void store(int x, int y, int z, boolean isSolid) {
+            blockReads++;
+            int slot = (int) ((packBlockKey(x >> 4, y >> 4, z >> 4) * 0x9E3779B97F4A7C15L) >>> (64 - SLOT_BITS));
+            int bit = ((y & 15) << 8) | ((z & 15) << 4) | (x & 15);
+            int word = slot * WORDS + (bit >>> 6);
+            long mask = 1L << bit;
+            known[word] |= mask;
+            if (isSolid) solid[word] |= mask;
+            else solid[word] &= ~mask;
+        }
+    }
 
-        private Location toLocation(World world) {
-            return new Location(world, x, y, z);
+    /**
+     * Two-level timing wheel over tick numbers with segments chained through TrailSegment.wheelNext.
+     * The inner wheel holds the next 256 ticks one slot per tick; the outer wheel holds 64 spans of
+     * 256 ticks and is cascaded into the inner wheel as each span comes up. Deadlines past the outer
+     * wheel sit in its last slot and are re-filed on cascade. Cancelled segments are left in place
+     * and skipped when their tick comes.
+     */
+    private static class ExpiryWheel {
+        private static final int INNER_BITS = 8;
+        private static final int INNER_SLOTS = 1 << INNER_BITS;
+        private static final int INNER_MASK = INNER_SLOTS - 1;
+        private static final int OUTER_SLOTS = 64;
+        private static final int OUTER_MASK = OUTER_SLOTS - 1;
+
+        private final TrailSegment[] inner = new TrailSegment[INNER_SLOTS];
+        private final TrailSegment[] outer = new TrailSegment[OUTER_SLOTS];
+        private long currentTick = 0;
+        private int size = 0;
+
+        private void schedule(TrailSegment segment, long expireTick) {
+            segment.expireTick = Math.max(expireTick, currentTick + 1);
+            insert(segment);
+            size++;
+        }
+
+        private void insert(TrailSegment segment) {
+            if (segment.expireTick - currentTick < INNER_SLOTS) {
+                int slot = (int) (segment.expireTick & INNER_MASK);
+                segment.wheelNext = inner[slot];
+                inner[slot] = segment;
+                return;
+            }
+            long currentSpan = currentTick >> INNER_BITS;
+            long span = Math.min(segment.expireTick >> INNER_BITS, currentSpan + OUTER_SLOTS - 1);
+            int slot = (int) (span & OUTER_MASK);
+            segment.wheelNext = outer[slot];
+            outer[slot] = segment;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (!(obj instanceof BlockKey)) return false;
-            BlockKey other = (BlockKey) obj;
-            return x == other.x && y == other.y && z == other.z && worldId.equals(other.worldId);
+        // Moves every live segment due at or before nowTick into out, oldest tick first
+        private void advance(long nowTick, Deque<TrailSegment> out) {
+            while (currentTick < nowTick) {
+                currentTick++;
+
+                if ((currentTick & INNER_MASK) == 0) {
+                    int outerSlot = (int) ((currentTick >> INNER_BITS) & OUTER_MASK);
+                    TrailSegment segment = outer[outerSlot];
+                    outer[outerSlot] = null;
+                    while (segment != null) {
+                        TrailSegment next = segment.wheelNext;
+                        insert(segment);
+                        segment = next;
+                    }
+                }
+
+                int slot = (int) (currentTick & INNER_MASK);
+                TrailSegment segment = inner[slot];
+                inner[slot] = null;
+                while (segment != null) {
+                    TrailSegment next = segment.wheelNext;
+                    segment.wheelNext = null;
+                    size--;
+                    if (!segment.removed) out.addLast(segment);
+                    segment = next;
+                }
+            }
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(worldId, x, y, z);
+        private void clear() {
+            Arrays.fill(inner, null);
+            Arrays.fill(outer, null);
+            size = 0;
+        }
+
+        private int size() {
+            return size;
         }
     }
 
-    private static class ChunkKey {
-        private final UUID worldId;
-        private final int chunkX;
-        private final int chunkZ;
+    private static class BenchRider {
+        private static final double ARENA_Y = 64.0;
+
+        private double x;
+        private double z;
+        private int headingX;
+        private int headingZ;
+        private final Vector velocity = new Vector();
+    }
+
+    private static class ArenaBench {
+        private final CommandSender sender;
+        private final int measuredUpdates;
+        private final UUID worldId = UUID.randomUUID(); // never a loaded world, so nothing is rendered or restored
+        private final List<String> lines = new ArrayList<>();
+        private BukkitTask task;
+        private double speed;
+        private long simMs;
+        private long simNanos;
+
+        // Current size
+        private int sizeIndex = 0;
+        private CycleInstance[] riders;
+        private Random random;
+        private double halfSize;
+        private int update;
+        private long totalNanos;
+        private long maxNanos;
+        private long crashes;
+        private int peakIndexSize;
+        private long allocatedBytes; // -1 where the JVM does not report it
+
+        private ArenaBench(CommandSender sender, int measuredUpdates) {
+            this.sender = sender;
+            this.measuredUpdates = measuredUpdates;
+        }
+    }
 
-        private ChunkKey(UUID worldId, int chunkX, int chunkZ) {
-            this.worldId = worldId;
-            this.chunkX = chunkX;
-            this.chunkZ = chunkZ;
+    private static class ClientTrailQueue {
+        private UUID worldId;
+        private final LinkedHashMap<Long, BlockData> pending = new LinkedHashMap<>();
+    }
+
+    /** Trail storage for one world: block index for collisions plus chunk membership for unloads. */
+    private static class TrailWorld {
+        private final TrailIndex index = new TrailIndex(256);
+        private final Map<Long, Set<TrailSegment>> segmentsByChunk = new HashMap<>();
+    }
+
+    /**
+     * Open-addressing (linear probing) map from packed block key to the trail segment covering that
+     * block, with the segment's owner and placement time kept in parallel primitive columns so the
+     * collision probe never touches the segment object or allocates a key.
+     */
+    private static class TrailIndex {
+        // x = -2^25 is far outside the world border, so this packed key never occurs
+        private static final long EMPTY = Long.MIN_VALUE;
+
+        private long[] keys;
+        private long[] placedMs;
+        private long[] ownerMost;
+        private long[] ownerLeast;
+        private TrailSegment[] segments;
+        private int mask;
+        private int size = 0;
+
+        private TrailIndex(int initialCapacity) {
+            int capacity = Integer.highestOneBit(Math.max(16, initialCapacity) - 1) << 1;
+            allocate(capacity);
+        }
+
+        private void allocate(int capacity) {
+            keys = new long[capacity];
+            Arrays.fill(keys, EMPTY);
+            placedMs = new long[capacity];
+            ownerMost = new long[capacity];
+            ownerLeast = new long[capacity];
+            segments = new TrailSegment[capacity];
+            mask = capacity - 1;
         }
 
-        @Override
-        public boolean equals(Object obj) {
-            if (this == obj) return true;
-            if (!(obj instanceof ChunkKey)) return false;
-            ChunkKey other = (ChunkKey) obj;
-            return chunkX == other.chunkX && chunkZ == other.chunkZ && worldId.equals(other.worldId);
+        private int home(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32)) & mask;
         }
 
-        @Override
-        public int hashCode() {
-            return Objects.hash(worldId, chunkX, chunkZ);
+        private int find(long key) {
+            for (int i = home(key); ; i = (i + 1) & mask) {
+                long k = keys[i];
+                if (k == key) return i;
+                if (k == EMPTY) return -1;
+            }
+        }
+
+        private int size() { return size; }
+        private int capacity() { return keys.length; }
+
+        private TrailSegment get(long key) {
+            int slot = find(key);
+            return slot < 0 ? null : segments[slot];
+        }
+
+        private void put(long key, TrailSegment segment) {
+            if ((size + 1) * 3 > keys.length * 2) grow();
+            int i = home(key);
+            while (keys[i] != EMPTY && keys[i] != key) i = (i + 1) & mask;
+            if (keys[i] == EMPTY) size++;
+            keys[i] = key;
+            placedMs[i] = segment.placedMs;
+            ownerMost[i] = segment.ownerId.getMostSignificantBits();
+            ownerLeast[i] = segment.ownerId.getLeastSignificantBits();
+            segments[i] = segment;
+        }
+
+        /** Removes key only while it still points at segment. */
+        private void remove(long key, TrailSegment segment) {
+            int slot = find(key);
+            if (slot < 0 || segments[slot] != segment) return;
+            removeAt(slot);
+        }
+
+        /** True if key is trail that is not the given owner's own, still-immune trail. */
+        private boolean hitsTrail(long key, long probeOwnerMost, long probeOwnerLeast, long nowMs, long selfImmunityMs) {
+            int slot = find(key);
+            if (slot < 0) return false;
+            boolean sameOwner = ownerMost[slot] == probeOwnerMost && ownerLeast[slot] == probeOwnerLeast;
+            return !(sameOwner && (nowMs - placedMs[slot]) <= selfImmunityMs);
+        }
+
+        // Backward-shift deletion keeps probe chains intact without tombstones.
+        private void removeAt(int slot) {
+            int i = slot;
+            int j = slot;
+            while (true) {
+                j = (j + 1) & mask;
+                long k = keys[j];
+                if (k == EMPTY) break;
+                int h = home(k);
+                boolean movable = (j > i) ? (h <= i || h > j) : (h <= i && h > j);
+                if (movable) {
+                    keys[i] = k;
+                    placedMs[i] = placedMs[j];
+                    ownerMost[i] = ownerMost[j];
+                    ownerLeast[i] = ownerLeast[j];
+                    segments[i] = segments[j];
+                    i = j;
+                }
+            }
+            keys[i] = EMPTY;
+            segments[i] = null;
+            size--;
+        }
+
+        private void grow() {
+            long[] oldKeys = keys;
+            TrailSegment[] oldSegments = segments;
+            allocate(oldKeys.length << 1);
+            size = 0;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != EMPTY) put(oldKeys[i], oldSegments[i]);
+            }
         }
     }
-}
\ No newline at end of file
+}
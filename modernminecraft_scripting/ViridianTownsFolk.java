@@ -6,7 +6,9 @@ import org.bukkit.event.EventPriority;
 import org.bukkit.World;
 import org.bukkit.Location;
 import net.citizensnpcs.api.CitizensAPI;
+import net.citizensnpcs.api.event.NPCDespawnEvent;
 import net.citizensnpcs.api.event.NPCSpawnEvent;
+import net.citizensnpcs.api.event.NPCTeleportEvent;
 import net.citizensnpcs.api.npc.NPC;
 import org.bukkit.*;
 import org.bukkit.command.*;
@@ -16,9 +18,15 @@ import org.bukkit.entity.Player;
 import org.bukkit.entity.LivingEntity;
 import org.bukkit.event.*;
 import org.bukkit.event.player.PlayerInteractEntityEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerMoveEvent;
+import org.bukkit.event.player.PlayerQuitEvent;
+import org.bukkit.event.player.PlayerRespawnEvent;
+import org.bukkit.event.player.PlayerTeleportEvent;
 import org.bukkit.event.player.AsyncPlayerChatEvent;
 import org.bukkit.block.Block;
+import org.bukkit.event.block.BlockBreakEvent;
+import org.bukkit.event.block.BlockPlaceEvent;
 import org.bukkit.block.data.BlockData;
 import org.bukkit.block.data.Openable;
 import org.bukkit.block.data.type.Door;
@@ -53,6 +61,7 @@ import org.bukkit.configuration.file.YamlConfiguration;
  * - Population is player-proximity gated + spawn throttled (spawn queue)
  * - Auto-wakes managed NPCs on NPCSpawnEvent + player proximity
  * - Configurable ignore list for sites (ignoreContains/ignoreExact/ignoreRegex)
+ * - Role routine POIs come from a per-site cache scanned off-thread from chunk snapshots
  *
  * Author: ChatGPT
  */
@@ -86,6 +95,424 @@ public final class ViridianTownsFolk extends JavaPlugin implements Listener, Com
         }
     }
 
+    /* ============================================================
+     *  Chunk-bucketed position index (main thread only)
+     * ============================================================ */
+
+    /**
+     * Keys bucketed by world + chunk. Positions may lag behind the live entity by one refresh,
+     * so queries return candidates from one extra ring of chunks and callers do the exact
+     * distance check against the live location.
+     */
+    private static final class ChunkBucketIndex<K> {
+        private static final class Entry {
+            String worldName;
+            long chunkKey;
+
+            Entry(String worldName, long chunkKey) {
+                this.worldName = worldName;
+                this.chunkKey = chunkKey;
+            }
+        }
+
+        private final Map<String, Map<Long, Set<K>>> buckets = new HashMap<>();
+        private final Map<String, Set<K>> byWorld = new HashMap<>();
+        private final Map<K, Entry> entries = new HashMap<>();
+
+        private static long chunkKey(int chunkX, int chunkZ) {
+            return (((long) chunkX) << 32) ^ (chunkZ & 0xffffffffL);
+        }
+
+        void update(K key, Location loc) {
+            if (loc == null || loc.getWorld() == null) {
+                remove(key);
+                return;
+            }
+            String worldName = loc.getWorld().getName();
+            long ck = chunkKey(loc.getBlockX() >> 4, loc.getBlockZ() >> 4);
+
+            Entry e = entries.get(key);
+            if (e != null) {
+                if (e.chunkKey == ck && e.worldName.equals(worldName)) return;
+                unlink(key, e);
+                e.worldName = worldName;
+                e.chunkKey = ck;
+            } else {
+                e = new Entry(worldName, ck);
+                entries.put(key, e);
+            }
+            buckets.computeIfAbsent(worldName, k -> new HashMap<>()).computeIfAbsent(ck, k -> new HashSet<>()).add(key);
+            byWorld.computeIfAbsent(worldName, k -> new HashSet<>()).add(key);
+        }
+
+        void remove(K key) {
+            Entry e = entries.remove(key);
+            if (e != null) unlink(key, e);
+        }
+
+        private void unlink(K key, Entry e) {
+            Map<Long, Set<K>> world = buckets.get(e.worldName);
+            if (world != null) {
+                Set<K> bucket = world.get(e.chunkKey);
+                if (bucket != null && bucket.remove(key) && bucket.isEmpty()) world.remove(e.chunkKey);
+            }
+            Set<K> inWorld = byWorld.get(e.worldName);
+            if (inWorld != null) inWorld.remove(key);
+        }
+
+        /** Adds every key that may be within the block radius of center (horizontal). */
+        void collectNear(Location center, int radius, List<K> out) {
+            World w = center.getWorld();
+            if (w == null) return;
+            Set<K> inWorld = byWorld.get(w.getName());
+            if (inWorld == null || inWorld.isEmpty()) return;
+
+            int minCx = ((center.getBlockX() - radius) >> 4) - 1;
+            int maxCx = ((center.getBlockX() + radius) >> 4) + 1;
+            int minCz = ((center.getBlockZ() - radius) >> 4) - 1;
+            int maxCz = ((center.getBlockZ() + radius) >> 4) + 1;
+
+            // Few keys in a big radius (e.g. players vs. a 192-block site check): just take them all.
+            long span = (long) (maxCx - minCx + 1) * (maxCz - minCz + 1);
+            if (span >= inWorld.size()) {
+                out.addAll(inWorld);
+                return;
+            }
+
+            Map<Long, Set<K>> world = buckets.get(w.getName());
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    Set<K> bucket = world.get(chunkKey(cx, cz));
+                    if (bucket != null) out.addAll(bucket);
+                }
+            }
+        }
+
+        Set<K> keys() {
+            return entries.keySet();
+        }
+
+        int size() {
+            return entries.size();
+        }
+
+        int bucketCount() {
+            int n = 0;
+            for (Map<Long, Set<K>> world : buckets.values()) n += world.size();
+            return n;
+        }
+
+        void clear() {
+            buckets.clear();
+            byWorld.clear();
+            entries.clear();
+        }
+    }
+
+    /** Call count and cost of one hot path, shown by /vtf timings. */
+    private static final class OpTimer {
+        long calls;
+        long totalNanos;
+        long maxNanos;
+        long results;
+
+        void record(long nanos, int resultCount) {
+            calls++;
+            totalNanos += nanos;
+            if (nanos > maxNanos) maxNanos = nanos;
+            results += resultCount;
+        }
+
+        String describe() {
+            if (calls == 0) return "no calls";
+            return String.format(Locale.ROOT, "%d calls, avg %.1fus, max %.1fus, avg result %.1f",
+                    calls, totalNanos / 1000.0 / calls, maxNanos / 1000.0, results / (double) calls);
+        }
+
+        void reset() {
+            calls = 0;
+            totalNanos = 0;
+            maxNanos = 0;
+            results = 0;
+        }
+    }
+
+    /** A dialogue.yml line split once at load into literal runs and {var} slots. */
+    private static final class DialogueTemplate {
+        final String raw;
+        final String[] literals;   // literals.length == vars.length + 1
+        final String[] vars;
+
+        private DialogueTemplate(String raw, String[] literals, String[] vars) {
+            this.raw = raw;
+            this.literals = literals;
+            this.vars = vars;
+        }
+
+        static DialogueTemplate compile(String raw) {
+            List<String> literals = new ArrayList<>();
+            List<String> vars = new ArrayList<>();
+            int start = 0;
+            int i = 0;
+            while (i < raw.length()) {
+                int open = raw.indexOf('{', i);
+                if (open < 0) break;
+                int close = raw.indexOf('}', open + 1);
+                if (close < 0) break;
+                String name = raw.substring(open + 1, close);
+                if (!isVarName(name)) {
+                    i = open + 1;
+                    continue;
+                }
+                literals.add(raw.substring(start, open));
+                vars.add(name);
+                start = close + 1;
+                i = start;
+            }
+            literals.add(raw.substring(start));
+            return new DialogueTemplate(raw, literals.toArray(new String[0]), vars.toArray(new String[0]));
+        }
+
+        private static boolean isVarName(String s) {
+            if (s.isEmpty()) return false;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (!Character.isLetterOrDigit(c) && c != '_' && c != '.') return false;
+            }
+            return true;
+        }
+
+        /** Appends the line with {var} replaced; other placeholders are kept as written. */
+        void renderTo(StringBuilder sb, String var, String value) {
+            sb.append(literals[0]);
+            for (int i = 0; i < vars.length; i++) {
+                if (vars[i].equals(var)) sb.append(value == null ? "" : value);
+                else sb.append('{').append(vars[i]).append('}');
+                sb.append(literals[i + 1]);
+            }
+        }
+    }
+
+    /** Immutable compiled dialogue.yml; reload builds a new one and swaps the reference. */
+    private static final class DialogueSnapshot {
+        static final DialogueSnapshot EMPTY = new DialogueSnapshot(Collections.emptyMap());
+        private static final DialogueTemplate[] NONE = new DialogueTemplate[0];
+
+        final Map<String, DialogueTemplate[]> lists;
+
+        DialogueSnapshot(Map<String, DialogueTemplate[]> lists) {
+            this.lists = lists;
+        }
+
+        DialogueTemplate[] get(String key) {
+            if (key == null) return NONE;
+            DialogueTemplate[] v = lists.get(key);
+            return (v == null) ? NONE : v;
+        }
+    }
+
+    /* ============================================================
+     *  Autonomy time wheel (main thread only)
+     * ============================================================ */
+
+    /**
+     * One slot per server tick; an NPC sits in the slot of its next autonomy tick. Delays never
+     * reach SLOTS, so a slot only ever holds NPCs due on that exact tick. Due NPCs move to ready
+     * and are drained by the scheduler task under its time budget; leftovers wait for the next tick.
+     */
+    private static final class AutonomyWheel {
+        static final int SLOTS = 256;  // > first delay (20) + longest period (9s)
+
+        @SuppressWarnings("unchecked")
+        final ArrayDeque<Integer>[] slots = new ArrayDeque[SLOTS];
+        final Map<Integer, Integer> periodTicks = new HashMap<>();
+        final Map<Integer, Long> dueTick = new HashMap<>();
+        final ArrayDeque<Integer> ready = new ArrayDeque<>();
+        long tick;
+
+        AutonomyWheel() {
+            for (int i = 0; i < SLOTS; i++) slots[i] = new ArrayDeque<>();
+        }
+
+        boolean contains(int id) {
+            return periodTicks.containsKey(id);
+        }
+
+        int size() {
+            return periodTicks.size();
+        }
+
+        /** First run lands on the least-loaded tick in [minDelay, minDelay + period). */
+        void add(int id, int period, int minDelay) {
+            if (contains(id)) return;
+            period = Math.max(1, Math.min(period, SLOTS - 1 - minDelay));
+            periodTicks.put(id, period);
+
+            int offset = ThreadLocalRandom.current().nextInt(period);
+            int best = -1;
+            int bestLoad = Integer.MAX_VALUE;
+            for (int i = 0; i < period; i++) {
+                int delay = minDelay + (offset + i) % period;
+                int load = slots[(int) ((tick + delay) % SLOTS)].size();
+                if (load < bestLoad) {
+                    bestLoad = load;
+                    best = delay;
+                }
+            }
+            schedule(id, best);
+        }
+
+        void reschedule(int id) {
+            Integer period = periodTicks.get(id);
+            if (period != null) schedule(id, period);
+        }
+
+        private void schedule(int id, int delay) {
+            long due = tick + delay;
+            dueTick.put(id, due);
+            slots[(int) (due % SLOTS)].addLast(id);
+        }
+
+        /** Moves to the next tick and queues whoever is due on it. */
+        void advance() {
+            tick++;
+            ArrayDeque<Integer> slot = slots[(int) (tick % SLOTS)];
+            for (Integer id : slot) dueTick.remove(id);
+            ready.addAll(slot);
+            slot.clear();
+        }
+
+        void remove(int id) {
+            if (periodTicks.remove(id) == null) return;
+            Long due = dueTick.remove(id);
+            if (due != null) slots[(int) (due % SLOTS)].remove(id);
+            else ready.remove(id);
+        }
+
+        void clear() {
+            for (ArrayDeque<Integer> slot : slots) slot.clear();
+            periodTicks.clear();
+            dueTick.clear();
+            ready.clear();
+        }
+    }
+
+    /* ============================================================
+     *  Per-site POI cache (built from chunk snapshots)
+     * ============================================================ */
+
+    /** A standable spot next to something a role routine cares about. (x, y, z) is where the NPC stands. */
+    private static final class PoiSpot {
+        final int x;
+        final int y;
+        final int z;
+        final Material type;  // POI block under the stand spot (POI lists only)
+        final int score;      // builtDensityScore (hotspots only)
+
+        PoiSpot(int x, int y, int z, Material type, int score) {
+            this.x = x;
+            this.y = y;
+            this.z = z;
+            this.type = type;
+            this.score = score;
+        }
+    }
+
+    /** Everything role routines look for in one chunk. Immutable once published to the main thread. */
+    private static final class ChunkPois {
+        final Map<Material, List<PoiSpot>> byType = new EnumMap<>(Material.class);
+        final List<PoiSpot> docks = new ArrayList<>();
+        final List<PoiSpot> hotspots = new ArrayList<>();  // builtDensityScore >= EDGE_MIN_SCORE
+        final int version;
+        final long builtAtMs;
+        long scanNanos;
+
+        ChunkPois(int version, long builtAtMs) {
+            this.version = version;
+            this.builtAtMs = builtAtMs;
+        }
+
+        int size() {
+            int n = docks.size() + hotspots.size();
+            for (List<PoiSpot> l : byType.values()) n += l.size();
+            return n;
+        }
+    }
+
+    /**
+     * Chunk snapshots around the chunks being scanned. Reads outside the captured chunks (or the
+     * world's height) return AIR, so a missing neighbour only costs a little density score.
+     */
+    private static final class SnapshotArea {
+        final Map<Long, ChunkSnapshot> snapshots = new HashMap<>();
+        final int minY;
+        final int maxY;
+
+        SnapshotArea(int minY, int maxY) {
+            this.minY = minY;
+            this.maxY = maxY;
+        }
+
+        Material type(int x, int y, int z) {
+            if (y < minY || y >= maxY) return Material.AIR;
+            ChunkSnapshot s = snapshots.get(ChunkBucketIndex.chunkKey(x >> 4, z >> 4));
+            return (s == null) ? Material.AIR : s.getBlockType(x & 15, y, z & 15);
+        }
+
+        boolean standable(int x, int y, int z) {
+            if (!type(x, y, z).isAir() || !type(x, y + 1, z).isAir()) return false;
+            Material ground = type(x, y - 1, z);
+            return ground != Material.WATER && ground != Material.LAVA;
+        }
+    }
+
+    /**
+     * POIs for the chunks around one site. Main thread only; scans run async on snapshots and are
+     * published back with runTask. A chunk's version is bumped whenever a block in (or within two
+     * blocks of) it changes, which both drops its entry and discards any scan already in flight.
+     */
+    private static final class SitePoiCache {
+        final String worldName;
+        final int minCx;
+        final int maxCx;
+        final int minCz;
+        final int maxCz;
+        final Map<Long, ChunkPois> chunks = new HashMap<>();
+        final Map<Long, Integer> versions = new HashMap<>();
+        final Set<Long> building = new HashSet<>();
+
+        SitePoiCache(Site site, int radius) {
+            this.worldName = site.worldName;
+            this.minCx = (site.x - radius) >> 4;
+            this.maxCx = (site.x + radius) >> 4;
+            this.minCz = (site.z - radius) >> 4;
+            this.maxCz = (site.z + radius) >> 4;
+        }
+
+        boolean covers(int cx, int cz) {
+            return cx >= minCx && cx <= maxCx && cz >= minCz && cz <= maxCz;
+        }
+
+        int version(long ck) {
+            Integer v = versions.get(ck);
+            return (v == null) ? 0 : v;
+        }
+
+        void invalidate(int cx, int cz) {
+            if (!covers(cx, cz)) return;
+            long ck = ChunkBucketIndex.chunkKey(cx, cz);
+            versions.put(ck, version(ck) + 1);
+            chunks.remove(ck);
+        }
+
+        ChunkPois fresh(long ck, long nowMs, long maxAgeMs) {
+            ChunkPois p = chunks.get(ck);
+            if (p == null) return null;
+            if (p.version != version(ck) || nowMs - p.builtAtMs > maxAgeMs) return null;
+            return p;
+        }
+    }
+
     /* ============================================================
      *  Keys / tags
      * ============================================================ */
@@ -169,7 +596,9 @@ private BukkitTask approxServerTickTask = null;
      * ============================================================ */
 
     private File dialogueFile;
-    private final Map<String, List<String>> dialogueLists = new HashMap<>();
+    private volatile DialogueSnapshot dialogue = DialogueSnapshot.EMPTY;
+    private final StringBuilder dialogueOut = new StringBuilder(256);  // main thread only
+    private final OpTimer dialogueRenderTimer = new OpTimer();  // renderLine cost on live dialogue, for /vtf timings
 
     /* ============================================================
      *  Legacy/adoption heuristics and exclusions
@@ -201,8 +630,15 @@ private BukkitTask approxServerTickTask = null;
     private final List<String> ignoreContains = new ArrayList<>();
     private final List<Pattern> ignoreRegex = new ArrayList<>();
 
-    // Autonomy tasks keyed by NPC id
-    private final Map<Integer, BukkitTask> autonomyTasks = new HashMap<>();
+    // Autonomy: every awake NPC id on one time wheel, drained by a single task under a tick budget
+    private final AutonomyWheel autonomyWheel = new AutonomyWheel();
+    private BukkitTask autonomySchedulerTask;
+    private final OpTimer autonomyTimer = new OpTimer();
+    private int autonomyLastProcessed = 0;
+    private long autonomyLastNanos = 0;
+    private int autonomyLastDeferred = 0;
+    private long autonomyDeferredTotal = 0;
+    private int autonomyMaxBacklog = 0;
 
     // Fast pulse task (doors/gates, swimming nudges, lightweight routines)
     private BukkitTask behaviorPulseTask;
@@ -235,6 +671,23 @@ private BukkitTask approxServerTickTask = null;
     // Player scan throttle
     private final Map<UUID, Long> lastWakeScanMs = new HashMap<>();
 
+    // Spawned managed (or legacy-named, adoptable) NPC ids and online players, bucketed by chunk.
+    // Fed by Citizens spawn/despawn/teleport and player join/move/teleport/quit; a slow refresh
+    // re-buckets NPCs that walked into another chunk.
+    private final ChunkBucketIndex<Integer> npcIndex = new ChunkBucketIndex<>();
+    private final ChunkBucketIndex<UUID> playerIndex = new ChunkBucketIndex<>();
+    private BukkitTask npcIndexRefreshTask;
+    private final OpTimer wakeScanTimer = new OpTimer();
+    private final OpTimer countManagedTimer = new OpTimer();
+    private final OpTimer hasPlayerTimer = new OpTimer();
+    private final OpTimer indexRefreshTimer = new OpTimer();
+
+    // Role-routine POIs per site (Site has identity equality; rebuilt with the site list)
+    private final Map<Site, SitePoiCache> poiCaches = new HashMap<>();
+    private final OpTimer poiLookupTimer = new OpTimer();
+    private final OpTimer poiScanTimer = new OpTimer();
+    private long poiSampledFallbacks = 0;
+
     // Spawn queue to avoid spikes
     private final ArrayDeque<Runnable> spawnQueue = new ArrayDeque<>();
     private BukkitTask spawnQueueTask;
@@ -300,6 +753,14 @@ private BukkitTask approxServerTickTask = null;
     private boolean interactiveDialogueEnabled = true;
     private int dialogueSessionSeconds = 45;
 
+    // Autonomy scheduler: main-thread time allowed per tick (at least one NPC always runs)
+    private double autonomyTickBudgetMs = 2.0;
+
+    // Role routine POI cache
+    private boolean poiCacheEnabled = true;
+    private int poiCacheMaxAgeSeconds = 300;
+    private int poiCacheChunksPerBuild = 4;
+
     /* ============================================================
      *  Enable/disable
      * ============================================================ */
@@ -344,6 +805,12 @@ startSkinTasks();
         startApproxServerTickCounter();
         startBehaviorPulse();
         startConversationCleanupTask();
+        startNpcIndexRefresh();
+        startAutonomyScheduler();
+
+        for (Player p : Bukkit.getOnlinePlayers()) {
+            playerIndex.update(p.getUniqueId(), p.getLocation());
+        }
 
         // Startup wake for already-spawned NPCs (safe: Citizens registry iteration only)
         Bukkit.getScheduler().runTaskLater(this, () -> {
@@ -399,10 +866,15 @@ startSkinTasks();
             conversations.clear();
         }
 
-        for (BukkitTask t : autonomyTasks.values()) {
-            try { t.cancel(); } catch (Throwable ignored) {}
-        }
-        autonomyTasks.clear();
+        if (npcIndexRefreshTask != null) npcIndexRefreshTask.cancel();
+        npcIndexRefreshTask = null;
+        npcIndex.clear();
+        playerIndex.clear();
+        poiCaches.clear();
+
+        if (autonomySchedulerTask != null) autonomySchedulerTask.cancel();
+        autonomySchedulerTask = null;
+        autonomyWheel.clear();
         spawnQueue.clear();
     }
 
@@ -426,6 +898,7 @@ startSkinTasks();
             sender.sendMessage(ChatColor.GRAY + "/vtf purgenether - purge VTF NPCs in the Nether");
             sender.sendMessage(ChatColor.GRAY + "/vtf purgeend    - purge VTF NPCs in the End");
             sender.sendMessage(ChatColor.GRAY + "/vtf stats        - show counts");
+            sender.sendMessage(ChatColor.GRAY + "/vtf timings [reset] - index, autonomy, POI cache and dialogue timings");
             sender.sendMessage(ChatColor.GRAY + "/vtf reloadsites  - reload sites from markers.yml + sites.txt");
             sender.sendMessage(ChatColor.GRAY + "/vtf reloadconfig - reload config.yml");
             sender.sendMessage(ChatColor.GRAY + "/vtf migrate      - rename/update spawned VTF NPCs (back-compat)");
@@ -487,6 +960,44 @@ startSkinTasks();
                 sender.sendMessage(ChatColor.GRAY + "Spawn queue pending: " + spawnQueue.size());
                 return true;
             }
+            case "timings": {
+                if (args.length >= 2 && args[1].equalsIgnoreCase("reset")) {
+                    wakeScanTimer.reset();
+                    countManagedTimer.reset();
+                    hasPlayerTimer.reset();
+                    indexRefreshTimer.reset();
+                    poiLookupTimer.reset();
+                    poiScanTimer.reset();
+                    poiSampledFallbacks = 0;
+                    autonomyTimer.reset();
+                    dialogueRenderTimer.reset();
+                    autonomyDeferredTotal = 0;
+                    autonomyMaxBacklog = 0;
+                    sender.sendMessage(ChatColor.GREEN + "VTF timings reset.");
+                    return true;
+                }
+                sender.sendMessage(ChatColor.GRAY + "NPC index: " + npcIndex.size() + " NPCs in " + npcIndex.bucketCount() + " chunks");
+                sender.sendMessage(ChatColor.GRAY + "Player index: " + playerIndex.size() + " players in " + playerIndex.bucketCount() + " chunks");
+                sender.sendMessage(ChatColor.GRAY + "Wake scans: " + wakeScanTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "countManagedNear: " + countManagedTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "hasPlayerNear: " + hasPlayerTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "Index refresh: " + indexRefreshTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "Autonomy: " + autonomyWheel.size() + " NPCs on the wheel, budget "
+                        + autonomyTickBudgetMs + "ms/tick");
+                sender.sendMessage(ChatColor.GRAY + "Autonomy last tick: " + autonomyLastProcessed + " run, "
+                        + String.format(Locale.ROOT, "%.2f", autonomyLastNanos / 1_000_000.0) + "ms, "
+                        + autonomyLastDeferred + " deferred (total deferred " + autonomyDeferredTotal
+                        + ", max backlog " + autonomyMaxBacklog + ")");
+                sender.sendMessage(ChatColor.GRAY + "Autonomy ticks: " + autonomyTimer.describe());
+                int poiChunks = 0;
+                for (SitePoiCache c : poiCaches.values()) poiChunks += c.chunks.size();
+                sender.sendMessage(ChatColor.GRAY + "POI cache: " + poiCaches.size() + " sites, " + poiChunks + " chunks, "
+                        + poiSampledFallbacks + " sampled fallbacks");
+                sender.sendMessage(ChatColor.GRAY + "POI lookups: " + poiLookupTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "POI chunk scans (async): " + poiScanTimer.describe());
+                sender.sendMessage(ChatColor.GRAY + "Dialogue: " + dialogue.lists.size() + " compiled lists, renders " + dialogueRenderTimer.describe());
+                return true;
+            }
             case "reloadsites": {
                 loadSites();
                 sender.sendMessage(ChatColor.GREEN + "Reloaded sites. Count: " + sites.size());
@@ -505,7 +1016,7 @@ startSkinTasks();
             case "refreshdialogue": {
                 ensureDialogueFile();
                 boolean ok = loadDialogueFromFile(false);
-                if (ok) sender.sendMessage(ChatColor.GREEN + "Reloaded dialogue.yml (" + dialogueLists.size() + " lists).");
+                if (ok) sender.sendMessage(ChatColor.GREEN + "Reloaded dialogue.yml (" + dialogue.lists.size() + " lists).");
                 else sender.sendMessage(ChatColor.RED + "Failed to reload dialogue.yml. Check console.");
                 return true;
             }
@@ -723,7 +1234,7 @@ startSkinTasks();
 
             FileConfiguration yc = YamlConfiguration.loadConfiguration(dialogueFile);
 
-            Map<String, List<String>> loaded = new HashMap<>();
+            Map<String, DialogueTemplate[]> loaded = new HashMap<>();
             Set<String> keys = yc.getKeys(true);
             for (String key : keys) {
                 if (key == null) continue;
@@ -731,24 +1242,22 @@ startSkinTasks();
                     if (!yc.isList(key)) continue;
                     List<?> raw = yc.getList(key);
                     if (raw == null) continue;
-                    List<String> out = new ArrayList<>();
+                    List<DialogueTemplate> out = new ArrayList<>();
                     for (Object o : raw) {
                         if (o == null) continue;
                         String s = String.valueOf(o);
                         if (s == null) continue;
                         s = s.trim();
-                        if (!s.isEmpty()) out.add(s);
+                        if (!s.isEmpty()) out.add(DialogueTemplate.compile(s));
                     }
-                    if (!out.isEmpty()) loaded.put(key, out);
+                    if (!out.isEmpty()) loaded.put(key, out.toArray(new DialogueTemplate[0]));
                 } catch (Throwable ignored) {}
             }
 
-            synchronized (dialogueLists) {
-                dialogueLists.clear();
-                dialogueLists.putAll(loaded);
-            }
+            DialogueSnapshot snap = new DialogueSnapshot(Collections.unmodifiableMap(loaded));
+            dialogue = snap;
 
-            if (log) getLogger().info("Dialogue loaded: lists=" + dialogueLists.size() + " from " + dialogueFile.getName());
+            if (log) getLogger().info("Dialogue loaded: lists=" + snap.lists.size() + " from " + dialogueFile.getName());
             return true;
         } catch (Throwable t) {
             getLogger().warning("Failed loading dialogue.yml: " + t.getMessage());
@@ -756,44 +1265,43 @@ startSkinTasks();
         }
     }
 
-    private List<String> dlgList(String key) {
-        if (key == null) return Collections.emptyList();
-        synchronized (dialogueLists) {
-            List<String> v = dialogueLists.get(key);
-            if (v == null) return Collections.emptyList();
-            return v;
-        }
+    private DialogueTemplate dlgPickTemplate(String key) {
+        DialogueTemplate[] list = dialogue.get(key);
+        if (list.length == 0) return null;
+        return list[ThreadLocalRandom.current().nextInt(list.length)];
+    }
+
+    /** Uniform pick over both lists (either key may be null), without building a merged pool. */
+    private DialogueTemplate dlgPickTemplate(String key1, String key2) {
+        DialogueSnapshot snap = dialogue;
+        DialogueTemplate[] a = snap.get(key1);
+        DialogueTemplate[] b = snap.get(key2);
+        int total = a.length + b.length;
+        if (total == 0) return null;
+        int i = ThreadLocalRandom.current().nextInt(total);
+        return (i < a.length) ? a[i] : b[i - a.length];
     }
 
     private String dlgPick(String key, String fallback) {
-        List<String> list = dlgList(key);
-        if (list.isEmpty()) return fallback;
-        return list.get(ThreadLocalRandom.current().nextInt(list.size()));
+        DialogueTemplate t = dlgPickTemplate(key);
+        return (t == null) ? fallback : t.raw;
     }
 
-    private String dlgPickFromKeys(List<String> keys, String fallback) {
-        List<String> pool = new ArrayList<>();
-        for (String k : keys) {
-            if (k == null) continue;
-            List<String> v = dlgList(k);
-            if (v != null && !v.isEmpty()) pool.addAll(v);
-        }
-        if (pool.isEmpty()) return fallback;
-        return pool.get(ThreadLocalRandom.current().nextInt(pool.size()));
+    private String dlgPickFromKeys(String key1, String key2, String fallback) {
+        DialogueTemplate t = dlgPickTemplate(key1, key2);
+        return (t == null) ? fallback : t.raw;
     }
 
-    private String applyVars(String template, Map<String, String> vars) {
-        if (template == null) return "";
-        String out = template;
-        if (vars != null) {
-            for (Map.Entry<String, String> e : vars.entrySet()) {
-                String k = e.getKey();
-                String v = e.getValue();
-                if (k == null) continue;
-                if (v == null) v = "";
-                out = out.replace("{" + k + "}", v);
-            }
-        }
+    /** Renders a picked template (or the fallback when nothing was picked) with one variable bound. */
+    private String renderLine(DialogueTemplate picked, DialogueTemplate fallback, String var, String value) {
+        DialogueTemplate t = (picked != null) ? picked : fallback;
+        if (t.vars.length == 0) return t.raw;
+        long start = System.nanoTime();
+        StringBuilder sb = dialogueOut;
+        sb.setLength(0);
+        t.renderTo(sb, var, value);
+        String out = sb.toString();
+        dialogueRenderTimer.record(System.nanoTime() - start, 1);
         return out;
     }
 
@@ -811,6 +1319,7 @@ startSkinTasks();
 
         // If already managed, wake it.
         if (isManagedNpc(npc)) {
+            indexNpc(npc);
             wakeNpc(npc, "npcspawn-managed");
             ensureTownSkinApplied(npc, "npcspawn-managed");
             return;
@@ -818,6 +1327,8 @@ startSkinTasks();
 
         // If it looks like legacy VTF, adopt + wake
         if (looksLikeLegacyVtfByName(npc)) {
+            // Indexed even if not adopted here, so a later proximity scan can still adopt it near a site.
+            indexNpc(npc);
             if (adoptByNameNearSitesOnly) {
                 Entity ent = npc.getEntity();
                 if (ent == null) return;
@@ -840,8 +1351,11 @@ startSkinTasks();
         if (!enabled) return;
         if (e.getTo() == null) return;
 
-        // Throttle scans
+        // Cheap when the player stays in the same chunk
         Player p = e.getPlayer();
+        playerIndex.update(p.getUniqueId(), e.getTo());
+
+        // Throttle scans
         long now = System.currentTimeMillis();
         long last = lastWakeScanMs.getOrDefault(p.getUniqueId(), 0L);
         if (now - last < wakePlayerScanCooldownMs) return;
@@ -855,16 +1369,30 @@ startSkinTasks();
         World w = pl.getWorld();
         if (w == null) return;
 
+        long start = System.nanoTime();
         int woke = 0;
         int scanned = 0;
 
-        Collection<Entity> ents = w.getNearbyEntities(pl, wakePlayerScanRadius, wakePlayerScanRadius, wakePlayerScanRadius);
-        for (Entity ent : ents) {
-            if (scanned++ >= wakeMaxPerScan) break;
+        List<Integer> candidates = new ArrayList<>();
+        npcIndex.collectNear(pl, wakePlayerScanRadius, candidates);
+        for (Integer id : candidates) {
+            if (scanned >= wakeMaxPerScan) break;
 
-            NPC npc = CitizensAPI.getNPCRegistry().getNPC(ent);
-            if (npc == null) continue;
-            if (!npc.isSpawned()) continue;
+            NPC npc = CitizensAPI.getNPCRegistry().getById(id);
+            if (npc == null || !npc.isSpawned()) {
+                npcIndex.remove(id);
+                continue;
+            }
+            Entity ent = npc.getEntity();
+            if (ent == null || ent.getWorld() != w) continue;
+
+            // Same box as the old getNearbyEntities(radius, radius, radius) scan
+            Location el = ent.getLocation();
+            if (Math.abs(el.getX() - pl.getX()) > wakePlayerScanRadius
+                    || Math.abs(el.getY() - pl.getY()) > wakePlayerScanRadius
+                    || Math.abs(el.getZ() - pl.getZ()) > wakePlayerScanRadius) continue;
+
+            scanned++;
             if (isExcludedNpc(npc)) continue;
 
             if (isManagedNpc(npc)) {
@@ -874,13 +1402,91 @@ startSkinTasks();
 
             if (looksLikeLegacyVtfByName(npc)) {
                 if (adoptByNameNearSitesOnly) {
-                    Site near = findNearestSite(ent.getLocation(), siteAdoptRadius);
+                    Site near = findNearestSite(el, siteAdoptRadius);
                     if (near == null) continue;
                 }
                 tagManaged(npc);
                 if (wakeNpc(npc, "proximity-adopt")) woke++;
             }
         }
+
+        wakeScanTimer.record(System.nanoTime() - start, scanned);
+    }
+
+    /* ============================================================
+     *  NPC / player index upkeep
+     * ============================================================ */
+
+    private void indexNpc(NPC npc) {
+        if (npc == null || !npc.isSpawned()) return;
+        Entity ent = npc.getEntity();
+        if (ent == null) return;
+        npcIndex.update(npc.getId(), ent.getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCitizensNpcDespawn(NPCDespawnEvent e) {
+        if (e.getNPC() == null) return;
+        npcIndex.remove(e.getNPC().getId());
+        autonomyWheel.remove(e.getNPC().getId());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onCitizensNpcTeleport(NPCTeleportEvent e) {
+        NPC npc = e.getNPC();
+        if (npc == null) return;
+        if (!npcIndex.keys().contains(npc.getId())) return;
+        npcIndex.update(npc.getId(), e.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerJoin(PlayerJoinEvent e) {
+        playerIndex.update(e.getPlayer().getUniqueId(), e.getPlayer().getLocation());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerQuit(PlayerQuitEvent e) {
+        UUID id = e.getPlayer().getUniqueId();
+        playerIndex.remove(id);
+        lastWakeScanMs.remove(id);
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onPlayerTeleport(PlayerTeleportEvent e) {
+        if (e.getTo() == null) return;
+        playerIndex.update(e.getPlayer().getUniqueId(), e.getTo());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR)
+    public void onPlayerRespawn(PlayerRespawnEvent e) {
+        playerIndex.update(e.getPlayer().getUniqueId(), e.getRespawnLocation());
+    }
+
+    /**
+     * NPCs walk between chunks without events; re-bucket them (and players) once a second and drop
+     * ids whose NPC is gone (covers any despawn we did not hear about).
+     */
+    private void startNpcIndexRefresh() {
+        if (npcIndexRefreshTask != null) npcIndexRefreshTask.cancel();
+
+        npcIndexRefreshTask = Bukkit.getScheduler().runTaskTimer(this, () -> {
+            long start = System.nanoTime();
+            List<Integer> ids = new ArrayList<>(npcIndex.keys());
+            for (Integer id : ids) {
+                NPC npc = CitizensAPI.getNPCRegistry().getById(id);
+                Entity ent = (npc != null && npc.isSpawned()) ? npc.getEntity() : null;
+                if (ent == null) {
+                    npcIndex.remove(id);
+                } else {
+                    npcIndex.update(id, ent.getLocation());
+                }
+            }
+            // Passengers and a few other movers never fire PlayerMoveEvent
+            for (Player p : Bukkit.getOnlinePlayers()) {
+                playerIndex.update(p.getUniqueId(), p.getLocation());
+            }
+            indexRefreshTimer.record(System.nanoTime() - start, ids.size());
+        }, 20L, 20L);
     }
 
     /* ============================================================
@@ -965,19 +1571,11 @@ startSkinTasks();
         String role = getRole(ent);
 
         String dayOrNight = night ? "night" : "day";
-        List<String> keys = new ArrayList<>();
-        keys.add("smalltalk." + dayOrNight + ".base");
-        keys.add("smalltalk." + dayOrNight + ".roleAdditions." + role);
-
-        return dlgPickFromKeys(keys, "...");
+        return dlgPickFromKeys("smalltalk." + dayOrNight + ".base", "smalltalk." + dayOrNight + ".roleAdditions." + role, "...");
     }
 
     String pickFarewell(String role) {
-        List<String> keys = new ArrayList<>();
-        keys.add("farewell.base");
-        keys.add("farewell.byRole." + role);
-
-        return dlgPickFromKeys(keys, "Until we meet again.");
+        return dlgPickFromKeys("farewell.base", "farewell.byRole." + role, "Until we meet again.");
     }
 
 
@@ -1222,90 +1820,65 @@ startSkinTasks();
         return false;
     }
 
+    private static final DialogueTemplate FALLBACK_OPENER_WORKER = DialogueTemplate.compile("Work is work. Speak quick.");
+    private static final DialogueTemplate FALLBACK_OPENER = DialogueTemplate.compile("You look like you’ve got a question. Ask.");
+    private static final DialogueTemplate FALLBACK_RUMOR = DialogueTemplate.compile("...");
+    private static final DialogueTemplate FALLBACK_DIRECTIONS_RANGER = DialogueTemplate.compile("Follow the worn ground and keep the sun on your shoulder. {to} lies where the paths thicken.");
+    private static final DialogueTemplate FALLBACK_DIRECTIONS = DialogueTemplate.compile("If you can see a marker for {to}, you’re already close. Keep to the travelled ground.");
+    private static final DialogueTemplate FALLBACK_WORK_WORKER = DialogueTemplate.compile("Haul what you can and don’t break what you can’t replace.");
+    private static final DialogueTemplate FALLBACK_WORK = DialogueTemplate.compile("Help where you can. {place} remembers who does.");
+
     private String buildOpenerLine(String role, String subrole, String originName, String nearName) {
         boolean mentionOrigin = ThreadLocalRandom.current().nextDouble() < 0.70;
         String place = mentionOrigin ? originName : nearName;
 
-        Map<String, String> vars = new HashMap<>();
-        vars.put("place", place);
-
         if ("worker".equals(role)) {
             String sr = (subrole == null) ? "" : subrole.trim().toLowerCase(Locale.ROOT);
-            List<String> keys = new ArrayList<>();
-            if (!sr.isEmpty()) keys.add("opener.worker." + sr);
-            keys.add("opener.worker.default");
-            String picked = dlgPickFromKeys(keys, "Work is work. Speak quick.");
-            return applyVars(picked, vars);
+            DialogueTemplate picked = dlgPickTemplate(sr.isEmpty() ? null : "opener.worker." + sr, "opener.worker.default");
+            return renderLine(picked, FALLBACK_OPENER_WORKER, "place", place);
         }
 
-        String key = "opener." + role;
-        String picked = dlgPick(key, null);
-        if (picked != null) return applyVars(picked, vars);
-
-        String fallback = dlgPick("opener.townsfolk", "You look like you’ve got a question. Ask.");
-        return applyVars(fallback, vars);
+        DialogueTemplate picked = dlgPickTemplate("opener." + role);
+        if (picked == null) picked = dlgPickTemplate("opener.townsfolk");
+        return renderLine(picked, FALLBACK_OPENER, "place", place);
     }
 
     private String rumorLine(String role, String originName, String nearName) {
         String place = (ThreadLocalRandom.current().nextDouble() < 0.55) ? nearName : originName;
 
-        Map<String, String> vars = new HashMap<>();
-        vars.put("place", place);
-
-        List<String> keys = new ArrayList<>();
-        keys.add("rumor.base");
-        keys.add("rumor.byRoleAdditions." + role);
-
-        String picked = dlgPickFromKeys(keys, "...");
-        return applyVars(picked, vars);
+        DialogueTemplate picked = dlgPickTemplate("rumor.base", "rumor.byRoleAdditions." + role);
+        return renderLine(picked, FALLBACK_RUMOR, "place", place);
     }
 
     private String directionsLine(String role, String originName, String nearName) {
         String to = (ThreadLocalRandom.current().nextDouble() < 0.50) ? nearName : originName;
 
-        Map<String, String> vars = new HashMap<>();
-        vars.put("to", to);
-
         if ("ranger".equals(role)) {
-            String picked = dlgPick("directions.ranger", "Follow the worn ground and keep the sun on your shoulder. {to} lies where the paths thicken.");
-            return applyVars(picked, vars);
+            return renderLine(dlgPickTemplate("directions.ranger"), FALLBACK_DIRECTIONS_RANGER, "to", to);
         }
 
-        String picked = dlgPick("directions.default", "If you can see a marker for {to}, you’re already close. Keep to the travelled ground.");
-        return applyVars(picked, vars);
+        return renderLine(dlgPickTemplate("directions.default"), FALLBACK_DIRECTIONS, "to", to);
     }
 
     private String workLine(String role, String subrole, String originName, String nearName) {
         String place = (ThreadLocalRandom.current().nextDouble() < 0.55) ? nearName : originName;
 
-        Map<String, String> vars = new HashMap<>();
-        vars.put("place", place);
-
         if ("worker".equals(role)) {
             String sr = (subrole == null) ? "" : subrole.trim().toLowerCase(Locale.ROOT);
-            List<String> keys = new ArrayList<>();
-            if (!sr.isEmpty()) keys.add("work.worker." + sr);
-            keys.add("work.worker.default");
-            String picked = dlgPickFromKeys(keys, "Haul what you can and don’t break what you can’t replace.");
-            return applyVars(picked, vars);
+            DialogueTemplate picked = dlgPickTemplate(sr.isEmpty() ? null : "work.worker." + sr, "work.worker.default");
+            return renderLine(picked, FALLBACK_WORK_WORKER, "place", place);
         }
 
-        String key = "work." + role;
-        String picked = dlgPick(key, null);
-        if (picked != null) return applyVars(picked, vars);
-
-        String fallback = dlgPick("work.townsfolk", "Help where you can. {place} remembers who does.");
-        return applyVars(fallback, vars);
+        DialogueTemplate picked = dlgPickTemplate("work." + role);
+        if (picked == null) picked = dlgPickTemplate("work.townsfolk");
+        return renderLine(picked, FALLBACK_WORK, "place", place);
     }
 
     private String acceptWorkLine(String role, String subrole, String originName, String nearName) {
         if ("worker".equals(role)) {
             String sr = (subrole == null) ? "" : subrole.trim().toLowerCase(Locale.ROOT);
-            List<String> keys = new ArrayList<>();
-            if (!sr.isEmpty()) keys.add("acceptWork.worker." + sr);
-            keys.add("acceptWork.worker.default");
-            String picked = dlgPickFromKeys(keys, "Keep your hands busy and your eyes open.");
-            return picked;
+            return dlgPickFromKeys(sr.isEmpty() ? null : "acceptWork.worker." + sr, "acceptWork.worker.default",
+                    "Keep your hands busy and your eyes open.");
         }
 
         String picked = dlgPick("acceptWork." + role, null);
@@ -1321,11 +1894,8 @@ startSkinTasks();
     }
 
     private String empireLine(String role, String originName, String nearName) {
-        List<String> keys = new ArrayList<>();
-        keys.add("empire.base");
-        keys.add("empire.byRoleAdditions." + role);
-
-        return dlgPickFromKeys(keys, "Viridia holds because law holds. Chaos is easy. Order is built.");
+        return dlgPickFromKeys("empire.base", "empire.byRoleAdditions." + role,
+                "Viridia holds because law holds. Chaos is easy. Order is built.");
     }
 
     private String fallbackLine(String role) {
@@ -1345,11 +1915,13 @@ startSkinTasks();
             if (isExcludedNpc(npc)) continue;
 
             if (isManagedNpc(npc)) {
+                indexNpc(npc);
                 if (wakeNpc(npc, reason)) woke++;
                 continue;
             }
 
             if (looksLikeLegacyVtfByName(npc)) {
+                indexNpc(npc);
                 if (adoptByNameNearSitesOnly) {
                     Entity ent = npc.getEntity();
                     if (ent == null) continue;
@@ -1377,10 +1949,10 @@ startSkinTasks();
         ensureIdentityAndName(npc, ent, false);
 
         int id = npc.getId();
-        if (!autonomyTasks.containsKey(id)) {
-            long periodSeconds = 4 + ThreadLocalRandom.current().nextInt(6);
-            BukkitTask t = Bukkit.getScheduler().runTaskTimer(this, () -> autonomyTick(npc), 20L, 20L * periodSeconds);
-            autonomyTasks.put(id, t);
+        npcIndex.update(id, ent.getLocation());
+        if (!autonomyWheel.contains(id)) {
+            int periodSeconds = 4 + ThreadLocalRandom.current().nextInt(6);
+            autonomyWheel.add(id, 20 * periodSeconds, 20);
         }
 
         return true;
@@ -1393,6 +1965,51 @@ startSkinTasks();
     //
     // (The rest of the class continues exactly as in your source.)
 
+    private void startAutonomyScheduler() {
+        if (autonomySchedulerTask != null) autonomySchedulerTask.cancel();
+        autonomySchedulerTask = Bukkit.getScheduler().runTaskTimer(this, this::autonomySchedulerTick, 1L, 1L);
+    }
+
+    /**
+     * Runs the NPCs due this tick (plus any left over from earlier ticks) until the budget is used.
+     * NPCs that are no longer spawned/managed leave the wheel; wakeNpc puts them back on respawn.
+     */
+    private void autonomySchedulerTick() {
+        autonomyWheel.advance();
+        ArrayDeque<Integer> ready = autonomyWheel.ready;
+        if (ready.isEmpty()) return;
+
+        autonomyMaxBacklog = Math.max(autonomyMaxBacklog, ready.size());
+        long start = System.nanoTime();
+        long budgetNanos = (long) (autonomyTickBudgetMs * 1_000_000.0);
+        int processed = 0;
+
+        while (!ready.isEmpty()) {
+            if (processed > 0 && System.nanoTime() - start >= budgetNanos) break;
+
+            int id = ready.peekFirst();
+            NPC npc = CitizensAPI.getNPCRegistry().getById(id);
+            if (npc == null || !npc.isSpawned() || !isManagedNpc(npc) || isExcludedNpc(npc)) {
+                autonomyWheel.remove(id);
+                continue;
+            }
+
+            ready.pollFirst();
+            autonomyWheel.reschedule(id);
+            try {
+                autonomyTick(npc);
+            } catch (Throwable ignored) {
+            }
+            processed++;
+        }
+
+        autonomyLastNanos = System.nanoTime() - start;
+        autonomyLastProcessed = processed;
+        autonomyLastDeferred = ready.size();
+        autonomyDeferredTotal += ready.size();
+        autonomyTimer.record(autonomyLastNanos, processed);
+    }
+
     private void autonomyTick(NPC npc) {
         if (npc == null || !npc.isSpawned()) return;
         if (!isManagedNpc(npc) || isExcludedNpc(npc)) return;
@@ -1709,26 +2326,21 @@ startSkinTasks();
 
         Location target = null;
 
-        // Role-specific POI bias, but only in loaded chunks.
-        if ("priest".equals(role)) {
-            target = findPoiNearLoaded(anchor, 22, Arrays.asList(Material.LECTERN, Material.BELL, Material.BOOKSHELF, Material.CANDLE));
-        } else if ("scholar".equals(role)) {
-            target = findPoiNearLoaded(anchor, 22, Arrays.asList(Material.LECTERN, Material.BOOKSHELF, Material.CARTOGRAPHY_TABLE));
-        } else if ("dockhand".equals(role)) {
-            target = findDockPoiNearLoaded(anchor, 26);
-        } else if ("guard".equals(role)) {
-            target = findBuiltHotspotNearLoaded(anchor, 26);
-        } else if ("ranger".equals(role)) {
-            target = findEdgeHotspotNearLoaded(anchor, 34);
-        } else if ("worker".equals(role)) {
-            if ("farmer".equalsIgnoreCase(subrole)) {
-                target = findPoiNearLoaded(anchor, 24, Arrays.asList(Material.FARMLAND, Material.WHEAT, Material.CARROTS, Material.POTATOES, Material.BEETROOTS, Material.COMPOSTER));
-            } else {
-                target = findPoiNearLoaded(anchor, 24, Arrays.asList(Material.CRAFTING_TABLE, Material.ANVIL, Material.SMITHING_TABLE, Material.STONECUTTER, Material.GRINDSTONE, Material.FURNACE, Material.BLAST_FURNACE));
-            }
-        } else {
-            // Townsfolk/hermit baseline: go where builds are.
-            target = findBuiltHotspotNearLoaded(anchor, 24);
+        // Role-specific POI bias, but only in loaded chunks. Site NPCs read the site's POI cache;
+        // the random block sampling is only used for site-less NPCs and while the cache warms up.
+        boolean sample = true;
+        if (poiCacheEnabled && site != null && anchor != loc) {
+            long start = System.nanoTime();
+            SitePoiCache poi = sitePoiCache(site);
+            // Also queues rescans for missing/expired chunks, so it runs even on a hit.
+            boolean warm = ensurePoiCacheWarm(poi, anchor.getWorld(), anchor, poiRadiusForRole(role));
+            target = findRoleTargetCached(poi, anchor, role, subrole);
+            poiLookupTimer.record(System.nanoTime() - start, target != null ? 1 : 0);
+            sample = target == null && !warm;
+            if (sample) poiSampledFallbacks++;
+        }
+        if (sample) {
+            target = findRoleTargetSampled(anchor, role, subrole);
         }
 
         if (target == null) {
@@ -1746,7 +2358,38 @@ if (target != null) {
 }
     }
 
-    private Location findPoiNearLoaded(Location base, int radius, List<Material> targets) {
+    private static final List<Material> PRIEST_POI = Arrays.asList(Material.LECTERN, Material.BELL, Material.BOOKSHELF, Material.CANDLE);
+    private static final List<Material> SCHOLAR_POI = Arrays.asList(Material.LECTERN, Material.BOOKSHELF, Material.CARTOGRAPHY_TABLE);
+    private static final List<Material> FARMER_POI = Arrays.asList(Material.FARMLAND, Material.WHEAT, Material.CARROTS, Material.POTATOES, Material.BEETROOTS, Material.COMPOSTER);
+    private static final List<Material> WORKSHOP_POI = Arrays.asList(Material.CRAFTING_TABLE, Material.ANVIL, Material.SMITHING_TABLE, Material.STONECUTTER, Material.GRINDSTONE, Material.FURNACE, Material.BLAST_FURNACE);
+
+    // Hotspot thresholds shared by the sampled and cached lookups
+    private static final int BUILT_MIN_SCORE = 6;
+    private static final int EDGE_MIN_SCORE = 3;
+    private static final int EDGE_MAX_SCORE = 10;
+
+    private static int poiRadiusForRole(String role) {
+        if ("priest".equals(role) || "scholar".equals(role)) return 22;
+        if ("dockhand".equals(role) || "guard".equals(role)) return 26;
+        if ("ranger".equals(role)) return 34;
+        return 24;
+    }
+
+    private Location findRoleTargetSampled(Location anchor, String role, String subrole) {
+        int radius = poiRadiusForRole(role);
+        if ("priest".equals(role)) return findPoiNearLoaded(anchor, radius, PRIEST_POI);
+        if ("scholar".equals(role)) return findPoiNearLoaded(anchor, radius, SCHOLAR_POI);
+        if ("dockhand".equals(role)) return findDockPoiNearLoaded(anchor, radius);
+        if ("guard".equals(role)) return findBuiltHotspotNearLoaded(anchor, radius);
+        if ("ranger".equals(role)) return findEdgeHotspotNearLoaded(anchor, radius);
+        if ("worker".equals(role)) {
+            return findPoiNearLoaded(anchor, radius, "farmer".equalsIgnoreCase(subrole) ? FARMER_POI : WORKSHOP_POI);
+        }
+        // Townsfolk/hermit baseline: go where builds are.
+        return findBuiltHotspotNearLoaded(anchor, radius);
+    }
+
+    private Location findPoiNearLoaded(Location base, int radius, Collection<Material> targets) {
         if (base == null || base.getWorld() == null) return null;
         World w = base.getWorld();
         int bx = base.getBlockX();
@@ -1799,7 +2442,7 @@ if (target != null) {
 
             // Prefer wood slabs/planks near water.
             Material g = ground.getType();
-            if (!(g.name().endsWith("_PLANKS") || g.name().endsWith("_SLAB") || g.name().endsWith("_STAIRS"))) continue;
+            if (!isDockGround(g)) continue;
 
             boolean nearWater = false;
             for (int ox = -2; ox <= 2 && !nearWater; ox++) {
@@ -1841,7 +2484,7 @@ if (target != null) {
             }
         }
 
-        return (bestScore >= 6) ? best : null;
+        return (bestScore >= BUILT_MIN_SCORE) ? best : null;
     }
 
     private Location findEdgeHotspotNearLoaded(Location base, int radius) {
@@ -1864,7 +2507,7 @@ if (target != null) {
             if (!isStandable(stand)) continue;
 
             int score = builtDensityScore(w, x, topY, z);
-            if (score < 3 || score > 10) continue;
+            if (score < EDGE_MIN_SCORE || score > EDGE_MAX_SCORE) continue;
 
             int dist = (int) Math.round(Math.sqrt((x - bx) * (double) (x - bx) + (z - bz) * (double) (z - bz)));
             int bias = dist * 2 + score; // prefer further out, but still somewhat built
@@ -1878,25 +2521,319 @@ if (target != null) {
         return best;
     }
 
+    // builtDensityScore weight per Material ordinal; name checks done once instead of per block read
+    private static final byte[] BUILT_WEIGHT = new byte[Material.values().length];
+    private static final boolean[] DOCK_GROUND = new boolean[Material.values().length];
+    // Every block type any role routine targets (plus beds, kept for routines that want them)
+    private static final Set<Material> POI_MATERIALS = EnumSet.noneOf(Material.class);
+
+    static {
+        for (Material m : Material.values()) {
+            String n = m.name();
+            int w = 0;
+            if (n.endsWith("_PLANKS") || n.endsWith("_LOG") || n.contains("STRIPPED_")) w = 2;
+            else if (n.contains("BRICKS") || n.contains("STONE_BRICKS") || n.equals("COBBLESTONE")) w = 2;
+            else if (m == Material.GLASS || n.endsWith("_GLASS")) w = 2;
+            else if (m == Material.LANTERN || m == Material.TORCH || n.endsWith("_TORCH")) w = 2;
+            else if (m == Material.CHEST || m == Material.BARREL) w = 2;
+            else if (m == Material.DIRT_PATH || m == Material.GRAVEL || m == Material.COBBLESTONE) w = 1;
+            else if (n.contains("FENCE") || n.contains("DOOR") || n.contains("GATE")) w = 1;
+            BUILT_WEIGHT[m.ordinal()] = (byte) w;
+
+            DOCK_GROUND[m.ordinal()] = n.endsWith("_PLANKS") || n.endsWith("_SLAB") || n.endsWith("_STAIRS");
+            if (n.endsWith("_BED")) POI_MATERIALS.add(m);
+        }
+        POI_MATERIALS.addAll(PRIEST_POI);
+        POI_MATERIALS.addAll(SCHOLAR_POI);
+        POI_MATERIALS.addAll(FARMER_POI);
+        POI_MATERIALS.addAll(WORKSHOP_POI);
+    }
+
+    private static boolean isDockGround(Material m) {
+        return DOCK_GROUND[m.ordinal()];
+    }
+
     private int builtDensityScore(World w, int x, int y, int z) {
         int score = 0;
         for (int ox = -2; ox <= 2; ox++) {
             for (int oz = -2; oz <= 2; oz++) {
-                Material m = w.getBlockAt(x + ox, y, z + oz).getType();
-                String n = m.name();
-
-                if (n.endsWith("_PLANKS") || n.endsWith("_LOG") || n.contains("STRIPPED_")) score += 2;
-                else if (n.contains("BRICKS") || n.contains("STONE_BRICKS") || n.equals("COBBLESTONE")) score += 2;
-                else if (m == Material.GLASS || n.endsWith("_GLASS")) score += 2;
-                else if (m == Material.LANTERN || m == Material.TORCH || n.endsWith("_TORCH")) score += 2;
-                else if (m == Material.CHEST || m == Material.BARREL) score += 2;
-                else if (m == Material.DIRT_PATH || m == Material.GRAVEL || m == Material.COBBLESTONE) score += 1;
-                else if (n.contains("FENCE") || n.contains("DOOR") || n.contains("GATE")) score += 1;
+                score += BUILT_WEIGHT[w.getBlockAt(x + ox, y, z + oz).getType().ordinal()];
             }
         }
         return score;
     }
 
+    /* ============================================================
+     *  Site POI cache: lookups, snapshot scans, invalidation
+     * ============================================================ */
+
+    // Covers the largest role radius (ranger, 34) plus the 2-block density/water window.
+    private static final int POI_CACHE_RADIUS = 36;
+
+    private SitePoiCache sitePoiCache(Site site) {
+        return poiCaches.computeIfAbsent(site, s -> new SitePoiCache(s, POI_CACHE_RADIUS));
+    }
+
+    private Location findRoleTargetCached(SitePoiCache cache, Location anchor, String role, String subrole) {
+        World w = anchor.getWorld();
+        if (w == null) return null;
+        int radius = poiRadiusForRole(role);
+        List<PoiSpot> candidates = new ArrayList<>();
+
+        if ("priest".equals(role) || "scholar".equals(role) || "worker".equals(role)) {
+            List<Material> types = "priest".equals(role) ? PRIEST_POI
+                    : "scholar".equals(role) ? SCHOLAR_POI
+                    : "farmer".equalsIgnoreCase(subrole) ? FARMER_POI : WORKSHOP_POI;
+            collectCachedPois(cache, w, anchor, radius, types, null, candidates);
+            return pickRandomPoi(cache, w, candidates, true);
+        }
+        if ("dockhand".equals(role)) {
+            collectCachedPois(cache, w, anchor, radius, null, p -> p.docks, candidates);
+            return pickRandomPoi(cache, w, candidates, false);
+        }
+
+        collectCachedPois(cache, w, anchor, radius, null, p -> p.hotspots, candidates);
+        if ("ranger".equals(role)) return pickEdgeHotspot(cache, w, anchor, candidates);
+        return pickBuiltHotspot(cache, w, candidates);
+    }
+
+    /** Adds cached spots within the square radius of anchor, from loaded chunks with fresh entries only. */
+    private void collectCachedPois(SitePoiCache cache, World w, Location anchor, int radius, List<Material> types,
+                                   java.util.function.Function<ChunkPois, List<PoiSpot>> list, List<PoiSpot> out) {
+        int bx = anchor.getBlockX();
+        int bz = anchor.getBlockZ();
+        long now = System.currentTimeMillis();
+        long maxAgeMs = poiCacheMaxAgeSeconds * 1000L;
+
+        for (int cx = (bx - radius) >> 4; cx <= (bx + radius) >> 4; cx++) {
+            for (int cz = (bz - radius) >> 4; cz <= (bz + radius) >> 4; cz++) {
+                if (!cache.covers(cx, cz) || !w.isChunkLoaded(cx, cz)) continue;
+                ChunkPois pois = cache.fresh(ChunkBucketIndex.chunkKey(cx, cz), now, maxAgeMs);
+                if (pois == null) continue;
+
+                if (types != null) {
+                    for (Material m : types) {
+                        List<PoiSpot> l = pois.byType.get(m);
+                        if (l != null) addInBox(l, bx, bz, radius, out);
+                    }
+                } else {
+                    addInBox(list.apply(pois), bx, bz, radius, out);
+                }
+            }
+        }
+    }
+
+    private static void addInBox(List<PoiSpot> spots, int bx, int bz, int radius, List<PoiSpot> out) {
+        for (PoiSpot p : spots) {
+            if (Math.abs(p.x - bx) <= radius && Math.abs(p.z - bz) <= radius) out.add(p);
+        }
+    }
+
+    /**
+     * Random candidate, re-checked against the live world. A failed check means the cache missed a
+     * change (explosion, piston, growth...), so that chunk is dropped for a rescan.
+     */
+    private Location pickRandomPoi(SitePoiCache cache, World w, List<PoiSpot> candidates, boolean checkType) {
+        for (int tries = 0; tries < 4 && !candidates.isEmpty(); tries++) {
+            int i = ThreadLocalRandom.current().nextInt(candidates.size());
+            PoiSpot p = candidates.get(i);
+            Location stand = new Location(w, p.x + 0.5, p.y, p.z + 0.5);
+            if ((!checkType || w.getBlockAt(p.x, p.y - 1, p.z).getType() == p.type) && isStandable(stand)) return stand;
+
+            cache.invalidate(p.x >> 4, p.z >> 4);
+            candidates.set(i, candidates.get(candidates.size() - 1));
+            candidates.remove(candidates.size() - 1);
+        }
+        return null;
+    }
+
+    /** Same shape as findBuiltHotspotNearLoaded: best of up to 40 random spots, if dense enough. */
+    private Location pickBuiltHotspot(SitePoiCache cache, World w, List<PoiSpot> candidates) {
+        PoiSpot best = null;
+        int samples = Math.min(40, candidates.size());
+        for (int i = 0; i < samples; i++) {
+            PoiSpot p = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+            if (p.score >= BUILT_MIN_SCORE && (best == null || p.score > best.score)) best = p;
+        }
+        return (best == null) ? null : verifiedStand(cache, w, best);
+    }
+
+    /** Same shape as findEdgeHotspotNearLoaded: moderate score, biased away from the anchor. */
+    private Location pickEdgeHotspot(SitePoiCache cache, World w, Location anchor, List<PoiSpot> candidates) {
+        int bx = anchor.getBlockX();
+        int bz = anchor.getBlockZ();
+        PoiSpot best = null;
+        int bestBias = Integer.MIN_VALUE;
+        int samples = Math.min(50, candidates.size());
+        for (int i = 0; i < samples; i++) {
+            PoiSpot p = candidates.get(ThreadLocalRandom.current().nextInt(candidates.size()));
+            if (p.score > EDGE_MAX_SCORE) continue;
+            int dist = (int) Math.round(Math.sqrt((p.x - bx) * (double) (p.x - bx) + (p.z - bz) * (double) (p.z - bz)));
+            int bias = dist * 2 + p.score;
+            if (bias > bestBias) {
+                bestBias = bias;
+                best = p;
+            }
+        }
+        return (best == null) ? null : verifiedStand(cache, w, best);
+    }
+
+    private Location verifiedStand(SitePoiCache cache, World w, PoiSpot p) {
+        Location stand = new Location(w, p.x + 0.5, p.y, p.z + 0.5);
+        if (isStandable(stand)) return stand;
+        cache.invalidate(p.x >> 4, p.z >> 4);
+        return null;
+    }
+
+    /**
+     * True when every loaded chunk within radius of anchor has a fresh entry, i.e. an empty lookup
+     * really means "nothing here". Otherwise queues (up to poi.chunksPerBuild) snapshot scans for
+     * the missing chunks and returns false so the caller can fall back to sampling this time.
+     */
+    private boolean ensurePoiCacheWarm(SitePoiCache cache, World w, Location anchor, int radius) {
+        int bx = anchor.getBlockX();
+        int bz = anchor.getBlockZ();
+        long now = System.currentTimeMillis();
+        long maxAgeMs = poiCacheMaxAgeSeconds * 1000L;
+
+        boolean warm = true;
+        List<long[]> toBuild = new ArrayList<>();
+        for (int cx = (bx - radius) >> 4; cx <= (bx + radius) >> 4; cx++) {
+            for (int cz = (bz - radius) >> 4; cz <= (bz + radius) >> 4; cz++) {
+                if (!cache.covers(cx, cz) || !w.isChunkLoaded(cx, cz)) continue;
+                long ck = ChunkBucketIndex.chunkKey(cx, cz);
+                if (cache.fresh(ck, now, maxAgeMs) != null) continue;
+                warm = false;
+                if (!cache.building.contains(ck) && toBuild.size() < poiCacheChunksPerBuild) {
+                    toBuild.add(new long[]{cx, cz});
+                }
+            }
+        }
+        if (!toBuild.isEmpty()) startPoiScan(cache, w, toBuild);
+        return warm;
+    }
+
+    /** Snapshots the chunks (and their loaded neighbours) on the main thread, scans them async. */
+    private void startPoiScan(SitePoiCache cache, World w, List<long[]> targets) {
+        SnapshotArea area = new SnapshotArea(w.getMinHeight(), w.getMaxHeight());
+        Map<Long, Integer> versions = new HashMap<>();
+
+        for (long[] t : targets) {
+            int cx = (int) t[0];
+            int cz = (int) t[1];
+            long ck = ChunkBucketIndex.chunkKey(cx, cz);
+            cache.building.add(ck);
+            versions.put(ck, cache.version(ck));
+
+            for (int nx = cx - 1; nx <= cx + 1; nx++) {
+                for (int nz = cz - 1; nz <= cz + 1; nz++) {
+                    long nk = ChunkBucketIndex.chunkKey(nx, nz);
+                    if (area.snapshots.containsKey(nk) || !w.isChunkLoaded(nx, nz)) continue;
+                    area.snapshots.put(nk, w.getChunkAt(nx, nz).getChunkSnapshot(true, false, false));
+                }
+            }
+        }
+
+        Bukkit.getScheduler().runTaskAsynchronously(this, () -> {
+            Map<Long, ChunkPois> results = new HashMap<>();
+            for (long[] t : targets) {
+                long ck = ChunkBucketIndex.chunkKey((int) t[0], (int) t[1]);
+                try {
+                    results.put(ck, scanChunkPois(area, (int) t[0], (int) t[1], versions.get(ck)));
+                } catch (Throwable ignored) {
+                }
+            }
+
+            Bukkit.getScheduler().runTask(this, () -> {
+                for (long[] t : targets) cache.building.remove(ChunkBucketIndex.chunkKey((int) t[0], (int) t[1]));
+                if (!poiCaches.containsValue(cache)) return;  // sites reloaded meanwhile
+                for (Map.Entry<Long, ChunkPois> e : results.entrySet()) {
+                    ChunkPois pois = e.getValue();
+                    poiScanTimer.record(pois.scanNanos, pois.size());
+                    if (pois.version != cache.version(e.getKey())) continue;  // changed while scanning
+                    cache.chunks.put(e.getKey(), pois);
+                }
+            });
+        });
+    }
+
+    /**
+     * Off-thread scan of one chunk, mirroring the sampled lookups: POI blocks from topY-1 to topY+2
+     * (stand on top of them), plank/slab/stair docks with water within 2 blocks, and standable tops
+     * with their builtDensityScore.
+     */
+    private static ChunkPois scanChunkPois(SnapshotArea area, int cx, int cz, int version) {
+        long start = System.nanoTime();
+        ChunkPois pois = new ChunkPois(version, System.currentTimeMillis());
+        ChunkSnapshot snap = area.snapshots.get(ChunkBucketIndex.chunkKey(cx, cz));
+        if (snap == null) return pois;
+
+        for (int lx = 0; lx < 16; lx++) {
+            for (int lz = 0; lz < 16; lz++) {
+                int x = (cx << 4) + lx;
+                int z = (cz << 4) + lz;
+                int topY = snap.getHighestBlockYAt(lx, lz);
+
+                for (int dy = -1; dy <= 2; dy++) {
+                    Material m = area.type(x, topY + dy, z);
+                    if (!POI_MATERIALS.contains(m) || !area.standable(x, topY + dy + 1, z)) continue;
+                    pois.byType.computeIfAbsent(m, k -> new ArrayList<>()).add(new PoiSpot(x, topY + dy + 1, z, m, 0));
+                }
+
+                if (!area.standable(x, topY + 1, z)) continue;
+
+                if (isDockGround(area.type(x, topY, z))) {
+                    boolean nearWater = false;
+                    for (int ox = -2; ox <= 2 && !nearWater; ox++) {
+                        for (int oz = -2; oz <= 2 && !nearWater; oz++) {
+                            if (area.type(x + ox, topY, z + oz) == Material.WATER) nearWater = true;
+                        }
+                    }
+                    if (nearWater) pois.docks.add(new PoiSpot(x, topY + 1, z, null, 0));
+                }
+
+                int score = 0;
+                for (int ox = -2; ox <= 2; ox++) {
+                    for (int oz = -2; oz <= 2; oz++) {
+                        score += BUILT_WEIGHT[area.type(x + ox, topY, z + oz).ordinal()];
+                    }
+                }
+                if (score >= EDGE_MIN_SCORE) pois.hotspots.add(new PoiSpot(x, topY + 1, z, null, score));
+            }
+        }
+        pois.scanNanos = System.nanoTime() - start;
+        return pois;
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockPlacePoi(BlockPlaceEvent e) {
+        invalidatePoisAround(e.getBlock());
+    }
+
+    @EventHandler(priority = EventPriority.MONITOR, ignoreCancelled = true)
+    public void onBlockBreakPoi(BlockBreakEvent e) {
+        invalidatePoisAround(e.getBlock());
+    }
+
+    /** Drops cached chunks whose spots could read this block (the scans look up to 2 blocks sideways). */
+    private void invalidatePoisAround(Block b) {
+        if (poiCaches.isEmpty() || b == null || b.getWorld() == null) return;
+        String worldName = b.getWorld().getName();
+        int minCx = (b.getX() - 2) >> 4;
+        int maxCx = (b.getX() + 2) >> 4;
+        int minCz = (b.getZ() - 2) >> 4;
+        int maxCz = (b.getZ() + 2) >> 4;
+
+        for (SitePoiCache cache : poiCaches.values()) {
+            if (!cache.worldName.equalsIgnoreCase(worldName)) continue;
+            if (maxCx < cache.minCx || minCx > cache.maxCx || maxCz < cache.minCz || minCz > cache.maxCz) continue;
+            for (int cx = minCx; cx <= maxCx; cx++) {
+                for (int cz = minCz; cz <= maxCz; cz++) {
+                    cache.invalidate(cx, cz);
+                }
+            }
+        }
+    }
     private boolean isStandable(Location stand) {
         if (stand == null || stand.getWorld() == null) return false;
         World w = stand.getWorld();
@@ -2026,12 +2963,23 @@ if (target != null) {
         if (w == null) return false;
         double r2 = (double) radius * radius;
 
-        for (Player p : w.getPlayers()) {
-            if (p == null) continue;
-            if (!p.isOnline()) continue;
-            if (p.getLocation().distanceSquared(loc) <= r2) return true;
+        long start = System.nanoTime();
+        List<UUID> candidates = new ArrayList<>();
+        playerIndex.collectNear(loc, radius, candidates);
+
+        boolean found = false;
+        for (UUID id : candidates) {
+            Player p = Bukkit.getPlayer(id);
+            if (p == null || !p.isOnline()) continue;
+            if (p.getWorld() != w) continue;
+            if (p.getLocation().distanceSquared(loc) <= r2) {
+                found = true;
+                break;
+            }
         }
-        return false;
+
+        hasPlayerTimer.record(System.nanoTime() - start, candidates.size());
+        return found;
     }
 
     private int countManagedNear(Location center, int radius) {
@@ -2041,14 +2989,21 @@ if (target != null) {
         double r2 = (double) radius * radius;
         int c = 0;
 
-        for (NPC npc : CitizensAPI.getNPCRegistry()) {
-            if (!npc.isSpawned()) continue;
+        long start = System.nanoTime();
+        List<Integer> candidates = new ArrayList<>();
+        npcIndex.collectNear(center, radius, candidates);
+
+        for (Integer id : candidates) {
+            NPC npc = CitizensAPI.getNPCRegistry().getById(id);
+            if (npc == null || !npc.isSpawned()) continue;
             if (!isManagedNpc(npc) || isExcludedNpc(npc)) continue;
 
             Entity ent = npc.getEntity();
             if (ent == null || ent.getWorld() != w) continue;
             if (ent.getLocation().distanceSquared(center) <= r2) c++;
         }
+
+        countManagedTimer.record(System.nanoTime() - start, candidates.size());
         return c;
     }
 
@@ -2059,11 +3014,8 @@ if (target != null) {
     private int purgeAllManaged() {
         int removed = 0;
 
-        // Cancel tasks first
-        for (BukkitTask t : autonomyTasks.values()) {
-            try { t.cancel(); } catch (Throwable ignored) {}
-        }
-        autonomyTasks.clear();
+        // Stop autonomy first
+        autonomyWheel.clear();
 
         for (NPC npc : CitizensAPI.getNPCRegistry()) {
             if (!npc.isSpawned()) continue;
@@ -2662,6 +3614,7 @@ if (target != null) {
 
     private void loadSites() {
         sites.clear();
+        poiCaches.clear();
         loadIgnoreFilters();
 
         int fromDynmap = 0;
@@ -2932,6 +3885,14 @@ if (target != null) {
                 "  enableInteractive: true\n" +
                 "  sessionSeconds: 45\n" +
                 "\n" +
+                "autonomy:\n" +
+                "  tickBudgetMs: 2.0\n" +
+                "\n" +
+                "poi:\n" +
+                "  cacheEnabled: true\n" +
+                "  maxAgeSeconds: 300\n" +
+                "  chunksPerBuild: 4\n" +
+                "\n" +
                 "sites:\n" +
                 "  ignoreContains:\n" +
                 "    - sharko\n" +
@@ -2997,6 +3958,12 @@ if (target != null) {
             interactiveDialogueEnabled = getConfig().getBoolean("dialogue.enableInteractive", interactiveDialogueEnabled);
             dialogueSessionSeconds = getConfig().getInt("dialogue.sessionSeconds", dialogueSessionSeconds);
 
+            autonomyTickBudgetMs = Math.max(0.1, getConfig().getDouble("autonomy.tickBudgetMs", autonomyTickBudgetMs));
+
+            poiCacheEnabled = getConfig().getBoolean("poi.cacheEnabled", poiCacheEnabled);
+            poiCacheMaxAgeSeconds = Math.max(10, getConfig().getInt("poi.maxAgeSeconds", poiCacheMaxAgeSeconds));
+            poiCacheChunksPerBuild = Math.max(1, getConfig().getInt("poi.chunksPerBuild", poiCacheChunksPerBuild));
+
             returnToSiteDistance = getConfig().getInt("roaming.returnToSiteDistance", returnToSiteDistance);
             roamRadiusTownsfolk = getConfig().getInt("roaming.townsfolk", roamRadiusTownsfolk);
             roamRadiusWorker = getConfig().getInt("roaming.worker", roamRadiusWorker);